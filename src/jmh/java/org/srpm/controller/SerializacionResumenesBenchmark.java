@@ -0,0 +1,44 @@
+package org.srpm.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.srpm.dao.ResumenDaoEnMemoria;
+import org.srpm.model.Resumen;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serialización Jackson de la List&lt;Resumen&gt; tal y como la devuelve MainController.getAll
+ * (mismo ObjectMapper que configura Spring Boot por defecto).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SerializacionResumenesBenchmark {
+
+    @Param({"100", "10000"})
+    public int resumenes;
+
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+    private List<Resumen> lista;
+
+    @Setup
+    public void precargar() {
+        ResumenDaoEnMemoria dao = new ResumenDaoEnMemoria();
+        for (int i = 0; i < resumenes; i++) {
+            dao.save(new Resumen("Titular del resumen número " + i,
+                    "Cuerpo del resumen " + i + ", con un par de frases como las que devuelve la IA.", null));
+        }
+        lista = dao.findAll();
+    }
+
+    @Benchmark
+    public byte[] getAll() throws Exception {
+        return objectMapper.writeValueAsBytes(lista);
+    }
+}
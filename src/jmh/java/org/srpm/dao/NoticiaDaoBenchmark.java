@@ -0,0 +1,60 @@
+package org.srpm.dao;
+
+import org.openjdk.jmh.annotations.*;
+import org.srpm.model.Noticia;
+
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * NoticiaDaoEnMemoria con contención: 2 hilos guardando noticias nuevas mientras
+ * 6 hilos buscan por link (lo que hacen las fuentes concurrentes en cada ciclo).
+ */
+@State(Scope.Group)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class NoticiaDaoBenchmark {
+
+    private static final int PRECARGADAS = 10_000;
+
+    private NoticiaDaoEnMemoria dao;
+    private final AtomicLong siguienteLink = new AtomicLong();
+
+    @Setup(Level.Iteration)
+    public void precargar() {
+        dao = new NoticiaDaoEnMemoria();
+        siguienteLink.set(0);
+        for (int i = 0; i < PRECARGADAS; i++) {
+            dao.save(noticia(siguienteLink.getAndIncrement()));
+        }
+    }
+
+    @Benchmark
+    @Group("contencion")
+    @GroupThreads(2)
+    public void save() {
+        dao.save(noticia(siguienteLink.getAndIncrement()));
+    }
+
+    @Benchmark
+    @Group("contencion")
+    @GroupThreads(6)
+    public Optional<Noticia> findByLinkNoticia() {
+        long n = ThreadLocalRandom.current().nextLong(Math.max(1, siguienteLink.get()));
+        return dao.findByLinkNoticia("https://bench.example/noticia/" + n);
+    }
+
+    private static Noticia noticia(long n) {
+        Noticia noticia = new Noticia();
+        noticia.setLinkNoticia("https://bench.example/noticia/" + n);
+        noticia.setFuente("bench");
+        noticia.setTitular("Titular " + n);
+        noticia.setContenido("Contenido de la noticia " + n);
+        return noticia;
+    }
+}
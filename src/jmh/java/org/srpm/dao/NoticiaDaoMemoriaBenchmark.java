@@ -0,0 +1,97 @@
+package org.srpm.dao;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+import org.srpm.model.Noticia;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.time.Clock;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * NoticiaDaoEnMemoria normal frente a compacto ('dao.memoria.compacto'), con noticias reales
+ * (las de src/test/resources/duplicados, repetidas con links y fechas distintas).
+ *
+ * Al acabar la preparación imprime los bytes por noticia MEDIDOS en el heap (diferencia de memoria
+ * usada tras un GC, índices del DAO incluidos) junto a lo que estima el propio DAO; las pruebas
+ * miden lo que cuesta leer: sólo titular y fuente (índice de búsqueda) o también el contenido.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class NoticiaDaoMemoriaBenchmark {
+
+    private static final int NOTICIAS = 100_000;
+
+    @Param({"false", "true"})
+    public boolean compacto;
+
+    // Sólo en modo compacto; 0 = sin Deflate
+    @Param({"512"})
+    public int comprimirDesde;
+
+    private NoticiaDaoEnMemoria dao;
+    private SplittableRandom azar;
+
+    @Setup
+    public void cargar() throws IOException {
+        List<JsonNode> ejemplos = new ArrayList<>();
+        try (InputStream in = NoticiaDaoMemoriaBenchmark.class.getResourceAsStream("/duplicados/noticias-etiquetadas.json")) {
+            new ObjectMapper().readTree(in).forEach(ejemplos::add);
+        }
+        LocalDateTime inicio = LocalDateTime.of(2025, 1, 1, 0, 0);
+
+        long antes = heapUsado();
+        dao = new NoticiaDaoEnMemoria(PoliticaRetencion.SIN_LIMITES, Clock.systemDefaultZone(), compacto, comprimirDesde);
+        for (int i = 0; i < NOTICIAS; i++) {
+            JsonNode ejemplo = ejemplos.get(i % ejemplos.size());
+            Noticia noticia = new Noticia();
+            noticia.setFuente(new String(ejemplo.get("fuente").asText())); // un String por noticia, como llegan del feed
+            noticia.setTitular(ejemplo.get("titular").asText() + " (" + i + ")");
+            noticia.setLinkNoticia("https://" + ejemplo.get("fuente").asText() + "/noticias/2025/" + i + "-" + ejemplo.get("historia").asText());
+            noticia.setContenido(ejemplo.get("contenido").asText() + " Ref. " + i);
+            noticia.setFecha(inicio.plusSeconds(i * 37L));
+            dao.save(noticia);
+        }
+        long medidos = (heapUsado() - antes) / NOTICIAS;
+
+        System.out.printf("%n%s: %d bytes/noticia medidos en el heap, %d estimados por el DAO%n",
+                compacto ? "compacto" : "normal", medidos, dao.estadisticas().bytes() / NOTICIAS);
+        azar = new SplittableRandom(42);
+    }
+
+    @Benchmark
+    public int leerTitularYFuente() {
+        Noticia noticia = dao.findById(azar.nextLong(1, NOTICIAS + 1)).orElseThrow();
+        return noticia.getTitular().length() + noticia.getFuente().length();
+    }
+
+    @Benchmark
+    public int leerConContenido() {
+        Noticia noticia = dao.findById(azar.nextLong(1, NOTICIAS + 1)).orElseThrow();
+        return noticia.getTitular().length() + noticia.getContenido().length();
+    }
+
+    @Benchmark
+    public boolean buscarPorLink() {
+        long n = azar.nextLong(NOTICIAS);
+        return dao.findByLinkNoticia("https://no-existe/" + n).isPresent();
+    }
+
+    private static long heapUsado() {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+}
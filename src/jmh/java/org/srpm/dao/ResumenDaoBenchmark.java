@@ -0,0 +1,37 @@
+package org.srpm.dao;
+
+import org.openjdk.jmh.annotations.*;
+import org.srpm.model.Resumen;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ResumenDaoEnMemoria.findAll (lo que hay detrás de GET /resumenes) según el tamaño del corpus.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class ResumenDaoBenchmark {
+
+    @Param({"10000", "100000", "1000000"})
+    public int resumenes;
+
+    private ResumenDaoEnMemoria dao;
+
+    @Setup
+    public void precargar() {
+        dao = new ResumenDaoEnMemoria();
+        for (int i = 0; i < resumenes; i++) {
+            dao.save(new Resumen("Titular " + i, "Cuerpo del resumen " + i, null));
+        }
+    }
+
+    @Benchmark
+    public List<Resumen> findAll() {
+        return dao.findAll();
+    }
+}
@@ -0,0 +1,93 @@
+package org.srpm.service;
+
+import org.openjdk.jmh.annotations.*;
+import org.srpm.dao.NoticiaDaoEnMemoria;
+import org.srpm.dao.ResumenDaoEnMemoria;
+import org.srpm.model.Noticia;
+import org.srpm.model.Resumen;
+
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Búsqueda BM25 en IndiceBusqueda con un corpus sintético: vocabulario de 50.000 palabras con
+ * frecuencias tipo Zipf (unas pocas muy comunes, la mayoría raras) y ~60 palabras por resumen.
+ *
+ * Al acabar la preparación imprime el tamaño de las listas, para ver los bytes por aparición.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.AverageTime, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx6g")
+public class IndiceBusquedaBenchmark {
+
+    private static final int VOCABULARIO = 50_000;
+    private static final int PALABRAS_POR_RESUMEN = 60;
+    private static final String[] FUENTES = {"20minutos", "cope", "eldiario"};
+
+    @Param({"100000", "1000000"})
+    public int resumenes;
+
+    private IndiceBusqueda indice;
+    private String[] palabras;
+
+    @Setup
+    public void indexar() {
+        palabras = new String[VOCABULARIO];
+        for (int i = 0; i < VOCABULARIO; i++) {
+            palabras[i] = "t" + Integer.toString(i, 36) + "x"; // acaba en x: el stemming no las junta
+        }
+
+        NoticiaDaoEnMemoria noticias = new NoticiaDaoEnMemoria();
+        for (int f = 0; f < FUENTES.length; f++) {
+            Noticia noticia = new Noticia();
+            noticia.setLinkNoticia("https://bench.example/" + FUENTES[f]);
+            noticia.setFuente(FUENTES[f]);
+            noticia.setTitular("Noticia de " + FUENTES[f]);
+            noticias.save(noticia);
+        }
+
+        ResumenDaoEnMemoria dao = new ResumenDaoEnMemoria();
+        indice = new IndiceBusqueda(dao, noticias);
+        indice.iniciar();
+
+        SplittableRandom azar = new SplittableRandom(42);
+        StringBuilder cuerpo = new StringBuilder();
+        for (int i = 0; i < resumenes; i++) {
+            cuerpo.setLength(0);
+            for (int p = 0; p < PALABRAS_POR_RESUMEN; p++) {
+                cuerpo.append(palabras[zipf(azar)]).append(' ');
+            }
+            Resumen resumen = new Resumen(palabras[zipf(azar)] + " " + palabras[zipf(azar)], cuerpo.toString(), null);
+            resumen.setNoticiaIds(List.of((long) (i % FUENTES.length) + 1));
+            dao.save(resumen);
+        }
+
+        IndiceBusqueda.Estadisticas e = indice.estadisticas();
+        System.out.printf("%n%d resúmenes, %d términos, %.1f MB de listas%n",
+                e.documentos(), e.terminos(), e.bytesListas() / 1_048_576.0);
+    }
+
+    // Índice de palabra con distribución aproximadamente Zipf (s = 1)
+    private static int zipf(SplittableRandom azar) {
+        return (int) Math.min(VOCABULARIO - 1, Math.exp(azar.nextDouble() * Math.log(VOCABULARIO)) - 1);
+    }
+
+    @Benchmark
+    public IndiceBusqueda.Coincidencias terminoRaro() {
+        return indice.buscar(palabras[20_000], IndiceBusqueda.Filtro.NINGUNO, 20);
+    }
+
+    @Benchmark
+    public IndiceBusqueda.Coincidencias tresTerminos() {
+        return indice.buscar(palabras[50] + " " + palabras[500] + " " + palabras[5_000], IndiceBusqueda.Filtro.NINGUNO, 20);
+    }
+
+    @Benchmark
+    public IndiceBusqueda.Coincidencias terminoComunConFiltroDeFuente() {
+        return indice.buscar(palabras[10], new IndiceBusqueda.Filtro("cope", null, null), 20);
+    }
+}
@@ -0,0 +1,72 @@
+package org.srpm.service;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.web.util.HtmlUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Limpieza de titulares y contenidos reales (todas las entradas de los feeds de ejemplo).
+ * 'regex' es la implementación original, como referencia para ver la mejora.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LimpiadorHtmlBenchmark {
+
+    private final LimpiadorHtml limpiador = new LimpiadorHtml();
+    private final List<String> textos = new ArrayList<>();
+
+    @Setup
+    public void cargarTextos() throws Exception {
+        for (String feed : new String[]{"20minutos.xml", "cope.xml", "eldiario.xml", "agencia-atom.xml"}) {
+            try (InputStream in = getClass().getResourceAsStream("/feeds/" + feed)) {
+                byte[] xml = in.readAllBytes();
+                for (EntradaFeed entrada : new LectorFeedRome().leer(new ByteArrayInputStream(xml), null, Integer.MAX_VALUE)) {
+                    textos.add(entrada.titulo());
+                    textos.add(entrada.contenido());
+                }
+            }
+        }
+    }
+
+    @Benchmark
+    public void limpiador(Blackhole bh) {
+        for (String texto : textos) {
+            bh.consume(limpiador.limpiar(texto));
+        }
+    }
+
+    @Benchmark
+    public void regex(Blackhole bh) {
+        for (String texto : textos) {
+            bh.consume(limpiarHtmlConRegex(texto));
+        }
+    }
+
+    // Implementación original de RssParserService.limpiarHtml
+    private static String limpiarHtmlConRegex(String html) {
+        if (html == null) {
+            return null;
+        }
+        String texto = HtmlUtils.htmlUnescape(html);
+        texto = Pattern.compile("<script[^>]*?>.*?</script>", Pattern.DOTALL | Pattern.CASE_INSENSITIVE).matcher(texto).replaceAll("");
+        texto = Pattern.compile("<style[^>]*?>.*?</style>", Pattern.DOTALL | Pattern.CASE_INSENSITIVE).matcher(texto).replaceAll("");
+        texto = texto.replaceAll("<[^>]*>", "");
+        texto = texto.replaceAll("[\\r\\n]+", " ");
+        texto = texto.replaceAll("\\|", " ");
+        texto = texto.replaceAll("\"", "");
+        texto = texto.replaceAll("\\\\", "");
+        texto = texto.replaceAll(" +", " ");
+        return texto.trim();
+    }
+}
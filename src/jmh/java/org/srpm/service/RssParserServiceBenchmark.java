@@ -0,0 +1,82 @@
+package org.srpm.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.core.env.StandardEnvironment;
+import org.srpm.dao.NoticiaDaoEnMemoria;
+import org.srpm.dao.ResumenDaoEnMemoria;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Clock;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Parseo + limpieza + guardado de un feed completo (lo que hace cada fuente en cada ciclo),
+ * con los dos motores de lectura. Sin red: los feeds salen de src/test/resources/feeds.
+ * soloLectura es la comparativa de velocidad ROME vs StAX; con -prof gc, también la de memoria.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RssParserServiceBenchmark {
+
+    @Param({"20minutos.xml", "cope.xml", "eldiario.xml", "agencia-atom.xml"})
+    public String feed;
+
+    @Param({"stax", "rome"})
+    public String lector;
+
+    @Param({"20"})
+    public int limite;
+
+    private byte[] documento;
+    private LectorFeed lectorFeed;
+    private RssParserService servicio;
+
+    // El servicio (con su HttpClient, registro y métricas) se monta una vez: soloLectura ni lo usa
+    @Setup(Level.Trial)
+    public void cargarFeed() throws IOException {
+        try (InputStream in = getClass().getResourceAsStream("/feeds/" + feed)) {
+            documento = in.readAllBytes();
+        }
+        lectorFeed = "stax".equals(lector) ? new LectorFeedStax() : new LectorFeedRome();
+        CacheValidadoresFeed cache = new CacheValidadoresFeed();
+        NoticiaDaoEnMemoria noticias = new NoticiaDaoEnMemoria();
+        servicio = new RssParserService(noticias, new DescargadorFeeds(cache), cache, lectorFeed, new LimpiadorHtml(),
+                new MetricasPipeline(new SimpleMeterRegistry(), noticias, new ResumenDaoEnMemoria()),
+                new RegistroFeeds(new StandardEnvironment(), null, 0, 5, 600_000, 600_000, Clock.systemUTC()),
+                new CerrojoPublicacion());
+    }
+
+    /**
+     * BBDD vacía en cada invocación: si no, a partir de la segunda todas serían duplicadas.
+     * Aparte para que sólo la pague procesarDocumento.
+     */
+    @State(Scope.Thread)
+    public static class BBDD {
+        NoticiaDaoEnMemoria noticias;
+
+        @Setup(Level.Invocation)
+        public void vaciar() {
+            noticias = new NoticiaDaoEnMemoria();
+        }
+    }
+
+    @Benchmark
+    public int procesarDocumento(BBDD bbdd) throws Exception {
+        AtomicInteger nuevas = new AtomicInteger();
+        servicio.procesarDocumento(new ByteArrayInputStream(documento), null, "bench", limite, nuevas, bbdd.noticias);
+        return nuevas.get();
+    }
+
+    @Benchmark
+    public int soloLectura() throws Exception {
+        return lectorFeed.leer(new ByteArrayInputStream(documento), null, limite).size();
+    }
+}
@@ -0,0 +1,143 @@
+package org.srpm.controller;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * JSON ya serializado de las respuestas de lectura (GET /resumenes, páginas y /resumenes/{id}),
+ * válido para UNA versión del ResumenDAO.
+ *
+ * Mientras no cambie la versión, cada petición es una copia de bytes (y el gzip se hace una sola vez);
+ * en cuanto sube, la tabla entera se tira y se rellena con lo que se vaya pidiendo.
+ *
+ * El ETag es "&lt;arranque&gt;-&lt;versión&gt;" (con "-gz" si va comprimido): la versión del DAO vuelve a 0 al
+ * reiniciar, y el instante de arranque evita que un ETag de antes del reinicio dé un 304 falso.
+ */
+@Component
+public class CacheRespuestasJson {
+
+    /**
+     * Una respuesta serializada; la versión comprimida se calcula la primera vez que alguien la pide.
+     */
+    static final class Entrada {
+
+        private final byte[] json;
+        private volatile byte[] gzip;
+
+        Entrada(byte[] json) {
+            this.json = json;
+        }
+
+        byte[] json() {
+            return json;
+        }
+
+        byte[] gzip() {
+            byte[] comprimido = gzip;
+            if (comprimido == null) {
+                comprimido = comprimir(json);
+                gzip = comprimido; // Si dos hilos llegan a la vez se comprime dos veces, pero el resultado es el mismo
+            }
+            return comprimido;
+        }
+    }
+
+    /**
+     * Contadores acumulados desde el arranque.
+     */
+    public record Estadisticas(int entradas, long version, long aciertos, long fallos) { }
+
+    private record Tabla(long version, ConcurrentHashMap<String, Entrada> entradas) { }
+
+    private final ObjectMapper objectMapper;
+    private final int maxEntradas;
+    private final boolean gzip;
+    private final String arranque = Long.toString(System.currentTimeMillis(), 36);
+
+    private final AtomicReference<Tabla> tabla = new AtomicReference<>(new Tabla(-1, new ConcurrentHashMap<>()));
+
+    private final LongAdder aciertos = new LongAdder();
+    private final LongAdder fallos = new LongAdder();
+
+    @Autowired
+    public CacheRespuestasJson(ObjectMapper objectMapper,
+                               @Value("${api.cache.max-entradas:256}") int maxEntradas,
+                               @Value("${api.cache.gzip:true}") boolean gzip) {
+        this.objectMapper = objectMapper;
+        this.maxEntradas = maxEntradas;
+        this.gzip = gzip;
+    }
+
+    public boolean gzipActivo() {
+        return gzip;
+    }
+
+    public String etag(long version, boolean comprimido) {
+        return "\"" + arranque + "-" + version + (comprimido ? "-gz" : "") + "\"";
+    }
+
+    /**
+     * La respuesta 'clave' de la versión 'version'. 'cuerpo' sólo se llama (y se serializa) si no estaba.
+     *
+     * 'version' hay que leerla ANTES de sacar los datos: así lo que se guarda es, como poco, de esa versión.
+     * Una versión más vieja que la de la tabla (petición lenta adelantada por una escritura) se sirve sin guardar.
+     */
+    Entrada obtener(String clave, long version, Supplier<?> cuerpo) {
+        Tabla t = tabla.get();
+        if (t.version() < version) {
+            tabla.compareAndSet(t, new Tabla(version, new ConcurrentHashMap<>()));
+            t = tabla.get();
+        }
+        if (t.version() != version) {
+            fallos.increment();
+            return new Entrada(serializar(cuerpo.get()));
+        }
+
+        Entrada entrada = t.entradas().get(clave);
+        if (entrada != null) {
+            aciertos.increment();
+            return entrada;
+        }
+        fallos.increment();
+        if (t.entradas().size() >= maxEntradas) {
+            return new Entrada(serializar(cuerpo.get()));
+        }
+        // computeIfAbsent: si llegan varias a la vez pidiendo lo mismo, se serializa una sola vez
+        return t.entradas().computeIfAbsent(clave, k -> new Entrada(serializar(cuerpo.get())));
+    }
+
+    public Estadisticas estadisticas() {
+        Tabla t = tabla.get();
+        return new Estadisticas(t.entradas().size(), t.version(), aciertos.sum(), fallos.sum());
+    }
+
+    private byte[] serializar(Object cuerpo) {
+        try {
+            return objectMapper.writeValueAsBytes(cuerpo);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException("No se puede serializar la respuesta", e);
+        }
+    }
+
+    private static byte[] comprimir(byte[] datos) {
+        ByteArrayOutputStream salida = new ByteArrayOutputStream(datos.length / 4 + 64);
+        try (GZIPOutputStream gz = new GZIPOutputStream(salida)) {
+            gz.write(datos);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return salida.toByteArray();
+    }
+}
@@ -0,0 +1,307 @@
+package org.srpm.controller;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.srpm.dao.ObservadorResumenes;
+import org.srpm.dao.ResumenDAO;
+import org.srpm.model.Resumen;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Reparte por Server-Sent Events (GET /resumenes/stream) los cambios en los resúmenes:
+ * "creado" y "actualizado" (con el resumen en JSON), "borrado" (con su id) y "recargar"
+ * (se ha publicado una generación entera: el cliente debe volver a pedir la lista).
+ *
+ * - Cada suscriptor es una petición asíncrona aparcada (SseEmitter) con su propia cola acotada
+ *   ('api.stream.cola' eventos). Un suscriptor sin nada que enviar no tiene hilo: al encolarle algo se
+ *   arranca un hilo virtual que vacía su cola y termina. Así miles de suscriptores parados sólo cuestan
+ *   su cola, y un cliente lento sólo se retrasa a sí mismo (el que se bloquea escribiendo es su hilo).
+ * - Un único hilo, cada 'api.stream.latido-ms', encola un latido (un comentario vacío) a los que no están
+ *   enviando nada: mantiene viva la conexión y descubre los clientes que se han ido.
+ * - Si la cola de un suscriptor se llena, se le da por descolgado: no se le encola nada más y se cierra su
+ *   conexión en cuanto termine el envío en curso. Al reconectar, Last-Event-ID le devuelve lo perdido.
+ * - Los últimos 'api.stream.buffer' eventos se guardan en un anillo. Cada evento lleva como id
+ *   "&lt;arranque&gt;-&lt;número&gt;", y el navegador lo devuelve en Last-Event-ID al reconectar: si aún
+ *   está en el anillo se le manda lo que se perdió; si no (o es de antes de un reinicio), un "recargar".
+ * - El evento se serializa al producirse, con el cerrojo del DAO cogido, porque el Resumen es mutable;
+ *   encolarlo nunca bloquea al que escribe.
+ */
+@Component
+public class DifusorResumenes implements ObservadorResumenes {
+
+    static final String CREADO = "creado";
+    static final String ACTUALIZADO = "actualizado";
+    static final String BORRADO = "borrado";
+    static final String RECARGAR = "recargar";
+
+    /**
+     * Suscriptores conectados (y cuántos tienen ahora mismo un hilo enviando), eventos que aún se pueden
+     * recuperar con Last-Event-ID y suscriptores que se han cerrado por no dar abasto.
+     */
+    public record Estadisticas(int suscriptores, int enviando, long ultimoEvento, int enBuffer, long descolgados) { }
+
+    private record Evento(long numero, String tipo, String json) { }
+
+    // Lo que hay que mandarle a un suscriptor nuevo antes de los eventos en directo
+    private record Reproduccion(boolean recargar, List<Evento> eventos) { }
+
+    // Lo último que se encola a un suscriptor: su hilo cierra la conexión y termina
+    private static final Evento FIN = new Evento(-1, null, null);
+
+    // Se manda como un comentario vacío
+    private static final Evento LATIDO = new Evento(-2, null, null);
+
+    // El "recargar" de una reconexión que llega tarde: sin número, no es un evento del anillo
+    private static final Evento RECARGA = new Evento(0, RECARGAR, "{}");
+
+    private final class Suscriptor {
+        final SseEmitter emisor;
+        final Queue<Evento> cola = new ArrayBlockingQueue<>(capacidadCola);
+        // Si tiene un hilo vaciando su cola: nunca hay dos, así los eventos salen en orden
+        final AtomicBoolean enviando = new AtomicBoolean();
+
+        Suscriptor(SseEmitter emisor) {
+            this.emisor = emisor;
+        }
+
+        /**
+         * Tras encolarle algo: si no tiene hilo enviando, se le arranca uno.
+         */
+        void avisar() {
+            if (enviando.compareAndSet(false, true)) {
+                Thread.ofVirtual().name("suscriptor-resumenes").start(this::enviar);
+            }
+        }
+
+        /**
+         * Su hilo: envía lo que hay en la cola y termina cuando se queda vacía.
+         */
+        private void enviar() {
+            try {
+                while (true) {
+                    Evento evento = cola.poll();
+                    if (evento == null) {
+                        enviando.set(false);
+                        // Lo encolado justo antes de soltarlo no ha arrancado otro hilo: se queda éste
+                        if (cola.isEmpty() || !enviando.compareAndSet(false, true)) {
+                            return;
+                        }
+                        continue;
+                    }
+                    if (evento == FIN) {
+                        emisor.complete();
+                        return;
+                    }
+                    emisor.send(evento == LATIDO ? SseEmitter.event().comment("") : comoSse(evento));
+                }
+            } catch (IOException | IllegalStateException e) {
+                quitar(this);
+                emisor.completeWithError(e);
+            }
+        }
+    }
+
+    private final ResumenDAO resumenDAO;
+    private final ObjectMapper objectMapper;
+    private final int capacidadCola;
+    private final long timeoutMs;
+    private final long latidoMs;
+    private final String arranque = Long.toString(System.currentTimeMillis(), 36);
+
+    private final Evento[] anillo;
+    private long ultimo; // número del último evento (0 = ninguno); protegido por 'this'
+
+    // Los suscriptores, sus colas y el anillo se tocan con 'this' cogido: así cada uno recibe todo en orden
+    private final Set<Suscriptor> suscriptores = ConcurrentHashMap.newKeySet();
+    private final AtomicLong descolgados = new AtomicLong();
+
+    private ScheduledExecutorService latidos;
+
+    @Autowired
+    public DifusorResumenes(ResumenDAO resumenDAO,
+                            ObjectMapper objectMapper,
+                            @Value("${api.stream.buffer:1024}") int buffer,
+                            @Value("${api.stream.cola:256}") int cola,
+                            @Value("${api.stream.timeout-ms:1800000}") long timeoutMs,
+                            @Value("${api.stream.latido-ms:15000}") long latidoMs) {
+        this.resumenDAO = resumenDAO;
+        this.objectMapper = objectMapper;
+        this.anillo = new Evento[Math.max(1, buffer)];
+        this.capacidadCola = Math.max(2, cola);
+        this.timeoutMs = timeoutMs;
+        this.latidoMs = latidoMs;
+    }
+
+    @PostConstruct
+    public void iniciar() {
+        resumenDAO.observar(this);
+        if (latidoMs > 0) {
+            latidos = Executors.newSingleThreadScheduledExecutor(Thread.ofVirtual().name("latidos-resumenes").factory());
+            latidos.scheduleAtFixedRate(this::latir, latidoMs, latidoMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @PreDestroy
+    public synchronized void parar() {
+        if (latidos != null) {
+            latidos.shutdownNow();
+        }
+        List.copyOf(suscriptores).forEach(this::quitar);
+    }
+
+    /**
+     * Nueva suscripción. 'ultimoId' es la cabecera Last-Event-ID (null en la primera conexión).
+     */
+    public SseEmitter suscribir(String ultimoId) {
+        return suscribir(ultimoId, new SseEmitter(timeoutMs));
+    }
+
+    SseEmitter suscribir(String ultimoId, SseEmitter emisor) {
+        Suscriptor suscriptor = new Suscriptor(emisor);
+        emisor.onCompletion(() -> quitar(suscriptor));
+        emisor.onTimeout(() -> quitar(suscriptor));
+        emisor.onError(e -> quitar(suscriptor));
+
+        // Con 'this' cogido, como publicar: lo que se publique después ya lo encuentra en la lista
+        synchronized (this) {
+            Reproduccion reproduccion = reproducirDesde(ultimoId);
+            if (reproduccion.recargar()) {
+                suscriptor.cola.add(RECARGA);
+            } else {
+                suscriptor.cola.addAll(reproduccion.eventos());
+            }
+            suscriptores.add(suscriptor);
+        }
+        if (!suscriptor.cola.isEmpty()) {
+            suscriptor.avisar();
+        }
+        return emisor;
+    }
+
+    public synchronized Estadisticas estadisticas() {
+        int enviando = (int) suscriptores.stream().filter(s -> s.enviando.get()).count();
+        return new Estadisticas(suscriptores.size(), enviando, ultimo, (int) Math.min(ultimo, anillo.length),
+                descolgados.get());
+    }
+
+    // --- Cambios en el DAO (con su cerrojo cogido: sólo serializar y encolar) ---
+
+    @Override
+    public void guardado(Resumen resumen, boolean nuevo) {
+        publicar(nuevo ? CREADO : ACTUALIZADO, json(resumen));
+    }
+
+    @Override
+    public void borrado(long id) {
+        publicar(BORRADO, json(Map.of("id", id)));
+    }
+
+    @Override
+    public void reemplazados() {
+        publicar(RECARGAR, "{}");
+    }
+
+    private synchronized void publicar(String tipo, String json) {
+        Evento evento = new Evento(++ultimo, tipo, json);
+        anillo[(int) (evento.numero() % anillo.length)] = evento;
+        for (Suscriptor suscriptor : suscriptores) {
+            if (suscriptor.cola.offer(evento)) {
+                suscriptor.avisar();
+            } else {
+                descolgados.incrementAndGet();
+                quitar(suscriptor);
+            }
+        }
+    }
+
+    // A los que no están enviando nada; si ya tienen algo en la cola, eso mismo hace de latido
+    private synchronized void latir() {
+        for (Suscriptor suscriptor : suscriptores) {
+            if (!suscriptor.enviando.get() && suscriptor.cola.isEmpty() && suscriptor.cola.offer(LATIDO)) {
+                suscriptor.avisar();
+            }
+        }
+    }
+
+    /**
+     * Deja de encolarle eventos y le manda FIN, para que su hilo cierre la conexión (tras el envío en curso).
+     */
+    private synchronized void quitar(Suscriptor suscriptor) {
+        if (suscriptores.remove(suscriptor)) {
+            suscriptor.cola.clear();
+            suscriptor.cola.add(FIN);
+            suscriptor.avisar();
+        }
+    }
+
+    private SseEmitter.SseEventBuilder comoSse(Evento evento) {
+        SseEmitter.SseEventBuilder sse = SseEmitter.event();
+        if (evento.numero() > 0) {
+            sse.id(arranque + "-" + evento.numero());
+        }
+        return sse.name(evento.tipo()).data(evento.json(), MediaType.APPLICATION_JSON);
+    }
+
+    /**
+     * Los eventos posteriores a 'ultimoId' que siguen en el anillo, o "recargar" si se ha perdido
+     * alguno que ya no está.
+     */
+    private synchronized Reproduccion reproducirDesde(String ultimoId) {
+        if (ultimoId == null || ultimoId.isBlank()) {
+            return new Reproduccion(false, List.of()); // primera conexión: sólo quiere lo que venga
+        }
+        long desde = numeroDe(ultimoId);
+        long primeroEnAnillo = Math.max(1, ultimo - anillo.length + 1);
+        // Si lo perdido no cabe en su cola, también es más barato que recargue
+        if (desde < 0 || desde > ultimo || desde + 1 < primeroEnAnillo || ultimo - desde > capacidadCola) {
+            return new Reproduccion(true, List.of());
+        }
+        List<Evento> eventos = new ArrayList<>((int) (ultimo - desde));
+        for (long n = desde + 1; n <= ultimo; n++) {
+            eventos.add(anillo[(int) (n % anillo.length)]);
+        }
+        return new Reproduccion(false, eventos);
+    }
+
+    // -1 si el id no es de este arranque o no se entiende
+    private long numeroDe(String id) {
+        int guion = id.lastIndexOf('-');
+        if (guion < 0 || !id.substring(0, guion).equals(arranque)) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(id.substring(guion + 1));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private String json(Object valor) {
+        try {
+            return objectMapper.writeValueAsString(valor);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
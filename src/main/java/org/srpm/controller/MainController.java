@@ -2,23 +2,46 @@ package org.srpm.controller;
 
 import jakarta.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.srpm.dao.EstadisticasAlmacen;
 import org.srpm.model.Resumen;
+import org.srpm.service.CacheResumenes;
+import org.srpm.service.GestorRefrescos;
+import org.srpm.service.RegistroFeeds;
+import org.srpm.service.ResultadoBusqueda;
 import org.srpm.service.ResumenService;
+import org.srpm.service.TrabajoRefresco;
 
+import java.net.URI;
 import java.util.List;
+import java.util.Locale;
+import java.util.function.Supplier;
 
 @RestController
 @RequestMapping("/resumenes")
 public class MainController {
 
     private final ResumenService resumenService;
+    private final GestorRefrescos gestorRefrescos;
+    private final CacheRespuestasJson cacheRespuestas;
+    private final DifusorResumenes difusor;
+    private final RegistroFeeds registroFeeds;
 
     @Autowired
-    public MainController(ResumenService resumenService) {
+    public MainController(ResumenService resumenService, GestorRefrescos gestorRefrescos,
+                          CacheRespuestasJson cacheRespuestas, DifusorResumenes difusor, RegistroFeeds registroFeeds) {
         this.resumenService = resumenService;
+        this.gestorRefrescos = gestorRefrescos;
+        this.cacheRespuestas = cacheRespuestas;
+        this.difusor = difusor;
+        this.registroFeeds = registroFeeds;
     }
 
 
@@ -27,22 +50,118 @@ public class MainController {
         resumenService.generarYGuardarResumenes();
     }
 
+    /**
+     * El refresco va en segundo plano: devuelve 202 Accepted al momento con el trabajo
+     * (y su URL en Location). Si ya había uno en marcha, se devuelve ese mismo.
+     */
     @PostMapping("/refresh")
-    @ResponseStatus(HttpStatus.OK) // Devuelve 200 OK cuando termina
-    public void refrescar() {
-        resumenService.refrescarTodo();
+    public ResponseEntity<TrabajoRefresco.Estado> refrescar() {
+        TrabajoRefresco trabajo = gestorRefrescos.lanzar();
+        return ResponseEntity.accepted()
+                .location(URI.create("/resumenes/refresh/" + trabajo.getId()))
+                .body(trabajo.estado());
+    }
+
+    @GetMapping("/refresh/{jobId}")
+    public TrabajoRefresco.Estado estadoRefresco(@PathVariable String jobId) {
+        return gestorRefrescos.estado(jobId);
+    }
+
+    /**
+     * Aciertos, fallos y bytes ahorrados por la caché de resúmenes.
+     */
+    @GetMapping("/cache")
+    public CacheResumenes.Estadisticas estadisticasCache() {
+        return resumenService.estadisticasCache();
+    }
+
+    /**
+     * Noticias guardadas, lo que ocupan y cuántas ha expulsado la retención.
+     */
+    @GetMapping("/almacen")
+    public EstadisticasAlmacen estadisticasAlmacen() {
+        return resumenService.estadisticasAlmacen();
+    }
+
+    /**
+     * Aciertos y fallos de la caché de respuestas JSON.
+     */
+    @GetMapping("/respuestas")
+    public CacheRespuestasJson.Estadisticas estadisticasRespuestas() {
+        return cacheRespuestas.estadisticas();
+    }
+
+    /**
+     * Suscriptores conectados a /resumenes/stream y eventos recuperables.
+     */
+    @GetMapping("/suscriptores")
+    public DifusorResumenes.Estadisticas estadisticasStream() {
+        return difusor.estadisticas();
+    }
+
+    /**
+     * Fuentes RSS activas con su salud: último éxito, fallos seguidos, latencia media y cuarentena.
+     */
+    @GetMapping("/feeds")
+    public List<RegistroFeeds.Salud> saludFeeds() {
+        return registroFeeds.salud();
+    }
+
+    /**
+     * Vuelve a leer la lista de fuentes (del fichero 'rss.registro.fichero' si lo hay) sin reiniciar.
+     * Si la lista nueva no es válida da error y se siguen usando las de antes.
+     */
+    @PostMapping("/feeds/recargar")
+    public List<RegistroFeeds.Salud> recargarFeeds() {
+        registroFeeds.recargar();
+        return registroFeeds.salud();
+    }
+
+    /**
+     * Cambios en directo por Server-Sent Events: creado, actualizado, borrado y recargar.
+     * Al reconectar, el navegador manda Last-Event-ID y recibe lo que se haya perdido.
+     */
+    @GetMapping(path = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter stream(@RequestHeader(name = "Last-Event-ID", required = false) String ultimoId) {
+        return difusor.suscribir(ultimoId);
     }
 
     // --- ENDPOINTS HTTP ---
+    // Las lecturas llevan ETag (la versión de los resúmenes): con If-None-Match vigente devuelven 304 sin cuerpo.
 
     @GetMapping
-    public List<Resumen> getAll() {
-        return resumenService.findAll();
+    public ResponseEntity<byte[]> getAll(WebRequest peticion) {
+        return responder(peticion, "todos", resumenService::findAll);
+    }
+
+    /**
+     * Paginación por cursor: GET /resumenes?limit=50[&after=&lt;cursor&gt;][&orden=id|fecha].
+     * 'siguiente' en la respuesta es el 'after' de la próxima página (null = no hay más).
+     */
+    @GetMapping(params = "limit")
+    public ResponseEntity<byte[]> getPagina(@RequestParam(required = false) String after,
+                                            @RequestParam int limit,
+                                            @RequestParam(defaultValue = "id") String orden,
+                                            WebRequest peticion) {
+        return responder(peticion, "pagina:" + after + ":" + limit + ":" + orden.toLowerCase(Locale.ROOT),
+                () -> resumenService.findPagina(after, limit, orden));
+    }
+
+    /**
+     * Búsqueda de texto: GET /resumenes/search?q=...[&fuente=][&desde=yyyy-MM-dd][&hasta=yyyy-MM-dd][&limit=20].
+     */
+    @GetMapping("/search")
+    public ResultadoBusqueda buscar(@RequestParam(defaultValue = "") String q,
+                                    @RequestParam(required = false) String fuente,
+                                    @RequestParam(required = false) String desde,
+                                    @RequestParam(required = false) String hasta,
+                                    @RequestParam(defaultValue = "20") int limit) {
+        return resumenService.buscar(q, fuente, desde, hasta, limit);
     }
 
     @GetMapping("/{id}")
-    public Resumen getById(@PathVariable Long id) {
-        return resumenService.findById(id);
+    public ResponseEntity<byte[]> getById(@PathVariable Long id, WebRequest peticion) {
+        return responder(peticion, "id:" + id, () -> resumenService.findById(id));
     }
 
     @PostMapping
@@ -61,4 +180,43 @@ public class MainController {
     public void delete(@PathVariable Long id) {
         resumenService.delete(id);
     }
-}
\ No newline at end of file
+
+    /**
+     * 304 si el cliente ya tiene esta versión; si no, los bytes de la caché (comprimidos si los acepta).
+     * La versión se lee ANTES que los datos (ver CacheRespuestasJson.obtener).
+     */
+    private ResponseEntity<byte[]> responder(WebRequest peticion, String clave, Supplier<?> cuerpo) {
+        long version = resumenService.version();
+        boolean gzip = cacheRespuestas.gzipActivo() && aceptaGzip(peticion.getHeader(HttpHeaders.ACCEPT_ENCODING));
+        String etag = cacheRespuestas.etag(version, gzip);
+
+        HttpHeaders cabeceras = new HttpHeaders();
+        cabeceras.setETag(etag);
+        cabeceras.setCacheControl(CacheControl.noCache()); // el navegador guarda la respuesta pero revalida siempre
+        cabeceras.setVary(List.of(HttpHeaders.ACCEPT_ENCODING));
+        if (peticion.checkNotModified(etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).headers(cabeceras).build();
+        }
+
+        CacheRespuestasJson.Entrada entrada = cacheRespuestas.obtener(clave, version, cuerpo);
+        cabeceras.setContentType(MediaType.APPLICATION_JSON);
+        if (gzip) {
+            cabeceras.set(HttpHeaders.CONTENT_ENCODING, "gzip");
+            return new ResponseEntity<>(entrada.gzip(), cabeceras, HttpStatus.OK);
+        }
+        return new ResponseEntity<>(entrada.json(), cabeceras, HttpStatus.OK);
+    }
+
+    private static boolean aceptaGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (String codificacion : acceptEncoding.split(",")) {
+            String[] partes = codificacion.trim().split(";");
+            if (partes[0].trim().equalsIgnoreCase("gzip")) {
+                return partes.length == 1 || !partes[1].replace(" ", "").matches("q=0(\\.0*)?");
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,526 @@
+package org.srpm.dao;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Almacén clave (long) -> bytes en disco, sólo de escritura al final (append-only).
+ *
+ * Los registros van a ficheros "segmento" de tamaño fijo mapeados en memoria ({@link FileChannel#map}).
+ * En memoria sólo se guarda un índice clave -> (segmento, posición); los datos se leen del mapeo al pedirlos.
+ *
+ * Formato de cada registro (todo big-endian):
+ * <pre>
+ *   int  longitud   (cabecera + datos; 0 = fin del segmento)
+ *   byte tipo       (DATO, BORRADO o VACIADO)
+ *   long clave
+ *   int  crc32c     (de tipo, clave y datos)
+ *   ...  datos
+ * </pre>
+ *
+ * - Borrar es escribir una "lápida" (BORRADO); vaciar es un VACIADO que anula todo lo anterior.
+ * - La mayor clave usada nunca ({@link #maxClave()}) sobrevive a borrados, vaciados y compactaciones:
+ *   el VACIADO la lleva como clave y, si al compactar ya no queda ningún registro suyo, se deja su lápida.
+ * - Al abrir se recorren las cabeceras de los segmentos; un registro con CRC incorrecto
+ *   (escritura cortada por un fallo) marca el final de ese segmento.
+ * - {@link #compactar()} copia sólo los registros vivos a segmentos nuevos y borra los viejos, sin
+ *   bloquear lecturas ni escrituras mientras copia.
+ * - Los segmentos se sincronizan a disco (force) al llenarse, al compactar y al cerrar.
+ */
+final class AlmacenLog implements Closeable {
+
+    static final int CABECERA = 4 + 1 + 8 + 4;
+
+    private static final byte DATO = 1;
+    private static final byte BORRADO = 2;
+    private static final byte VACIADO = 3;
+
+    private static final byte[] VACIO = new byte[0];
+
+    /**
+     * Recibe los registros según se recuperan al abrir, en el orden en que se escribieron.
+     */
+    interface Visitante {
+
+        void dato(long clave, ByteBuffer datos);
+
+        default void borrado(long clave) { }
+
+        default void vaciado() { }
+    }
+
+    /**
+     * @param bytesTotales Bytes ocupados en los segmentos (vivos + basura).
+     * @param bytesVivos   Bytes de los registros que siguen vigentes.
+     */
+    record Estadisticas(int segmentos, int registros, long bytesTotales, long bytesVivos) { }
+
+    private static final class Segmento {
+        final int numero;
+        final Path fichero;
+        final FileChannel canal;
+        final MappedByteBuffer buffer;
+        int posicion;
+
+        Segmento(int numero, Path fichero, FileChannel canal, MappedByteBuffer buffer) {
+            this.numero = numero;
+            this.fichero = fichero;
+            this.canal = canal;
+            this.buffer = buffer;
+        }
+
+        int capacidad() {
+            return buffer.capacity();
+        }
+    }
+
+    private record Posicion(Segmento segmento, int offset, int longitud) { }
+
+    private final Path directorio;
+    private final int tamSegmento;
+
+    // Escribir y compactar en exclusiva; leer en paralelo
+    private final ReentrantReadWriteLock cerrojo = new ReentrantReadWriteLock();
+
+    private final List<Segmento> segmentos = new ArrayList<>();
+    private final ConcurrentSkipListMap<Long, Posicion> indice = new ConcurrentSkipListMap<>();
+
+    private long bytesTotales;
+    private long bytesVivos;
+    private boolean cerrado;
+
+    // La mayor clave que se ha escrito, borrado o vaciado (aunque ya no esté viva)
+    private long marca;
+
+    // Sólo una compactación a la vez (la copia se hace sin el cerrojo)
+    private volatile boolean compactando;
+
+    /**
+     * Abre (o crea) el almacén del directorio y reconstruye el índice, avisando al visitante de cada registro.
+     */
+    AlmacenLog(Path directorio, int tamSegmento, Visitante visitante) throws IOException {
+        this.directorio = directorio;
+        this.tamSegmento = tamSegmento;
+        Files.createDirectories(directorio);
+
+        List<Path> ficheros;
+        try (Stream<Path> listado = Files.list(directorio)) {
+            ficheros = listado.filter(p -> p.getFileName().toString().endsWith(".log")).sorted().toList();
+        }
+        for (Path fichero : ficheros) {
+            Segmento segmento = mapear(fichero, numeroDe(fichero), 0);
+            recuperar(segmento, visitante);
+            segmentos.add(segmento);
+        }
+        if (segmentos.isEmpty()) {
+            segmentos.add(nuevoSegmento(1));
+        }
+    }
+
+    Path getDirectorio() {
+        return directorio;
+    }
+
+    /**
+     * Guarda (o sustituye) los datos de una clave.
+     */
+    void escribir(long clave, byte[] datos) {
+        cerrojo.writeLock().lock();
+        try {
+            registrar(clave, anexar(DATO, clave, datos));
+            marca = Math.max(marca, clave);
+        } finally {
+            cerrojo.writeLock().unlock();
+        }
+    }
+
+    void borrar(long clave) {
+        cerrojo.writeLock().lock();
+        try {
+            if (indice.containsKey(clave)) {
+                anexar(BORRADO, clave, VACIO);
+                bytesVivos -= indice.remove(clave).longitud();
+            }
+        } finally {
+            cerrojo.writeLock().unlock();
+        }
+    }
+
+    void vaciar() {
+        cerrojo.writeLock().lock();
+        try {
+            anexar(VACIADO, marca, VACIO);
+            indice.clear();
+            bytesVivos = 0;
+        } finally {
+            cerrojo.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Decodifica los datos de una clave directamente desde el mapeo (null si no existe).
+     */
+    <T> T leer(long clave, Function<ByteBuffer, T> decodificador) {
+        cerrojo.readLock().lock();
+        try {
+            Posicion p = indice.get(clave);
+            if (p == null) {
+                return null;
+            }
+            return decodificador.apply(p.segmento().buffer.slice(p.offset() + CABECERA, p.longitud() - CABECERA));
+        } finally {
+            cerrojo.readLock().unlock();
+        }
+    }
+
+    boolean contiene(long clave) {
+        return indice.containsKey(clave);
+    }
+
+    /**
+     * Claves vivas, ordenadas.
+     */
+    List<Long> claves() {
+        return new ArrayList<>(indice.keySet());
+    }
+
+    /**
+     * Hasta 'limite' claves vivas mayores que 'despuesDe' (null = desde la primera), en orden.
+     */
+    List<Long> clavesTras(Long despuesDe, int limite) {
+        List<Long> claves = new ArrayList<>(Math.min(limite, 64));
+        for (Long clave : despuesDe == null ? indice.keySet() : indice.tailMap(despuesDe, false).keySet()) {
+            if (claves.size() == limite) {
+                break;
+            }
+            claves.add(clave);
+        }
+        return claves;
+    }
+
+    /**
+     * La mayor clave que ha tenido nunca el almacén, aunque se haya borrado o vaciado (0 si ninguna).
+     */
+    long maxClave() {
+        cerrojo.readLock().lock();
+        try {
+            return marca;
+        } finally {
+            cerrojo.readLock().unlock();
+        }
+    }
+
+    Estadisticas estadisticas() {
+        cerrojo.readLock().lock();
+        try {
+            return new Estadisticas(segmentos.size(), indice.size(), bytesTotales, bytesVivos);
+        } finally {
+            cerrojo.readLock().unlock();
+        }
+    }
+
+    /**
+     * Compacta sólo si la basura (registros sustituidos, lápidas...) pasa de 'umbral' (0-1)
+     * y ocupa al menos un segmento entero: compactar poco no compensa.
+     */
+    boolean compactarSiHaceFalta(double umbral) throws IOException {
+        Estadisticas e = estadisticas();
+        long basura = e.bytesTotales() - e.bytesVivos();
+        if (basura < tamSegmento || basura < umbral * e.bytesTotales()) {
+            return false;
+        }
+        return compactar();
+    }
+
+    /**
+     * Reescribe los registros vivos en segmentos nuevos y borra los anteriores, sin parar a nadie:
+     * <ol>
+     *   <li>Con el cerrojo, un instante: las escrituras pasan a un segmento nuevo y se toma la foto
+     *       del índice. Los segmentos de la foto ya no cambian.</li>
+     *   <li>Sin cerrojo: se copian los registros vivos de la foto, mientras se sigue leyendo y escribiendo.</li>
+     *   <li>Con el cerrojo, otro instante: el índice pasa a las copias (salvo las claves que se han
+     *       reescrito o borrado entretanto) y se borran los segmentos viejos.</li>
+     * </ol>
+     * Las copias se numeran entre los segmentos viejos y los que se han escrito durante la copia, así
+     * que al abrir se leen en orden: si el proceso se corta a medias no se pierde nada.
+     *
+     * @return true si se ha compactado algo.
+     */
+    boolean compactar() throws IOException {
+        List<Segmento> viejos;
+        List<Map.Entry<Long, Posicion>> foto;
+        long marcaFoto;
+        int primerNumero;
+        cerrojo.writeLock().lock();
+        try {
+            if (cerrado || compactando || bytesTotales == bytesVivos) {
+                return false;
+            }
+            compactando = true;
+            viejos = new ArrayList<>(segmentos);
+            // Hueco para las copias: copiando en el orden del log nunca hacen falta más segmentos que los que había
+            primerNumero = viejos.getLast().numero + 1;
+            segmentos.add(nuevoSegmento(primerNumero + viejos.size()));
+            foto = new ArrayList<>(indice.entrySet());
+            marcaFoto = marca;
+        } finally {
+            cerrojo.writeLock().unlock();
+        }
+
+        List<Segmento> nuevos = new ArrayList<>();
+        try {
+            List<Copia> copias = copiar(foto, marcaFoto, primerNumero, viejos.size(), nuevos);
+            cerrojo.writeLock().lock();
+            try {
+                if (copias == null || cerrado) {
+                    descartarCopias(nuevos);
+                    return false;
+                }
+                for (Copia copia : copias) {
+                    indice.replace(copia.clave(), copia.origen(), copia.destino());
+                }
+                long copiados = 0;
+                for (Segmento nuevo : nuevos) {
+                    copiados += nuevo.posicion;
+                }
+                long usados = 0;
+                for (Segmento viejo : viejos) {
+                    usados += viejo.posicion;
+                }
+                segmentos.removeAll(viejos);
+                if (segmentos.size() == 1 && segmentos.getFirst().posicion == 0) {
+                    // Nadie ha escrito mientras tanto: se sigue escribiendo en la última copia
+                    Segmento vacio = segmentos.removeFirst();
+                    vacio.canal.close();
+                    Files.deleteIfExists(vacio.fichero);
+                }
+                segmentos.addAll(0, nuevos);
+                bytesTotales += copiados - usados;
+
+                // Del más viejo al más nuevo: lo que quede tras un corte es siempre el final del log
+                for (Segmento viejo : viejos) {
+                    viejo.canal.close();
+                    Files.deleteIfExists(viejo.fichero);
+                }
+                return true;
+            } finally {
+                cerrojo.writeLock().unlock();
+            }
+        } catch (IOException | RuntimeException e) {
+            descartarCopias(nuevos);
+            throw e;
+        } finally {
+            compactando = false;
+        }
+    }
+
+    private record Copia(long clave, Posicion origen, Posicion destino) { }
+
+    /**
+     * Copia los registros de la foto, en el orden en que se escribieron, a segmentos numerados desde
+     * 'primerNumero', y detrás la lápida de 'marca' si ningún registro copiado la lleva.
+     * Devuelve null si no caben en 'maxSegmentos' (entonces no se compacta).
+     */
+    private List<Copia> copiar(List<Map.Entry<Long, Posicion>> foto, long marca, int primerNumero, int maxSegmentos,
+                               List<Segmento> nuevos) {
+        foto.sort(Comparator.comparingInt((Map.Entry<Long, Posicion> e) -> e.getValue().segmento().numero)
+                .thenComparingInt(e -> e.getValue().offset()));
+        List<Copia> copias = new ArrayList<>(foto.size());
+        Segmento destino = nuevoSegmento(primerNumero);
+        nuevos.add(destino);
+        for (Map.Entry<Long, Posicion> entrada : foto) {
+            Posicion origen = entrada.getValue();
+            if (destino.posicion + origen.longitud() + 4 > destino.capacidad()) {
+                if (nuevos.size() == maxSegmentos) {
+                    return null;
+                }
+                destino.buffer.force();
+                destino = nuevoSegmento(destino.numero + 1);
+                nuevos.add(destino);
+            }
+            // Se copia el registro tal cual (cabecera y CRC incluidos), sin decodificar nada
+            destino.buffer.put(destino.posicion, origen.segmento().buffer, origen.offset(), origen.longitud());
+            copias.add(new Copia(entrada.getKey(), origen, new Posicion(destino, destino.posicion, origen.longitud())));
+            destino.posicion += origen.longitud();
+            destino.buffer.putInt(destino.posicion, 0);
+        }
+        boolean marcaCopiada = foto.stream().anyMatch(e -> e.getKey() == marca);
+        if (marca > 0 && !marcaCopiada) {
+            if (destino.posicion + CABECERA + 4 > destino.capacidad()) {
+                if (nuevos.size() == maxSegmentos) {
+                    return null;
+                }
+                destino.buffer.force();
+                destino = nuevoSegmento(destino.numero + 1);
+                nuevos.add(destino);
+            }
+            destino.posicion += poner(destino.buffer, destino.posicion, BORRADO, marca, VACIO);
+        }
+        destino.buffer.force();
+        return copias;
+    }
+
+    private static void descartarCopias(List<Segmento> nuevos) {
+        for (Segmento nuevo : nuevos) {
+            try {
+                nuevo.canal.close();
+                Files.deleteIfExists(nuevo.fichero);
+            } catch (IOException e) {
+                // Al abrir se leería como un segmento más, con copias de registros ya leídos: no estorba
+            }
+        }
+        nuevos.clear();
+    }
+
+    /**
+     * Sincroniza y cierra los ficheros. Los datos ya mapeados se siguen pudiendo leer
+     * (un lector que aún tenga esta generación no falla), pero no se puede escribir más.
+     */
+    @Override
+    public void close() throws IOException {
+        cerrojo.writeLock().lock();
+        try {
+            if (cerrado) {
+                return;
+            }
+            cerrado = true;
+            for (Segmento segmento : segmentos) {
+                segmento.buffer.force();
+                segmento.canal.close();
+            }
+        } finally {
+            cerrojo.writeLock().unlock();
+        }
+    }
+
+    // --- Internos (siempre con el cerrojo de escritura, salvo al abrir) ---
+
+    private Posicion anexar(byte tipo, long clave, byte[] datos) {
+        if (cerrado) {
+            throw new IllegalStateException("Almacén cerrado: " + directorio);
+        }
+        int longitud = CABECERA + datos.length;
+        if (longitud + 4 > tamSegmento) {
+            throw new IllegalArgumentException("Registro de " + longitud + " bytes: no cabe en un segmento de " + tamSegmento);
+        }
+
+        Segmento segmento = segmentos.getLast();
+        if (segmento.posicion + longitud + 4 > segmento.capacidad()) {
+            segmento.buffer.force();
+            segmento = nuevoSegmento(segmento.numero + 1);
+            segmentos.add(segmento);
+        }
+
+        int pos = segmento.posicion;
+        poner(segmento.buffer, pos, tipo, clave, datos);
+        segmento.posicion += longitud;
+        bytesTotales += longitud;
+        return new Posicion(segmento, pos, longitud);
+    }
+
+    // Escribe un registro entero en 'pos' (y la marca de fin detrás); devuelve su longitud
+    private static int poner(MappedByteBuffer buffer, int pos, byte tipo, long clave, byte[] datos) {
+        int longitud = CABECERA + datos.length;
+        buffer.put(pos + 4, tipo);
+        buffer.putLong(pos + 5, clave);
+        buffer.put(pos + CABECERA, datos);
+        buffer.putInt(pos + 13, crc(buffer, pos, longitud));
+        buffer.putInt(pos, longitud);
+        buffer.putInt(pos + longitud, 0); // marca de fin
+        return longitud;
+    }
+
+    private void registrar(long clave, Posicion posicion) {
+        Posicion vieja = indice.put(clave, posicion);
+        if (vieja != null) {
+            bytesVivos -= vieja.longitud();
+        }
+        bytesVivos += posicion.longitud();
+    }
+
+    private void recuperar(Segmento segmento, Visitante visitante) {
+        MappedByteBuffer buffer = segmento.buffer;
+        int pos = 0;
+        while (pos + CABECERA <= segmento.capacidad()) {
+            int longitud = buffer.getInt(pos);
+            if (longitud < CABECERA || pos + longitud > segmento.capacidad()
+                    || buffer.getInt(pos + 13) != crc(buffer, pos, longitud)) {
+                break; // fin de datos o escritura a medias
+            }
+            byte tipo = buffer.get(pos + 4);
+            long clave = buffer.getLong(pos + 5);
+            marca = Math.max(marca, clave);
+            switch (tipo) {
+                case DATO -> {
+                    registrar(clave, new Posicion(segmento, pos, longitud));
+                    visitante.dato(clave, buffer.slice(pos + CABECERA, longitud - CABECERA));
+                }
+                case BORRADO -> {
+                    Posicion vieja = indice.remove(clave);
+                    if (vieja != null) {
+                        bytesVivos -= vieja.longitud();
+                    }
+                    visitante.borrado(clave);
+                }
+                case VACIADO -> {
+                    indice.clear();
+                    bytesVivos = 0;
+                    visitante.vaciado();
+                }
+                default -> {
+                    segmento.posicion = pos;
+                    return;
+                }
+            }
+            bytesTotales += longitud;
+            pos += longitud;
+        }
+        segmento.posicion = pos;
+    }
+
+    private Segmento nuevoSegmento(int numero) {
+        try {
+            return mapear(directorio.resolve(String.format("%08d.log", numero)), numero, tamSegmento);
+        } catch (IOException e) {
+            throw new UncheckedIOException("No se ha podido crear el segmento " + numero + " en " + directorio, e);
+        }
+    }
+
+    private static Segmento mapear(Path fichero, int numero, int capacidadMinima) throws IOException {
+        FileChannel canal = FileChannel.open(fichero,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long capacidad = Math.max(canal.size(), capacidadMinima);
+        return new Segmento(numero, fichero, canal, canal.map(FileChannel.MapMode.READ_WRITE, 0, capacidad));
+    }
+
+    private static int numeroDe(Path fichero) {
+        String nombre = fichero.getFileName().toString();
+        return Integer.parseInt(nombre.substring(0, nombre.length() - ".log".length()));
+    }
+
+    /**
+     * CRC de tipo + clave + datos (todo salvo la longitud y el propio CRC).
+     */
+    private static int crc(ByteBuffer buffer, int pos, int longitud) {
+        CRC32C crc = new CRC32C();
+        crc.update(buffer.slice(pos + 4, 9));
+        crc.update(buffer.slice(pos + CABECERA, longitud - CABECERA));
+        return (int) crc.getValue();
+    }
+}
@@ -0,0 +1,98 @@
+package org.srpm.dao;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * Utilidades para pasar los modelos a bytes (y al revés) en los DAO persistentes.
+ * Formato binario propio y mínimo: textos como (int longitud, UTF-8), -1 = null.
+ */
+final class CodecBinario {
+
+    private CodecBinario() { }
+
+    /**
+     * Acumula los campos de un registro.
+     */
+    static final class Escritor {
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        private final DataOutputStream out = new DataOutputStream(bytes);
+
+        Escritor byteSuelto(int valor) {
+            try {
+                out.writeByte(valor);
+                return this;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        Escritor entero(int valor) {
+            try {
+                out.writeInt(valor);
+                return this;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        Escritor largo(long valor) {
+            try {
+                out.writeLong(valor);
+                return this;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        Escritor texto(String texto) {
+            if (texto == null) {
+                return entero(-1);
+            }
+            byte[] utf8 = texto.getBytes(StandardCharsets.UTF_8);
+            entero(utf8.length);
+            try {
+                out.write(utf8);
+                return this;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        /**
+         * Fecha sin zona: segundos y nanos como si fuera UTC (Long.MIN_VALUE = null).
+         */
+        Escritor fecha(LocalDateTime fecha) {
+            if (fecha == null) {
+                return largo(Long.MIN_VALUE).entero(0);
+            }
+            return largo(fecha.toEpochSecond(ZoneOffset.UTC)).entero(fecha.getNano());
+        }
+
+        byte[] bytes() {
+            return bytes.toByteArray();
+        }
+    }
+
+    static String leerTexto(ByteBuffer buffer) {
+        int longitud = buffer.getInt();
+        if (longitud < 0) {
+            return null;
+        }
+        byte[] utf8 = new byte[longitud];
+        buffer.get(utf8);
+        return new String(utf8, StandardCharsets.UTF_8);
+    }
+
+    static LocalDateTime leerFecha(ByteBuffer buffer) {
+        long segundos = buffer.getLong();
+        int nanos = buffer.getInt();
+        return segundos == Long.MIN_VALUE ? null : LocalDateTime.ofEpochSecond(segundos, nanos, ZoneOffset.UTC);
+    }
+}
@@ -0,0 +1,193 @@
+package org.srpm.dao;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Reparto en disco de las generaciones de los DAO persistentes (noticias y resúmenes).
+ *
+ * Cada parte tiene su directorio y en él una carpeta por generación ("noticias/gen-00000001", ...).
+ * Un único fichero ACTUAL en la raíz dice cuál es la publicada de CADA parte. Publicar es reescribir
+ * ACTUAL (temporal + rename atómico), así que tras un corte se arranca con las generaciones viejas o
+ * con las nuevas, nunca con una mezcla.
+ *
+ * Si se están preparando generaciones de varias partes a la vez (un refresco total prepara las dos),
+ * ACTUAL no se reescribe hasta que se hayan publicado (o descartado) todas, y sólo entonces se borran
+ * las sustituidas: hasta ese momento siguen siendo las que se abrirían tras un corte.
+ */
+@Component
+@ConditionalOnProperty(name = "dao.tipo", havingValue = "persistente")
+final class DirectorioGeneraciones {
+
+    private static final Logger log = LoggerFactory.getLogger(DirectorioGeneraciones.class);
+
+    private static final String PUNTERO = "ACTUAL";
+    private static final String PREFIJO = "gen-";
+
+    private final Path raiz;
+    private final AtomicLong ultima = new AtomicLong();
+
+    // Generaciones creadas con nueva() que aún no se han publicado ni descartado
+    private final Set<Path> enPreparacion = new HashSet<>();
+
+    // Publicadas en memoria pero aún no en ACTUAL: la generación de cada parte y las que sustituyen
+    private final Map<String, Path> publicadas = new HashMap<>();
+    private final List<Path> sustituidas = new ArrayList<>();
+
+    @Autowired
+    DirectorioGeneraciones(@Value("${dao.persistente.directorio:./datos}") String raiz) {
+        this(Path.of(raiz));
+    }
+
+    DirectorioGeneraciones(Path raiz) {
+        this.raiz = raiz;
+        try {
+            Files.createDirectories(raiz);
+            try (Stream<Path> partes = Files.list(raiz)) {
+                for (Path parte : partes.filter(Files::isDirectory).toList()) {
+                    try (Stream<Path> listado = Files.list(parte)) {
+                        listado.map(p -> p.getFileName().toString())
+                                .filter(n -> n.startsWith(PREFIJO))
+                                .mapToLong(n -> Long.parseLong(n.substring(PREFIJO.length())))
+                                .max()
+                                .ifPresent(n -> ultima.accumulateAndGet(n, Math::max));
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("No se puede preparar el directorio " + raiz, e);
+        }
+    }
+
+    /**
+     * Directorio de la generación publicada de una parte (la primera vez, se crea y se publica una vacía).
+     */
+    synchronized Path actual(String parte) {
+        String publicada = leerPuntero().getProperty(parte);
+        if (publicada != null) {
+            return raiz.resolve(parte).resolve(publicada);
+        }
+        Path primera = crear(parte);
+        escribirPuntero(Map.of(parte, primera));
+        return primera;
+    }
+
+    /**
+     * Crea el directorio de una generación nueva, todavía sin publicar.
+     */
+    synchronized Path nueva(String parte) {
+        Path dir = crear(parte);
+        enPreparacion.add(dir);
+        return dir;
+    }
+
+    /**
+     * Publica 'generacion' en lugar de 'vieja', que se borrará cuando ACTUAL ya no la nombre.
+     */
+    synchronized void publicar(String parte, Path generacion, Path vieja) {
+        enPreparacion.remove(generacion);
+        publicadas.put(parte, generacion);
+        sustituidas.add(vieja);
+        consolidar();
+    }
+
+    /**
+     * Borra una generación que no se va a publicar.
+     */
+    synchronized void descartar(Path generacion) {
+        enPreparacion.remove(generacion);
+        borrar(generacion);
+        consolidar();
+    }
+
+    /**
+     * Borra las generaciones de una parte que no son la publicada (restos de refrescos que no llegaron a publicarse).
+     */
+    synchronized void borrarSobrantes(String parte) {
+        Path actual = actual(parte);
+        try (Stream<Path> listado = Files.list(raiz.resolve(parte))) {
+            listado.filter(p -> p.getFileName().toString().startsWith(PREFIJO) && !p.equals(actual))
+                    .forEach(DirectorioGeneraciones::borrar);
+        } catch (IOException e) {
+            log.warn("No se han podido limpiar las generaciones viejas de {}: {}", parte, e.toString());
+        }
+    }
+
+    // Cuando ya no queda nada a medias, lo publicado pasa a ACTUAL de una vez y se borra lo sustituido
+    private void consolidar() {
+        if (!enPreparacion.isEmpty() || publicadas.isEmpty()) {
+            return;
+        }
+        escribirPuntero(publicadas);
+        publicadas.clear();
+        sustituidas.forEach(DirectorioGeneraciones::borrar);
+        sustituidas.clear();
+    }
+
+    private Path crear(String parte) {
+        Path dir = raiz.resolve(parte).resolve(String.format("%s%08d", PREFIJO, ultima.incrementAndGet()));
+        try {
+            return Files.createDirectories(dir);
+        } catch (IOException e) {
+            throw new UncheckedIOException("No se puede crear " + dir, e);
+        }
+    }
+
+    private Properties leerPuntero() {
+        Properties puntero = new Properties();
+        Path fichero = raiz.resolve(PUNTERO);
+        if (Files.exists(fichero)) {
+            try (Reader lector = Files.newBufferedReader(fichero, StandardCharsets.UTF_8)) {
+                puntero.load(lector);
+            } catch (IOException e) {
+                throw new UncheckedIOException("No se puede leer " + fichero, e);
+            }
+        }
+        return puntero;
+    }
+
+    private void escribirPuntero(Map<String, Path> cambios) {
+        Properties puntero = leerPuntero();
+        cambios.forEach((parte, generacion) -> puntero.setProperty(parte, generacion.getFileName().toString()));
+        try {
+            Path temporal = Files.createTempFile(raiz, PUNTERO, ".tmp");
+            try (Writer escritor = Files.newBufferedWriter(temporal, StandardCharsets.UTF_8)) {
+                puntero.store(escritor, null);
+            }
+            Files.move(temporal, raiz.resolve(PUNTERO), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("No se ha podido publicar " + cambios.values(), e);
+        }
+    }
+
+    static void borrar(Path dir) {
+        try (Stream<Path> arbol = Files.walk(dir)) {
+            arbol.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        } catch (IOException e) {
+            log.warn("No se ha podido borrar {}: {}", dir, e.toString());
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package org.srpm.dao;
+
+/**
+ * Tamaño actual del almacén de noticias y cuántas se han expulsado por retención.
+ *
+ * @param bytes Lo que ocupan las noticias (estimado en memoria; en disco, los bytes de los registros vivos).
+ */
+public record EstadisticasAlmacen(
+        int noticias,
+        long bytes,
+        long expulsadasPorEdad,
+        long expulsadasPorNumero,
+        long expulsadasPorBytes
+) { }
@@ -0,0 +1,247 @@
+package org.srpm.dao;
+
+import org.srpm.model.Noticia;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Una noticia tal como la guarda {@link NoticiaDaoEnMemoria} en modo compacto ('dao.memoria.compacto'):
+ * la fuente como número (ver {@link Fuentes}), la fecha como nanos desde la época y los textos en UTF-8.
+ * Los textos que pasan de 'dao.memoria.comprimir-desde-bytes' se guardan con Deflate si así ocupan menos.
+ *
+ * Al leerla se crea una Noticia nueva; el contenido (lo más grande y lo que menos se lee: el índice
+ * de búsqueda y la deduplicación por link no lo miran) no se descodifica hasta que alguien lo pide.
+ */
+final class NoticiaCompacta {
+
+    // Cabecera de objeto + campos, y cabecera de cada byte[] (con oops comprimidos)
+    private static final int BYTES_OBJETO = 40;
+    private static final int BYTES_ARRAY = 16;
+
+    private static final int TITULAR_COMPRIMIDO = 1;
+    private static final int CONTENIDO_COMPRIMIDO = 2;
+
+    /**
+     * Fuentes vistas, cada una con su número. Hay un puñado y se repiten en cada noticia.
+     * Sólo crece: se comparte entre generaciones y los números no se reutilizan.
+     */
+    static final class Fuentes {
+        private final Map<String, Integer> numeros = new ConcurrentHashMap<>();
+        private final List<String> nombres = new CopyOnWriteArrayList<>();
+
+        int numero(String fuente) {
+            if (fuente == null) {
+                return -1;
+            }
+            Integer numero = numeros.get(fuente);
+            if (numero != null) {
+                return numero;
+            }
+            synchronized (this) {
+                return numeros.computeIfAbsent(fuente, f -> {
+                    nombres.add(f);
+                    return nombres.size() - 1;
+                });
+            }
+        }
+
+        String nombre(int numero) {
+            return numero < 0 ? null : nombres.get(numero);
+        }
+    }
+
+    /**
+     * Link en UTF-8 como clave del índice por link. Comparte el array con la noticia guardada,
+     * así que el link no se guarda dos veces.
+     */
+    static final class Link {
+        private final byte[] utf8;
+        private final int hash;
+
+        Link(byte[] utf8) {
+            this.utf8 = utf8;
+            this.hash = Arrays.hashCode(utf8);
+        }
+
+        static Link de(String link) {
+            return new Link(utf8(link));
+        }
+
+        @Override
+        public boolean equals(Object otro) {
+            return otro instanceof Link l && hash == l.hash && Arrays.equals(utf8, l.utf8);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    private final byte[] titular;
+    private final byte[] link;
+    private final byte[] contenido;
+    private final long fechaNs;
+    private final int fuente;
+    private final byte flags;
+
+    private NoticiaCompacta(byte[] titular, byte[] link, byte[] contenido, long fechaNs, int fuente, int flags) {
+        this.titular = titular;
+        this.link = link;
+        this.contenido = contenido;
+        this.fechaNs = fechaNs;
+        this.fuente = fuente;
+        this.flags = (byte) flags;
+    }
+
+    static NoticiaCompacta de(Noticia noticia, Fuentes fuentes, int comprimirDesde) {
+        int flags = 0;
+        byte[] titular = utf8(noticia.getTitular());
+        byte[] comprimido = comprimir(titular, comprimirDesde);
+        if (comprimido != titular) {
+            titular = comprimido;
+            flags |= TITULAR_COMPRIMIDO;
+        }
+        byte[] contenido = utf8(noticia.getContenido());
+        comprimido = comprimir(contenido, comprimirDesde);
+        if (comprimido != contenido) {
+            contenido = comprimido;
+            flags |= CONTENIDO_COMPRIMIDO;
+        }
+        return new NoticiaCompacta(titular, utf8(noticia.getLinkNoticia()), contenido,
+                nanos(noticia.getFecha()), fuentes.numero(noticia.getFuente()), flags);
+    }
+
+    /**
+     * Una Noticia nueva con estos datos; el contenido se descodifica la primera vez que se pide.
+     */
+    Noticia noticia(long id, Fuentes fuentes) {
+        Noticia noticia = new Leida(this);
+        noticia.setId(id);
+        noticia.setFuente(fuentes.nombre(fuente));
+        noticia.setTitular(texto(titular, (flags & TITULAR_COMPRIMIDO) != 0));
+        noticia.setLinkNoticia(texto(link, false));
+        noticia.setFecha(fecha(fechaNs));
+        return noticia;
+    }
+
+    Link clave() {
+        return new Link(link);
+    }
+
+    /**
+     * Lo que ocupa de verdad en el heap (objeto y arrays), sin los índices del DAO.
+     */
+    long bytes() {
+        return BYTES_OBJETO + bytesArray(titular) + bytesArray(link) + bytesArray(contenido);
+    }
+
+    private static long bytesArray(byte[] array) {
+        return array == null ? 0 : (BYTES_ARRAY + array.length + 7) & ~7L;
+    }
+
+    // --- Lectura perezosa del contenido ---
+
+    private static final class Leida extends Noticia {
+        private NoticiaCompacta origen; // null una vez descodificado o sustituido
+
+        Leida(NoticiaCompacta origen) {
+            this.origen = origen;
+        }
+
+        @Override
+        public String getContenido() {
+            if (origen != null) {
+                super.setContenido(texto(origen.contenido, (origen.flags & CONTENIDO_COMPRIMIDO) != 0));
+                origen = null;
+            }
+            return super.getContenido();
+        }
+
+        @Override
+        public void setContenido(String contenido) {
+            origen = null;
+            super.setContenido(contenido);
+        }
+    }
+
+    // --- Codificación ---
+
+    static byte[] utf8(String texto) {
+        return texto == null ? null : texto.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String texto(byte[] bytes, boolean comprimido) {
+        if (bytes == null) {
+            return null;
+        }
+        return new String(comprimido ? descomprimir(bytes) : bytes, StandardCharsets.UTF_8);
+    }
+
+    // Deflate con la longitud original delante; devuelve el mismo array si no compensa
+    private static byte[] comprimir(byte[] bytes, int desde) {
+        if (bytes == null || desde <= 0 || bytes.length < desde) {
+            return bytes;
+        }
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED, true);
+        try {
+            deflater.setInput(bytes);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length / 2 + 8);
+            out.writeBytes(ByteBuffer.allocate(4).putInt(bytes.length).array());
+            byte[] trozo = new byte[Math.min(bytes.length, 8192)];
+            while (!deflater.finished()) {
+                out.write(trozo, 0, deflater.deflate(trozo));
+                if (out.size() >= bytes.length) {
+                    return bytes;
+                }
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static byte[] descomprimir(byte[] comprimido) {
+        Inflater inflater = new Inflater(true);
+        try {
+            byte[] bytes = new byte[ByteBuffer.wrap(comprimido).getInt()];
+            inflater.setInput(comprimido, 4, comprimido.length - 4);
+            int leidos = 0;
+            while (leidos < bytes.length) {
+                int n = inflater.inflate(bytes, leidos, bytes.length - leidos);
+                if (n == 0 && (inflater.finished() || inflater.needsInput())) {
+                    throw new IllegalStateException("Texto comprimido truncado");
+                }
+                leidos += n;
+            }
+            return bytes;
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("Texto comprimido corrupto", e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    // Como en ResumenDaoEnMemoria.ClaveFecha: la fecha sin zona, contada como UTC (Long.MIN_VALUE = null)
+    private static long nanos(LocalDateTime fecha) {
+        return fecha == null ? Long.MIN_VALUE : fecha.toEpochSecond(ZoneOffset.UTC) * 1_000_000_000L + fecha.getNano();
+    }
+
+    private static LocalDateTime fecha(long nanos) {
+        return nanos == Long.MIN_VALUE ? null
+                : LocalDateTime.ofEpochSecond(Math.floorDiv(nanos, 1_000_000_000L), (int) Math.floorMod(nanos, 1_000_000_000L), ZoneOffset.UTC);
+    }
+}
@@ -1,7 +1,10 @@
 package org.srpm.dao;
 
 import org.srpm.model.Noticia;
+
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 
@@ -12,11 +15,34 @@ public interface NoticiaDAO {
      */
     Optional<Noticia> findByLinkNoticia(String linkNoticia);
 
+    /**
+     * Busca de una vez varias noticias por link.
+     *
+     * @return Las que existen, por link (los links que no están no aparecen).
+     */
+    Map<String, Noticia> findByLinks(Collection<String> links);
+
     /**
      * Guarda una noticia (nueva o actualizada).
      */
     void save(Noticia noticia);
 
+    /**
+     * Guarda la noticia sólo si no hay ya otra con su link, todo en un paso: dos llamadas
+     * concurrentes con el mismo link no pueden guardar las dos. Sólo si la guarda le pone id.
+     *
+     * @return true si la ha guardado.
+     */
+    boolean saveIfAbsent(Noticia noticia);
+
+    /**
+     * {@link #saveIfAbsent} para cada noticia (p.ej. una página entera de un feed) de una vez.
+     * Si dos de la lista comparten link, se guarda la primera.
+     *
+     * @return Las que se han guardado, en el orden de la lista.
+     */
+    List<Noticia> saveAll(Collection<Noticia> noticias);
+
     /**
      * Devuelve todas las noticias que tenemos guardadas.
      */
@@ -27,5 +53,48 @@ public interface NoticiaDAO {
      */
     Optional<Noticia> findById(Long id);
 
+    /**
+     * Devuelve las noticias que todavía NO se han mandado a resumir, ordenadas por ID.
+     * Toda noticia nueva entra como pendiente.
+     */
+    List<Noticia> findPendientesDeResumen();
+
+    /**
+     * Marca estas noticias como ya resumidas (dejan de salir en findPendientesDeResumen).
+     */
+    void marcarResumidas(Collection<Long> ids);
+
     void deleteAll();
-}
\ No newline at end of file
+
+    /**
+     * Cuántas noticias hay, cuánto ocupan y cuántas se han expulsado por la política de retención.
+     */
+    EstadisticasAlmacen estadisticas();
+
+    /**
+     * Crea un almacén vacío e independiente donde construir la siguiente generación
+     * (p.ej. en un refresco total) sin que los lectores vean nada a medias.
+     *
+     * Los ids siguen la numeración del almacén actual (un id nunca pasa a ser de otro registro), y
+     * las noticias que se guarden en el actual mientras tanto también se llevan a la generación nueva, para que
+     * publicarla no los pierda. Hay que terminar con {@link #publicar} o {@link #descartar}.
+     */
+    NoticiaDAO nuevaGeneracion();
+
+    /**
+     * Sustituye de golpe (un solo cambio atómico) TODO el contenido por el de una generación
+     * creada con {@link #nuevaGeneracion()}. Si nunca se publica, no se ha tocado nada.
+     * Las escrituras que lleguen durante el cambio esperan y se hacen en la generación nueva.
+     */
+    void publicar(NoticiaDAO generacion);
+
+    /**
+     * Tira una generación que no se va a publicar (y deja de llevarle las escrituras).
+     */
+    void descartar(NoticiaDAO generacion);
+
+    /**
+     * Número de generaciones publicadas (0 = la inicial).
+     */
+    long getGeneracion();
+}
@@ -1,41 +1,275 @@
 package org.srpm.dao;
 
 import org.srpm.model.Noticia;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Repository;
 
+import java.time.Clock;
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
 
+/**
+ * NoticiaDAO en memoria (se pierde al reiniciar), con retención por edad, número y bytes.
+ *
+ * La ingesta (saveIfAbsent/saveAll) no admite lo que la retención quitaría enseguida: noticias que ya
+ * pasan de la edad máxima, ni links expulsados hace poco. Si no, cada noticia que sigue en su feed
+ * volvería a entrar como nueva (y a salir) en cada sondeo.
+ *
+ * Con 'dao.memoria.compacto=true' no guarda las Noticia tal cual sino {@link NoticiaCompacta}
+ * (textos en UTF-8, fuente como número, fecha como long), y cada lectura devuelve una Noticia nueva:
+ * cambiar una noticia leída no cambia la guardada hasta hacer save, como en el DAO persistente.
+ */
 @Repository
+@ConditionalOnProperty(name = "dao.tipo", havingValue = "memoria", matchIfMissing = true)
 public class NoticiaDaoEnMemoria implements NoticiaDAO {
 
-    // Mapa para buscar por LINK (para evitar duplicados)
-    private final ConcurrentHashMap<String, Noticia> noticiasPorLink = new ConcurrentHashMap<>();
+    /**
+     * Posición de una noticia en el índice temporal: por fecha y, a igualdad, por id.
+     */
+    private record ClaveTiempo(long instanteMs, long id) implements Comparable<ClaveTiempo> {
+        @Override
+        public int compareTo(ClaveTiempo otra) {
+            int c = Long.compare(instanteMs, otra.instanteMs);
+            return c != 0 ? c : Long.compare(id, otra.id);
+        }
+    }
+
+    /**
+     * Todo el contenido del almacén. Se sustituye entero (de golpe) al publicar una generación nueva,
+     * así que cada operación coge la generación UNA vez y trabaja sólo con ella.
+     *
+     * Las escrituras (save y expulsiones) van sincronizadas sobre la generación para que los
+     * mapas y el índice temporal no se desincronicen (ver escribir); las lecturas no bloquean.
+     */
+    private static final class Generacion {
+
+        // Mapa para buscar por LINK (para evitar duplicados): el link (String, o NoticiaCompacta.Link) -> id
+        final ConcurrentHashMap<Object, Long> idPorLink = new ConcurrentHashMap<>();
+
+        // Mapa para buscar por ID (para el nuevo controlador): la Noticia, o su NoticiaCompacta
+        final ConcurrentHashMap<Long, Object> noticiasPorId = new ConcurrentHashMap<>();
+
+        // IDs de las noticias que aún no se han mandado a la IA (ordenados)
+        final ConcurrentSkipListSet<Long> pendientesDeResumen = new ConcurrentSkipListSet<>();
+
+        // Índice temporal (la más antigua primero) -> bytes estimados de cada noticia
+        final ConcurrentSkipListMap<ClaveTiempo, Long> porFecha = new ConcurrentSkipListMap<>();
+
+        // Dónde está cada id en el índice temporal (la fecha de la noticia puede cambiar al actualizarla)
+        final Map<Long, ClaveTiempo> clavePorId = new ConcurrentHashMap<>();
+
+        final AtomicLong bytes = new AtomicLong();
+    }
+
+    // Lo que cuesta una noticia en los índices (mapas, índice temporal, pendientes), medido con
+    // NoticiaDaoMemoriaBenchmark. En modo normal ya va dentro del margen de bytesEstimados
+    private static final long BYTES_INDICES = 400;
+
+    // Cuántos links expulsados se recuerdan como mínimo (o el doble de max-noticias, si es más)
+    static final int MIN_EXPULSADAS_RECORDADAS = 10_000;
 
-    // Mapa para buscar por ID (para el nuevo controlador)
-    private final ConcurrentHashMap<Long, Noticia> noticiasPorId = new ConcurrentHashMap<>();
+    private final AtomicReference<Generacion> actual = new AtomicReference<>(new Generacion());
 
-    private final AtomicLong idCounter = new AtomicLong(1);
+    // Compartido con las generaciones que salen de ésta: los ids no se repiten de una a otra
+    private final AtomicLong idCounter;
+
+    // La generación que se está preparando (nuevaGeneracion), a la que también se llevan las escrituras
+    private volatile NoticiaDaoEnMemoria enPreparacion;
+
+    // Cuántas generaciones se han publicado (0 = la inicial)
+    private final AtomicLong numeroGeneracion = new AtomicLong();
+
+    private final PoliticaRetencion retencion;
+    private final Clock reloj;
+    private final boolean compacto;
+    private final int comprimirDesde;
+    private final NoticiaCompacta.Fuentes fuentes;
+
+    // Links (sus claves) expulsados hace poco, los más antiguos se olvidan. Compartido con las generaciones
+    private final Set<Object> expulsadas;
+
+    private final AtomicLong expulsadasPorEdad = new AtomicLong();
+    private final AtomicLong expulsadasPorNumero = new AtomicLong();
+    private final AtomicLong expulsadasPorBytes = new AtomicLong();
+
+    public NoticiaDaoEnMemoria() {
+        this(PoliticaRetencion.SIN_LIMITES, Clock.systemDefaultZone());
+    }
+
+    @Autowired
+    public NoticiaDaoEnMemoria(@Value("${rss.retencion.max-edad-ms:0}") long maxEdadMs,
+                               @Value("${rss.retencion.max-noticias:0}") int maxNoticias,
+                               @Value("${rss.retencion.max-bytes:0}") long maxBytes,
+                               @Value("${dao.memoria.compacto:false}") boolean compacto,
+                               @Value("${dao.memoria.comprimir-desde-bytes:512}") int comprimirDesde) {
+        this(new PoliticaRetencion(Duration.ofMillis(maxEdadMs), maxNoticias, maxBytes), Clock.systemDefaultZone(),
+                compacto, comprimirDesde);
+    }
+
+    NoticiaDaoEnMemoria(PoliticaRetencion retencion, Clock reloj) {
+        this(retencion, reloj, false, 0);
+    }
+
+    NoticiaDaoEnMemoria(PoliticaRetencion retencion, Clock reloj, boolean compacto, int comprimirDesde) {
+        this(retencion, reloj, compacto, comprimirDesde, new NoticiaCompacta.Fuentes(), new AtomicLong(1),
+                recordadas(Math.max(MIN_EXPULSADAS_RECORDADAS, 2L * retencion.maxNoticias())));
+    }
+
+    private NoticiaDaoEnMemoria(PoliticaRetencion retencion, Clock reloj, boolean compacto, int comprimirDesde,
+                                NoticiaCompacta.Fuentes fuentes, AtomicLong idCounter, Set<Object> expulsadas) {
+        this.retencion = retencion;
+        this.reloj = reloj;
+        this.compacto = compacto;
+        this.comprimirDesde = comprimirDesde;
+        this.fuentes = fuentes;
+        this.idCounter = idCounter;
+        this.expulsadas = expulsadas;
+    }
+
+    private static Set<Object> recordadas(long maximo) {
+        return Collections.synchronizedSet(Collections.newSetFromMap(new LinkedHashMap<>() {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Object, Boolean> eldest) {
+                return size() > maximo;
+            }
+        }));
+    }
 
 
     @Override
     public void save(Noticia noticia) {
+        escribir(g -> {
+            guardar(g, noticia);
+            reflejar(g, List.of(noticia));
+            return null;
+        });
+    }
+
+    @Override
+    public boolean saveIfAbsent(Noticia noticia) {
+        return escribir(g -> {
+            if (g.idPorLink.containsKey(claveDeLink(noticia.getLinkNoticia())) || !admite(noticia)) {
+                return false;
+            }
+            guardar(g, noticia);
+            reflejar(g, List.of(noticia));
+            return true;
+        });
+    }
+
+    /**
+     * Con el cerrojo cogido una sola vez para toda la lista.
+     */
+    @Override
+    public List<Noticia> saveAll(Collection<Noticia> noticias) {
+        return escribir(g -> {
+            List<Noticia> guardadas = new ArrayList<>(noticias.size());
+            for (Noticia noticia : noticias) {
+                if (!g.idPorLink.containsKey(claveDeLink(noticia.getLinkNoticia())) && admite(noticia)) {
+                    guardar(g, noticia);
+                    guardadas.add(noticia);
+                }
+            }
+            reflejar(g, guardadas);
+            return guardadas;
+        });
+    }
+
+    /**
+     * Hace una escritura con el cerrojo de la generación actual. Si mientras esperaba el cerrojo se ha
+     * publicado otra generación, la repite en ésa: nada se escribe en una generación ya sustituida.
+     */
+    private <T> T escribir(Function<Generacion, T> escritura) {
+        while (true) {
+            Generacion g = actual.get();
+            synchronized (g) {
+                if (actual.get() == g) {
+                    return escritura.apply(g);
+                }
+            }
+        }
+    }
+
+    /**
+     * Con el cerrojo de 'g' cogido: lleva lo recién guardado a la generación en preparación, si la hay,
+     * con el mismo id y el mismo estado (pendiente o no).
+     */
+    private void reflejar(Generacion g, Collection<Noticia> guardadas) {
+        NoticiaDaoEnMemoria destino = enPreparacion;
+        if (destino == null) {
+            return;
+        }
+        for (Noticia noticia : guardadas) {
+            boolean pendiente = g.pendientesDeResumen.contains(noticia.getId()) || !g.noticiasPorId.containsKey(noticia.getId());
+            destino.copiar(noticia, pendiente);
+        }
+    }
 
+    // En la generación en preparación. Si el refresco ya ha traído ese link (con otro id), manda lo suyo
+    private void copiar(Noticia noticia, boolean pendiente) {
+        escribir(g -> {
+            Long id = g.idPorLink.get(claveDeLink(noticia.getLinkNoticia()));
+            if (id == null || id == noticia.getId()) {
+                guardar(g, noticia);
+                if (!pendiente) {
+                    g.pendientesDeResumen.remove(noticia.getId());
+                }
+            }
+            return null;
+        });
+    }
+
+    // Con el cerrojo de la generación cogido
+    private void guardar(Generacion g, Noticia noticia) {
         if (noticia.getId() == 0L) { // 0L es más explícito para tipo 'long'
             noticia.setId(idCounter.getAndIncrement());
         }
 
         if (noticia.getFecha() == null) {
-            noticia.setFecha(LocalDateTime.now());
+            noticia.setFecha(LocalDateTime.now(reloj));
+        }
+
+        // Guarda la noticia en AMBOS mapas: primero por id, para que un lector que la encuentre
+        // por link (sin cerrojo) siempre pueda leerla
+        Object guardada = compacto ? NoticiaCompacta.de(noticia, fuentes, comprimirDesde) : noticia;
+        Object previa = g.noticiasPorId.put(noticia.getId(), guardada);
+        if (previa == null) {
+            // Sólo las noticias NUEVAS quedan pendientes (actualizar una ya resumida no la reenvía)
+            g.pendientesDeResumen.add(noticia.getId());
+        } else if (previa != guardada && !claveLink(previa).equals(claveLink(guardada))) {
+            // Le han cambiado el link: el viejo deja de llevar a ella
+            g.idPorLink.remove(claveLink(previa), noticia.getId());
         }
+        g.idPorLink.put(claveLink(guardada), noticia.getId());
 
-        // Guarda la noticia en AMBOS mapas
-        noticiasPorLink.put(noticia.getLinkNoticia(), noticia);
-        noticiasPorId.put(noticia.getId(), noticia);
+        // ...y en el índice temporal, sustituyendo su entrada anterior si la había
+        ClaveTiempo clave = new ClaveTiempo(instanteMs(noticia.getFecha()), noticia.getId());
+        ClaveTiempo anterior = g.clavePorId.put(noticia.getId(), clave);
+        if (anterior != null) {
+            g.bytes.addAndGet(-g.porFecha.remove(anterior));
+        }
+        long tam = guardada instanceof NoticiaCompacta c ? BYTES_INDICES + c.bytes() : bytesEstimados(noticia);
+        g.porFecha.put(clave, tam);
+        g.bytes.addAndGet(tam);
+
+        aplicarRetencion(g);
     }
 
     /**
@@ -43,7 +277,9 @@ public class NoticiaDaoEnMemoria implements NoticiaDAO {
      */
     @Override
     public List<Noticia> findAll() {
-        return new ArrayList<>(noticiasPorId.values());
+        List<Noticia> todas = new ArrayList<>();
+        actual.get().noticiasPorId.forEach((id, guardada) -> todas.add(leer(id, guardada)));
+        return todas;
     }
 
     /**
@@ -51,7 +287,8 @@ public class NoticiaDaoEnMemoria implements NoticiaDAO {
      */
     @Override
     public Optional<Noticia> findById(Long id) {
-        return Optional.ofNullable(noticiasPorId.get(id));
+        Object guardada = actual.get().noticiasPorId.get(id);
+        return guardada == null ? Optional.empty() : Optional.of(leer(id, guardada));
     }
     /**
      * Busca una noticia por su Link (Identificador único en el RSS).
@@ -59,12 +296,184 @@ public class NoticiaDaoEnMemoria implements NoticiaDAO {
 
     @Override
     public Optional<Noticia> findByLinkNoticia(String linkNoticia) {
-        return Optional.ofNullable(noticiasPorLink.get(linkNoticia));
+        return Optional.ofNullable(buscarPorLink(actual.get(), linkNoticia));
+    }
+
+    @Override
+    public Map<String, Noticia> findByLinks(Collection<String> links) {
+        Generacion g = actual.get();
+        Map<String, Noticia> encontradas = new HashMap<>();
+        for (String link : links) {
+            Noticia noticia = buscarPorLink(g, link);
+            if (noticia != null) {
+                encontradas.put(link, noticia);
+            }
+        }
+        return encontradas;
+    }
+
+    private Noticia buscarPorLink(Generacion g, String link) {
+        Long id = g.idPorLink.get(claveDeLink(link));
+        Object guardada = id == null ? null : g.noticiasPorId.get(id);
+        return guardada == null ? null : leer(id, guardada);
+    }
+
+    @Override
+    public List<Noticia> findPendientesDeResumen() {
+        Generacion g = actual.get();
+        List<Noticia> pendientes = new ArrayList<>(g.pendientesDeResumen.size());
+        for (Long id : g.pendientesDeResumen) {
+            Object guardada = g.noticiasPorId.get(id);
+            if (guardada != null) {
+                pendientes.add(leer(id, guardada));
+            }
+        }
+        return pendientes;
+    }
+
+    @Override
+    public void marcarResumidas(Collection<Long> ids) {
+        escribir(g -> {
+            g.pendientesDeResumen.removeAll(ids);
+            NoticiaDaoEnMemoria destino = enPreparacion;
+            if (destino != null) {
+                destino.marcarResumidas(ids);
+            }
+            return null;
+        });
     }
 
     @Override
     public void deleteAll() {
-        noticiasPorLink.clear();
-        noticiasPorId.clear();
+        escribir(g -> actual.getAndSet(new Generacion()));
+    }
+
+    @Override
+    public EstadisticasAlmacen estadisticas() {
+        Generacion g = actual.get();
+        return new EstadisticasAlmacen(g.noticiasPorId.size(), g.bytes.get(),
+                expulsadasPorEdad.get(), expulsadasPorNumero.get(), expulsadasPorBytes.get());
+    }
+
+    /**
+     * Un almacén vacío e independiente: lo que se guarde ahí no se ve hasta publicarlo.
+     * Comparte el contador de ids y recibe una copia de lo que se guarde aquí mientras tanto.
+     */
+    @Override
+    public NoticiaDAO nuevaGeneracion() {
+        NoticiaDaoEnMemoria nueva = new NoticiaDaoEnMemoria(retencion, reloj, compacto, comprimirDesde, fuentes, idCounter,
+                expulsadas);
+        enPreparacion = nueva;
+        return nueva;
+    }
+
+    @Override
+    public void publicar(NoticiaDAO generacion) {
+        if (!(generacion instanceof NoticiaDaoEnMemoria nueva) || nueva == this) {
+            throw new IllegalArgumentException("Sólo se puede publicar una generación creada con nuevaGeneracion()");
+        }
+        // Un único cambio de referencia: los lectores ven la generación vieja o la nueva, nunca una mezcla.
+        // Con el cerrojo de la vieja: quien estaba escribiendo en ella ya ha llevado su copia a la nueva,
+        // y quien esperaba el cerrojo escribirá en la nueva
+        escribir(g -> {
+            actual.set(nueva.actual.get());
+            descartar(nueva);
+            return null;
+        });
+        numeroGeneracion.incrementAndGet();
+    }
+
+    @Override
+    public void descartar(NoticiaDAO generacion) {
+        if (enPreparacion == generacion) {
+            enPreparacion = null;
+        }
+    }
+
+    @Override
+    public long getGeneracion() {
+        return numeroGeneracion.get();
+    }
+
+    // --- Retención ---
+
+    /**
+     * Si la ingesta puede guardar esta noticia: no si la retención la quitaría en el acto (por edad)
+     * o ya la ha quitado hace poco.
+     */
+    private boolean admite(Noticia noticia) {
+        if (retencion.limitaEdad() && noticia.getFecha() != null
+                && instanteMs(noticia.getFecha()) < reloj.millis() - retencion.maxEdad().toMillis()) {
+            return false;
+        }
+        return expulsadas.isEmpty() || !expulsadas.contains(claveDeLink(noticia.getLinkNoticia()));
+    }
+
+    /**
+     * Quita noticias por la cabeza del índice temporal (las más antiguas) mientras sobren por edad,
+     * número o bytes. Sólo mira la cabeza: si no sobra nada, cuesta lo mismo que un firstKey().
+     * Se hace en cada save, así que la caducidad por edad avanza al ritmo al que entran noticias.
+     * Ojo: una noticia expulsada sin resumir ya no se resume.
+     */
+    private void aplicarRetencion(Generacion g) {
+        if (retencion.limitaEdad()) {
+            long limite = reloj.millis() - retencion.maxEdad().toMillis();
+            Map.Entry<ClaveTiempo, Long> primera;
+            while ((primera = g.porFecha.firstEntry()) != null && primera.getKey().instanteMs() < limite) {
+                expulsar(g, primera.getKey());
+                expulsadasPorEdad.incrementAndGet();
+            }
+        }
+        while (retencion.maxNoticias() > 0 && g.porFecha.size() > retencion.maxNoticias()) {
+            expulsar(g, g.porFecha.firstKey());
+            expulsadasPorNumero.incrementAndGet();
+        }
+        while (retencion.maxBytes() > 0 && g.bytes.get() > retencion.maxBytes() && !g.porFecha.isEmpty()) {
+            expulsar(g, g.porFecha.firstKey());
+            expulsadasPorBytes.incrementAndGet();
+        }
+    }
+
+    private void expulsar(Generacion g, ClaveTiempo clave) {
+        g.bytes.addAndGet(-g.porFecha.remove(clave));
+        g.clavePorId.remove(clave.id());
+        g.pendientesDeResumen.remove(clave.id());
+        // Al revés que al guardar: primero el link y luego la noticia
+        Object guardada = g.noticiasPorId.get(clave.id());
+        if (guardada != null) {
+            // Sólo si el link sigue apuntando a ESTA noticia
+            g.idPorLink.remove(claveLink(guardada), clave.id());
+            g.noticiasPorId.remove(clave.id());
+            expulsadas.add(claveLink(guardada));
+        }
+    }
+
+    private Noticia leer(long id, Object guardada) {
+        return guardada instanceof NoticiaCompacta c ? c.noticia(id, fuentes) : (Noticia) guardada;
+    }
+
+    private static Object claveLink(Object guardada) {
+        return guardada instanceof NoticiaCompacta c ? c.clave() : ((Noticia) guardada).getLinkNoticia();
+    }
+
+    private Object claveDeLink(String link) {
+        return compacto ? NoticiaCompacta.Link.de(link) : link;
+    }
+
+    private long instanteMs(LocalDateTime fecha) {
+        return fecha.atZone(reloj.getZone()).toInstant().toEpochMilli();
+    }
+
+    /**
+     * Estimación de lo que ocupa una noticia en el heap: cabeceras de objetos y 2 bytes por carácter
+     * (peor caso de String; los textos sólo Latin-1 ocupan la mitad).
+     */
+    static long bytesEstimados(Noticia noticia) {
+        return 64 + bytesTexto(noticia.getFuente()) + bytesTexto(noticia.getTitular())
+                + bytesTexto(noticia.getLinkNoticia()) + bytesTexto(noticia.getContenido());
+    }
+
+    private static long bytesTexto(String texto) {
+        return texto == null ? 0 : 40 + 2L * texto.length();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,512 @@
+package org.srpm.dao;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Repository;
+import org.srpm.model.Noticia;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+/**
+ * NoticiaDAO en disco: las noticias sobreviven a un reinicio y se pueden servir sin esperar
+ * a un ciclo completo de RSS + IA.
+ *
+ * Cada noticia es un registro de un {@link AlmacenLog} (append-only, segmentos mapeados en memoria).
+ * En memoria sólo quedan el índice de posiciones, el de links y el de pendientes; al arrancar se
+ * reconstruyen leyendo sólo el estado "pendiente" y el link de cada registro.
+ * Marcar como resumida es escribir otra versión del registro; un hilo de fondo compacta la basura.
+ *
+ * Se activa con 'dao.tipo=persistente'.
+ */
+@Repository
+@ConditionalOnProperty(name = "dao.tipo", havingValue = "persistente")
+public class NoticiaDaoPersistente implements NoticiaDAO {
+
+    private static final Logger log = LoggerFactory.getLogger(NoticiaDaoPersistente.class);
+
+    private static final double UMBRAL_COMPACTACION = 0.5;
+
+    // Subdirectorio de las noticias dentro de DirectorioGeneraciones
+    private static final String PARTE = "noticias";
+
+    /**
+     * Una generación: su almacén en disco y los índices que se reconstruyen al abrirlo.
+     */
+    private static final class Generacion implements AlmacenLog.Visitante {
+
+        final ConcurrentHashMap<String, Long> idPorLink = new ConcurrentHashMap<>();
+        final ConcurrentSkipListSet<Long> pendientesDeResumen = new ConcurrentSkipListSet<>();
+        final AlmacenLog almacen;
+        final AtomicLong idCounter;
+
+        // Sólo mientras se recupera: el link vigente de cada id, para quitar del índice el que se le cambió
+        private Map<Long, String> linkPorId = new HashMap<>();
+
+        Generacion(Path directorio, int tamSegmento) {
+            this(directorio, tamSegmento, null);
+        }
+
+        // Con 'idCounter', una generación en preparación que sigue la numeración de la publicada
+        Generacion(Path directorio, int tamSegmento, AtomicLong idCounter) {
+            try {
+                this.almacen = new AlmacenLog(directorio, tamSegmento, this);
+            } catch (IOException e) {
+                throw new UncheckedIOException("No se puede abrir el almacén de noticias " + directorio, e);
+            }
+            this.idCounter = idCounter != null ? idCounter : new AtomicLong(almacen.maxClave() + 1);
+            this.linkPorId = null;
+        }
+
+        // Recuperación: sólo se leen los dos primeros campos, el resto se decodifica al pedirlo
+        @Override
+        public void dato(long clave, ByteBuffer datos) {
+            boolean pendiente = datos.get() != 0;
+            String link = CodecBinario.leerTexto(datos);
+            String anterior = linkPorId.put(clave, link);
+            if (anterior != null && !anterior.equals(link)) {
+                idPorLink.remove(anterior, clave);
+            }
+            idPorLink.put(link, clave);
+            if (pendiente) {
+                pendientesDeResumen.add(clave);
+            } else {
+                pendientesDeResumen.remove(clave);
+            }
+        }
+
+        @Override
+        public void borrado(long clave) {
+            String link = linkPorId.remove(clave);
+            if (link != null) {
+                idPorLink.remove(link, clave);
+            }
+            pendientesDeResumen.remove(clave);
+        }
+
+        @Override
+        public void vaciado() {
+            idPorLink.clear();
+            pendientesDeResumen.clear();
+            if (linkPorId != null) {
+                linkPorId.clear();
+            }
+        }
+    }
+
+    private final DirectorioGeneraciones directorio;
+    private final int tamSegmento;
+    private final long compactarCadaMs;
+
+    private final AtomicReference<Generacion> actual;
+
+    // Cuántas generaciones se han publicado desde el arranque (0 = la que se abrió)
+    private final AtomicLong numeroGeneracion = new AtomicLong();
+
+    // La generación que se está preparando (nuevaGeneracion), a la que también se llevan las escrituras
+    private volatile NoticiaDaoPersistente enPreparacion;
+
+    private ScheduledExecutorService mantenimiento;
+
+    @Autowired
+    public NoticiaDaoPersistente(DirectorioGeneraciones directorio,
+                                 @Value("${dao.persistente.tam-segmento-bytes:8388608}") int tamSegmento,
+                                 @Value("${dao.persistente.compactar-cada-ms:60000}") long compactarCadaMs) {
+        this.directorio = directorio;
+        this.tamSegmento = tamSegmento;
+        this.compactarCadaMs = compactarCadaMs;
+
+        long inicio = System.nanoTime();
+        directorio.borrarSobrantes(PARTE);
+        Generacion g = new Generacion(directorio.actual(PARTE), tamSegmento);
+        this.actual = new AtomicReference<>(g);
+        log.info("{} noticias recuperadas en {} ms", g.almacen.estadisticas().registros(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - inicio));
+    }
+
+    /**
+     * Generación sin publicar: comparte directorio base con su padre pero no tiene mantenimiento propio.
+     */
+    private NoticiaDaoPersistente(NoticiaDaoPersistente padre, Generacion generacion) {
+        this.directorio = padre.directorio;
+        this.tamSegmento = padre.tamSegmento;
+        this.compactarCadaMs = 0;
+        this.actual = new AtomicReference<>(generacion);
+    }
+
+    @PostConstruct
+    public void arrancarMantenimiento() {
+        if (compactarCadaMs <= 0) {
+            return;
+        }
+        mantenimiento = Executors.newSingleThreadScheduledExecutor(Thread.ofVirtual().name("compactador-noticias").factory());
+        mantenimiento.scheduleWithFixedDelay(this::compactar, compactarCadaMs, compactarCadaMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void cerrar() throws IOException {
+        if (mantenimiento != null) {
+            mantenimiento.shutdownNow();
+        }
+        NoticiaDaoPersistente abandonada = enPreparacion;
+        if (abandonada != null) {
+            descartar(abandonada);
+        }
+        actual.get().almacen.close();
+    }
+
+    /**
+     * Compacta la generación actual si tiene suficiente basura.
+     */
+    void compactar() {
+        try {
+            actual.get().almacen.compactarSiHaceFalta(UMBRAL_COMPACTACION);
+        } catch (IOException e) {
+            log.error("Error compactando noticias", e);
+        }
+    }
+
+    AlmacenLog.Estadisticas estadisticasLog() {
+        return actual.get().almacen.estadisticas();
+    }
+
+    /**
+     * Aquí no hay retención: los bytes son los de los registros vivos en disco.
+     */
+    @Override
+    public EstadisticasAlmacen estadisticas() {
+        AlmacenLog.Estadisticas almacen = estadisticasLog();
+        return new EstadisticasAlmacen(almacen.registros(), almacen.bytesVivos(), 0, 0, 0);
+    }
+
+    /**
+     * Las escrituras van sincronizadas sobre la generación: el registro en disco, el índice de links
+     * y el de pendientes cambian juntos (y saveIfAbsent mira y guarda sin que nadie se cuele).
+     */
+    @Override
+    public void save(Noticia noticia) {
+        escribir(g -> {
+            guardar(g, noticia);
+            reflejar(g, List.of(noticia));
+            return null;
+        });
+    }
+
+    @Override
+    public boolean saveIfAbsent(Noticia noticia) {
+        return escribir(g -> {
+            if (g.idPorLink.containsKey(noticia.getLinkNoticia())) {
+                return false;
+            }
+            guardar(g, noticia);
+            reflejar(g, List.of(noticia));
+            return true;
+        });
+    }
+
+    @Override
+    public List<Noticia> saveAll(Collection<Noticia> noticias) {
+        return escribir(g -> {
+            List<Noticia> guardadas = new ArrayList<>(noticias.size());
+            for (Noticia noticia : noticias) {
+                if (!g.idPorLink.containsKey(noticia.getLinkNoticia())) {
+                    guardar(g, noticia);
+                    guardadas.add(noticia);
+                }
+            }
+            reflejar(g, guardadas);
+            return guardadas;
+        });
+    }
+
+    /**
+     * Hace una escritura con el cerrojo de la generación actual. Si mientras esperaba el cerrojo se ha
+     * publicado otra generación, la repite en ésa: nada se escribe en un almacén ya retirado.
+     */
+    private <T> T escribir(Function<Generacion, T> escritura) {
+        while (true) {
+            Generacion g = actual.get();
+            synchronized (g) {
+                if (actual.get() == g) {
+                    return escritura.apply(g);
+                }
+            }
+        }
+    }
+
+    /**
+     * Con el cerrojo de 'g' cogido: lleva lo recién guardado a la generación en preparación, si la hay,
+     * con el mismo id y el mismo estado (pendiente o no).
+     */
+    private void reflejar(Generacion g, Collection<Noticia> guardadas) {
+        NoticiaDaoPersistente destino = enPreparacion;
+        if (destino == null) {
+            return;
+        }
+        for (Noticia noticia : guardadas) {
+            destino.copiar(noticia, g.pendientesDeResumen.contains(noticia.getId()));
+        }
+    }
+
+    // En la generación en preparación. Si el refresco ya ha traído ese link (con otro id), manda lo suyo
+    private void copiar(Noticia noticia, boolean pendiente) {
+        escribir(g -> {
+            Long id = g.idPorLink.get(noticia.getLinkNoticia());
+            if (id == null || id == noticia.getId()) {
+                String linkAnterior = g.almacen.leer(noticia.getId(), NoticiaDaoPersistente::leerLink);
+                if (linkAnterior != null && !linkAnterior.equals(noticia.getLinkNoticia())) {
+                    g.idPorLink.remove(linkAnterior, noticia.getId());
+                }
+                g.almacen.escribir(noticia.getId(), codificar(noticia, pendiente));
+                g.idPorLink.put(noticia.getLinkNoticia(), noticia.getId());
+                if (pendiente) {
+                    g.pendientesDeResumen.add(noticia.getId());
+                } else {
+                    g.pendientesDeResumen.remove(noticia.getId());
+                }
+            }
+            return null;
+        });
+    }
+
+    // Con el cerrojo de la generación cogido
+    private static void guardar(Generacion g, Noticia noticia) {
+        if (noticia.getId() == 0L) {
+            noticia.setId(g.idCounter.getAndIncrement());
+        }
+
+        if (noticia.getFecha() == null) {
+            noticia.setFecha(LocalDateTime.now());
+        }
+
+        // Sólo las noticias NUEVAS quedan pendientes (actualizar una ya resumida no la reenvía)
+        boolean nueva = !g.almacen.contiene(noticia.getId());
+        if (!nueva) {
+            // Si le han cambiado el link, el viejo deja de llevar a ella
+            String linkAnterior = g.almacen.leer(noticia.getId(), NoticiaDaoPersistente::leerLink);
+            if (linkAnterior != null && !linkAnterior.equals(noticia.getLinkNoticia())) {
+                g.idPorLink.remove(linkAnterior, noticia.getId());
+            }
+        }
+        boolean pendiente = nueva || g.pendientesDeResumen.contains(noticia.getId());
+        g.almacen.escribir(noticia.getId(), codificar(noticia, pendiente));
+        g.idPorLink.put(noticia.getLinkNoticia(), noticia.getId());
+        if (nueva) {
+            g.pendientesDeResumen.add(noticia.getId());
+        }
+    }
+
+    @Override
+    public List<Noticia> findAll() {
+        Generacion g = actual.get();
+        return leerTodas(g, g.almacen.claves());
+    }
+
+    @Override
+    public Optional<Noticia> findById(Long id) {
+        return Optional.ofNullable(leer(actual.get(), id));
+    }
+
+    @Override
+    public Optional<Noticia> findByLinkNoticia(String linkNoticia) {
+        Generacion g = actual.get();
+        Long id = g.idPorLink.get(linkNoticia);
+        return id == null ? Optional.empty() : Optional.ofNullable(leer(g, id));
+    }
+
+    @Override
+    public Map<String, Noticia> findByLinks(Collection<String> links) {
+        Generacion g = actual.get();
+        Map<String, Noticia> encontradas = new HashMap<>();
+        for (String link : links) {
+            Long id = g.idPorLink.get(link);
+            Noticia noticia = id == null ? null : leer(g, id);
+            if (noticia != null) {
+                encontradas.put(link, noticia);
+            }
+        }
+        return encontradas;
+    }
+
+    @Override
+    public List<Noticia> findPendientesDeResumen() {
+        Generacion g = actual.get();
+        return leerTodas(g, g.pendientesDeResumen);
+    }
+
+    /**
+     * Se reescribe cada noticia con pendiente = false, para que el estado sobreviva a un reinicio.
+     */
+    @Override
+    public void marcarResumidas(Collection<Long> ids) {
+        escribir(g -> {
+            for (Long id : ids) {
+                if (!g.pendientesDeResumen.remove(id)) {
+                    continue;
+                }
+                Noticia noticia = leer(g, id);
+                if (noticia != null) {
+                    g.almacen.escribir(id, codificar(noticia, false));
+                }
+            }
+            NoticiaDaoPersistente destino = enPreparacion;
+            if (destino != null) {
+                destino.marcarResumidas(ids);
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Vacía el almacén; los ids siguen donde iban, para no volver a dar uno que ya se ha visto.
+     */
+    @Override
+    public void deleteAll() {
+        escribir(g -> {
+            g.almacen.vaciar();
+            g.vaciado();
+            return null;
+        });
+    }
+
+    /**
+     * Una generación nueva en su propio subdirectorio: lo que se guarde ahí no se ve hasta publicarlo.
+     * Sigue la numeración de ésta y recibe una copia de lo que se guarde aquí mientras tanto.
+     */
+    @Override
+    public NoticiaDAO nuevaGeneracion() {
+        NoticiaDaoPersistente anterior = enPreparacion;
+        if (anterior != null) {
+            descartar(anterior); // sólo una a la vez: la anterior se ha quedado a medias
+        }
+        NoticiaDaoPersistente nueva = new NoticiaDaoPersistente(this,
+                new Generacion(directorio.nueva(PARTE), tamSegmento, actual.get().idCounter));
+        enPreparacion = nueva;
+        return nueva;
+    }
+
+    @Override
+    public void publicar(NoticiaDAO generacion) {
+        if (!(generacion instanceof NoticiaDaoPersistente nueva) || nueva == this || nueva.directorio != directorio) {
+            throw new IllegalArgumentException("Sólo se puede publicar una generación creada con nuevaGeneracion()");
+        }
+        Generacion publicada = nueva.actual.get();
+        // Con el cerrojo de la vieja: quien estaba escribiendo en ella ya ha llevado su copia a la nueva,
+        // y quien esperaba el cerrojo escribirá en la nueva (nunca en un almacén cerrado)
+        Generacion vieja = escribir(g -> {
+            actual.set(publicada);
+            if (enPreparacion == nueva) {
+                enPreparacion = null;
+            }
+            return g;
+        });
+        numeroGeneracion.incrementAndGet();
+        cerrar(vieja);
+        // El puntero en disco cambia cuando la parte de resúmenes del mismo refresco también esté publicada
+        directorio.publicar(PARTE, publicada.almacen.getDirectorio(), vieja.almacen.getDirectorio());
+    }
+
+    /**
+     * Deja de llevarle escrituras, la cierra y borra su directorio.
+     */
+    @Override
+    public void descartar(NoticiaDAO generacion) {
+        if (!(generacion instanceof NoticiaDaoPersistente tirada) || tirada == this || tirada.directorio != directorio) {
+            throw new IllegalArgumentException("Sólo se puede descartar una generación creada con nuevaGeneracion()");
+        }
+        synchronized (this) {
+            // Ya publicada (o ya descartada): no hay nada que tirar
+            if (enPreparacion != tirada) {
+                return;
+            }
+            enPreparacion = null;
+        }
+        Generacion g = tirada.actual.get();
+        cerrar(g);
+        directorio.descartar(g.almacen.getDirectorio());
+    }
+
+    @Override
+    public long getGeneracion() {
+        return numeroGeneracion.get();
+    }
+
+    /**
+     * Cierra una generación sustituida o descartada (su directorio lo borra DirectorioGeneraciones).
+     * Los lectores que aún la tengan siguen pudiendo leer de los mapeos (en Linux el fichero borrado
+     * sigue mapeado hasta que se libera); los que escriben ya van a la nueva (ver escribir).
+     */
+    private static void cerrar(Generacion g) {
+        try {
+            g.almacen.close();
+        } catch (IOException e) {
+            log.warn("Error cerrando la generación {} de noticias: {}", g.almacen.getDirectorio(), e.toString());
+        }
+    }
+
+    private static Noticia leer(Generacion g, long id) {
+        return g.almacen.leer(id, datos -> decodificar(id, datos));
+    }
+
+    private static List<Noticia> leerTodas(Generacion g, Collection<Long> ids) {
+        List<Noticia> noticias = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            Noticia noticia = leer(g, id);
+            if (noticia != null) {
+                noticias.add(noticia);
+            }
+        }
+        return noticias;
+    }
+
+    // El estado "pendiente" y el link van primero: es lo único que se lee al arrancar
+    private static byte[] codificar(Noticia noticia, boolean pendiente) {
+        return new CodecBinario.Escritor()
+                .byteSuelto(pendiente ? 1 : 0)
+                .texto(noticia.getLinkNoticia())
+                .texto(noticia.getFuente())
+                .texto(noticia.getTitular())
+                .texto(noticia.getContenido())
+                .fecha(noticia.getFecha())
+                .bytes();
+    }
+
+    private static String leerLink(ByteBuffer datos) {
+        datos.get(); // pendiente
+        return CodecBinario.leerTexto(datos);
+    }
+
+    private static Noticia decodificar(long id, ByteBuffer datos) {
+        datos.get(); // pendiente: ya está en el índice
+        Noticia noticia = new Noticia();
+        noticia.setId(id);
+        noticia.setLinkNoticia(CodecBinario.leerTexto(datos));
+        noticia.setFuente(CodecBinario.leerTexto(datos));
+        noticia.setTitular(CodecBinario.leerTexto(datos));
+        noticia.setContenido(CodecBinario.leerTexto(datos));
+        noticia.setFecha(CodecBinario.leerFecha(datos));
+        return noticia;
+    }
+}
@@ -0,0 +1,25 @@
+package org.srpm.dao;
+
+import org.srpm.model.Resumen;
+
+/**
+ * Se entera de los cambios en los resúmenes del almacén VIVO (no de las generaciones sin publicar).
+ *
+ * guardado y borrado se llaman con el cerrojo de escritura del DAO cogido, así que llegan en el mismo
+ * orden que los cambios; a cambio, tienen que ser rápidos y no volver a escribir en el DAO.
+ */
+public interface ObservadorResumenes {
+
+    /**
+     * @param nuevo true si el id no existía (alta), false si es una actualización.
+     */
+    void guardado(Resumen resumen, boolean nuevo);
+
+    void borrado(long id);
+
+    /**
+     * El contenido se ha sustituido entero (publicación de una generación o deleteAll):
+     * lo que se supiera del anterior ya no vale.
+     */
+    void reemplazados();
+}
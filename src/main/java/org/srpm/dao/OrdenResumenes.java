@@ -0,0 +1,9 @@
+package org.srpm.dao;
+
+/**
+ * Orden de las páginas de GET /resumenes.
+ */
+public enum OrdenResumenes {
+    ID,    // por id, de menor a mayor (el orden de creación)
+    FECHA  // por fecha, los más recientes primero (a igual fecha, el de id mayor primero)
+}
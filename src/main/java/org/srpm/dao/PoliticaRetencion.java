@@ -0,0 +1,19 @@
+package org.srpm.dao;
+
+import java.time.Duration;
+
+/**
+ * Cuánto se guarda como mucho en el almacén de noticias. Un límite a 0 (o null) significa "sin límite".
+ *
+ * @param maxEdad     Edad máxima de una noticia, según su {@code fecha}.
+ * @param maxNoticias Número máximo de noticias (se van las más antiguas).
+ * @param maxBytes    Tamaño máximo estimado en memoria (se van las más antiguas).
+ */
+public record PoliticaRetencion(Duration maxEdad, int maxNoticias, long maxBytes) {
+
+    public static final PoliticaRetencion SIN_LIMITES = new PoliticaRetencion(null, 0, 0);
+
+    public boolean limitaEdad() {
+        return maxEdad != null && !maxEdad.isZero() && !maxEdad.isNegative();
+    }
+}
@@ -0,0 +1,22 @@
+package org.srpm.dao;
+
+import org.srpm.model.Resumen;
+
+import java.time.LocalDateTime;
+
+/**
+ * Dónde acaba una página de resúmenes: la siguiente empieza justo después de esta posición.
+ *
+ * Lleva lo que cada orden necesita para situarse (el id; en el orden por fecha, también la fecha),
+ * así que no hace falta que el resumen siga existiendo ni que siga siendo el mismo.
+ */
+public record PosicionResumen(long id, LocalDateTime fecha) {
+
+    public static PosicionResumen de(Resumen resumen) {
+        return new PosicionResumen(resumen.getId(), resumen.getFecha());
+    }
+
+    public static PosicionResumen porId(long id) {
+        return new PosicionResumen(id, null);
+    }
+}
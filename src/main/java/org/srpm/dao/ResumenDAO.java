@@ -1,6 +1,5 @@
 package org.srpm.dao;
 
-import org.srpm.model.Noticia;
 import org.srpm.model.Resumen;
 
 import java.util.List;
@@ -25,4 +24,56 @@ public interface ResumenDAO {
     Optional<Resumen> findById(Long id);
 
     void deleteAll();
+
+    /**
+     * Una página de resúmenes en el orden pedido, empezando justo DESPUÉS de la posición 'despuesDe'
+     * (null = desde el principio). Cuesta lo que la página, no lo que el total.
+     *
+     * @throws IllegalArgumentException si el orden es por fecha y la posición no la lleva.
+     */
+    List<Resumen> findPagina(PosicionResumen despuesDe, int limite, OrdenResumenes orden);
+
+    /**
+     * Crea un almacén vacío e independiente donde construir la siguiente generación
+     * (p.ej. en un refresco total) sin que los lectores vean nada a medias.
+     *
+     * Los ids siguen la numeración del almacén actual (un id nunca pasa a ser de otro registro), y
+     * los resúmenes que se guarden o se borren en el actual mientras tanto también se llevan a la generación nueva, para que
+     * publicarla no los pierda. Hay que terminar con {@link #publicar} o {@link #descartar}.
+     */
+    ResumenDAO nuevaGeneracion();
+
+    /**
+     * Sustituye de golpe (un solo cambio atómico) TODO el contenido por el de una generación
+     * creada con {@link #nuevaGeneracion()}. Si nunca se publica, no se ha tocado nada.
+     * Las escrituras que lleguen durante el cambio esperan y se hacen en la generación nueva.
+     */
+    void publicar(ResumenDAO generacion);
+
+    /**
+     * Tira una generación que no se va a publicar (y deja de llevarle las escrituras).
+     */
+    void descartar(ResumenDAO generacion);
+
+    /**
+     * Cuántos resúmenes hay (sin recorrerlos: vale para una métrica que se consulta a menudo).
+     */
+    int count();
+
+    /**
+     * Número de generaciones publicadas (0 = la inicial).
+     */
+    long getGeneracion();
+
+    /**
+     * Versión del contenido: sube con CADA cambio (save, borrado, vaciado o publicación) y nunca baja
+     * mientras dure el proceso. Se incrementa DESPUÉS de aplicar el cambio, así que quien lea la versión
+     * y luego los datos tiene, como poco, los datos de esa versión.
+     */
+    long getVersion();
+
+    /**
+     * Registra a alguien que quiere enterarse de cada cambio (índices, notificaciones...).
+     */
+    void observar(ObservadorResumenes observador);
 }
@@ -1,43 +1,161 @@
 package org.srpm.dao;
 
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Repository;
 import org.srpm.model.Resumen;
 
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
 import java.util.Optional;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
 @Repository
+@ConditionalOnProperty(name = "dao.tipo", havingValue = "memoria", matchIfMissing = true)
 public class ResumenDaoEnMemoria implements ResumenDAO{
 
+    /**
+     * Posición de un resumen en el índice por fecha (a igual fecha, por id).
+     */
+    record ClaveFecha(long instanteNs, long id) implements Comparable<ClaveFecha> {
+        @Override
+        public int compareTo(ClaveFecha otra) {
+            int c = Long.compare(instanteNs, otra.instanteNs);
+            return c != 0 ? c : Long.compare(id, otra.id);
+        }
+
+        static ClaveFecha de(long id, LocalDateTime fecha) {
+            return new ClaveFecha(fecha.toEpochSecond(ZoneOffset.UTC) * 1_000_000_000L + fecha.getNano(), id);
+        }
+
+        static ClaveFecha de(PosicionResumen posicion) {
+            if (posicion.fecha() == null) {
+                throw new IllegalArgumentException("la posición no lleva fecha");
+            }
+            return de(posicion.id(), posicion.fecha());
+        }
+    }
+
+    /**
+     * Todo el contenido del almacén; se sustituye entero al publicar una generación nueva.
+     * Las escrituras van sincronizadas sobre la generación para que los dos índices no se
+     * desalineen; las lecturas (y las páginas) no bloquean.
+     */
+    private static final class Generacion {
+
+        // Ordenado por id: las páginas por id son un tailMap
+        final ConcurrentSkipListMap<Long, Resumen> resumenPorId = new ConcurrentSkipListMap<>();
+
+        // Ordenado por fecha, para las páginas por fecha
+        final ConcurrentSkipListMap<ClaveFecha, Resumen> resumenPorFecha = new ConcurrentSkipListMap<>();
+
+        // Dónde está cada id en el índice por fecha
+        final Map<Long, ClaveFecha> clavePorId = new ConcurrentHashMap<>();
+    }
+
+    private final AtomicReference<Generacion> actual = new AtomicReference<>(new Generacion());
+
+    // Compartido con las generaciones que salen de ésta: los ids no se repiten de una a otra
+    private final AtomicLong idCounter;
+
+    // La generación que se está preparando (nuevaGeneracion), a la que también se llevan las escrituras
+    private volatile ResumenDaoEnMemoria enPreparacion;
+
+    // Cuántas generaciones se han publicado (0 = la inicial)
+    private final AtomicLong numeroGeneracion = new AtomicLong();
 
-    private final ConcurrentHashMap<Long, Resumen> resumenPorId = new ConcurrentHashMap<>();
+    // Sube con cada cambio (ver ResumenDAO.getVersion)
+    private final AtomicLong version = new AtomicLong();
 
-    private final AtomicLong idCounter = new AtomicLong(1);
+    private final List<ObservadorResumenes> observadores = new CopyOnWriteArrayList<>();
+
+    public ResumenDaoEnMemoria() {
+        this(new AtomicLong(1));
+    }
+
+    private ResumenDaoEnMemoria(AtomicLong idCounter) {
+        this.idCounter = idCounter;
+    }
 
 
     @Override
     public void save(Resumen resumen) {
+        escribir(g -> {
+            if (resumen.getId()==null|| resumen.getId() == 0L) { // 0L es más explícito para tipo 'long'
+                resumen.setId(idCounter.getAndIncrement());
+            }
 
-        if (resumen.getId()==null|| resumen.getId() == 0L) { // 0L es más explícito para tipo 'long'
-            resumen.setId(idCounter.getAndIncrement());
-        }
+            if (resumen.getFecha() == null) {
+                resumen.setFecha(LocalDateTime.now());
+            }
+
+            ClaveFecha clave = ClaveFecha.de(resumen.getId(), resumen.getFecha());
+            ClaveFecha anterior = g.clavePorId.put(resumen.getId(), clave);
+            if (anterior != null && !anterior.equals(clave)) {
+                g.resumenPorFecha.remove(anterior);
+            }
+            g.resumenPorFecha.put(clave, resumen);
+            boolean nuevo = g.resumenPorId.put(resumen.getId(), resumen) == null;
+            observadores.forEach(o -> o.guardado(resumen, nuevo));
 
-        resumenPorId.put(resumen.getId(), resumen);
+            ResumenDaoEnMemoria destino = enPreparacion;
+            if (destino != null) {
+                destino.save(resumen);
+            }
+        });
+        version.incrementAndGet();
     }
 
     @Override
     public void deleteById(Long id) {
-        resumenPorId.remove(id);
+        escribir(g -> {
+            if (g.resumenPorId.remove(id) != null) {
+                observadores.forEach(o -> o.borrado(id));
+            }
+            ClaveFecha clave = g.clavePorId.remove(id);
+            if (clave != null) {
+                g.resumenPorFecha.remove(clave);
+            }
+
+            ResumenDaoEnMemoria destino = enPreparacion;
+            if (destino != null) {
+                destino.deleteById(id);
+            }
+        });
+        version.incrementAndGet();
+    }
+
+    /**
+     * Hace una escritura con el cerrojo de la generación actual. Si mientras esperaba el cerrojo se ha
+     * publicado otra generación, la repite en ésa: nada se escribe en una generación ya sustituida.
+     */
+    private void escribir(Consumer<Generacion> escritura) {
+        while (true) {
+            Generacion g = actual.get();
+            synchronized (g) {
+                if (actual.get() == g) {
+                    escritura.accept(g);
+                    return;
+                }
+            }
+        }
     }
 
     /**
-     * Devuelve todas las noticias que tenemos guardadas.
+     * Devuelve todos los resúmenes, ordenados por id.
      */
     @Override
     public List<Resumen> findAll() {
-        return new ArrayList<>(resumenPorId.values());
+        return new ArrayList<>(actual.get().resumenPorId.values());
     }
 
     /**
@@ -45,13 +163,93 @@ public class ResumenDaoEnMemoria implements ResumenDAO{
      */
     @Override
     public Optional<Resumen> findById(Long id) {
-        return Optional.ofNullable(resumenPorId.get(id));
+        return Optional.ofNullable(actual.get().resumenPorId.get(id));
     }
 
     @Override
     public void deleteAll() {
-        resumenPorId.clear();
-        idCounter.set(1);
+        escribir(g -> actual.set(new Generacion()));
+        version.incrementAndGet();
+        observadores.forEach(ObservadorResumenes::reemplazados);
+    }
+
+    @Override
+    public List<Resumen> findPagina(PosicionResumen despuesDe, int limite, OrdenResumenes orden) {
+        Generacion g = actual.get();
+        Collection<Resumen> desde;
+        if (orden == OrdenResumenes.ID) {
+            desde = (despuesDe == null ? g.resumenPorId : g.resumenPorId.tailMap(despuesDe.id(), false)).values();
+        } else {
+            NavigableMap<ClaveFecha, Resumen> recientesPrimero = g.resumenPorFecha.descendingMap();
+            if (despuesDe != null) {
+                recientesPrimero = recientesPrimero.tailMap(ClaveFecha.de(despuesDe), false);
+            }
+            desde = recientesPrimero.values();
+        }
+
+        // Se recorre sólo lo que cabe en la página
+        List<Resumen> pagina = new ArrayList<>(Math.min(limite, 64));
+        for (Resumen resumen : desde) {
+            if (pagina.size() == limite) {
+                break;
+            }
+            pagina.add(resumen);
+        }
+        return pagina;
+    }
+
+    /**
+     * Un almacén vacío e independiente: lo que se guarde ahí no se ve hasta publicarlo.
+     * Comparte el contador de ids y recibe una copia de lo que se guarde (o se borre) aquí mientras tanto.
+     */
+    @Override
+    public ResumenDAO nuevaGeneracion() {
+        ResumenDaoEnMemoria nueva = new ResumenDaoEnMemoria(idCounter);
+        enPreparacion = nueva;
+        return nueva;
+    }
+
+    @Override
+    public void publicar(ResumenDAO generacion) {
+        if (!(generacion instanceof ResumenDaoEnMemoria nueva) || nueva == this) {
+            throw new IllegalArgumentException("Sólo se puede publicar una generación creada con nuevaGeneracion()");
+        }
+        // Un único cambio de referencia: GET /resumenes ve la lista vieja o la nueva, nunca a medias.
+        // Con el cerrojo de la vieja, como en NoticiaDaoEnMemoria.publicar
+        escribir(g -> {
+            actual.set(nueva.actual.get());
+            descartar(nueva);
+        });
+        numeroGeneracion.incrementAndGet();
+        version.incrementAndGet();
+        observadores.forEach(ObservadorResumenes::reemplazados);
+    }
+
+    @Override
+    public void descartar(ResumenDAO generacion) {
+        if (enPreparacion == generacion) {
+            enPreparacion = null;
+        }
+    }
+
+    @Override
+    public int count() {
+        return actual.get().clavePorId.size();
+    }
+
+    @Override
+    public long getGeneracion() {
+        return numeroGeneracion.get();
+    }
+
+    @Override
+    public long getVersion() {
+        return version.get();
+    }
+
+    @Override
+    public void observar(ObservadorResumenes observador) {
+        observadores.add(observador);
     }
 
 }
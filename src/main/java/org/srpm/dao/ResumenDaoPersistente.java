@@ -0,0 +1,417 @@
+package org.srpm.dao;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Repository;
+import org.srpm.dao.ResumenDaoEnMemoria.ClaveFecha;
+import org.srpm.model.Resumen;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * ResumenDAO en disco, sobre un {@link AlmacenLog} (ver {@link NoticiaDaoPersistente}).
+ * deleteById escribe una lápida; deleteAll, un VACIADO.
+ *
+ * Se activa con 'dao.tipo=persistente'.
+ */
+@Repository
+@ConditionalOnProperty(name = "dao.tipo", havingValue = "persistente")
+public class ResumenDaoPersistente implements ResumenDAO {
+
+    private static final Logger log = LoggerFactory.getLogger(ResumenDaoPersistente.class);
+
+    private static final double UMBRAL_COMPACTACION = 0.5;
+
+    // Subdirectorio de los resúmenes dentro de DirectorioGeneraciones
+    private static final String PARTE = "resumenes";
+
+    /**
+     * Una generación: su almacén en disco (que ya va ordenado por id) y el índice por fecha,
+     * que se reconstruye al abrir leyendo sólo la fecha de cada registro.
+     */
+    private static final class Generacion implements AlmacenLog.Visitante {
+
+        final ConcurrentSkipListMap<ClaveFecha, Long> idPorFecha = new ConcurrentSkipListMap<>();
+        final Map<Long, ClaveFecha> clavePorId = new ConcurrentHashMap<>();
+        final AlmacenLog almacen;
+        final AtomicLong idCounter;
+
+        Generacion(Path directorio, int tamSegmento) {
+            this(directorio, tamSegmento, null);
+        }
+
+        // Con 'idCounter', una generación en preparación que sigue la numeración de la publicada
+        Generacion(Path directorio, int tamSegmento, AtomicLong idCounter) {
+            try {
+                this.almacen = new AlmacenLog(directorio, tamSegmento, this);
+            } catch (IOException e) {
+                throw new UncheckedIOException("No se puede abrir el almacén de resúmenes " + directorio, e);
+            }
+            this.idCounter = idCounter != null ? idCounter : new AtomicLong(almacen.maxClave() + 1);
+        }
+
+        @Override
+        public void dato(long clave, ByteBuffer datos) {
+            indexarFecha(clave, CodecBinario.leerFecha(datos));
+        }
+
+        @Override
+        public void borrado(long clave) {
+            ClaveFecha vieja = clavePorId.remove(clave);
+            if (vieja != null) {
+                idPorFecha.remove(vieja);
+            }
+        }
+
+        @Override
+        public void vaciado() {
+            idPorFecha.clear();
+            clavePorId.clear();
+        }
+
+        void indexarFecha(long id, LocalDateTime fecha) {
+            ClaveFecha nueva = ClaveFecha.de(id, fecha);
+            ClaveFecha vieja = clavePorId.put(id, nueva);
+            if (vieja != null && !vieja.equals(nueva)) {
+                idPorFecha.remove(vieja);
+            }
+            idPorFecha.put(nueva, id);
+        }
+    }
+
+    private final DirectorioGeneraciones directorio;
+    private final int tamSegmento;
+    private final long compactarCadaMs;
+
+    private final AtomicReference<Generacion> actual;
+
+    // Cuántas generaciones se han publicado desde el arranque (0 = la que se abrió)
+    private final AtomicLong numeroGeneracion = new AtomicLong();
+
+    // Sube con cada cambio (ver ResumenDAO.getVersion). Vuelve a 0 al reiniciar el proceso
+    private final AtomicLong version = new AtomicLong();
+
+    private final List<ObservadorResumenes> observadores = new CopyOnWriteArrayList<>();
+
+    // La generación que se está preparando (nuevaGeneracion), a la que también se llevan las escrituras
+    private volatile ResumenDaoPersistente enPreparacion;
+
+    private ScheduledExecutorService mantenimiento;
+
+    @Autowired
+    public ResumenDaoPersistente(DirectorioGeneraciones directorio,
+                                 @Value("${dao.persistente.tam-segmento-bytes:8388608}") int tamSegmento,
+                                 @Value("${dao.persistente.compactar-cada-ms:60000}") long compactarCadaMs) {
+        this.directorio = directorio;
+        this.tamSegmento = tamSegmento;
+        this.compactarCadaMs = compactarCadaMs;
+
+        long inicio = System.nanoTime();
+        directorio.borrarSobrantes(PARTE);
+        Generacion g = new Generacion(directorio.actual(PARTE), tamSegmento);
+        this.actual = new AtomicReference<>(g);
+        log.info("{} resúmenes recuperados en {} ms", g.almacen.estadisticas().registros(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - inicio));
+    }
+
+    private ResumenDaoPersistente(ResumenDaoPersistente padre, Generacion generacion) {
+        this.directorio = padre.directorio;
+        this.tamSegmento = padre.tamSegmento;
+        this.compactarCadaMs = 0;
+        this.actual = new AtomicReference<>(generacion);
+    }
+
+    @PostConstruct
+    public void arrancarMantenimiento() {
+        if (compactarCadaMs <= 0) {
+            return;
+        }
+        mantenimiento = Executors.newSingleThreadScheduledExecutor(Thread.ofVirtual().name("compactador-resumenes").factory());
+        mantenimiento.scheduleWithFixedDelay(this::compactar, compactarCadaMs, compactarCadaMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void cerrar() throws IOException {
+        if (mantenimiento != null) {
+            mantenimiento.shutdownNow();
+        }
+        ResumenDaoPersistente abandonada = enPreparacion;
+        if (abandonada != null) {
+            descartar(abandonada);
+        }
+        actual.get().almacen.close();
+    }
+
+    void compactar() {
+        try {
+            actual.get().almacen.compactarSiHaceFalta(UMBRAL_COMPACTACION);
+        } catch (IOException e) {
+            log.error("Error compactando resúmenes", e);
+        }
+    }
+
+    AlmacenLog.Estadisticas estadisticasLog() {
+        return actual.get().almacen.estadisticas();
+    }
+
+    @Override
+    public void save(Resumen resumen) {
+        escribir(g -> {
+            if (resumen.getId() == null || resumen.getId() == 0L) {
+                resumen.setId(g.idCounter.getAndIncrement());
+            }
+
+            if (resumen.getFecha() == null) {
+                resumen.setFecha(LocalDateTime.now());
+            }
+
+            boolean nuevo = !g.almacen.contiene(resumen.getId());
+            g.almacen.escribir(resumen.getId(), codificar(resumen));
+            g.indexarFecha(resumen.getId(), resumen.getFecha());
+            observadores.forEach(o -> o.guardado(resumen, nuevo));
+
+            ResumenDaoPersistente destino = enPreparacion;
+            if (destino != null) {
+                destino.save(resumen);
+            }
+        });
+        version.incrementAndGet();
+    }
+
+    @Override
+    public void deleteById(Long id) {
+        escribir(g -> {
+            boolean existia = g.almacen.contiene(id);
+            g.almacen.borrar(id);
+            g.borrado(id);
+            if (existia) {
+                observadores.forEach(o -> o.borrado(id));
+            }
+
+            ResumenDaoPersistente destino = enPreparacion;
+            if (destino != null) {
+                destino.deleteById(id);
+            }
+        });
+        version.incrementAndGet();
+    }
+
+    /**
+     * Hace una escritura con el cerrojo de la generación actual. Si mientras esperaba el cerrojo se ha
+     * publicado otra generación, la repite en ésa: nada se escribe en un almacén ya retirado.
+     */
+    private void escribir(Consumer<Generacion> escritura) {
+        while (true) {
+            Generacion g = actual.get();
+            synchronized (g) {
+                if (actual.get() == g) {
+                    escritura.accept(g);
+                    return;
+                }
+            }
+        }
+    }
+
+    @Override
+    public List<Resumen> findAll() {
+        Generacion g = actual.get();
+        List<Resumen> resumenes = new ArrayList<>();
+        for (Long id : g.almacen.claves()) {
+            Resumen resumen = leer(g, id);
+            if (resumen != null) {
+                resumenes.add(resumen);
+            }
+        }
+        return resumenes;
+    }
+
+    @Override
+    public Optional<Resumen> findById(Long id) {
+        return Optional.ofNullable(leer(actual.get(), id));
+    }
+
+    /**
+     * Vacía el almacén; los ids siguen donde iban, para no volver a dar uno que ya se ha visto.
+     */
+    @Override
+    public void deleteAll() {
+        escribir(g -> {
+            g.almacen.vaciar();
+            g.vaciado();
+        });
+        version.incrementAndGet();
+        observadores.forEach(ObservadorResumenes::reemplazados);
+    }
+
+    @Override
+    public List<Resumen> findPagina(PosicionResumen despuesDe, int limite, OrdenResumenes orden) {
+        Generacion g = actual.get();
+        List<Long> ids;
+        if (orden == OrdenResumenes.ID) {
+            ids = g.almacen.clavesTras(despuesDe == null ? null : despuesDe.id(), limite);
+        } else {
+            NavigableMap<ClaveFecha, Long> recientesPrimero = g.idPorFecha.descendingMap();
+            if (despuesDe != null) {
+                recientesPrimero = recientesPrimero.tailMap(ClaveFecha.de(despuesDe), false);
+            }
+            ids = new ArrayList<>(Math.min(limite, 64));
+            for (Long id : recientesPrimero.values()) {
+                if (ids.size() == limite) {
+                    break;
+                }
+                ids.add(id);
+            }
+        }
+
+        List<Resumen> pagina = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            Resumen resumen = leer(g, id);
+            if (resumen != null) {
+                pagina.add(resumen);
+            }
+        }
+        return pagina;
+    }
+
+    /**
+     * Como NoticiaDaoPersistente.nuevaGeneracion: sigue la numeración de ésta y recibe una copia
+     * de lo que se guarde (o se borre) aquí mientras tanto.
+     */
+    @Override
+    public ResumenDAO nuevaGeneracion() {
+        ResumenDaoPersistente anterior = enPreparacion;
+        if (anterior != null) {
+            descartar(anterior); // sólo una a la vez: la anterior se ha quedado a medias
+        }
+        ResumenDaoPersistente nueva = new ResumenDaoPersistente(this,
+                new Generacion(directorio.nueva(PARTE), tamSegmento, actual.get().idCounter));
+        enPreparacion = nueva;
+        return nueva;
+    }
+
+    @Override
+    public void publicar(ResumenDAO generacion) {
+        if (!(generacion instanceof ResumenDaoPersistente nueva) || nueva == this || nueva.directorio != directorio) {
+            throw new IllegalArgumentException("Sólo se puede publicar una generación creada con nuevaGeneracion()");
+        }
+        Generacion publicada = nueva.actual.get();
+        Generacion vieja = actual.get();
+        // Con el cerrojo de la vieja, como en NoticiaDaoPersistente.publicar
+        escribir(g -> {
+            actual.set(publicada);
+            if (enPreparacion == nueva) {
+                enPreparacion = null;
+            }
+        });
+        numeroGeneracion.incrementAndGet();
+        version.incrementAndGet();
+        observadores.forEach(ObservadorResumenes::reemplazados);
+
+        cerrar(vieja);
+        directorio.publicar(PARTE, publicada.almacen.getDirectorio(), vieja.almacen.getDirectorio());
+    }
+
+    /**
+     * Deja de llevarle escrituras, la cierra y borra su directorio.
+     */
+    @Override
+    public void descartar(ResumenDAO generacion) {
+        if (!(generacion instanceof ResumenDaoPersistente tirada) || tirada == this || tirada.directorio != directorio) {
+            throw new IllegalArgumentException("Sólo se puede descartar una generación creada con nuevaGeneracion()");
+        }
+        synchronized (this) {
+            // Ya publicada (o ya descartada): no hay nada que tirar
+            if (enPreparacion != tirada) {
+                return;
+            }
+            enPreparacion = null;
+        }
+        Generacion g = tirada.actual.get();
+        cerrar(g);
+        directorio.descartar(g.almacen.getDirectorio());
+    }
+
+    private static void cerrar(Generacion g) {
+        try {
+            g.almacen.close();
+        } catch (IOException e) {
+            log.warn("Error cerrando la generación {} de resúmenes: {}", g.almacen.getDirectorio(), e.toString());
+        }
+    }
+
+    @Override
+    public int count() {
+        return actual.get().clavePorId.size();
+    }
+
+    @Override
+    public long getGeneracion() {
+        return numeroGeneracion.get();
+    }
+
+    @Override
+    public long getVersion() {
+        return version.get();
+    }
+
+    @Override
+    public void observar(ObservadorResumenes observador) {
+        observadores.add(observador);
+    }
+
+    private static Resumen leer(Generacion g, long id) {
+        return g.almacen.leer(id, datos -> decodificar(id, datos));
+    }
+
+    // La fecha va primero: es lo único que se lee al arrancar
+    private static byte[] codificar(Resumen resumen) {
+        CodecBinario.Escritor escritor = new CodecBinario.Escritor()
+                .fecha(resumen.getFecha())
+                .texto(resumen.getTitular())
+                .texto(resumen.getCuerpo());
+        List<Long> ids = resumen.getNoticiaIds();
+        escritor.entero(ids == null ? -1 : ids.size());
+        if (ids != null) {
+            ids.forEach(escritor::largo);
+        }
+        return escritor.bytes();
+    }
+
+    private static Resumen decodificar(long id, ByteBuffer datos) {
+        LocalDateTime fecha = CodecBinario.leerFecha(datos);
+        Resumen resumen = new Resumen(CodecBinario.leerTexto(datos), CodecBinario.leerTexto(datos), id);
+        resumen.setFecha(fecha);
+        int n = datos.getInt();
+        if (n >= 0) {
+            List<Long> ids = new ArrayList<>(n);
+            for (int i = 0; i < n; i++) {
+                ids.add(datos.getLong());
+            }
+            resumen.setNoticiaIds(ids);
+        }
+        return resumen;
+    }
+}
@@ -53,6 +53,44 @@ public class GlobalExceptionHandler{
         return new ResponseEntity<>(error, HttpStatus.NOT_FOUND);
     }
 
+    /**
+     * Este método "oye" al RefrescoNotFoundException (estado de un refresco que no existe).
+     *
+     * @return Una "Nota de Disculpa" (ErrorResponse) con el código 404 NOT FOUND.
+     */
+    @ExceptionHandler(RefrescoNotFoundException.class)
+    public ResponseEntity<ErrorResponse> handleRefrescoNotFound(
+            RefrescoNotFoundException ex, HttpServletRequest request) {
+
+        ErrorResponse error = new ErrorResponse(
+                LocalDateTime.now(),
+                HttpStatus.NOT_FOUND.value(), // 404
+                ex.getMessage(),
+                request.getRequestURI()
+        );
+
+        return new ResponseEntity<>(error, HttpStatus.NOT_FOUND);
+    }
+
+    /**
+     * Este método "oye" al ParametroInvalidoException (cursor u orden no válidos).
+     *
+     * @return Una "Nota de Disculpa" (ErrorResponse) con el código 400 BAD REQUEST.
+     */
+    @ExceptionHandler(ParametroInvalidoException.class)
+    public ResponseEntity<ErrorResponse> handleParametroInvalido(
+            ParametroInvalidoException ex, HttpServletRequest request) {
+
+        ErrorResponse error = new ErrorResponse(
+                LocalDateTime.now(),
+                HttpStatus.BAD_REQUEST.value(), // 400
+                ex.getMessage(),
+                request.getRequestURI()
+        );
+
+        return new ResponseEntity<>(error, HttpStatus.BAD_REQUEST);
+    }
+
     /**
      * Este método "oye" CUALQUIER OTRA ALARMA INESPERADA (Exception.class).
      * Es el "atrapa-todo". Evita que la app "explote" con una página blanca.
@@ -0,0 +1,12 @@
+package org.srpm.exception;
+
+/**
+ * Se lanza cuando un parámetro de la petición no tiene sentido
+ * (p.ej. un cursor de paginación que apunta a un resumen que ya no existe, o un orden desconocido).
+ */
+public class ParametroInvalidoException extends RuntimeException {
+
+    public ParametroInvalidoException(String message) {
+        super(message);
+    }
+}
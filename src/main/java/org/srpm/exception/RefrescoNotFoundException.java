@@ -0,0 +1,12 @@
+package org.srpm.exception;
+
+/**
+ * Igual que ResumenNotFoundException, pero para los trabajos de refresco:
+ * se lanza cuando piden el estado de un refresco que no existe (o que ya hemos olvidado).
+ */
+public class RefrescoNotFoundException extends RuntimeException {
+
+    public RefrescoNotFoundException(String message) {
+        super(message);
+    }
+}
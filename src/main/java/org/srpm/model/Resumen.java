@@ -1,9 +1,14 @@
 package org.srpm.model;
 
+import java.time.LocalDateTime;
+import java.util.List;
+
 public class Resumen {
     private String titular;
     private String cuerpo;
     private Long id;
+    private List<Long> noticiaIds; // IDs de las noticias de las que sale este resumen
+    private LocalDateTime fecha; // Cuándo se generó (lo pone el DAO al guardarlo)
 
     public Resumen() {}
 
@@ -36,4 +41,20 @@ public class Resumen {
     public void setId(Long id) {
         this.id = id;
     }
+
+    public List<Long> getNoticiaIds() {
+        return noticiaIds;
+    }
+
+    public void setNoticiaIds(List<Long> noticiaIds) {
+        this.noticiaIds = noticiaIds;
+    }
+
+    public LocalDateTime getFecha() {
+        return fecha;
+    }
+
+    public void setFecha(LocalDateTime fecha) {
+        this.fecha = fecha;
+    }
 }
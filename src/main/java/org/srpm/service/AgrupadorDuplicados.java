@@ -0,0 +1,230 @@
+package org.srpm.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.srpm.model.Noticia;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SplittableRandom;
+
+/**
+ * Agrupa las noticias que cuentan la misma historia (típicamente el mismo teletipo publicado por
+ * 20minutos, COPE y elDiario con retoques) para mandar a la IA sólo una por grupo.
+ *
+ * - Cada noticia se reduce a una firma MinHash de 128 valores sobre los pares de palabras consecutivas
+ *   de su contenido limpio (pasado por {@link AnalizadorEspanol}: sin tildes, palabras vacías ni plurales).
+ *   La proporción de valores iguales entre dos firmas estima la similitud de Jaccard de sus textos.
+ * - Para no comparar con todos los grupos, la firma se parte en 64 bandas de 2 valores (LSH): sólo se
+ *   comparan las noticias que coinciden en alguna banda entera, y luego se exige 'ia.duplicados.umbral'.
+ *   Con 64x2 casi todo par por encima de ~0.3 comparte alguna banda (una noticia reescrita por otro
+ *   medio ronda 0.4-0.6 en pares de palabras); los que no se parecen en nada apenas llegan a compararse.
+ * - Los grupos son estrellas alrededor de la primera noticia (la que se manda a la IA): una noticia entra
+ *   en el grupo cuyo representante más se le parece, así que los grupos no "derivan" encadenando parecidos.
+ * - Es incremental: los grupos (y el resumen que salió de cada uno) se recuerdan entre ciclos, de modo que
+ *   la versión de COPE que llega una hora después se vincula al resumen ya hecho sin volver a la IA.
+ *   Se olvidan los más viejos al pasar de 'ia.duplicados.max-grupos'.
+ */
+@Component
+public class AgrupadorDuplicados {
+
+    static final int PERMUTACIONES = 128;
+    static final int BANDAS = 64;
+    static final int FILAS = PERMUTACIONES / BANDAS;
+
+    // Con menos pares de palabras que esto en el contenido, se usa también el titular
+    private static final int MIN_PARES = 8;
+
+    private static final long[] SEMILLAS = new SplittableRandom(0x5EED_D0B1E5L).longs(PERMUTACIONES).toArray();
+
+    /**
+     * Las noticias de una llamada a {@link #agrupar} que han caído en el mismo grupo.
+     *
+     * @param resumenId El resumen que ya salió de este grupo en un ciclo anterior (null si aún no hay).
+     */
+    public record Grupo(long id, Long resumenId, List<Noticia> noticias) { }
+
+    private static final class Estado {
+        final long id;
+        final long[] firma;
+        final long[] bandas;
+        final Set<Long> noticias = new HashSet<>();
+        Long resumenId;
+
+        Estado(long id, long[] firma, long[] bandas) {
+            this.id = id;
+            this.firma = firma;
+            this.bandas = bandas;
+        }
+    }
+
+    private final double umbral;
+    private final int maxGrupos;
+
+    // Por orden de creación: el primero es el más viejo
+    private final LinkedHashMap<Long, Estado> grupos = new LinkedHashMap<>();
+    private final Map<Long, Long> grupoDeNoticia = new HashMap<>();
+    private final Map<Long, List<Long>> gruposPorBanda = new HashMap<>();
+    private long siguienteGrupo = 1;
+
+    @Autowired
+    public AgrupadorDuplicados(@Value("${ia.duplicados.umbral:0.35}") double umbral,
+                               @Value("${ia.duplicados.max-grupos:50000}") int maxGrupos) {
+        this.umbral = umbral;
+        this.maxGrupos = Math.max(1, maxGrupos);
+    }
+
+    /**
+     * Reparte las noticias en grupos (en el orden en que aparece cada grupo). Una noticia ya vista
+     * (p.ej. cuyo lote falló) vuelve a su grupo de antes.
+     */
+    public synchronized List<Grupo> agrupar(List<Noticia> noticias) {
+        Map<Long, List<Noticia>> enEstaLlamada = new LinkedHashMap<>();
+        for (Noticia noticia : noticias) {
+            Long id = grupoDeNoticia.get(noticia.getId());
+            if (id == null) {
+                long[] firma = firma(noticia);
+                Estado grupo = masParecido(firma);
+                if (grupo == null) {
+                    grupo = nuevoGrupo(firma);
+                }
+                grupo.noticias.add(noticia.getId());
+                grupoDeNoticia.put(noticia.getId(), grupo.id);
+                id = grupo.id;
+            }
+            enEstaLlamada.computeIfAbsent(id, k -> new ArrayList<>()).add(noticia);
+        }
+
+        List<Grupo> resultado = new ArrayList<>(enEstaLlamada.size());
+        enEstaLlamada.forEach((id, miembros) -> resultado.add(new Grupo(id, grupos.get(id).resumenId, miembros)));
+        expulsarSobrantes();
+        return resultado;
+    }
+
+    /**
+     * Apunta el resumen que ha salido de un grupo, para vincularle los duplicados que lleguen después.
+     */
+    public synchronized void resumido(long grupoId, long resumenId) {
+        Estado grupo = grupos.get(grupoId);
+        if (grupo != null) {
+            grupo.resumenId = resumenId;
+        }
+    }
+
+    public synchronized int grupos() {
+        return grupos.size();
+    }
+
+    private Estado masParecido(long[] firma) {
+        Set<Long> candidatos = new HashSet<>();
+        for (int b = 0; b < BANDAS; b++) {
+            List<Long> enBanda = gruposPorBanda.get(claveBanda(firma, b));
+            if (enBanda != null) {
+                candidatos.addAll(enBanda);
+            }
+        }
+
+        Estado mejor = null;
+        double mejorSimilitud = umbral;
+        for (Long id : candidatos) {
+            Estado grupo = grupos.get(id);
+            double s = similitud(firma, grupo.firma);
+            if (s >= mejorSimilitud) {
+                mejor = grupo;
+                mejorSimilitud = s;
+            }
+        }
+        return mejor;
+    }
+
+    private Estado nuevoGrupo(long[] firma) {
+        long[] bandas = new long[BANDAS];
+        Estado grupo = new Estado(siguienteGrupo++, firma, bandas);
+        for (int b = 0; b < BANDAS; b++) {
+            bandas[b] = claveBanda(firma, b);
+            gruposPorBanda.computeIfAbsent(bandas[b], k -> new ArrayList<>(1)).add(grupo.id);
+        }
+        grupos.put(grupo.id, grupo);
+        return grupo;
+    }
+
+    private void expulsarSobrantes() {
+        Iterator<Estado> viejos = grupos.values().iterator();
+        while (grupos.size() > maxGrupos && viejos.hasNext()) {
+            Estado grupo = viejos.next();
+            viejos.remove();
+            grupo.noticias.forEach(grupoDeNoticia::remove);
+            for (long banda : grupo.bandas) {
+                List<Long> enBanda = gruposPorBanda.get(banda);
+                enBanda.remove(grupo.id);
+                if (enBanda.isEmpty()) {
+                    gruposPorBanda.remove(banda);
+                }
+            }
+        }
+    }
+
+    // --- MinHash ---
+
+    static long[] firma(Noticia noticia) {
+        List<String> terminos = AnalizadorEspanol.terminos(noticia.getContenido());
+        if (terminos.size() <= MIN_PARES) {
+            terminos = AnalizadorEspanol.terminos(noticia.getTitular() + " " + noticia.getContenido());
+        }
+
+        long[] firma = new long[PERMUTACIONES];
+        Arrays.fill(firma, Long.MAX_VALUE);
+        if (terminos.isEmpty()) {
+            return firma;
+        }
+        // Con una sola palabra no hay pares: la palabra misma hace de "par"
+        int pares = Math.max(1, terminos.size() - 1);
+        for (int i = 0; i < pares; i++) {
+            String par = terminos.size() == 1 ? terminos.get(0) : terminos.get(i) + ' ' + terminos.get(i + 1);
+            long h = mezclar(par.hashCode());
+            for (int p = 0; p < PERMUTACIONES; p++) {
+                long v = mezclar(h ^ SEMILLAS[p]);
+                if (v < firma[p]) {
+                    firma[p] = v;
+                }
+            }
+        }
+        return firma;
+    }
+
+    /**
+     * Estimación de la similitud de Jaccard: proporción de posiciones iguales.
+     */
+    static double similitud(long[] a, long[] b) {
+        int iguales = 0;
+        for (int i = 0; i < a.length; i++) {
+            if (a[i] == b[i]) {
+                iguales++;
+            }
+        }
+        return (double) iguales / a.length;
+    }
+
+    private static long claveBanda(long[] firma, int banda) {
+        long h = banda;
+        for (int f = banda * FILAS; f < (banda + 1) * FILAS; f++) {
+            h = mezclar(h * 31 + firma[f]);
+        }
+        return h;
+    }
+
+    // Finalizador de SplitMix64: reparte bien los bits de cualquier entrada
+    private static long mezclar(long x) {
+        x = (x ^ (x >>> 30)) * 0xBF58476D1CE4E5B9L;
+        x = (x ^ (x >>> 27)) * 0x94D049BB133111EBL;
+        return x ^ (x >>> 31);
+    }
+}
@@ -0,0 +1,111 @@
+package org.srpm.service;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Convierte texto en español en los términos del índice de búsqueda:
+ * <ol>
+ *   <li>minúsculas y sin tildes ni diéresis ("Álvaro", "pingüino" → "alvaro", "pinguino"; la ñ queda como n),</li>
+ *   <li>se corta por todo lo que no sea letra o dígito,</li>
+ *   <li>fuera palabras vacías ("de", "la", "que"...),</li>
+ *   <li>stemming ligero: sólo plurales y género ("ministras", "ministros", "ministro" → "ministr").</li>
+ * </ol>
+ * Es deliberadamente conservador: es mejor no unir dos palabras que unir dos que no tienen nada que ver.
+ * Las consultas pasan por aquí igual que los documentos, así que los dos lados casan.
+ */
+final class AnalizadorEspanol {
+
+    // Ya sin tildes, que es como llegan tras normalizar
+    private static final Set<String> PALABRAS_VACIAS = Set.of(
+            "a", "al", "algo", "algunas", "algunos", "ante", "antes", "asi", "aun", "cada", "como", "con",
+            "contra", "cual", "cuando", "de", "del", "desde", "donde", "durante", "e", "el", "ella", "ellas",
+            "ellos", "en", "entre", "era", "es", "esa", "esas", "ese", "eso", "esos", "esta", "estan", "estas",
+            "este", "esto", "estos", "fue", "fueron", "ha", "han", "hasta", "hay", "la", "las", "le", "les",
+            "lo", "los", "mas", "me", "mi", "mis", "mucho", "muy", "nada", "ni", "no", "nos", "o", "os", "otra",
+            "otras", "otro", "otros", "para", "pero", "poco", "por", "porque", "que", "quien", "se", "sea",
+            "segun", "ser", "si", "sin", "sino", "sobre", "son", "su", "sus", "tambien", "te", "tiene", "todo",
+            "todos", "tras", "tu", "u", "un", "una", "unas", "uno", "unos", "y", "ya", "yo");
+
+    private AnalizadorEspanol() {
+    }
+
+    static List<String> terminos(String texto) {
+        List<String> terminos = new ArrayList<>();
+        if (texto == null || texto.isEmpty()) {
+            return terminos;
+        }
+
+        String plano = plegar(texto);
+        int inicio = -1;
+        for (int i = 0; i <= plano.length(); i++) {
+            boolean letra = i < plano.length() && Character.isLetterOrDigit(plano.charAt(i));
+            if (letra && inicio < 0) {
+                inicio = i;
+            } else if (!letra && inicio >= 0) {
+                String palabra = plano.substring(inicio, i);
+                if (!PALABRAS_VACIAS.contains(palabra)) {
+                    terminos.add(raiz(palabra));
+                }
+                inicio = -1;
+            }
+        }
+        return terminos;
+    }
+
+    /**
+     * Minúsculas y sin marcas diacríticas.
+     */
+    static String plegar(String texto) {
+        String minusculas = texto.toLowerCase(Locale.ROOT);
+        // Atajo: sólo ASCII → no hay nada que descomponer
+        boolean ascii = true;
+        for (int i = 0; i < minusculas.length() && ascii; i++) {
+            ascii = minusculas.charAt(i) < 0x80;
+        }
+        if (ascii) {
+            return minusculas;
+        }
+
+        String descompuesto = Normalizer.normalize(minusculas, Normalizer.Form.NFD);
+        StringBuilder sb = new StringBuilder(descompuesto.length());
+        for (int i = 0; i < descompuesto.length(); i++) {
+            char c = descompuesto.charAt(i);
+            if (Character.getType(c) != Character.NON_SPACING_MARK) {
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Stemming ligero para español (reglas de plural y género, como el "light stemmer" de J. Savoy).
+     * Las palabras cortas y los números se dejan tal cual.
+     */
+    static String raiz(String palabra) {
+        int n = palabra.length();
+        if (n < 5 || Character.isDigit(palabra.charAt(0))) {
+            return palabra;
+        }
+        char ultima = palabra.charAt(n - 1);
+        if (ultima == 'o' || ultima == 'a' || ultima == 'e') {
+            return palabra.substring(0, n - 1);                       // ministro, ministra → ministr
+        }
+        if (ultima == 's') {
+            char penultima = palabra.charAt(n - 2);
+            if (palabra.endsWith("eses")) {
+                return palabra.substring(0, n - 2);                   // franceses → frances
+            }
+            if (palabra.endsWith("ces")) {
+                return palabra.substring(0, n - 3) + "z";             // veces → vez
+            }
+            if (penultima == 'o' || penultima == 'a' || penultima == 'e') {
+                return palabra.substring(0, n - 2);                   // ministros, ministras → ministr
+            }
+        }
+        return palabra;
+    }
+}
@@ -0,0 +1,209 @@
+package org.srpm.service;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.srpm.model.Noticia;
+import org.srpm.model.Resumen;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Clock;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Caché de resúmenes de la IA, indexada por el contenido de la noticia (no por su id ni su link).
+ *
+ * La clave es el SHA-256 del titular y el contenido normalizados (minúsculas, espacios colapsados),
+ * así que la misma noticia vuelta a ingerir tras un refresco total, o publicada igual por varias
+ * fuentes, se resume sin volver a llamar a la IA.
+ *
+ * - Expulsión LRU al pasar de 'ia.cache.max-entradas' y caducidad a los 'ia.cache.ttl-ms'.
+ * - Si 'ia.cache.fichero' tiene valor, se carga al arrancar y se guarda al parar.
+ * - Sólo se guardan resúmenes de UNA noticia: si la IA mezcla varias, no hay a qué clave asociarlo.
+ */
+@Component
+public class CacheResumenes {
+
+    private static final Logger log = LoggerFactory.getLogger(CacheResumenes.class);
+
+    /**
+     * Lo que se guarda de cada resumen (con su fecha de alta, para la caducidad).
+     */
+    record Entrada(String titular, String cuerpo, long creadoMs) { }
+
+    /**
+     * Contadores acumulados desde el arranque.
+     *
+     * @param bytesAhorrados Bytes de texto de noticias que NO se han mandado a la IA gracias a la caché.
+     */
+    public record Estadisticas(int entradas, long aciertos, long fallos, double tasaAciertos,
+                               long bytesAhorrados, long expulsadas) { }
+
+    private static final TypeReference<LinkedHashMap<String, Entrada>> TIPO_FICHERO = new TypeReference<>() { };
+
+    private final int maxEntradas;
+    private final long ttlMs;
+    private final Path fichero;
+    private final ObjectMapper objectMapper;
+    private final Clock reloj;
+
+    // accessOrder = true: el primero es siempre el menos usado recientemente
+    private final LinkedHashMap<String, Entrada> entradas;
+
+    private long aciertos;
+    private long fallos;
+    private long bytesAhorrados;
+    private long expulsadas;
+
+    @Autowired
+    public CacheResumenes(ObjectMapper objectMapper,
+                          @Value("${ia.cache.max-entradas:10000}") int maxEntradas,
+                          @Value("${ia.cache.ttl-ms:604800000}") long ttlMs,
+                          @Value("${ia.cache.fichero:}") String fichero) {
+        this(objectMapper, maxEntradas, ttlMs, fichero, Clock.systemUTC());
+    }
+
+    CacheResumenes(ObjectMapper objectMapper, int maxEntradas, long ttlMs, String fichero, Clock reloj) {
+        this.objectMapper = objectMapper;
+        this.maxEntradas = maxEntradas;
+        this.ttlMs = ttlMs;
+        this.fichero = fichero == null || fichero.isBlank() ? null : Path.of(fichero);
+        this.reloj = reloj;
+        this.entradas = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entrada> eldest) {
+                if (size() > CacheResumenes.this.maxEntradas) {
+                    expulsadas++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Busca el resumen de una noticia. Si está, devuelve un Resumen NUEVO (sin id) ya vinculado a ella.
+     */
+    public synchronized Optional<Resumen> buscar(Noticia noticia) {
+        String clave = clave(noticia);
+        Entrada entrada = entradas.get(clave);
+        if (entrada != null && caducada(entrada)) {
+            entradas.remove(clave);
+            entrada = null;
+        }
+        if (entrada == null) {
+            fallos++;
+            return Optional.empty();
+        }
+
+        aciertos++;
+        bytesAhorrados += DespachadorResumenes.bytesDe(noticia);
+        Resumen resumen = new Resumen(entrada.titular(), entrada.cuerpo(), null);
+        resumen.setNoticiaIds(List.of(noticia.getId()));
+        return Optional.of(resumen);
+    }
+
+    /**
+     * Apunta el resumen de un lote recién devuelto por la IA. Sólo cuentan los resúmenes
+     * vinculados a una única noticia del lote.
+     */
+    public synchronized void guardar(List<Noticia> lote, List<Resumen> resumenes) {
+        Map<Long, Noticia> porId = new LinkedHashMap<>();
+        for (Noticia noticia : lote) {
+            porId.put(noticia.getId(), noticia);
+        }
+        long ahora = reloj.millis();
+        for (Resumen resumen : resumenes) {
+            List<Long> ids = resumen.getNoticiaIds();
+            Noticia noticia = ids != null && ids.size() == 1 ? porId.get(ids.get(0)) : null;
+            if (noticia != null) {
+                entradas.put(clave(noticia), new Entrada(resumen.getTitular(), resumen.getCuerpo(), ahora));
+            }
+        }
+    }
+
+    public synchronized Estadisticas estadisticas() {
+        long consultas = aciertos + fallos;
+        double tasa = consultas == 0 ? 0 : (double) aciertos / consultas;
+        return new Estadisticas(entradas.size(), aciertos, fallos, tasa, bytesAhorrados, expulsadas);
+    }
+
+    @PostConstruct
+    public synchronized void cargar() {
+        if (fichero == null || !Files.exists(fichero)) {
+            return;
+        }
+        try {
+            LinkedHashMap<String, Entrada> leidas = objectMapper.readValue(fichero.toFile(), TIPO_FICHERO);
+            leidas.forEach((clave, entrada) -> {
+                if (!caducada(entrada)) {
+                    entradas.put(clave, entrada);
+                }
+            });
+            log.info("Caché de resúmenes: {} entradas cargadas de {}", entradas.size(), fichero);
+        } catch (IOException e) {
+            // Una caché ilegible no debe impedir arrancar: se empieza de cero
+            log.warn("No se ha podido leer la caché de resúmenes {}: {}", fichero, e.toString());
+        }
+    }
+
+    /**
+     * Escribe la caché a un temporal y lo renombra, para no dejar nunca un fichero a medias.
+     */
+    @PreDestroy
+    public synchronized void persistir() {
+        if (fichero == null) {
+            return;
+        }
+        try {
+            Path dir = fichero.toAbsolutePath().getParent();
+            Files.createDirectories(dir);
+            Path temporal = Files.createTempFile(dir, fichero.getFileName().toString(), ".tmp");
+            objectMapper.writeValue(temporal.toFile(), entradas);
+            Files.move(temporal, fichero, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.warn("No se ha podido guardar la caché de resúmenes en {}: {}", fichero, e.toString());
+        }
+    }
+
+    private boolean caducada(Entrada entrada) {
+        return reloj.millis() - entrada.creadoMs() > ttlMs;
+    }
+
+    /**
+     * SHA-256 (en hex) del titular y el contenido normalizados.
+     */
+    static String clave(Noticia noticia) {
+        String texto = normalizar(noticia.getTitular()) + '\n' + normalizar(noticia.getContenido());
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(texto.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 no disponible", e);
+        }
+    }
+
+    private static String normalizar(String texto) {
+        if (texto == null) {
+            return "";
+        }
+        return texto.strip().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+    }
+}
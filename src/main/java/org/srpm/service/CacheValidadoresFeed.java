@@ -0,0 +1,55 @@
+package org.srpm.service;
+
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Caché de "validadores" HTTP por feed (ETag, Last-Modified y hash del cuerpo).
+ *
+ * Sirve para hacer peticiones condicionales (If-None-Match / If-Modified-Since):
+ * si el editor no ha cambiado el RSS, nos ahorramos la descarga (304) o, como mínimo,
+ * el parseo con ROME (mismo hash del cuerpo).
+ *
+ * Los validadores sólo se guardan con {@link #confirmar} cuando el feed se ha procesado
+ * entero. Si el parseo falla a mitad, la siguiente vez se vuelve a descargar.
+ *
+ * Cuántas veces se ahorra la descarga cada feed se ve en la métrica srpm.feed.resultados
+ * (estado=no_modificado, por fuente).
+ */
+@Component
+public class CacheValidadoresFeed {
+
+    /**
+     * Lo que recordamos de la última descarga correcta de un feed.
+     */
+    public record Validadores(String etag, String lastModified, byte[] hashCuerpo) {
+
+        public boolean mismoCuerpo(byte[] otroHash) {
+            return hashCuerpo != null && Arrays.equals(hashCuerpo, otroHash);
+        }
+    }
+
+    private final ConcurrentHashMap<String, Validadores> validadoresPorUrl = new ConcurrentHashMap<>();
+
+    public Optional<Validadores> get(String url) {
+        return Optional.ofNullable(validadoresPorUrl.get(url));
+    }
+
+    /**
+     * Guarda los validadores de una descarga que ya se ha procesado con éxito.
+     */
+    public void confirmar(String url, Validadores validadores) {
+        validadoresPorUrl.put(url, validadores);
+    }
+
+    /**
+     * Olvida todos los validadores: la próxima lectura de cada feed será completa.
+     * (Lo usa el refresco total, que parte de una BBDD vacía).
+     */
+    public void invalidar() {
+        validadoresPorUrl.clear();
+    }
+}
@@ -0,0 +1,45 @@
+package org.srpm.service;
+
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+
+/**
+ * Separa a quienes escriben en el almacén vivo (ciclos, planificador, API) de la publicación de una
+ * generación nueva, que cambia las noticias y los resúmenes en dos pasos: publicar espera a que terminen
+ * las escrituras en curso y las que lleguen esperan a que termine la publicación. Así ninguna escritura
+ * cruza noticias de una generación con resúmenes de otra.
+ *
+ * Las escrituras no se esperan entre sí; las lecturas no pasan por aquí.
+ */
+@Component
+public class CerrojoPublicacion {
+
+    private final ReentrantReadWriteLock cerrojo = new ReentrantReadWriteLock();
+
+    public <T> T escribiendo(Supplier<T> escritura) {
+        cerrojo.readLock().lock();
+        try {
+            return escritura.get();
+        } finally {
+            cerrojo.readLock().unlock();
+        }
+    }
+
+    public void escribiendo(Runnable escritura) {
+        escribiendo(() -> {
+            escritura.run();
+            return null;
+        });
+    }
+
+    public void publicando(Runnable publicacion) {
+        cerrojo.writeLock().lock();
+        try {
+            publicacion.run();
+        } finally {
+            cerrojo.writeLock().unlock();
+        }
+    }
+}
@@ -0,0 +1,202 @@
+package org.srpm.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.io.JsonEOFException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.MediaType;
+import org.springframework.http.StreamingHttpOutputMessage;
+import org.springframework.http.client.ClientHttpRequest;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.RestClientResponseException;
+import org.springframework.web.client.RestTemplate;
+import org.srpm.model.Noticia;
+import org.srpm.model.Resumen;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Cliente HTTP del servicio de IA ('ia.service.url'): UNA petición con un lote de noticias.
+ * Los reintentos, el plazo total y el corte cuando la IA está caída van en {@link ClienteIAResiliente}.
+ *
+ * Ni la petición ni la respuesta se montan enteras en memoria: las noticias se escriben una a una con
+ * el generador de Jackson directamente en la conexión (comprimidas con gzip si 'ia.peticion.gzip'), y
+ * la respuesta se lee con el parser de Jackson, resumen a resumen, sin montar su árbol entero.
+ */
+@Component
+public class ClienteIA {
+
+    private static final Logger log = LoggerFactory.getLogger(ClienteIA.class);
+
+    /**
+     * La petición no ha dado resúmenes. 'reintentable' dice si tiene sentido repetirla tal cual
+     * (caída, plazo, 5xx, 429) o no (el servicio ha rechazado el lote: otro 4xx, respuesta ilegible).
+     */
+    public static final class FalloIA extends RuntimeException {
+
+        private final boolean reintentable;
+
+        public FalloIA(String mensaje, boolean reintentable, Throwable causa) {
+            super(mensaje, causa);
+            this.reintentable = reintentable;
+        }
+
+        public boolean isReintentable() {
+            return reintentable;
+        }
+    }
+
+    private final RestTemplate restTemplate;
+    private final String urlServicioIA;
+    private final MetricasPipeline metricas;
+    private final ObjectMapper objectMapper;
+    private final ObjectWriter escritorNoticia;
+    private final ObjectReader lectorResumen;
+    private final boolean gzip;
+
+    @Autowired
+    public ClienteIA(RestTemplateBuilder restTemplateBuilder,
+                     ObjectMapper objectMapper,
+                     @Value("${ia.service.url}") String urlServicioIA,
+                     @Value("${ia.timeout.conexion-ms:5000}") long timeoutConexionMs,
+                     @Value("${ia.timeout.lectura-ms:30000}") long timeoutLecturaMs,
+                     @Value("${ia.peticion.gzip:false}") boolean gzip,
+                     MetricasPipeline metricas) {
+        this.urlServicioIA = urlServicioIA;
+        this.metricas = metricas;
+        this.objectMapper = objectMapper;
+        // Siempre como Noticia: las del almacén compacto son de una subclase propia
+        this.escritorNoticia = objectMapper.writerFor(Noticia.class);
+        this.lectorResumen = objectMapper.readerFor(Resumen.class);
+        this.gzip = gzip;
+        this.restTemplate = restTemplateBuilder
+                .setConnectTimeout(Duration.ofMillis(timeoutConexionMs))
+                .setReadTimeout(Duration.ofMillis(timeoutLecturaMs))
+                .build();
+    }
+
+    /**
+     * @return Los resúmenes del lote.
+     * @throws FalloIA si la IA no respondió bien.
+     */
+    public List<Resumen> resumir(List<Noticia> noticias) {
+        List<Resumen> resumenes = new ArrayList<>(noticias.size());
+        enviar(noticias, resumenes::add);
+        return resumenes;
+    }
+
+    // La petición en sí: cada resumen se entrega a 'alDescodificar' según se lee de la respuesta
+    private int enviar(List<Noticia> noticias, Consumer<Resumen> alDescodificar) {
+        long bytes = noticias.stream().mapToLong(DespachadorResumenes::bytesDe).sum();
+        log.debug("Enviando {} noticias ({} bytes) a la IA", noticias.size(), bytes);
+        long inicio = System.nanoTime();
+        try {
+            Integer resumenes = restTemplate.execute(urlServicioIA, HttpMethod.POST,
+                    peticion -> escribir(peticion, noticias),
+                    respuesta -> leer(respuesta, alDescodificar));
+            metricas.peticionIA(System.nanoTime() - inicio, bytes, null);
+            return resumenes == null ? 0 : resumenes;
+
+        } catch (RestClientResponseException e) {
+            metricas.peticionIA(System.nanoTime() - inicio, bytes, "estado");
+            throw new FalloIA("La IA respondió con estado " + e.getStatusCode(), reintentable(e.getStatusCode()), e);
+        } catch (ResourceAccessException e) {
+            metricas.peticionIA(System.nanoTime() - inicio, bytes, "conexion");
+            throw new FalloIA("Error conectando con el servicio de IA: " + e.getMessage(), true, e);
+        } catch (RestClientException e) {
+            metricas.peticionIA(System.nanoTime() - inicio, bytes, "respuesta");
+            throw new FalloIA("Respuesta de la IA no válida: " + e.getMessage(), false, e);
+        }
+    }
+
+    // --- Petición: las noticias según se serializan, sin pasar por un byte[] ---
+
+    private void escribir(ClientHttpRequest peticion, List<Noticia> noticias) throws IOException {
+        HttpHeaders cabeceras = peticion.getHeaders();
+        cabeceras.setContentType(MediaType.APPLICATION_JSON);
+        cabeceras.setAccept(List.of(MediaType.APPLICATION_JSON));
+        if (gzip) {
+            cabeceras.set(HttpHeaders.CONTENT_ENCODING, "gzip");
+            cabeceras.set(HttpHeaders.ACCEPT_ENCODING, "gzip");
+        }
+        if (peticion instanceof StreamingHttpOutputMessage streaming) {
+            streaming.setBody(out -> escribirNoticias(out, noticias));
+        } else {
+            escribirNoticias(peticion.getBody(), noticias);
+        }
+    }
+
+    private void escribirNoticias(OutputStream destino, List<Noticia> noticias) throws IOException {
+        GZIPOutputStream comprimido = gzip ? new GZIPOutputStream(destino, 8192) : null;
+        try (JsonGenerator json = objectMapper.getFactory().createGenerator(comprimido != null ? comprimido : destino)) {
+            json.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET); // la conexión la cierra RestTemplate
+            json.writeStartArray();
+            for (Noticia noticia : noticias) {
+                escritorNoticia.writeValue(json, noticia);
+            }
+            json.writeEndArray();
+        }
+        if (comprimido != null) {
+            comprimido.finish();
+        }
+        destino.flush();
+    }
+
+    // --- Respuesta: cada resumen en cuanto se ha leído entero ---
+
+    private int leer(ClientHttpResponse respuesta, Consumer<Resumen> alDescodificar) throws IOException {
+        InputStream in = respuesta.getBody();
+        if ("gzip".equalsIgnoreCase(respuesta.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING))) {
+            in = new GZIPInputStream(in);
+        }
+        try (JsonParser json = objectMapper.getFactory().createParser(in)) {
+            JsonToken inicio = json.nextToken();
+            if (inicio == null) {
+                throw new IOException("La IA respondió sin cuerpo"); // conexión cortada: se puede reintentar
+            }
+            if (inicio != JsonToken.START_ARRAY) {
+                throw new RestClientException("La IA no devolvió una lista de resúmenes");
+            }
+            int resumenes = 0;
+            while (json.nextToken() == JsonToken.START_OBJECT) {
+                alDescodificar.accept(lectorResumen.readValue(json));
+                resumenes++;
+            }
+            if (json.currentToken() != JsonToken.END_ARRAY) {
+                throw new RestClientException("Elemento inesperado en la lista de resúmenes: " + json.currentToken());
+            }
+            return resumenes;
+        } catch (JsonEOFException e) {
+            throw e; // cortada a medias: como un fallo de conexión
+        } catch (JsonProcessingException e) {
+            throw new RestClientException("JSON no válido: " + e.getOriginalMessage(), e);
+        }
+    }
+
+    private static boolean reintentable(HttpStatusCode estado) {
+        return estado.is5xxServerError() || estado.value() == 429 || estado.value() == 408;
+    }
+}
@@ -0,0 +1,288 @@
+package org.srpm.service;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.srpm.model.Noticia;
+import org.srpm.model.Resumen;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Llamada a la IA que no se queda colgada cuando el servicio va mal:
+ *
+ * - Circuito: tras 'ia.circuito.fallos' fallos seguidos se abre y durante 'ia.circuito.espera-ms' no se
+ *   llama (los lotes fallan al momento y se quedan pendientes). Pasado ese tiempo deja pasar UNA petición
+ *   de prueba: si va bien se cierra y si no, vuelve a abrirse.
+ * - Reintentos: hasta 'ia.reintentos.max' intentos por lote si el fallo es reintentable (caída, 5xx, 429),
+ *   esperando entre ellos un tiempo al azar entre 0 y base·2^n (como mucho 'ia.reintentos.espera-max-ms'),
+ *   para que varios lotes no vuelvan a la vez. Nada pasa del plazo total del lote ('ia.plazo-ms'): ni una
+ *   espera que no quepa ni una petición en curso, que se corta al vencer.
+ * - Cobertura (opcional, 'ia.cobertura.activa'): si una petición tarda más que el p95 de las últimas que
+ *   salieron bien, se lanza una copia y se usa la primera respuesta. Cuesta alguna petición de más a
+ *   cambio de que un servidor atascado no frene el lote entero.
+ */
+@Component
+public class ClienteIAResiliente {
+
+    private static final Logger log = LoggerFactory.getLogger(ClienteIAResiliente.class);
+
+    // Latencias recordadas para el p95, y cuántas hacen falta para fiarse de él
+    private static final int MUESTRAS = 200;
+    private static final int MIN_MUESTRAS = 20;
+
+    public enum EstadoCircuito { CERRADO, SEMIABIERTO, ABIERTO }
+
+    /**
+     * @param p95Ms -1 mientras no haya muestras suficientes.
+     */
+    public record Estado(EstadoCircuito circuito, int fallosSeguidos, long p95Ms) { }
+
+    private final ClienteIA clienteIA;
+    private final MetricasPipeline metricas;
+    private final int maxIntentos;
+    private final long esperaBaseMs;
+    private final long esperaMaxMs;
+    private final long plazoMs;
+    private final int fallosParaAbrir;
+    private final long esperaAbiertoMs;
+    private final boolean cobertura;
+
+    private final ExecutorService peticiones = Executors.newVirtualThreadPerTaskExecutor();
+
+    // Circuito (protegido por 'this')
+    private EstadoCircuito circuito = EstadoCircuito.CERRADO;
+    private int fallosSeguidos;
+    private long abiertoHasta;
+
+    // Últimas latencias buenas en nanos, en anillo (protegido por 'latencias')
+    private final long[] latencias = new long[MUESTRAS];
+    private int muestras;
+
+    @Autowired
+    public ClienteIAResiliente(ClienteIA clienteIA,
+                               MetricasPipeline metricas,
+                               @Value("${ia.reintentos.max:3}") int maxIntentos,
+                               @Value("${ia.reintentos.espera-base-ms:200}") long esperaBaseMs,
+                               @Value("${ia.reintentos.espera-max-ms:5000}") long esperaMaxMs,
+                               @Value("${ia.plazo-ms:60000}") long plazoMs,
+                               @Value("${ia.circuito.fallos:5}") int fallosParaAbrir,
+                               @Value("${ia.circuito.espera-ms:30000}") long esperaAbiertoMs,
+                               @Value("${ia.cobertura.activa:false}") boolean cobertura) {
+        this.clienteIA = clienteIA;
+        this.metricas = metricas;
+        this.maxIntentos = Math.max(1, maxIntentos);
+        this.esperaBaseMs = Math.max(0, esperaBaseMs);
+        this.esperaMaxMs = Math.max(this.esperaBaseMs, esperaMaxMs);
+        this.plazoMs = plazoMs;
+        this.fallosParaAbrir = Math.max(1, fallosParaAbrir);
+        this.esperaAbiertoMs = esperaAbiertoMs;
+        this.cobertura = cobertura;
+        metricas.indicador("srpm.ia.circuito", "Estado del circuito de la IA (0 cerrado, 1 semiabierto, 2 abierto)",
+                this, c -> c.estado().circuito().ordinal());
+    }
+
+    @PreDestroy
+    public void parar() {
+        peticiones.shutdownNow();
+    }
+
+    /**
+     * @return Los resúmenes, o vacío si no ha habido manera dentro del plazo (el lote se reintentará).
+     */
+    public Optional<List<Resumen>> resumir(List<Noticia> lote) {
+        long fin = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(plazoMs);
+        for (int intento = 1; ; intento++) {
+            if (!permitir()) {
+                metricas.eventoIA("cortocircuito");
+                log.debug("Circuito de la IA abierto: el lote de {} noticias queda pendiente", lote.size());
+                return Optional.empty();
+            }
+
+            ClienteIA.FalloIA fallo;
+            try {
+                List<Resumen> resumenes = intentar(lote, fin);
+                exito();
+                return Optional.of(resumenes);
+            } catch (ClienteIA.FalloIA e) {
+                fallo = e;
+            } catch (InterruptedException e) {
+                // Parada o cancelación: no dice nada de la IA, así que el circuito no se toca
+                Thread.currentThread().interrupt();
+                soltarPrueba();
+                return Optional.empty();
+            }
+
+            if (!fallo.isReintentable()) {
+                exito(); // el servicio ha contestado: el lote es el problema, no la IA
+                log.warn("La IA ha rechazado un lote de {} noticias: {}", lote.size(), fallo.getMessage());
+                return Optional.empty();
+            }
+            fracaso();
+            if (intento >= maxIntentos) {
+                log.warn("Lote de {} noticias fallido tras {} intentos: {}", lote.size(), intento, fallo.getMessage());
+                return Optional.empty();
+            }
+
+            long espera = ThreadLocalRandom.current().nextLong(
+                    Math.min(esperaMaxMs, esperaBaseMs << Math.min(intento - 1, 20)) + 1);
+            if (System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(espera) >= fin) {
+                log.warn("Lote de {} noticias fallido: no queda plazo para otro intento ({})", lote.size(), fallo.getMessage());
+                return Optional.empty();
+            }
+            log.debug("Intento {} fallido ({}); reintento en {} ms", intento, fallo.getMessage(), espera);
+            try {
+                Thread.sleep(espera);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                soltarPrueba();
+                return Optional.empty();
+            }
+            metricas.eventoIA("reintento");
+        }
+    }
+
+    public synchronized Estado estado() {
+        return new Estado(circuito, fallosSeguidos, p95Nanos() < 0 ? -1 : TimeUnit.NANOSECONDS.toMillis(p95Nanos()));
+    }
+
+    /**
+     * true si ahora mismo se llamaría a la IA (el circuito no está abierto).
+     */
+    public synchronized boolean disponible() {
+        return circuito == EstadoCircuito.CERRADO
+                || (circuito == EstadoCircuito.ABIERTO && System.nanoTime() - abiertoHasta >= 0);
+    }
+
+    // --- Un intento: la petición (y quizá su copia) con el plazo que quede ---
+
+    private List<Resumen> intentar(List<Noticia> lote, long fin) throws InterruptedException {
+        CompletableFuture<List<Resumen>> primera = new CompletableFuture<>();
+        AtomicInteger pendientes = new AtomicInteger(1);
+        List<Future<?>> enVuelo = new ArrayList<>(2);
+        enVuelo.add(lanzar(lote, primera, pendientes));
+        try {
+            long p95 = cobertura ? p95Nanos() : -1;
+            if (p95 > 0) {
+                try {
+                    return primera.get(Math.min(p95, restante(fin)), TimeUnit.NANOSECONDS);
+                } catch (TimeoutException e) {
+                    if (restante(fin) <= 0) {
+                        throw e;
+                    }
+                    // Más lenta que el 95% de las últimas: va una copia y gana la primera que conteste
+                    metricas.eventoIA("cobertura");
+                    log.debug("Petición a la IA más lenta que el p95 ({} ms): se lanza una copia",
+                            TimeUnit.NANOSECONDS.toMillis(p95));
+                    pendientes.incrementAndGet();
+                    enVuelo.add(lanzar(lote, primera, pendientes));
+                }
+            }
+            return primera.get(restante(fin), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            throw new ClienteIA.FalloIA("Plazo del lote agotado (" + plazoMs + " ms)", true, e);
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof ClienteIA.FalloIA fallo
+                    ? fallo
+                    : new ClienteIA.FalloIA("Error llamando a la IA: " + e.getCause(), true, e.getCause());
+        } finally {
+            enVuelo.forEach(f -> f.cancel(true)); // la que pierde (o la que se pasa de plazo) se corta
+        }
+    }
+
+    // Una petición en su hilo virtual: la primera que salga bien completa 'primera'; si fallan todas, el último fallo
+    private Future<?> lanzar(List<Noticia> lote, CompletableFuture<List<Resumen>> primera, AtomicInteger pendientes) {
+        return peticiones.submit(() -> {
+            long inicio = System.nanoTime();
+            try {
+                List<Resumen> resumenes = clienteIA.resumir(lote);
+                apuntarLatencia(System.nanoTime() - inicio);
+                primera.complete(resumenes);
+            } catch (RuntimeException e) {
+                if (pendientes.decrementAndGet() == 0) {
+                    primera.completeExceptionally(e);
+                }
+            }
+        });
+    }
+
+    private static long restante(long fin) {
+        return Math.max(0, fin - System.nanoTime());
+    }
+
+    // --- Circuito ---
+
+    private synchronized boolean permitir() {
+        if (circuito == EstadoCircuito.CERRADO) {
+            return true;
+        }
+        if (circuito == EstadoCircuito.ABIERTO && System.nanoTime() - abiertoHasta >= 0) {
+            circuito = EstadoCircuito.SEMIABIERTO; // pasa ésta, de prueba; las demás esperan su resultado
+            log.info("Circuito de la IA semiabierto: se prueba con un lote");
+            return true;
+        }
+        return false;
+    }
+
+    private synchronized void exito() {
+        if (circuito != EstadoCircuito.CERRADO) {
+            log.info("Circuito de la IA cerrado: el servicio vuelve a responder");
+        }
+        circuito = EstadoCircuito.CERRADO;
+        fallosSeguidos = 0;
+    }
+
+    // Si la que se ha interrumpido era la petición de prueba, otra podrá probar en su lugar
+    private synchronized void soltarPrueba() {
+        if (circuito == EstadoCircuito.SEMIABIERTO) {
+            circuito = EstadoCircuito.ABIERTO;
+            abiertoHasta = System.nanoTime();
+        }
+    }
+
+    private synchronized void fracaso() {
+        fallosSeguidos++;
+        if (circuito == EstadoCircuito.SEMIABIERTO || (circuito == EstadoCircuito.CERRADO && fallosSeguidos >= fallosParaAbrir)) {
+            circuito = EstadoCircuito.ABIERTO;
+            abiertoHasta = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(esperaAbiertoMs);
+            log.warn("Circuito de la IA abierto tras {} fallos seguidos: sin llamadas durante {} ms",
+                    fallosSeguidos, esperaAbiertoMs);
+        }
+    }
+
+    // --- Latencias ---
+
+    private void apuntarLatencia(long nanos) {
+        synchronized (latencias) {
+            latencias[muestras % MUESTRAS] = nanos;
+            muestras++;
+        }
+    }
+
+    private long p95Nanos() {
+        long[] copia;
+        synchronized (latencias) {
+            if (muestras < MIN_MUESTRAS) {
+                return -1;
+            }
+            copia = Arrays.copyOf(latencias, Math.min(muestras, MUESTRAS));
+        }
+        Arrays.sort(copia);
+        return copia[(int) Math.ceil(copia.length * 0.95) - 1];
+    }
+}
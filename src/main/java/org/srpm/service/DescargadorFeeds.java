@@ -0,0 +1,112 @@
+package org.srpm.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Descarga los RSS con GET condicional apoyándose en {@link CacheValidadoresFeed}.
+ *
+ * Tres posibles resultados:
+ * 1. 304 Not Modified       → acierto, no hay cuerpo.
+ * 2. 200 con el mismo hash  → acierto, hay cuerpo pero no hace falta parsearlo.
+ * 3. 200 con cuerpo nuevo   → fallo, hay que parsear (y luego confirmar los validadores).
+ */
+@Service
+public class DescargadorFeeds {
+
+    /**
+     * Resultado de una descarga.
+     *
+     * @param cuerpo      Bytes del RSS (null si no ha cambiado).
+     * @param contentType Cabecera Content-Type (para detectar el charset).
+     * @param validadores Validadores a confirmar cuando el feed se haya procesado.
+     */
+    public record Descarga(byte[] cuerpo, String contentType, CacheValidadoresFeed.Validadores validadores) {
+
+        public boolean sinCambios() {
+            return cuerpo == null;
+        }
+    }
+
+    private final CacheValidadoresFeed cache;
+    private final HttpClient httpClient;
+
+    @Autowired
+    public DescargadorFeeds(CacheValidadoresFeed cache) {
+        this.cache = cache;
+        this.httpClient = HttpClient.newBuilder()
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .connectTimeout(Duration.ofSeconds(10))
+                .build();
+    }
+
+    public Descarga descargar(String url, Duration timeout) throws IOException, InterruptedException {
+        CacheValidadoresFeed.Validadores previos = cache.get(url).orElse(null);
+
+        HttpRequest.Builder peticion = HttpRequest.newBuilder(URI.create(url))
+                .timeout(timeout)
+                .header("Accept-Encoding", "gzip")
+                .GET();
+        if (previos != null && previos.etag() != null) {
+            peticion.header("If-None-Match", previos.etag());
+        }
+        if (previos != null && previos.lastModified() != null) {
+            peticion.header("If-Modified-Since", previos.lastModified());
+        }
+
+        HttpResponse<InputStream> respuesta = httpClient.send(peticion.build(), HttpResponse.BodyHandlers.ofInputStream());
+
+        if (respuesta.statusCode() == 304 && previos != null) {
+            respuesta.body().close();
+            return new Descarga(null, null, previos);
+        }
+        if (respuesta.statusCode() / 100 != 2) {
+            respuesta.body().close();
+            throw new IOException("HTTP " + respuesta.statusCode() + " al descargar " + url);
+        }
+
+        byte[] cuerpo = leerCuerpo(respuesta);
+        byte[] hash = hash(cuerpo);
+
+        CacheValidadoresFeed.Validadores nuevos = new CacheValidadoresFeed.Validadores(
+                respuesta.headers().firstValue("ETag").orElse(null),
+                respuesta.headers().firstValue("Last-Modified").orElse(null),
+                hash);
+
+        // El servidor no soporta validadores (o los ignora), pero el contenido es el mismo
+        if (previos != null && previos.mismoCuerpo(hash)) {
+            cache.confirmar(url, nuevos);
+            return new Descarga(null, null, nuevos);
+        }
+
+        return new Descarga(cuerpo, respuesta.headers().firstValue("Content-Type").orElse(null), nuevos);
+    }
+
+    private byte[] leerCuerpo(HttpResponse<InputStream> respuesta) throws IOException {
+        boolean gzip = respuesta.headers().firstValue("Content-Encoding")
+                .map(v -> v.equalsIgnoreCase("gzip"))
+                .orElse(false);
+        try (InputStream in = gzip ? new GZIPInputStream(respuesta.body()) : respuesta.body()) {
+            return in.readAllBytes();
+        }
+    }
+
+    private static byte[] hash(byte[] cuerpo) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(cuerpo);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 no disponible", e);
+        }
+    }
+}
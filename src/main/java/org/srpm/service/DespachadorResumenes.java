@@ -0,0 +1,246 @@
+package org.srpm.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.srpm.dao.NoticiaDAO;
+import org.srpm.model.Noticia;
+import org.srpm.model.Resumen;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+
+/**
+ * Reparte las noticias a resumir en lotes y los manda a la IA en paralelo, con un máximo
+ * de peticiones a la vez ('ia.concurrencia').
+ *
+ * - Un lote se cierra al llegar a 'ia.lote.max-noticias' o a 'ia.lote.max-bytes' de texto.
+ * - Cada lote va en su hilo virtual; si ya hay 'ia.concurrencia' en vuelo, el reparto
+ *   se queda esperando (contrapresión) en vez de acumular peticiones.
+ * - En cuanto un lote vuelve se entrega a 'alResumirLote' para guardarlo: los primeros
+ *   resúmenes llegan en segundos y un lote lento o fallido no arrastra a los demás.
+ * - Un lote fallido se recuerda tal cual (sus noticias ya siguen pendientes) y en el siguiente ciclo
+ *   sale el primero. Si en un despacho no viene ninguna de sus noticias (p.ej. el de un refresco total, que
+ *   resume otra generación) se guarda para el siguiente, salvo que ya no quede ninguna pendiente en el almacén vivo. Si falla 'ia.cola.max-fallos' veces se parte en lotes de una noticia, para que
+ *   una noticia que la IA no traga no bloquee a sus compañeras para siempre.
+ * - Con el circuito de la IA abierto los lotes no se mandan: vuelven a la cola sin contar como fallo.
+ */
+@Service
+public class DespachadorResumenes {
+
+    private static final Logger log = LoggerFactory.getLogger(DespachadorResumenes.class);
+
+    // Un lote que se manda, con los fallos que lleva a cuestas
+    private record Lote(List<Noticia> noticias, int fallos) { }
+
+    private record LoteFallido(List<Long> ids, int fallos) { }
+
+    private final ClienteIAResiliente clienteIA;
+    private final MetricasPipeline metricas;
+    private final NoticiaDAO noticiaDAO;
+    private final int maxNoticiasPorLote;
+    private final long maxBytesPorLote;
+    private final int concurrencia;
+    private final int maxFallos;
+
+    // Lotes fallidos por id de su primera noticia, en el orden en que fallaron (protegido por sí mismo)
+    private final Map<Long, LoteFallido> cola = new LinkedHashMap<>();
+
+    @Autowired
+    public DespachadorResumenes(ClienteIAResiliente clienteIA,
+                                MetricasPipeline metricas,
+                                NoticiaDAO noticiaDAO,
+                                @Value("${ia.lote.max-noticias:20}") int maxNoticiasPorLote,
+                                @Value("${ia.lote.max-bytes:262144}") long maxBytesPorLote,
+                                @Value("${ia.concurrencia:4}") int concurrencia,
+                                @Value("${ia.cola.max-fallos:3}") int maxFallos) {
+        this.clienteIA = clienteIA;
+        this.metricas = metricas;
+        this.noticiaDAO = noticiaDAO;
+        this.maxNoticiasPorLote = Math.max(1, maxNoticiasPorLote);
+        this.maxBytesPorLote = Math.max(1, maxBytesPorLote);
+        this.concurrencia = Math.max(1, concurrencia);
+        this.maxFallos = Math.max(1, maxFallos);
+        metricas.indicador("srpm.ia.cola.lotes", "Lotes fallidos esperando al siguiente ciclo",
+                this, DespachadorResumenes::lotesEnCola);
+    }
+
+    /**
+     * Manda a resumir todas las noticias y espera a que terminen todos los lotes.
+     *
+     * @param alResumirLote Se llama (desde el hilo del lote) con cada lote resumido y sus resúmenes.
+     *                      Los lotes fallidos NO se entregan.
+     */
+    public ResultadoDespacho despachar(List<Noticia> noticias,
+                                       BiConsumer<List<Noticia>, List<Resumen>> alResumirLote) {
+        long inicio = System.nanoTime();
+        List<Lote> lotes = planificar(noticias);
+        AtomicInteger fallidos = new AtomicInteger();
+        AtomicInteger resumenes = new AtomicInteger();
+        Semaphore enVuelo = new Semaphore(concurrencia);
+
+        log.info("Despachando {} noticias en {} lotes (máx. {} a la vez)", noticias.size(), lotes.size(), concurrencia);
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (Lote lote : lotes) {
+                // Contrapresión: no se lanza un lote nuevo hasta que haya hueco
+                enVuelo.acquireUninterruptibly();
+                executor.submit(() -> {
+                    try {
+                        if (!clienteIA.disponible()) {
+                            metricas.eventoIA("cortocircuito");
+                            encolar(lote.noticias(), lote.fallos()); // no es culpa del lote
+                            fallidos.incrementAndGet();
+                            return;
+                        }
+                        Optional<List<Resumen>> respuesta = clienteIA.resumir(lote.noticias());
+                        if (respuesta.isPresent()) {
+                            alResumirLote.accept(lote.noticias(), respuesta.get());
+                            resumenes.addAndGet(respuesta.get().size());
+                        } else {
+                            encolar(lote.noticias(), lote.fallos() + 1);
+                            fallidos.incrementAndGet();
+                        }
+                    } catch (RuntimeException e) {
+                        log.error("Error guardando un lote de resúmenes", e);
+                        encolar(lote.noticias(), lote.fallos() + 1);
+                        fallidos.incrementAndGet();
+                    } finally {
+                        enVuelo.release();
+                    }
+                });
+            }
+        } // close() espera a que acaben todos los lotes
+
+        return new ResultadoDespacho(lotes.size(), fallidos.get(), resumenes.get(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - inicio));
+    }
+
+    public int lotesEnCola() {
+        synchronized (cola) {
+            return cola.size();
+        }
+    }
+
+    /**
+     * Primero los lotes que fallaron en ciclos anteriores, partidos en lotes de una si han fallado
+     * demasiado; luego el resto. Sólo salen de la cola los que se mandan (si vuelven a fallar, vuelven
+     * a entrar) y los que ya no tienen ninguna noticia pendiente en el almacén vivo.
+     */
+    private List<Lote> planificar(List<Noticia> noticias) {
+        Map<Long, Noticia> pendientes = new LinkedHashMap<>();
+        for (Noticia noticia : noticias) {
+            pendientes.put(noticia.getId(), noticia);
+        }
+
+        List<Lote> lotes = new ArrayList<>();
+        Set<Long> pendientesVivas = null; // sólo se consulta si algún lote no viene en este despacho
+        synchronized (cola) {
+            for (Iterator<LoteFallido> it = cola.values().iterator(); it.hasNext(); ) {
+                LoteFallido fallido = it.next();
+                List<Noticia> lote = fallido.ids().stream().map(pendientes::remove).filter(Objects::nonNull).toList();
+                if (lote.isEmpty()) {
+                    if (pendientesVivas == null) {
+                        pendientesVivas = idsPendientesVivas();
+                    }
+                    if (fallido.ids().stream().noneMatch(pendientesVivas::contains)) {
+                        it.remove();
+                    }
+                    continue;
+                }
+                it.remove();
+                if (fallido.fallos() >= maxFallos && lote.size() > 1) {
+                    log.warn("Lote de {} noticias fallido {} veces: se reintentan de una en una", lote.size(), fallido.fallos());
+                    lote.forEach(noticia -> lotes.add(new Lote(List.of(noticia), fallido.fallos())));
+                } else {
+                    lotes.add(new Lote(lote, fallido.fallos()));
+                }
+            }
+        }
+        for (List<Noticia> lote : partirEnLotes(new ArrayList<>(pendientes.values()))) {
+            lotes.add(new Lote(lote, 0));
+        }
+        return lotes;
+    }
+
+    private Set<Long> idsPendientesVivas() {
+        Set<Long> ids = new HashSet<>();
+        for (Noticia noticia : noticiaDAO.findPendientesDeResumen()) {
+            ids.add(noticia.getId());
+        }
+        return ids;
+    }
+
+    private void encolar(List<Noticia> lote, int fallos) {
+        List<Long> ids = lote.stream().map(Noticia::getId).toList();
+        synchronized (cola) {
+            cola.put(ids.get(0), new LoteFallido(ids, fallos));
+        }
+    }
+
+    /**
+     * Parte la lista respetando el máximo de noticias y de bytes por lote.
+     * Una noticia que por sí sola supera el máximo de bytes va en un lote para ella sola.
+     */
+    List<List<Noticia>> partirEnLotes(List<Noticia> noticias) {
+        List<List<Noticia>> lotes = new ArrayList<>();
+        List<Noticia> actual = new ArrayList<>();
+        long bytesActual = 0;
+
+        for (Noticia noticia : noticias) {
+            long bytes = bytesDe(noticia);
+            if (!actual.isEmpty() && (actual.size() >= maxNoticiasPorLote || bytesActual + bytes > maxBytesPorLote)) {
+                lotes.add(actual);
+                actual = new ArrayList<>();
+                bytesActual = 0;
+            }
+            actual.add(noticia);
+            bytesActual += bytes;
+        }
+        if (!actual.isEmpty()) {
+            lotes.add(actual);
+        }
+        return lotes;
+    }
+
+    // Aproximación del peso en el JSON: el texto en UTF-8 de los campos largos
+    static long bytesDe(Noticia noticia) {
+        return bytesUtf8(noticia.getTitular()) + bytesUtf8(noticia.getContenido()) + bytesUtf8(noticia.getLinkNoticia());
+    }
+
+    private static long bytesUtf8(String texto) {
+        if (texto == null) {
+            return 0;
+        }
+        long bytes = 0;
+        for (int i = 0; i < texto.length(); i++) {
+            char c = texto.charAt(i);
+            if (c < 0x80) {
+                bytes += 1;
+            } else if (c < 0x800) {
+                bytes += 2;
+            } else if (Character.isHighSurrogate(c)) {
+                bytes += 4;
+                i++;
+            } else {
+                bytes += 3;
+            }
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,19 @@
+package org.srpm.service;
+
+import java.util.Date;
+
+/**
+ * Lo único que nos interesa de cada entrada de un RSS/Atom, sin depender del parser usado.
+ *
+ * @param link            Link de la noticia (nuestro identificador). Puede ser null.
+ * @param titulo          Título tal cual viene (con HTML).
+ * @param contenido       &lt;content&gt; si existe; si no, &lt;description&gt;/&lt;summary&gt;. Puede ser null.
+ * @param fechaPublicacion Fecha de publicación. Puede ser null.
+ */
+public record EntradaFeed(
+        String link,
+        String titulo,
+        String contenido,
+        Date fechaPublicacion
+) {
+}
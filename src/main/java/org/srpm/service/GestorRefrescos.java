@@ -0,0 +1,81 @@
+package org.srpm.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.srpm.exception.RefrescoNotFoundException;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Lanza los refrescos totales en segundo plano para no bloquear el hilo de Tomcat.
+ *
+ * Single-flight: si ya hay un refresco en marcha, pedir otro devuelve ESE mismo trabajo
+ * en lugar de arrancar un ciclo duplicado.
+ * Se recuerdan los últimos trabajos para poder consultar su estado.
+ */
+@Service
+public class GestorRefrescos {
+
+    private static final Logger log = LoggerFactory.getLogger(GestorRefrescos.class);
+
+    private static final int TRABAJOS_RECORDADOS = 20;
+
+    private final ResumenService resumenService;
+
+    private TrabajoRefresco enCurso;
+
+    // Historial acotado: al pasar de TRABAJOS_RECORDADOS se olvida el más antiguo
+    private final Map<String, TrabajoRefresco> trabajos = new LinkedHashMap<>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, TrabajoRefresco> eldest) {
+            return size() > TRABAJOS_RECORDADOS;
+        }
+    };
+
+    @Autowired
+    public GestorRefrescos(ResumenService resumenService) {
+        this.resumenService = resumenService;
+    }
+
+    /**
+     * Arranca un refresco, o devuelve el que ya está en marcha.
+     */
+    public synchronized TrabajoRefresco lanzar() {
+        if (enCurso != null && !enCurso.terminado()) {
+            return enCurso;
+        }
+
+        TrabajoRefresco trabajo = new TrabajoRefresco();
+        trabajos.put(trabajo.getId(), trabajo);
+        enCurso = trabajo;
+
+        Thread.ofVirtual().name("refresco-" + trabajo.getId()).start(() -> ejecutar(trabajo));
+        return trabajo;
+    }
+
+    public synchronized boolean hayRefrescoEnCurso() {
+        return enCurso != null && !enCurso.terminado();
+    }
+
+    public synchronized TrabajoRefresco.Estado estado(String id) {
+        TrabajoRefresco trabajo = trabajos.get(id);
+        if (trabajo == null) {
+            throw new RefrescoNotFoundException("Refresco no encontrado con ID: " + id);
+        }
+        return trabajo.estado();
+    }
+
+    private void ejecutar(TrabajoRefresco trabajo) {
+        try {
+            resumenService.refrescarTodo(trabajo);
+            trabajo.fase(ObservadorCiclo.Fase.COMPLETADO);
+        } catch (Throwable e) {
+            // También los Error (sin memoria, pila desbordada): un trabajo que no termina bloquearía lanzar() para siempre
+            log.error("El refresco {} ha fallado", trabajo.getId(), e);
+            trabajo.fallo(e);
+        }
+    }
+}
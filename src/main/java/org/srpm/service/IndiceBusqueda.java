@@ -0,0 +1,540 @@
+package org.srpm.service;
+
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.srpm.dao.NoticiaDAO;
+import org.srpm.dao.ObservadorResumenes;
+import org.srpm.dao.ResumenDAO;
+import org.srpm.model.Noticia;
+import org.srpm.model.Resumen;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Índice invertido en memoria de los resúmenes, para GET /resumenes/search.
+ *
+ * - Cada resumen es un documento con su titular, su cuerpo y los titulares de sus noticias,
+ *   pasados por {@link AnalizadorEspanol}. Las fuentes de sus noticias van como términos aparte
+ *   ("#fuente", que el analizador nunca produce), así que filtrar por fuente es leer una lista más.
+ * - Se mantiene solo: observa el ResumenDAO y reindexa cada save/borrado al momento. Si el contenido
+ *   se sustituye entero (refresco total), se reconstruye aparte y se cambia de golpe.
+ * - Cada documento tiene un ordinal interno que sólo crece. Actualizar = marcar el ordinal viejo como
+ *   muerto y añadir uno nuevo; cuando hay más muertos que vivos se compacta en otro hilo, sobre una
+ *   instantánea, sin parar a quien escribe (que puede tener cogido el cerrojo del DAO) ni las búsquedas.
+ * - Las listas de cada término son (delta de ordinal, frecuencia) en varint sobre un byte[]:
+ *   unos 2-3 bytes por aparición en vez de los ~40 de un objeto por entrada.
+ * - Ranking BM25 (k1 = 1.2, b = 0.75).
+ */
+@Component
+public class IndiceBusqueda implements ObservadorResumenes {
+
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+
+    private static final String PREFIJO_FUENTE = "#";
+
+    // No se compacta por debajo de estos muertos (con pocos no compensa)
+    private static final int MIN_MUERTOS_COMPACTAR = 1024;
+
+    /**
+     * Filtros opcionales (null = sin filtro). 'desde' incluido, 'hasta' excluido.
+     */
+    public record Filtro(String fuente, LocalDateTime desde, LocalDateTime hasta) {
+        public static final Filtro NINGUNO = new Filtro(null, null, null);
+    }
+
+    /**
+     * Un resultado: id del resumen y su puntuación BM25.
+     */
+    public record Candidato(long id, double puntuacion) { }
+
+    /**
+     * Los mejores resultados y cuántos documentos casaban en total (con los filtros aplicados).
+     */
+    public record Coincidencias(List<Candidato> mejores, int total) {
+        static final Coincidencias NINGUNA = new Coincidencias(List.of(), 0);
+    }
+
+    public record Estadisticas(int documentos, int terminos, long bytesListas, int muertos) { }
+
+    /**
+     * Un resumen ya analizado, listo para entrar en el índice.
+     */
+    private record Documento(long id, long fechaSeg, Map<String, Integer> frecuencias, int longitud,
+                             Set<String> fuentes) { }
+
+    /**
+     * Un cambio llegado mientras se reconstruía el índice: se vuelve a aplicar sobre el nuevo.
+     * documento == null es un borrado.
+     */
+    private record Cambio(long id, Documento documento) { }
+
+    /**
+     * Lista de apariciones de un término, en orden de ordinal: varint(delta) varint(frecuencia)...
+     */
+    private static final class Lista {
+        byte[] datos = new byte[8];
+        int tam;
+        int ultimo = -1;
+        int df;
+
+        void anexar(int doc, int frecuencia) {
+            if (datos.length - tam < 10) {
+                datos = Arrays.copyOf(datos, Math.max(datos.length * 2, tam + 10));
+            }
+            tam = escribirVarint(datos, tam, doc - ultimo);
+            tam = escribirVarint(datos, tam, frecuencia);
+            ultimo = doc;
+            df++;
+        }
+    }
+
+    /**
+     * Recorre una {@link Lista}: en cada paso deja el ordinal y la frecuencia en 'doc' y 'frecuencia'.
+     */
+    private static final class Cursor {
+        private final byte[] datos;
+        private final int fin;
+        private int pos;
+        int doc = -1;
+        int frecuencia;
+
+        Cursor(Lista lista) {
+            this.datos = lista.datos;
+            this.fin = lista.tam;
+        }
+
+        boolean siguiente() {
+            if (pos >= fin) {
+                return false;
+            }
+            doc += leerVarint();
+            frecuencia = leerVarint();
+            return true;
+        }
+
+        private int leerVarint() {
+            int valor = 0;
+            int desplazamiento = 0;
+            byte b;
+            do {
+                b = datos[pos++];
+                valor |= (b & 0x7F) << desplazamiento;
+                desplazamiento += 7;
+            } while (b < 0);
+            return valor;
+        }
+    }
+
+    /**
+     * Todo el índice. Se sustituye entero al reconstruir o compactar.
+     */
+    private static final class Estado {
+        final HashMap<String, Lista> listas = new HashMap<>();
+        final HashMap<Long, Integer> ordinalPorId = new HashMap<>();
+        long[] ids = new long[1024];
+        long[] fechas = new long[1024];
+        int[] longitudes = new int[1024];
+        final BitSet vivos = new BitSet();
+        int ordinales;
+        int documentos;
+        long longitudTotal;
+
+        void crecer() {
+            if (ordinales == ids.length) {
+                int nuevo = ids.length * 2;
+                ids = Arrays.copyOf(ids, nuevo);
+                fechas = Arrays.copyOf(fechas, nuevo);
+                longitudes = Arrays.copyOf(longitudes, nuevo);
+            }
+        }
+
+        boolean hayQueCompactar() {
+            int muertos = ordinales - documentos;
+            return muertos > MIN_MUERTOS_COMPACTAR && muertos > documentos;
+        }
+
+        /**
+         * Copia fija de lo indexado hasta ahora, para leerla sin el cerrojo (con él cogido para hacerla).
+         * Comparte los arrays: lo que ya está escrito en ellos no se reescribe nunca (los ordinales y las
+         * listas sólo crecen por el final, y al crecer se copian), así que basta con quedarse con los tamaños.
+         */
+        Estado instantanea() {
+            Estado copia = new Estado();
+            listas.forEach((termino, lista) -> {
+                Lista vista = new Lista();
+                vista.datos = lista.datos;
+                vista.tam = lista.tam;
+                copia.listas.put(termino, vista);
+            });
+            copia.ids = ids;
+            copia.fechas = fechas;
+            copia.longitudes = longitudes;
+            copia.vivos.or(vivos);
+            copia.ordinales = ordinales;
+            copia.documentos = documentos;
+            copia.longitudTotal = longitudTotal;
+            return copia;
+        }
+    }
+
+    private final ResumenDAO resumenDAO;
+    private final NoticiaDAO noticiaDAO;
+
+    private final ReentrantReadWriteLock cerrojo = new ReentrantReadWriteLock();
+    private final ReentrantLock reconstruccion = new ReentrantLock();
+    private final AtomicBoolean compactando = new AtomicBoolean();
+
+    // Protegidos por 'cerrojo'
+    private Estado estado = new Estado();
+    private List<Cambio> pendientes; // != null mientras se reconstruye
+
+    @Autowired
+    public IndiceBusqueda(ResumenDAO resumenDAO, NoticiaDAO noticiaDAO) {
+        this.resumenDAO = resumenDAO;
+        this.noticiaDAO = noticiaDAO;
+    }
+
+    @PostConstruct
+    public void iniciar() {
+        resumenDAO.observar(this);
+        reconstruir(); // el almacén persistente puede arrancar con datos
+    }
+
+    // --- Cambios en el DAO ---
+
+    @Override
+    public void guardado(Resumen resumen, boolean nuevo) {
+        aplicar(new Cambio(resumen.getId(), documento(resumen)));
+    }
+
+    @Override
+    public void borrado(long id) {
+        aplicar(new Cambio(id, null));
+    }
+
+    @Override
+    public void reemplazados() {
+        reconstruir();
+    }
+
+    private void aplicar(Cambio cambio) {
+        boolean compactar;
+        cerrojo.writeLock().lock();
+        try {
+            aplicar(estado, cambio);
+            if (pendientes != null) {
+                pendientes.add(cambio);
+            }
+            compactar = estado.hayQueCompactar();
+        } finally {
+            cerrojo.writeLock().unlock();
+        }
+        if (compactar && compactando.compareAndSet(false, true)) {
+            Thread.ofVirtual().name("indice-compactacion").start(this::compactar);
+        }
+    }
+
+    /**
+     * Compacta una instantánea del índice sin cerrojo; los cambios que lleguen entretanto se apuntan y se
+     * aplican al compactado antes de cambiarlo, como al reconstruir.
+     */
+    void compactar() {
+        reconstruccion.lock();
+        try {
+            Estado instantanea;
+            cerrojo.writeLock().lock();
+            try {
+                if (!estado.hayQueCompactar()) { // p.ej. se acaba de reconstruir
+                    return;
+                }
+                instantanea = estado.instantanea();
+                pendientes = new ArrayList<>();
+            } finally {
+                cerrojo.writeLock().unlock();
+            }
+
+            sustituir(compactar(instantanea));
+        } finally {
+            compactando.set(false);
+            reconstruccion.unlock();
+        }
+    }
+
+    /**
+     * Vuelve a indexar todo lo que hay en el DAO, sin bloquear las búsquedas mientras tanto:
+     * los cambios que lleguen entretanto se apuntan y se aplican al índice nuevo antes de cambiarlo.
+     */
+    void reconstruir() {
+        reconstruccion.lock();
+        try {
+            cerrojo.writeLock().lock();
+            try {
+                pendientes = new ArrayList<>();
+            } finally {
+                cerrojo.writeLock().unlock();
+            }
+
+            Estado nuevo = new Estado();
+            for (Resumen resumen : resumenDAO.findAll()) {
+                aplicar(nuevo, new Cambio(resumen.getId(), documento(resumen)));
+            }
+
+            sustituir(nuevo);
+        } finally {
+            reconstruccion.unlock();
+        }
+    }
+
+    // Con 'reconstruccion' cogido: pone 'nuevo' en lugar del índice actual, con lo apuntado mientras se hacía
+    private void sustituir(Estado nuevo) {
+        cerrojo.writeLock().lock();
+        try {
+            pendientes.forEach(cambio -> aplicar(nuevo, cambio));
+            pendientes = null;
+            estado = nuevo;
+        } finally {
+            cerrojo.writeLock().unlock();
+        }
+    }
+
+    private Documento documento(Resumen resumen) {
+        StringBuilder texto = new StringBuilder();
+        texto.append(resumen.getTitular()).append('\n').append(resumen.getCuerpo());
+        Set<String> fuentes = new LinkedHashSet<>();
+        if (resumen.getNoticiaIds() != null) {
+            for (Long noticiaId : resumen.getNoticiaIds()) {
+                Noticia noticia = noticiaDAO.findById(noticiaId).orElse(null);
+                if (noticia != null) {
+                    texto.append('\n').append(noticia.getTitular());
+                    if (noticia.getFuente() != null) {
+                        fuentes.add(PREFIJO_FUENTE + AnalizadorEspanol.plegar(noticia.getFuente().strip()));
+                    }
+                }
+            }
+        }
+
+        List<String> terminos = AnalizadorEspanol.terminos(texto.toString());
+        Map<String, Integer> frecuencias = new HashMap<>();
+        for (String termino : terminos) {
+            frecuencias.merge(termino, 1, Integer::sum);
+        }
+        LocalDateTime fecha = resumen.getFecha() != null ? resumen.getFecha() : LocalDateTime.now();
+        return new Documento(resumen.getId(), fecha.toEpochSecond(ZoneOffset.UTC), frecuencias, terminos.size(), fuentes);
+    }
+
+    private static void aplicar(Estado e, Cambio cambio) {
+        Integer anterior = e.ordinalPorId.remove(cambio.id());
+        if (anterior != null) {
+            e.vivos.clear(anterior);
+            e.documentos--;
+            e.longitudTotal -= e.longitudes[anterior];
+        }
+        Documento doc = cambio.documento();
+        if (doc == null) {
+            return;
+        }
+
+        e.crecer();
+        int ordinal = e.ordinales++;
+        doc.frecuencias().forEach((termino, frecuencia) ->
+                e.listas.computeIfAbsent(termino, t -> new Lista()).anexar(ordinal, frecuencia));
+        for (String fuente : doc.fuentes()) {
+            e.listas.computeIfAbsent(fuente, t -> new Lista()).anexar(ordinal, 1);
+        }
+        e.ids[ordinal] = doc.id();
+        e.fechas[ordinal] = doc.fechaSeg();
+        e.longitudes[ordinal] = doc.longitud();
+        e.vivos.set(ordinal);
+        e.ordinalPorId.put(doc.id(), ordinal);
+        e.documentos++;
+        e.longitudTotal += doc.longitud();
+    }
+
+    /**
+     * Copia el índice sin los ordinales muertos (renumerando los vivos).
+     */
+    private static Estado compactar(Estado viejo) {
+        int[] nuevoOrdinal = new int[viejo.ordinales];
+        Estado nuevo = new Estado();
+        for (int o = 0; o < viejo.ordinales; o++) {
+            if (!viejo.vivos.get(o)) {
+                nuevoOrdinal[o] = -1;
+                continue;
+            }
+            nuevo.crecer();
+            int n = nuevo.ordinales++;
+            nuevoOrdinal[o] = n;
+            nuevo.ids[n] = viejo.ids[o];
+            nuevo.fechas[n] = viejo.fechas[o];
+            nuevo.longitudes[n] = viejo.longitudes[o];
+            nuevo.vivos.set(n);
+            nuevo.ordinalPorId.put(viejo.ids[o], n);
+        }
+        nuevo.documentos = viejo.documentos;
+        nuevo.longitudTotal = viejo.longitudTotal;
+
+        for (Map.Entry<String, Lista> entrada : viejo.listas.entrySet()) {
+            Lista lista = new Lista();
+            Cursor cursor = new Cursor(entrada.getValue());
+            while (cursor.siguiente()) {
+                if (nuevoOrdinal[cursor.doc] >= 0) {
+                    lista.anexar(nuevoOrdinal[cursor.doc], cursor.frecuencia);
+                }
+            }
+            if (lista.df > 0) {
+                lista.datos = Arrays.copyOf(lista.datos, lista.tam);
+                nuevo.listas.put(entrada.getKey(), lista);
+            }
+        }
+        return nuevo;
+    }
+
+    // --- Búsqueda ---
+
+    /**
+     * Los 'limite' resúmenes que mejor casan con la consulta (cualquiera de sus términos), de mejor a peor.
+     */
+    public Coincidencias buscar(String consulta, Filtro filtro, int limite) {
+        Set<String> terminos = new LinkedHashSet<>(AnalizadorEspanol.terminos(consulta));
+
+        cerrojo.readLock().lock();
+        try {
+            Estado e = estado;
+            if (terminos.isEmpty() || e.documentos == 0) {
+                return Coincidencias.NINGUNA;
+            }
+
+            BitSet deLaFuente = null;
+            if (filtro.fuente() != null) {
+                deLaFuente = vivosDe(e, PREFIJO_FUENTE + AnalizadorEspanol.plegar(filtro.fuente().strip()));
+                if (deLaFuente.isEmpty()) {
+                    return Coincidencias.NINGUNA;
+                }
+            }
+            long desde = filtro.desde() == null ? Long.MIN_VALUE : filtro.desde().toEpochSecond(ZoneOffset.UTC);
+            long hasta = filtro.hasta() == null ? Long.MAX_VALUE : filtro.hasta().toEpochSecond(ZoneOffset.UTC);
+
+            // Término a término, acumulando en un array por ordinal (y apuntando cuáles se han tocado)
+            double longitudMedia = (double) e.longitudTotal / e.documentos;
+            float[] puntos = new float[e.ordinales];
+            int[] tocados = new int[64];
+            int nTocados = 0;
+            for (String termino : terminos) {
+                Lista lista = e.listas.get(termino);
+                if (lista == null) {
+                    continue;
+                }
+                // lista.df cuenta también los muertos hasta compactar: si los hay, se cuentan sólo los vivos
+                double df = e.ordinales == e.documentos ? lista.df : vivosEn(e, lista);
+                if (df == 0) {
+                    continue;
+                }
+                double idf = Math.log(1 + (e.documentos - df + 0.5) / (df + 0.5));
+
+                Cursor cursor = new Cursor(lista);
+                while (cursor.siguiente()) {
+                    int doc = cursor.doc;
+                    if (!e.vivos.get(doc)
+                            || (deLaFuente != null && !deLaFuente.get(doc))
+                            || e.fechas[doc] < desde || e.fechas[doc] >= hasta) {
+                        continue;
+                    }
+                    double tf = cursor.frecuencia;
+                    double normalizado = tf * (K1 + 1) / (tf + K1 * (1 - B + B * e.longitudes[doc] / longitudMedia));
+                    if (puntos[doc] == 0) {
+                        if (nTocados == tocados.length) {
+                            tocados = Arrays.copyOf(tocados, nTocados * 2);
+                        }
+                        tocados[nTocados++] = doc;
+                    }
+                    puntos[doc] += (float) (idf * normalizado);
+                }
+            }
+
+            // Los 'limite' mejores con un montículo de mínimos (a igual puntuación, el más reciente)
+            Comparator<Integer> peorPrimero = Comparator.<Integer>comparingDouble(doc -> puntos[doc])
+                    .thenComparingInt(doc -> doc);
+            PriorityQueue<Integer> mejores = new PriorityQueue<>(limite + 1, peorPrimero);
+            for (int i = 0; i < nTocados; i++) {
+                int doc = tocados[i];
+                if (mejores.size() < limite) {
+                    mejores.add(doc);
+                } else if (peorPrimero.compare(doc, mejores.peek()) > 0) {
+                    mejores.poll();
+                    mejores.add(doc);
+                }
+            }
+
+            List<Candidato> resultado = new ArrayList<>(mejores.size());
+            while (!mejores.isEmpty()) {
+                int doc = mejores.poll();
+                resultado.add(new Candidato(e.ids[doc], puntos[doc]));
+            }
+            return new Coincidencias(resultado.reversed(), nTocados);
+        } finally {
+            cerrojo.readLock().unlock();
+        }
+    }
+
+    public Estadisticas estadisticas() {
+        cerrojo.readLock().lock();
+        try {
+            long bytes = 0;
+            for (Lista lista : estado.listas.values()) {
+                bytes += lista.tam;
+            }
+            return new Estadisticas(estado.documentos, estado.listas.size(), bytes, estado.ordinales - estado.documentos);
+        } finally {
+            cerrojo.readLock().unlock();
+        }
+    }
+
+    private static int vivosEn(Estado e, Lista lista) {
+        int vivos = 0;
+        Cursor cursor = new Cursor(lista);
+        while (cursor.siguiente()) {
+            if (e.vivos.get(cursor.doc)) {
+                vivos++;
+            }
+        }
+        return vivos;
+    }
+
+    private static BitSet vivosDe(Estado e, String termino) {
+        BitSet docs = new BitSet();
+        Lista lista = e.listas.get(termino);
+        if (lista != null) {
+            Cursor cursor = new Cursor(lista);
+            while (cursor.siguiente()) {
+                docs.set(cursor.doc);
+            }
+            docs.and(e.vivos);
+        }
+        return docs;
+    }
+
+    private static int escribirVarint(byte[] destino, int pos, int valor) {
+        while ((valor & ~0x7F) != 0) {
+            destino[pos++] = (byte) ((valor & 0x7F) | 0x80);
+            valor >>>= 7;
+        }
+        destino[pos++] = (byte) valor;
+        return pos;
+    }
+}
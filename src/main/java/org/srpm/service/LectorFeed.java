@@ -0,0 +1,21 @@
+package org.srpm.service;
+
+import java.io.InputStream;
+import java.util.List;
+
+/**
+ * Motor de lectura de feeds RSS/Atom.
+ *
+ * Hay dos implementaciones y se elige con la propiedad 'rss.parser':
+ * - "stax" (por defecto): lee en streaming y se para al llegar al límite.
+ * - "rome": construye el SyndFeed completo con ROME y luego recorta.
+ */
+public interface LectorFeed {
+
+    /**
+     * Lee como mucho 'limite' entradas del documento (en el orden del feed).
+     *
+     * @param contentType Content-Type HTTP (puede ser null); sirve para detectar el charset.
+     */
+    List<EntradaFeed> leer(InputStream documento, String contentType, int limite) throws Exception;
+}
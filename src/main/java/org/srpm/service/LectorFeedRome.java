@@ -0,0 +1,54 @@
+package org.srpm.service;
+
+import com.rometools.rome.feed.synd.SyndEntry;
+import com.rometools.rome.feed.synd.SyndFeed;
+import com.rometools.rome.io.SyndFeedInput;
+import com.rometools.rome.io.XmlReader;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Lector clásico con ROME: parsea el documento ENTERO (árbol JDOM + SyndFeed)
+ * y después se queda con las primeras 'limite' entradas.
+ */
+@Component
+@ConditionalOnProperty(name = "rss.parser", havingValue = "rome")
+public class LectorFeedRome implements LectorFeed {
+
+    @Override
+    public List<EntradaFeed> leer(InputStream documento, String contentType, int limite) throws Exception {
+        try (var reader = contentType != null
+                ? new XmlReader(documento, contentType, true)
+                : new XmlReader(documento)) {
+
+            SyndFeed feed = new SyndFeedInput().build(reader);
+            List<SyndEntry> todas = feed.getEntries();
+
+            // Aplicar el límite
+            int limiteReal = Math.min(todas.size(), limite);
+            List<EntradaFeed> entradas = new ArrayList<>(limiteReal);
+            for (SyndEntry entry : todas.subList(0, limiteReal)) {
+                entradas.add(new EntradaFeed(entry.getLink(), entry.getTitle(), extraerContenido(entry),
+                        entry.getPublishedDate()));
+            }
+            return entradas;
+        }
+    }
+
+    /**
+     * Método de ayuda (privado) para encontrar el contenido de la noticia.
+     */
+    private String extraerContenido(SyndEntry entry) {
+        if (entry.getContents() != null && !entry.getContents().isEmpty()) {
+            return entry.getContents().get(0).getValue();
+        }
+        if (entry.getDescription() != null) {
+            return entry.getDescription().getValue();
+        }
+        return null;
+    }
+}
@@ -0,0 +1,403 @@
+package org.srpm.service;
+
+import com.rometools.rome.io.XmlReader;
+import com.rometools.rome.io.impl.DateParser;
+import com.rometools.rome.io.impl.XmlFixerReader;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.util.StreamReaderDelegate;
+import java.io.BufferedInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+
+/**
+ * Lector en streaming con StAX.
+ *
+ * En vez de construir el árbol completo del feed (como ROME), recorre el XML evento a evento,
+ * se queda SOLO con link/título/descripción/contenido/fecha de cada entrada y deja de leer
+ * en cuanto tiene 'limite' entradas. En feeds grandes nos ahorramos casi todo el trabajo.
+ *
+ * Intenta dar exactamente lo mismo que ROME para RSS 0.9x/1.0/2.0 y Atom:
+ * - mismo tratamiento del charset (XmlReader) y de las entidades HTML sueltas (XmlFixerReader,
+ *   aunque sólo se pasa por él si el XML no se puede leer tal cual),
+ * - mismas reglas de fechas (DateParser de ROME, pubDate manda sobre dc:date),
+ * - en RSS 2.0 sin &lt;link&gt;, el &lt;guid&gt; permanente hace de link,
+ * - los elementos de otros espacios de nombres (media:title, itunes:summary...) no cuentan como
+ *   título/descripción aunque se llamen igual y vengan antes.
+ */
+@Component
+@ConditionalOnProperty(name = "rss.parser", havingValue = "stax", matchIfMissing = true)
+public class LectorFeedStax implements LectorFeed {
+
+    private static final String NS_CONTENT = "http://purl.org/rss/1.0/modules/content/";
+    private static final String NS_DC = "http://purl.org/dc/elements/1.1/";
+    private static final String NS_ATOM = "http://www.w3.org/2005/Atom";
+    // Los elementos de RSS 1.0 y 0.90 (RDF) van en su propio espacio de nombres; los de 0.9x/2.0, sin él
+    private static final String NS_RSS10 = "http://purl.org/rss/1.0/";
+    private static final String NS_RSS090 = "http://my.netscape.com/rdf/simple/0.9/";
+
+    private static final String REPORTAR_CDATA = "http://java.sun.com/xml/stream/properties/report-cdata-event";
+
+    // Cuánto documento se guarda para poder volver a leerlo con XmlFixerReader
+    private static final int MAX_RELECTURA = 1 << 20;
+
+    // Configuradas una sola vez; crear lectores a partir de ellas es seguro entre hilos.
+    // Sin XmlFixerReader hay que distinguir las secciones CDATA, así que esa no las junta con el texto.
+    private static final XMLInputFactory FACTORY = crearFactory(true);
+    private static final XMLInputFactory FACTORY_DIRECTA = crearFactory(false);
+
+    /**
+     * Primero lee el XML tal cual. Sólo si eso falla (casi siempre por una entidad HTML no declarada
+     * tipo &amp;oacute;) vuelve al principio y lo pasa por XmlFixerReader, como ROME, que es MUY lento
+     * (lee carácter a carácter) y casi nunca hace falta.
+     *
+     * Para poder volver se marca el documento, pero sólo se guardan MAX_RELECTURA bytes: si el fallo
+     * llega más tarde, el error se propaga. (Los que vienen de DescargadorFeeds ya están en memoria y
+     * se releen siempre.)
+     */
+    @Override
+    public List<EntradaFeed> leer(InputStream documento, String contentType, int limite) throws Exception {
+        InputStream entrada = documento.markSupported() ? documento : new BufferedInputStream(documento);
+        entrada.mark(MAX_RELECTURA);
+        // XmlReader cierra el stream al terminar y entonces ya no podríamos volver atrás
+        InputStream sinCerrar = new FilterInputStream(entrada) {
+            @Override
+            public void close() { }
+        };
+
+        try {
+            return leer(sinCerrar, contentType, limite, false);
+        } catch (XMLStreamException e) {
+            try {
+                entrada.reset();
+            } catch (IOException sinMarca) {
+                e.addSuppressed(sinMarca);
+                throw e;
+            }
+            return leer(sinCerrar, contentType, limite, true);
+        } finally {
+            documento.close();
+        }
+    }
+
+    private List<EntradaFeed> leer(InputStream documento, String contentType, int limite, boolean arreglarXml)
+            throws Exception {
+        List<EntradaFeed> entradas = new ArrayList<>(Math.max(0, Math.min(limite, 64)));
+        if (limite <= 0) {
+            return entradas;
+        }
+
+        try (var xml = contentType != null
+                ? new XmlReader(documento, contentType, true)
+                : new XmlReader(documento)) {
+
+            XMLStreamReader r = arreglarXml
+                    ? FACTORY.createXMLStreamReader(new XmlFixerReader(xml))
+                    : new CdataComoRome(FACTORY_DIRECTA.createXMLStreamReader(xml));
+            try {
+                boolean raiz = true;
+                boolean atom = false;
+                String nsAtom = null;
+                boolean guidComoLink = false;
+
+                while (r.hasNext()) {
+                    if (r.next() != XMLStreamConstants.START_ELEMENT) {
+                        continue;
+                    }
+                    String nombre = r.getLocalName();
+
+                    if (raiz) {
+                        raiz = false;
+                        atom = "feed".equals(nombre);
+                        nsAtom = r.getNamespaceURI(); // 1.0 o 0.3: los hijos de entry van en el mismo
+                        String version = r.getAttributeValue(null, "version");
+                        guidComoLink = "rss".equals(nombre) && ("2.0".equals(version) || "0.94".equals(version));
+                        continue;
+                    }
+
+                    if (atom ? "entry".equals(nombre) : "item".equals(nombre)) {
+                        entradas.add(atom ? leerEntradaAtom(r, nsAtom) : leerItemRss(r, guidComoLink));
+                        if (entradas.size() >= limite) {
+                            break; // ¡Ya tenemos bastantes! El resto del documento ni se lee.
+                        }
+                    }
+                }
+            } finally {
+                r.close();
+            }
+        }
+        return entradas;
+    }
+
+    /**
+     * Lee un &lt;item&gt; de RSS. Al volver, el lector está en su END_ELEMENT.
+     */
+    private EntradaFeed leerItemRss(XMLStreamReader r, boolean guidComoLink) throws XMLStreamException {
+        String link = null;
+        String titulo = null;
+        String descripcion = null;
+        String contenido = null;
+        String guid = null;
+        boolean guidPermanente = true;
+        Date pubDate = null;
+        Date dcDate = null;
+
+        while (r.next() != XMLStreamConstants.END_ELEMENT) {
+            if (r.getEventType() != XMLStreamConstants.START_ELEMENT) {
+                continue;
+            }
+            String ns = r.getNamespaceURI();
+            String nombre = r.getLocalName();
+
+            if (NS_CONTENT.equals(ns)) {
+                if ("encoded".equals(nombre) && contenido == null) {
+                    contenido = textoDirecto(r);
+                } else {
+                    saltarElemento(r);
+                }
+            } else if (NS_DC.equals(ns)) {
+                if ("date".equals(nombre) && dcDate == null) {
+                    dcDate = DateParser.parseDate(textoDirecto(r), Locale.US);
+                } else {
+                    saltarElemento(r);
+                }
+            } else if (!esRss(ns)) {
+                saltarElemento(r); // <atom:link>, <media:title>... no son los de la noticia
+            } else {
+                switch (nombre) {
+                    case "title" -> titulo = titulo == null ? textoDirecto(r) : saltarYDevolver(r, titulo);
+                    case "link" -> link = link == null ? textoDirecto(r).trim() : saltarYDevolver(r, link);
+                    case "description" -> descripcion = descripcion == null ? textoDirecto(r) : saltarYDevolver(r, descripcion);
+                    case "pubDate" -> pubDate = pubDate == null ? DateParser.parseDate(textoDirecto(r), Locale.US) : saltarYDevolver(r, pubDate);
+                    case "guid" -> {
+                        guidPermanente = !"false".equalsIgnoreCase(r.getAttributeValue(null, "isPermaLink"));
+                        guid = textoDirecto(r);
+                    }
+                    default -> saltarElemento(r);
+                }
+            }
+        }
+
+        if (link == null && guidComoLink && guid != null && guidPermanente) {
+            link = guid;
+        }
+        return new EntradaFeed(link, titulo, contenido != null ? contenido : descripcion,
+                pubDate != null ? pubDate : dcDate);
+    }
+
+    /**
+     * Lee un &lt;entry&gt; de Atom. Al volver, el lector está en su END_ELEMENT.
+     */
+    private EntradaFeed leerEntradaAtom(XMLStreamReader r, String nsAtom) throws XMLStreamException {
+        String link = null;
+        String titulo = null;
+        String resumen = null;
+        String contenido = null;
+        Date publicado = null;
+
+        while (r.next() != XMLStreamConstants.END_ELEMENT) {
+            if (r.getEventType() != XMLStreamConstants.START_ELEMENT) {
+                continue;
+            }
+            if (!Objects.equals(nsAtom, r.getNamespaceURI())) {
+                saltarElemento(r);
+                continue;
+            }
+            switch (r.getLocalName()) {
+                case "title" -> titulo = titulo == null ? textoAtom(r) : saltarYDevolver(r, titulo);
+                case "summary" -> resumen = resumen == null ? textoAtom(r) : saltarYDevolver(r, resumen);
+                case "content" -> contenido = contenido == null ? textoAtom(r) : saltarYDevolver(r, contenido);
+                case "published" -> publicado = publicado == null
+                        ? DateParser.parseDate(textoDirecto(r), Locale.US) : saltarYDevolver(r, publicado);
+                case "link" -> {
+                    String rel = r.getAttributeValue(null, "rel");
+                    if (link == null && (rel == null || "alternate".equals(rel))) {
+                        link = r.getAttributeValue(null, "href");
+                    }
+                    saltarElemento(r);
+                }
+                default -> saltarElemento(r);
+            }
+        }
+
+        return new EntradaFeed(link, titulo, contenido != null ? contenido : resumen, publicado);
+    }
+
+    private static boolean esRss(String ns) {
+        return ns == null || ns.isEmpty() || NS_RSS10.equals(ns) || NS_RSS090.equals(ns);
+    }
+
+    /**
+     * Texto de un elemento Atom: si es type="xhtml" devolvemos su marcado interno; si no, su texto.
+     */
+    private String textoAtom(XMLStreamReader r) throws XMLStreamException {
+        if ("xhtml".equals(r.getAttributeValue(null, "type"))) {
+            StringBuilder sb = new StringBuilder();
+            serializarHijos(r, sb);
+            return sb.toString();
+        }
+        return textoDirecto(r);
+    }
+
+    /**
+     * Igual que JDOM getText(): sólo el texto hijo directo (los subelementos se ignoran).
+     * Al volver, el lector está en el END_ELEMENT del elemento.
+     */
+    private String textoDirecto(XMLStreamReader r) throws XMLStreamException {
+        String unico = null;
+        StringBuilder varios = null;
+        int profundidad = 0;
+
+        while (true) {
+            int evento = r.next();
+            switch (evento) {
+                case XMLStreamConstants.START_ELEMENT -> profundidad++;
+                case XMLStreamConstants.END_ELEMENT -> {
+                    if (profundidad == 0) {
+                        return varios != null ? varios.toString() : (unico != null ? unico : "");
+                    }
+                    profundidad--;
+                }
+                case XMLStreamConstants.CHARACTERS, XMLStreamConstants.CDATA, XMLStreamConstants.SPACE -> {
+                    if (profundidad == 0) {
+                        // Casi siempre llega un único trozo: evitamos el StringBuilder
+                        if (unico == null && varios == null) {
+                            unico = r.getText();
+                        } else {
+                            if (varios == null) {
+                                varios = new StringBuilder(unico);
+                            }
+                            if (evento == XMLStreamConstants.CDATA) {
+                                varios.append(r.getText()); // el de CdataComoRome
+                            } else {
+                                varios.append(r.getTextCharacters(), r.getTextStart(), r.getTextLength());
+                            }
+                        }
+                    }
+                }
+                default -> { }
+            }
+        }
+    }
+
+    private void serializarHijos(XMLStreamReader r, StringBuilder sb) throws XMLStreamException {
+        int profundidad = 0;
+        while (true) {
+            int evento = r.next();
+            switch (evento) {
+                case XMLStreamConstants.START_ELEMENT -> {
+                    profundidad++;
+                    sb.append('<').append(r.getLocalName());
+                    for (int i = 0; i < r.getAttributeCount(); i++) {
+                        sb.append(' ').append(r.getAttributeLocalName(i)).append("=\"");
+                        escapar(r.getAttributeValue(i), sb);
+                        sb.append('"');
+                    }
+                    sb.append('>');
+                }
+                case XMLStreamConstants.END_ELEMENT -> {
+                    if (profundidad == 0) {
+                        return;
+                    }
+                    profundidad--;
+                    sb.append("</").append(r.getLocalName()).append('>');
+                }
+                case XMLStreamConstants.CHARACTERS, XMLStreamConstants.CDATA, XMLStreamConstants.SPACE ->
+                        escapar(r.getText(), sb);
+                default -> { }
+            }
+        }
+    }
+
+    private static void escapar(String texto, StringBuilder sb) {
+        for (int i = 0; i < texto.length(); i++) {
+            char c = texto.charAt(i);
+            switch (c) {
+                case '&' -> sb.append("&amp;");
+                case '<' -> sb.append("&lt;");
+                case '>' -> sb.append("&gt;");
+                case '"' -> sb.append("&quot;");
+                default -> sb.append(c);
+            }
+        }
+    }
+
+    /**
+     * Consume el elemento actual entero (con sus hijos) sin construir nada.
+     */
+    private void saltarElemento(XMLStreamReader r) throws XMLStreamException {
+        int profundidad = 0;
+        while (true) {
+            int evento = r.next();
+            if (evento == XMLStreamConstants.START_ELEMENT) {
+                profundidad++;
+            } else if (evento == XMLStreamConstants.END_ELEMENT) {
+                if (profundidad == 0) {
+                    return;
+                }
+                profundidad--;
+            }
+        }
+    }
+
+    // Para campos repetidos: ROME se queda con el primero
+    private <T> T saltarYDevolver(XMLStreamReader r, T actual) throws XMLStreamException {
+        saltarElemento(r);
+        return actual;
+    }
+
+    private static XMLInputFactory crearFactory(boolean juntarTexto) {
+        XMLInputFactory factory = XMLInputFactory.newFactory();
+        factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, true);
+        factory.setProperty(XMLInputFactory.IS_COALESCING, juntarTexto);
+        if (factory.isPropertySupported(REPORTAR_CDATA)) {
+            factory.setProperty(REPORTAR_CDATA, !juntarTexto); // el del JDK no da eventos CDATA si no se le pide
+        }
+        // Seguridad: nada de DTDs ni entidades externas (XXE)
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        return factory;
+    }
+
+    /**
+     * Leyendo sin XmlFixerReader, deja el texto de las secciones CDATA como lo habría dejado él: también
+     * reescribe las entidades que hay dentro (&amp;quot; pasa a &amp;#34;), y así el HTML crudo es el mismo
+     * que da ROME. Fuera de CDATA no hace falta: el parser resuelve las entidades y el texto sale igual.
+     */
+    private static final class CdataComoRome extends StreamReaderDelegate {
+
+        CdataComoRome(XMLStreamReader r) {
+            super(r);
+        }
+
+        @Override
+        public String getText() {
+            String texto = super.getText();
+            if (getEventType() != XMLStreamConstants.CDATA || texto.indexOf('&') < 0) {
+                return texto;
+            }
+            // XmlFixerReader se salta los espacios y comentarios del principio (cree que es el del documento)
+            try (Reader arreglado = new XmlFixerReader(new StringReader("x" + texto))) {
+                StringWriter sw = new StringWriter(texto.length() + 16);
+                arreglado.transferTo(sw);
+                return sw.getBuffer().substring(1);
+            } catch (IOException e) {
+                throw new IllegalStateException(e); // leyendo de un String no pasa
+            }
+        }
+    }
+}
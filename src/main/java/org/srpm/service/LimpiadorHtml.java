@@ -0,0 +1,153 @@
+package org.srpm.service;
+
+import org.springframework.stereotype.Component;
+import org.springframework.web.util.HtmlUtils;
+
+/**
+ * Limpia el HTML de titulares y contenidos de los RSS.
+ *
+ * Da EXACTAMENTE el mismo resultado que la antigua cadena de expresiones regulares:
+ * <pre>
+ *   htmlUnescape → quitar &lt;script&gt;…&lt;/script&gt; → quitar &lt;style&gt;…&lt;/style&gt; → quitar etiquetas
+ *   → [\r\n]+ por espacio → '|' por espacio → quitar '"' y '\' → colapsar espacios → trim
+ * </pre>
+ * pero sin compilar ni ejecutar ninguna regex: todo lo que va detrás de los bloques
+ * script/style se hace en una única pasada sobre un buffer de chars.
+ *
+ * Los bloques script/style sólo cuestan una pasada extra cuando de verdad aparecen, y
+ * el unescape sólo se hace si hay algún '&'.
+ */
+@Component
+public class LimpiadorHtml {
+
+    public String limpiar(String html) {
+        if (html == null) {
+            return null;
+        }
+
+        // Sin '&' no hay entidades: htmlUnescape devolvería lo mismo
+        String texto = html.indexOf('&') >= 0 ? HtmlUtils.htmlUnescape(html) : html;
+
+        if (texto.indexOf('<') >= 0) {
+            texto = quitarBloques(texto, "<script", "</script>");
+            texto = quitarBloques(texto, "<style", "</style>");
+        }
+
+        return normalizar(texto);
+    }
+
+    /**
+     * Equivale a {@code Pattern.compile("<tag[^>]*?>.*?</tag>", DOTALL | CASE_INSENSITIVE).matcher(t).replaceAll("")}.
+     * Si un bloque no tiene '>' o no tiene cierre, ya no puede haber más coincidencias y se corta.
+     */
+    private static String quitarBloques(String texto, String apertura, String cierre) {
+        int inicio = indexOfIgnoreCase(texto, apertura, 0);
+        if (inicio < 0) {
+            return texto;
+        }
+
+        StringBuilder sb = null;
+        int copiado = 0;
+        while (inicio >= 0) {
+            int finApertura = texto.indexOf('>', inicio + apertura.length());
+            if (finApertura < 0) {
+                break;
+            }
+            int finBloque = indexOfIgnoreCase(texto, cierre, finApertura + 1);
+            if (finBloque < 0) {
+                break;
+            }
+
+            if (sb == null) {
+                sb = new StringBuilder(texto.length());
+            }
+            sb.append(texto, copiado, inicio);
+            copiado = finBloque + cierre.length();
+            inicio = indexOfIgnoreCase(texto, apertura, copiado);
+        }
+
+        if (sb == null) {
+            return texto;
+        }
+        return sb.append(texto, copiado, texto.length()).toString();
+    }
+
+    /**
+     * Una sola pasada: quita etiquetas, cambia saltos de línea y '|' por espacio,
+     * elimina '"' y '\', colapsa espacios y hace trim (mismas reglas que String.trim()).
+     */
+    private static String normalizar(String texto) {
+        int longitud = texto.length();
+        // El resultado nunca es más largo que la entrada
+        char[] buffer = new char[longitud];
+        int n = 0;
+        boolean ultimoEraEspacio = false;
+        boolean quedanCierres = true;
+
+        for (int i = 0; i < longitud; i++) {
+            char c = texto.charAt(i);
+
+            if (c == '<' && quedanCierres) {
+                int fin = texto.indexOf('>', i + 1);
+                if (fin >= 0) {
+                    i = fin; // etiqueta completa: fuera
+                    continue;
+                }
+                quedanCierres = false; // a partir de aquí ningún '<' puede cerrar
+            }
+
+            switch (c) {
+                case '\r', '\n', '|' -> c = ' ';
+                case '"', '\\' -> {
+                    continue;
+                }
+                default -> { }
+            }
+
+            if (c == ' ') {
+                if (ultimoEraEspacio) {
+                    continue;
+                }
+                ultimoEraEspacio = true;
+            } else {
+                ultimoEraEspacio = false;
+            }
+            buffer[n++] = c;
+        }
+
+        int desde = 0;
+        while (desde < n && buffer[desde] <= ' ') {
+            desde++;
+        }
+        while (n > desde && buffer[n - 1] <= ' ') {
+            n--;
+        }
+        return new String(buffer, desde, n - desde);
+    }
+
+    /**
+     * Búsqueda que ignora mayúsculas SOLO en ASCII, como CASE_INSENSITIVE sin UNICODE_CASE.
+     * ('patron' tiene que venir en minúsculas.)
+     */
+    private static int indexOfIgnoreCase(String texto, String patron, int desde) {
+        int ultimo = texto.length() - patron.length();
+        char primero = patron.charAt(0);
+        for (int i = desde; i <= ultimo; i++) {
+            if (texto.charAt(i) != primero) {
+                continue;
+            }
+            int j = 1;
+            while (j < patron.length() && minusculaAscii(texto.charAt(i + j)) == patron.charAt(j)) {
+                j++;
+            }
+            if (j == patron.length()) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static char minusculaAscii(char c) {
+        return (c >= 'A' && c <= 'Z') ? (char) (c + ('a' - 'A')) : c;
+    }
+}
@@ -0,0 +1,158 @@
+package org.srpm.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.srpm.dao.NoticiaDAO;
+import org.srpm.dao.ResumenDAO;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Métricas de cada fase del pipeline (ingesta, limpieza, IA y ciclo), todas bajo el prefijo "srpm."
+ * para poder activar sus histogramas de una vez ('management.metrics.distribution.percentiles-histogram.srpm').
+ * Se publican en /actuator/prometheus junto a las de Spring (http.server.requests da la latencia por endpoint).
+ *
+ * Los medidores con etiquetas se buscan en el registro en cada uso (Micrometer los cachea);
+ * los que no tienen etiquetas variables se crean una vez aquí.
+ *
+ * La fuente sólo etiqueta contadores: con cientos de feeds, un histograma por fuente serían decenas de
+ * miles de series en Prometheus. Los tiempos de descarga y parseo son de todas las fuentes juntas (la
+ * latencia de cada una está en la salud de RegistroFeeds).
+ */
+@Component
+public class MetricasPipeline {
+
+    private final MeterRegistry registro;
+    private final Timer limpiezaHtml;
+    private final DistributionSummary bytesIA;
+
+    @Autowired
+    public MetricasPipeline(MeterRegistry registro, NoticiaDAO noticiaDAO, ResumenDAO resumenDAO) {
+        this.registro = registro;
+        this.limpiezaHtml = Timer.builder("srpm.html.limpieza")
+                .description("Limpieza de HTML de un titular o contenido")
+                .register(registro);
+        this.bytesIA = DistributionSummary.builder("srpm.ia.peticion.bytes")
+                .description("Texto de las noticias enviadas a la IA en un lote")
+                .baseUnit("bytes")
+                .register(registro);
+
+        Gauge.builder("srpm.almacen.noticias", noticiaDAO, dao -> dao.estadisticas().noticias())
+                .description("Noticias guardadas")
+                .register(registro);
+        Gauge.builder("srpm.almacen.noticias.bytes", noticiaDAO, dao -> dao.estadisticas().bytes())
+                .description("Lo que ocupan las noticias guardadas")
+                .baseUnit("bytes")
+                .register(registro);
+        Gauge.builder("srpm.almacen.resumenes", resumenDAO, ResumenDAO::count)
+                .description("Resúmenes guardados")
+                .register(registro);
+    }
+
+    // --- Ingesta ---
+
+    public void feedDescargado(long nanos, boolean sinCambios) {
+        Timer.builder("srpm.feed.descarga")
+                .description("Descarga (GET condicional) de un feed")
+                .tag("resultado", sinCambios ? "no_modificado" : "descargado")
+                .register(registro)
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void feedParseado(String fuente, long nanos, int entradas) {
+        Timer.builder("srpm.feed.parseo")
+                .description("Lectura de las entradas de un feed ya descargado")
+                .register(registro)
+                .record(nanos, TimeUnit.NANOSECONDS);
+        Counter.builder("srpm.feed.entradas")
+                .description("Entradas leídas de los feeds")
+                .tag("fuente", fuente)
+                .register(registro)
+                .increment(entradas);
+    }
+
+    public void feedTerminado(ResultadoFeed resultado) {
+        Counter.builder("srpm.feed.nuevas")
+                .description("Noticias nuevas guardadas")
+                .tag("fuente", resultado.fuente())
+                .register(registro)
+                .increment(resultado.nuevas());
+        Counter.builder("srpm.feed.resultados")
+                .description("Feeds procesados, por cómo terminaron")
+                .tag("fuente", resultado.fuente())
+                .tag("estado", etiqueta(resultado.estado()))
+                .register(registro)
+                .increment();
+    }
+
+    public Timer limpiezaHtml() {
+        return limpiezaHtml;
+    }
+
+    // --- IA ---
+
+    /**
+     * @param error null si fue bien; si no, el tipo de fallo ("estado", "conexion" o "respuesta").
+     */
+    public void peticionIA(long nanos, long bytes, String error) {
+        Timer.builder("srpm.ia.peticion")
+                .description("Petición de resúmenes a la IA (un lote)")
+                .tag("resultado", error == null ? "ok" : "error")
+                .register(registro)
+                .record(nanos, TimeUnit.NANOSECONDS);
+        bytesIA.record(bytes);
+        if (error != null) {
+            Counter.builder("srpm.ia.errores")
+                    .description("Peticiones a la IA fallidas")
+                    .tag("tipo", error)
+                    .register(registro)
+                    .increment();
+        }
+    }
+
+    /**
+     * @param motivo "reintento" (tras un fallo), "cobertura" (petición duplicada por lenta) o
+     *               "cortocircuito" (no se ha llamado porque el circuito estaba abierto).
+     */
+    public void eventoIA(String motivo) {
+        Counter.builder("srpm.ia.eventos")
+                .description("Reintentos, peticiones duplicadas y llamadas evitadas por el circuito")
+                .tag("motivo", motivo)
+                .register(registro)
+                .increment();
+    }
+
+    /**
+     * Un valor que se lee al exportar (estado del circuito, lotes en cola...).
+     */
+    public <T> void indicador(String nombre, String descripcion, T objeto, ToDoubleFunction<T> valor) {
+        Gauge.builder(nombre, objeto, valor)
+                .description(descripcion)
+                .register(registro);
+    }
+
+    // --- Ciclo ---
+
+    /**
+     * @param tipo "incremental" o "total".
+     */
+    public void cicloTerminado(String tipo, long nanos, boolean ok) {
+        Timer.builder("srpm.ciclo")
+                .description("Ciclo completo de actualización (ingesta + resúmenes)")
+                .tag("tipo", tipo)
+                .tag("resultado", ok ? "ok" : "error")
+                .register(registro)
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    private static String etiqueta(Enum<?> valor) {
+        return valor.name().toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,29 @@
+package org.srpm.service;
+
+/**
+ * Recibe el progreso de un ciclo de actualización (lo usan los trabajos de refresco
+ * para poder contar por qué fase van). Todos los métodos son opcionales.
+ */
+public interface ObservadorCiclo {
+
+    ObservadorCiclo NINGUNO = new ObservadorCiclo() { };
+
+    enum Fase {
+        EN_COLA,
+        DESCARGANDO,
+        RESUMIENDO,
+        GUARDANDO,
+        COMPLETADO,
+        FALLIDO
+    }
+
+    default void fase(Fase fase) { }
+
+    default void ingestaTerminada(ResultadoIngesta resultado) { }
+
+    default void noticiasAResumir(int noticias) { }
+
+    default void loteGuardado(int resumenes) { }
+
+    default void despachoTerminado(ResultadoDespacho resultado) { }
+}
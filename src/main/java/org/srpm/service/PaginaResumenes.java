@@ -0,0 +1,16 @@
+package org.srpm.service;
+
+import org.srpm.model.Resumen;
+
+import java.util.List;
+
+/**
+ * Una página de GET /resumenes?after=&limit=.
+ *
+ * @param resumenes Los resúmenes de la página, en el orden pedido.
+ * @param siguiente Valor de 'after' para pedir la página siguiente (null si ésta es la última).
+ */
+public record PaginaResumenes(
+        List<Resumen> resumenes,
+        String siguiente
+) { }
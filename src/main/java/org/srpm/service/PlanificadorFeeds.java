@@ -0,0 +1,230 @@
+package org.srpm.service;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Consulta cada fuente RSS por su cuenta, cada una con su propio intervalo.
+ *
+ * El intervalo se adapta a lo que publica la fuente: si trae noticias nuevas se acorta,
+ * si no trae nada (o falla) se alarga, siempre entre 'rss.planificador.intervalo-min-ms'
+ * y 'rss.planificador.intervalo-max-ms'. Se le suma un poco de azar (jitter) para que
+ * las fuentes no acaben consultándose todas a la vez.
+ *
+ * Tras cada consulta con noticias nuevas se resumen sólo las pendientes (el delta).
+ *
+ * La ingesta guarda en el almacén vivo bajo CerrojoPublicacion (eso lo hace RssParserService, sólo
+ * alrededor del guardado): un refresco total no publica su generación a mitad de un guardado, pero
+ * tampoco espera a que termine la descarga de una fuente lenta. Lo guardado pasa también a la generación nueva.
+ *
+ * Sigue los cambios de RegistroFeeds: al recargar la lista, las fuentes nuevas empiezan a sondearse y
+ * las quitadas (o desactivadas) dejan de hacerlo en su siguiente turno.
+ */
+@Service
+public class PlanificadorFeeds {
+
+    private static final Logger log = LoggerFactory.getLogger(PlanificadorFeeds.class);
+
+    // Cuánto se acorta el intervalo si hay noticias nuevas y cuánto se alarga si no
+    static final double FACTOR_ACTIVA = 0.5;
+    static final double FACTOR_TRANQUILA = 1.5;
+    static final double FACTOR_ERROR = 2.0;
+
+    private final RssParserService rssParserService;
+    private final ResumenService resumenService;
+    private final GestorRefrescos gestorRefrescos;
+    private final RegistroFeeds registroFeeds;
+
+    private final boolean activo;
+    private final long intervaloInicialMs;
+    private final long intervaloMinMs;
+    private final long intervaloMaxMs;
+    private final double jitter;
+
+    // Intervalo actual de cada fuente (sin jitter)
+    private final Map<String, Long> intervalos = new ConcurrentHashMap<>();
+
+    // Sólo un despacho a la IA a la vez; si llegan más noticias mientras tanto, se da otra pasada
+    private final ReentrantLock resumiendo = new ReentrantLock();
+    private final AtomicBoolean hayPendientes = new AtomicBoolean();
+
+    private ScheduledExecutorService programador;
+
+    @Autowired
+    public PlanificadorFeeds(RssParserService rssParserService,
+                             ResumenService resumenService,
+                             GestorRefrescos gestorRefrescos,
+                             RegistroFeeds registroFeeds,
+                             @Value("${rss.planificador.activo:false}") boolean activo,
+                             @Value("${rss.planificador.intervalo-inicial-ms:300000}") long intervaloInicialMs,
+                             @Value("${rss.planificador.intervalo-min-ms:60000}") long intervaloMinMs,
+                             @Value("${rss.planificador.intervalo-max-ms:1800000}") long intervaloMaxMs,
+                             @Value("${rss.planificador.jitter:0.1}") double jitter) {
+        this.rssParserService = rssParserService;
+        this.resumenService = resumenService;
+        this.gestorRefrescos = gestorRefrescos;
+        this.registroFeeds = registroFeeds;
+        this.activo = activo;
+        this.intervaloMinMs = intervaloMinMs;
+        this.intervaloMaxMs = Math.max(intervaloMinMs, intervaloMaxMs);
+        this.intervaloInicialMs = acotar(intervaloInicialMs, this.intervaloMinMs, this.intervaloMaxMs);
+        this.jitter = jitter;
+    }
+
+    /**
+     * Arranca cuando la aplicación ya está lista (la carga inicial de MainController ya se ha hecho).
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void arrancar() {
+        if (!activo || programador != null) {
+            return;
+        }
+        programador = Executors.newSingleThreadScheduledExecutor(Thread.ofVirtual().name("planificador-feeds").factory());
+        sincronizar();
+        registroFeeds.alCambiar(this::sincronizar);
+        log.info("Planificador de feeds activo: {} fuentes, cada {}-{} ms", intervalos.size(), intervaloMinMs, intervaloMaxMs);
+    }
+
+    @PreDestroy
+    public synchronized void parar() {
+        if (programador != null) {
+            programador.shutdownNow();
+            programador = null;
+        }
+    }
+
+    /**
+     * Intervalo actual de cada fuente, en milisegundos.
+     */
+    public Map<String, Long> intervalos() {
+        return new TreeMap<>(intervalos);
+    }
+
+    /**
+     * Empieza a sondear las fuentes del registro que aún no tienen intervalo (todas, al arrancar).
+     */
+    synchronized void sincronizar() {
+        if (programador == null) {
+            return;
+        }
+        for (String fuente : rssParserService.getNombresFuentes()) {
+            if (intervalos.putIfAbsent(fuente, intervaloInicialMs) == null) {
+                programar(fuente, conJitter(intervaloInicialMs));
+            }
+        }
+    }
+
+    /**
+     * Si la fuente ya no está en el registro, la olvida (así, si vuelve, sincronizar la programa de nuevo).
+     */
+    private synchronized boolean seguirSondeando(String fuente) {
+        if (registroFeeds.contiene(fuente)) {
+            return true;
+        }
+        intervalos.remove(fuente);
+        log.info("Fuente {} quitada del registro: deja de sondearse", fuente);
+        return false;
+    }
+
+    private synchronized void programar(String fuente, long retrasoMs) {
+        if (programador == null) {
+            return;
+        }
+        // La consulta va en su propio hilo virtual: una fuente lenta no retrasa a las demás
+        programador.schedule(() -> Thread.ofVirtual().name("sondeo-" + fuente).start(() -> sondear(fuente)),
+                retrasoMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Consulta una fuente, ajusta su intervalo y deja programada la siguiente consulta.
+     */
+    void sondear(String fuente) {
+        if (!seguirSondeando(fuente)) {
+            return;
+        }
+        long intervalo = intervalos.getOrDefault(fuente, intervaloInicialMs);
+        try {
+            // Un refresco total ya descarga todas las fuentes: mientras dura no hace falta sondear.
+            // (No basta para no cruzarse con él; de eso se encarga el cerrojo al guardar.)
+            if (gestorRefrescos.hayRefrescoEnCurso()) {
+                return;
+            }
+
+            ResultadoFeed resultado = rssParserService.ingestarFuente(fuente, ResumenService.LIMITE_NOTICIAS);
+            intervalo = siguienteIntervalo(intervalo, resultado, intervaloMinMs, intervaloMaxMs);
+            intervalos.put(fuente, intervalo);
+            log.debug("Sondeo {}: próximo en {} ms", fuente, intervalo);
+
+            if (resultado.nuevas() > 0) {
+                resumirNuevas();
+            }
+        } catch (Exception e) {
+            log.error("Error en el sondeo de {}", fuente, e);
+        } finally {
+            programar(fuente, conJitter(intervalo));
+        }
+    }
+
+    /**
+     * Resume las noticias pendientes. Si ya hay un despacho en marcha, sólo se apunta que hay
+     * más trabajo y ese mismo hilo da otra pasada al terminar, así ninguna noticia se manda dos veces.
+     */
+    void resumirNuevas() {
+        hayPendientes.set(true);
+        while (hayPendientes.get() && resumiendo.tryLock()) {
+            try {
+                hayPendientes.set(false);
+                resumenService.resumirPendientes();
+            } finally {
+                resumiendo.unlock();
+            }
+        }
+    }
+
+    /**
+     * Calcula el próximo intervalo de una fuente según lo que ha traído:
+     * - con noticias nuevas, se acorta;
+     * - sin cambios (o sin nada nuevo), se alarga;
+     * - con error o timeout, se alarga más deprisa;
+     * - en cuarentena, se alarga como una tranquila (el registro ya decide cuándo volver a probar).
+     */
+    static long siguienteIntervalo(long actualMs, ResultadoFeed resultado, long minMs, long maxMs) {
+        double factor;
+        if (resultado.nuevas() > 0) {
+            factor = FACTOR_ACTIVA;
+        } else if (resultado.estado() == ResultadoFeed.Estado.ERROR || resultado.estado() == ResultadoFeed.Estado.TIMEOUT) {
+            factor = FACTOR_ERROR;
+        } else {
+            factor = FACTOR_TRANQUILA;
+        }
+        return acotar(Math.round(actualMs * factor), minMs, maxMs);
+    }
+
+    private long conJitter(long intervaloMs) {
+        if (jitter <= 0) {
+            return intervaloMs;
+        }
+        double desviacion = ThreadLocalRandom.current().nextDouble(-jitter, jitter);
+        return Math.max(1, Math.round(intervaloMs * (1 + desviacion)));
+    }
+
+    private static long acotar(long valor, long min, long max) {
+        return Math.max(min, Math.min(max, valor));
+    }
+}
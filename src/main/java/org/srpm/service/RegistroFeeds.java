@@ -0,0 +1,386 @@
+package org.srpm.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+import org.springframework.boot.context.properties.source.ConfigurationPropertySource;
+import org.springframework.boot.context.properties.source.ConfigurationPropertySources;
+import org.springframework.core.env.Environment;
+import org.springframework.core.env.PropertiesPropertySource;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Las fuentes RSS que se leen, cada una con su nombre, URL, límite de noticias, prioridad y si está activa:
+ * <pre>
+ * rss.feeds[0].nombre=20minutos
+ * rss.feeds[0].url=https://www.20minutos.es/rss/
+ * rss.feeds[0].limite=30        (opcional; 0 = el límite general)
+ * rss.feeds[0].prioridad=10     (opcional; las de más prioridad se leen antes, ver RssParserService)
+ * rss.feeds[0].activa=false     (opcional; por defecto true)
+ * </pre>
+ * La lista puede ir en application.properties o, para no reiniciar al cambiarla, en un fichero aparte
+ * ('rss.registro.fichero', mismo formato), que manda sobre la de la configuración. El fichero se vuelve a leer
+ * cuando cambia (se mira cada 'rss.registro.recarga-ms') o con POST /resumenes/feeds/recargar. Si la lista
+ * nueva no es válida se rechaza entera y se siguen usando las fuentes de antes.
+ *
+ * Lleva además la salud de cada fuente: último éxito, fallos seguidos y latencia media. Una fuente que falla
+ * 'rss.registro.cuarentena.fallos' veces seguidas se pone en cuarentena: no se consulta durante
+ * 'rss.registro.cuarentena.espera-ms' (el doble cada vez que vuelve a caer, hasta 'espera-max-ms'). Pasado ese
+ * tiempo se le deja UN intento; si sale bien vuelve a la normalidad y si no, otra cuarentena más larga.
+ */
+@Component
+public class RegistroFeeds {
+
+    private static final Logger log = LoggerFactory.getLogger(RegistroFeeds.class);
+
+    static final String PREFIJO = "rss.feeds";
+
+    // Peso de la última medida en la latencia media (media móvil exponencial)
+    static final double PESO_LATENCIA = 0.2;
+
+    /**
+     * Una fuente tal como viene en la configuración.
+     *
+     * @param limite    Máximo de noticias por lectura (0 = el límite general).
+     * @param prioridad Las de más prioridad van antes en cada ciclo (en modo concurrente, sólo si hay
+     *                  'rss.ingesta.max-concurrentes': son las primeras en coger hueco).
+     */
+    public record Fuente(String nombre, String url, int limite, int prioridad, @DefaultValue("true") boolean activa) {
+
+        public int limiteEfectivo(int limiteGeneral) {
+            return limite > 0 ? limite : limiteGeneral;
+        }
+    }
+
+    /**
+     * Salud de una fuente (para GET /resumenes/feeds).
+     *
+     * @param cuarentenaHasta null si no está en cuarentena.
+     * @param latenciaMediaMs -1 si aún no se ha leído nunca.
+     */
+    public record Salud(String nombre, String url, int prioridad, Instant ultimoExito, int fallosSeguidos,
+                        long latenciaMediaMs, Instant cuarentenaHasta, String ultimoError) { }
+
+    private final Environment entorno;
+    private final Path fichero;
+    private final long recargaMs;
+    private final int fallosCuarentena;
+    private final long esperaCuarentenaMs;
+    private final long esperaMaxCuarentenaMs;
+    private final Clock reloj;
+
+    // Sólo las activas, de más a menos prioridad; se sustituye entera al recargar
+    private volatile List<Fuente> fuentes = List.of();
+    private final Map<String, EstadoFuente> estados = new ConcurrentHashMap<>();
+    private final List<Runnable> observadores = new CopyOnWriteArrayList<>();
+
+    private FileTime fechaFichero;
+    private ScheduledExecutorService vigilante;
+
+    @Autowired
+    public RegistroFeeds(Environment entorno,
+                         MetricasPipeline metricas,
+                         @Value("${rss.registro.fichero:}") String fichero,
+                         @Value("${rss.registro.recarga-ms:30000}") long recargaMs,
+                         @Value("${rss.registro.cuarentena.fallos:5}") int fallosCuarentena,
+                         @Value("${rss.registro.cuarentena.espera-ms:600000}") long esperaCuarentenaMs,
+                         @Value("${rss.registro.cuarentena.espera-max-ms:21600000}") long esperaMaxCuarentenaMs) {
+        this(entorno, fichero, recargaMs, fallosCuarentena, esperaCuarentenaMs, esperaMaxCuarentenaMs,
+                Clock.systemUTC());
+        metricas.indicador("srpm.feeds.activas", "Fuentes RSS activas", this, r -> r.fuentes().size());
+        metricas.indicador("srpm.feeds.cuarentena", "Fuentes RSS en cuarentena", this, RegistroFeeds::enCuarentena);
+    }
+
+    RegistroFeeds(Environment entorno, String fichero, long recargaMs, int fallosCuarentena,
+                  long esperaCuarentenaMs, long esperaMaxCuarentenaMs, Clock reloj) {
+        this.entorno = entorno;
+        this.fichero = fichero == null || fichero.isBlank() ? null : Path.of(fichero);
+        this.recargaMs = recargaMs;
+        this.fallosCuarentena = Math.max(1, fallosCuarentena);
+        this.esperaCuarentenaMs = esperaCuarentenaMs;
+        this.esperaMaxCuarentenaMs = Math.max(esperaCuarentenaMs, esperaMaxCuarentenaMs);
+        this.reloj = reloj;
+    }
+
+    /**
+     * Carga las fuentes al arrancar y, si hay fichero, se queda vigilándolo.
+     */
+    @PostConstruct
+    public synchronized void iniciar() {
+        recargar();
+        if (fichero != null && recargaMs > 0) {
+            vigilante = Executors.newSingleThreadScheduledExecutor(Thread.ofVirtual().name("registro-feeds").factory());
+            vigilante.scheduleWithFixedDelay(this::recargarSiCambia, recargaMs, recargaMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @PreDestroy
+    public synchronized void parar() {
+        if (vigilante != null) {
+            vigilante.shutdownNow();
+            vigilante = null;
+        }
+    }
+
+    /**
+     * Vuelve a leer la lista de fuentes. La salud de las que siguen (mismo nombre y URL) se conserva;
+     * la de las quitadas o con otra URL se olvida.
+     *
+     * @throws IllegalStateException si la lista no es válida (se siguen usando las fuentes de antes).
+     */
+    public synchronized List<Fuente> recargar() {
+        List<Fuente> configuradas = leer();
+        validar(configuradas);
+
+        List<Fuente> activas = configuradas.stream()
+                .filter(Fuente::activa)
+                .sorted(Comparator.comparingInt(Fuente::prioridad).reversed())
+                .toList();
+        Map<String, Fuente> porNombre = new HashMap<>();
+        activas.forEach(f -> porNombre.put(f.nombre(), f));
+        estados.entrySet().removeIf(e -> {
+            Fuente fuente = porNombre.get(e.getKey());
+            return fuente == null || !fuente.url().equals(e.getValue().url);
+        });
+        for (Fuente fuente : activas) {
+            estados.computeIfAbsent(fuente.nombre(), n -> new EstadoFuente(fuente.url()));
+        }
+        fuentes = activas;
+
+        log.info("{} fuentes RSS activas ({} desactivadas){}", activas.size(), configuradas.size() - activas.size(),
+                fichero == null ? "" : " desde " + fichero);
+        observadores.forEach(Runnable::run);
+        return activas;
+    }
+
+    /**
+     * Fuentes activas, de más a menos prioridad.
+     */
+    public List<Fuente> fuentes() {
+        return fuentes;
+    }
+
+    public Optional<Fuente> fuente(String nombre) {
+        return fuentes.stream().filter(f -> f.nombre().equals(nombre)).findFirst();
+    }
+
+    public boolean contiene(String nombre) {
+        return fuente(nombre).isPresent();
+    }
+
+    /**
+     * Avisa de cada recarga (p.ej. al planificador, para sondear las fuentes nuevas).
+     */
+    public void alCambiar(Runnable observador) {
+        observadores.add(observador);
+    }
+
+    /**
+     * ¿Se puede leer ya esta fuente? No, si está en cuarentena; cuando ésta vence se deja pasar
+     * UN intento (los demás siguen esperando hasta que se sepa cómo ha ido).
+     */
+    public boolean admite(String nombre) {
+        EstadoFuente estado = estados.get(nombre);
+        return estado == null || estado.admite(reloj.instant());
+    }
+
+    /**
+     * Apunta cómo ha ido una lectura: OK y NO_MODIFICADO son éxitos; ERROR y TIMEOUT, fallos.
+     * Una lectura INTERRUMPIDA no cuenta: sólo deja libre el intento de prueba si lo era.
+     */
+    public void registrar(ResultadoFeed resultado) {
+        EstadoFuente estado = estados.get(resultado.fuente());
+        if (estado == null || resultado.estado() == ResultadoFeed.Estado.CUARENTENA) {
+            return;
+        }
+        if (resultado.estado() == ResultadoFeed.Estado.INTERRUMPIDA) {
+            estado.soltarPrueba();
+            return;
+        }
+        boolean fallo = resultado.estado() == ResultadoFeed.Estado.ERROR
+                || resultado.estado() == ResultadoFeed.Estado.TIMEOUT;
+        Duration cuarentena = estado.registrar(fallo, resultado.duracionMs(), resultado.error(), reloj.instant());
+        if (cuarentena != null) {
+            log.warn("Fuente {} en cuarentena durante {} s tras {} fallos seguidos (último: {})", resultado.fuente(),
+                    cuarentena.toSeconds(), fallosCuarentena, resultado.error());
+        }
+    }
+
+    /**
+     * Salud de las fuentes activas, en el orden en que se leen.
+     */
+    public List<Salud> salud() {
+        List<Salud> salud = new ArrayList<>();
+        for (Fuente fuente : fuentes) {
+            EstadoFuente estado = estados.get(fuente.nombre());
+            if (estado != null) {
+                salud.add(estado.salud(fuente, reloj.instant()));
+            }
+        }
+        return salud;
+    }
+
+    private int enCuarentena() {
+        Instant ahora = reloj.instant();
+        int n = 0;
+        for (EstadoFuente estado : estados.values()) {
+            if (estado.enCuarentena(ahora)) {
+                n++;
+            }
+        }
+        return n;
+    }
+
+    private void recargarSiCambia() {
+        try {
+            FileTime fecha = Files.exists(fichero) ? Files.getLastModifiedTime(fichero) : null;
+            synchronized (this) {
+                if (fecha == null || fecha.equals(fechaFichero)) {
+                    return;
+                }
+            }
+            recargar();
+        } catch (Exception e) {
+            log.error("No se ha podido recargar la lista de fuentes de {}: {}", fichero, e.getMessage());
+        }
+    }
+
+    /**
+     * El fichero (si lo hay y existe) va delante: la lista la da la primera fuente de propiedades que la tenga.
+     */
+    private List<Fuente> leer() {
+        List<ConfigurationPropertySource> origenes = new ArrayList<>();
+        if (fichero != null && Files.exists(fichero)) {
+            Properties propiedades = new Properties();
+            try (Reader reader = Files.newBufferedReader(fichero, StandardCharsets.UTF_8)) {
+                fechaFichero = Files.getLastModifiedTime(fichero);
+                propiedades.load(reader);
+            } catch (IOException e) {
+                throw new UncheckedIOException("No se puede leer " + fichero, e);
+            }
+            ConfigurationPropertySources.from(new PropertiesPropertySource(fichero.toString(), propiedades))
+                    .forEach(origenes::add);
+        }
+        ConfigurationPropertySources.get(entorno).forEach(origenes::add);
+
+        return new Binder(origenes).bind(PREFIJO, Bindable.listOf(Fuente.class)).orElse(List.of());
+    }
+
+    private static void validar(List<Fuente> fuentes) {
+        Set<String> nombres = new HashSet<>();
+        for (int i = 0; i < fuentes.size(); i++) {
+            Fuente fuente = fuentes.get(i);
+            if (fuente.nombre() == null || fuente.nombre().isBlank()) {
+                throw new IllegalStateException(PREFIJO + "[" + i + "]: falta el nombre");
+            }
+            if (fuente.url() == null || fuente.url().isBlank()) {
+                throw new IllegalStateException(PREFIJO + "[" + i + "] (" + fuente.nombre() + "): falta la URL");
+            }
+            if (!nombres.add(fuente.nombre())) {
+                throw new IllegalStateException(PREFIJO + "[" + i + "]: nombre repetido " + fuente.nombre());
+            }
+        }
+    }
+
+    /**
+     * Lo que se sabe de una fuente. Se toca desde los hilos de la ingesta y del planificador.
+     */
+    private final class EstadoFuente {
+
+        private final String url;
+        private Instant ultimoExito;
+        private int fallosSeguidos;
+        private long latenciaMediaMs = -1;
+        private String ultimoError;
+        private Instant cuarentenaHasta;
+        private long esperaMs;          // la de la última cuarentena (0 = nunca ha estado)
+        private boolean probando;       // vencida la cuarentena, ya hay un intento en marcha
+
+        EstadoFuente(String url) {
+            this.url = url;
+        }
+
+        synchronized boolean admite(Instant ahora) {
+            if (cuarentenaHasta == null) {
+                return true;
+            }
+            if (probando || ahora.isBefore(cuarentenaHasta)) {
+                return false;
+            }
+            probando = true;
+            return true;
+        }
+
+        synchronized void soltarPrueba() {
+            probando = false;
+        }
+
+        synchronized boolean enCuarentena(Instant ahora) {
+            return cuarentenaHasta != null && (probando || ahora.isBefore(cuarentenaHasta));
+        }
+
+        /**
+         * @return cuánto dura la cuarentena si este fallo la abre; null si no.
+         */
+        synchronized Duration registrar(boolean fallo, long duracionMs, String error, Instant ahora) {
+            latenciaMediaMs = latenciaMediaMs < 0
+                    ? duracionMs
+                    : Math.round(PESO_LATENCIA * duracionMs + (1 - PESO_LATENCIA) * latenciaMediaMs);
+            probando = false;
+
+            if (!fallo) {
+                ultimoExito = ahora;
+                fallosSeguidos = 0;
+                cuarentenaHasta = null;
+                esperaMs = 0;
+                return null;
+            }
+
+            fallosSeguidos++;
+            ultimoError = error;
+            // Una prueba fallida (cuarentena ya vencida) vuelve a encerrarla, con más espera
+            if (fallosSeguidos < fallosCuarentena && cuarentenaHasta == null) {
+                return null;
+            }
+            esperaMs = esperaMs == 0 ? esperaCuarentenaMs : Math.min(esperaMaxCuarentenaMs, esperaMs * 2);
+            cuarentenaHasta = ahora.plusMillis(esperaMs);
+            return Duration.ofMillis(esperaMs);
+        }
+
+        synchronized Salud salud(Fuente fuente, Instant ahora) {
+            return new Salud(fuente.nombre(), url, fuente.prioridad(), ultimoExito, fallosSeguidos, latenciaMediaMs,
+                    enCuarentena(ahora) ? cuarentenaHasta : null, ultimoError);
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package org.srpm.service;
+
+import org.srpm.model.Resumen;
+
+import java.util.List;
+
+/**
+ * Respuesta de GET /resumenes/search: los mejores resultados primero.
+ *
+ * @param coincidencias Cuántos resúmenes casaban en total (aunque sólo se devuelvan 'limit').
+ * @param milisegundos  Lo que ha tardado la búsqueda en el índice.
+ */
+public record ResultadoBusqueda(List<Acierto> resultados, int coincidencias, double milisegundos) {
+
+    public record Acierto(Resumen resumen, double puntuacion) { }
+}
@@ -0,0 +1,17 @@
+package org.srpm.service;
+
+/**
+ * Resultado de mandar a resumir un conjunto de noticias por lotes.
+ *
+ * @param lotes          Lotes en los que se partieron las noticias.
+ * @param lotesFallidos  Lotes que la IA no pudo resumir (sus noticias siguen pendientes).
+ * @param resumenes      Resúmenes recibidos y guardados.
+ * @param duracionMs     Tiempo total del despacho.
+ */
+public record ResultadoDespacho(
+        int lotes,
+        int lotesFallidos,
+        int resumenes,
+        long duracionMs
+) {
+}
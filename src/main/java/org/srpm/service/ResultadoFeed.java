@@ -0,0 +1,29 @@
+package org.srpm.service;
+
+/**
+ * Resultado de procesar UNA fuente RSS dentro de un ciclo de ingesta.
+ *
+ * @param fuente     Nombre de la fuente (ej. "COPE").
+ * @param nuevas     Noticias nuevas guardadas (aunque la fuente acabe en TIMEOUT o ERROR,
+ *                   las que ya se guardaron cuentan).
+ * @param duracionMs Tiempo que ha tardado la fuente, en milisegundos.
+ * @param estado     Cómo terminó la fuente.
+ * @param error      Mensaje de error (null si todo fue bien).
+ */
+public record ResultadoFeed(
+        String fuente,
+        int nuevas,
+        long duracionMs,
+        Estado estado,
+        String error
+) {
+
+    public enum Estado {
+        OK,
+        NO_MODIFICADO, // 304 o cuerpo idéntico: ni se ha parseado
+        TIMEOUT,
+        ERROR,
+        INTERRUMPIDA,  // se ha parado la ingesta (cierre, cancelación): no dice nada de la fuente
+        CUARENTENA     // fuente caída: ni se ha intentado (ver RegistroFeeds)
+    }
+}
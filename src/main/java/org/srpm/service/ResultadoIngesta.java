@@ -0,0 +1,21 @@
+package org.srpm.service;
+
+import java.util.List;
+
+/**
+ * Resultado agregado de un ciclo de ingesta: uno por cada fuente + el tiempo total.
+ * Con la ingesta concurrente, duracionMs ≈ la fuente más lenta (no la suma de todas).
+ */
+public record ResultadoIngesta(
+        List<ResultadoFeed> feeds,
+        long duracionMs
+) {
+
+    public int totalNuevas() {
+        return feeds.stream().mapToInt(ResultadoFeed::nuevas).sum();
+    }
+
+    public long fuentesConEstado(ResultadoFeed.Estado estado) {
+        return feeds.stream().filter(f -> f.estado() == estado).count();
+    }
+}
@@ -1,48 +1,65 @@
 package org.srpm.service;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.beans.factory.annotation.Value;
-import org.springframework.boot.web.client.RestTemplateBuilder;
-import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestClientException;
-import org.springframework.web.client.RestTemplate;
+import org.srpm.dao.EstadisticasAlmacen;
 import org.srpm.dao.NoticiaDAO;
+import org.srpm.dao.OrdenResumenes;
+import org.srpm.dao.PosicionResumen;
 import org.srpm.dao.ResumenDAO;
+import org.srpm.exception.ParametroInvalidoException;
 import org.srpm.exception.ResumenNotFoundException;
 import org.srpm.model.Noticia;
 import org.srpm.model.Resumen;
 
-import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
 import java.util.*;
+import java.util.function.Supplier;
 
 @Service
 public class ResumenService {
 
+    private static final Logger log = LoggerFactory.getLogger(ResumenService.class);
+
     // Dependencias
     private final RssParserService rssParserService;
     private final ResumenDAO resumenDAO;
     private final NoticiaDAO noticiaDAO;
-    private final RestTemplate restTemplate;
+    private final DespachadorResumenes despachadorResumenes;
+    private final CacheResumenes cacheResumenes;
+    private final IndiceBusqueda indiceBusqueda;
+    private final AgrupadorDuplicados agrupadorDuplicados;
+    private final MetricasPipeline metricas;
+    private final CerrojoPublicacion cerrojoPublicacion;
 
-    @Value("${ia.service.url}")
-    private String urlServicioIA;
+    static final int LIMITE_NOTICIAS = 20;
 
-    private static final int TIMEOUT_SECONDS = 30;
-    private static final int LIMITE_NOTICIAS = 20;
+    // Tamaño máximo de una página de GET /resumenes
+    static final int MAX_PAGINA = 500;
 
     @Autowired
     public ResumenService(RssParserService rssParserService,
                           ResumenDAO resumenDAO,
                           NoticiaDAO noticiaDAO,
-                          RestTemplateBuilder restTemplateBuilder) {
+                          DespachadorResumenes despachadorResumenes,
+                          CacheResumenes cacheResumenes,
+                          IndiceBusqueda indiceBusqueda,
+                          AgrupadorDuplicados agrupadorDuplicados,
+                          MetricasPipeline metricas,
+                          CerrojoPublicacion cerrojoPublicacion) {
         this.rssParserService = rssParserService;
         this.resumenDAO = resumenDAO;
         this.noticiaDAO = noticiaDAO;
-        this.restTemplate = restTemplateBuilder
-                .setConnectTimeout(Duration.ofSeconds(TIMEOUT_SECONDS))
-                .setReadTimeout(Duration.ofSeconds(TIMEOUT_SECONDS))
-                .build();
+        this.despachadorResumenes = despachadorResumenes;
+        this.cacheResumenes = cacheResumenes;
+        this.indiceBusqueda = indiceBusqueda;
+        this.agrupadorDuplicados = agrupadorDuplicados;
+        this.metricas = metricas;
+        this.cerrojoPublicacion = cerrojoPublicacion;
     }
 
 
@@ -51,101 +68,460 @@ public class ResumenService {
      *
      */
     public void generarYGuardarResumenes() {
-        System.out.println("--- [SERVICIO] Iniciando ciclo de actualización ---");
+        generarYGuardarResumenes(ObservadorCiclo.NINGUNO);
+    }
+
+    /**
+     * Igual, pero avisando al observador de cada fase y de los contadores.
+     */
+    public void generarYGuardarResumenes(ObservadorCiclo observador) {
+        log.info("Iniciando ciclo de actualización");
+        long inicio = System.nanoTime();
+        boolean ok = false;
+        try {
+            // 1. Descargar noticias RSS (cada fuente guarda lo suyo bajo el cerrojo de publicación)
+            observador.fase(ObservadorCiclo.Fase.DESCARGANDO);
+            ResultadoIngesta ingesta = rssParserService.ingestar(LIMITE_NOTICIAS);
+            log.info("Ingesta: {} noticias nuevas en {} ms", ingesta.totalNuevas(), ingesta.duracionMs());
+            observador.ingestaTerminada(ingesta);
+
+            // 2-4. Resumir sólo lo que aún no se ha resumido (cada lote se guarda según llega)
+            resumirPendientes(observador, noticiaDAO, resumenDAO);
+            ok = true;
+        } finally {
+            metricas.cicloTerminado("incremental", System.nanoTime() - inicio, ok);
+        }
+    }
 
-        // 1. Descargar noticias RSS
-        rssParserService.fetchAllFeeds(LIMITE_NOTICIAS);
+    /**
+     * Manda a la IA SOLO las noticias que todavía no se han resumido (el "delta" del ciclo),
+     * guarda los resúmenes vinculados a sus noticias y marca éstas como resumidas.
+     * Así el coste de la IA depende de lo que entra nuevo, no de todo el histórico.
+     *
+     * Las noticias van por lotes en paralelo y cada lote se guarda en cuanto vuelve.
+     *
+     * Sólo las escrituras van bajo CerrojoPublicacion (cada lote por separado), no las llamadas a la IA:
+     * un refresco total puede publicar a mitad del despacho. Si lo hace, los lotes que vuelvan después
+     * no se guardan (sus noticias ya no son las vivas) y lo pendiente se recoge en el siguiente ciclo.
+     */
+    public ResultadoDespacho resumirPendientes() {
+        return resumirPendientes(ObservadorCiclo.NINGUNO);
+    }
 
-        // 2. Obtener noticias crudas de la BBDD
-        List<Noticia> noticias = noticiaDAO.findAll();
-        if (noticias.isEmpty()) {
-            System.out.println("No hay noticias para procesar.");
-            return;
+    public ResultadoDespacho resumirPendientes(ObservadorCiclo observador) {
+        return resumirPendientes(observador, noticiaDAO, resumenDAO);
+    }
+
+    private ResultadoDespacho resumirPendientes(ObservadorCiclo observador, NoticiaDAO noticias, ResumenDAO resumenes) {
+        // 2. Obtener de la BBDD las noticias aún no resumidas
+        observador.fase(ObservadorCiclo.Fase.RESUMIENDO);
+        long generacion = noticias.getGeneracion(); // antes de leer: si cambia luego, no se guarda nada
+        List<Noticia> pendientes = noticias.findPendientesDeResumen();
+        observador.noticiasAResumir(pendientes.size());
+        if (pendientes.isEmpty()) {
+            log.info("No hay noticias nuevas para procesar");
+            return new ResultadoDespacho(0, 0, 0, 0);
         }
 
-        // 3. Obtener resúmenes de la IA
-        List<Resumen> nuevosResumenes = obtenerResumenesDeIA(noticias);
+        // 3a. La misma historia contada por varios medios va a la IA una sola vez (la primera noticia
+        //     del grupo); si el grupo ya tiene resumen de un ciclo anterior, o alguna de sus noticias
+        //     está en la caché (mismo texto ya resumido), ni eso: el grupo entero se vincula a ese resumen.
+        Map<Long, AgrupadorDuplicados.Grupo> grupoPorRepresentante = new HashMap<>();
+        Reparto reparto = escribirEnGeneracion(noticias, generacion,
+                () -> agruparDuplicados(pendientes, grupoPorRepresentante, noticias, resumenes),
+                new Reparto(List.of(), 0));
+        List<Noticia> representantes = reparto.representantes();
+        int desdeCache = reparto.desdeCache();
+        if (desdeCache > 0) {
+            observador.loteGuardado(desdeCache);
+            log.info("{} resúmenes servidos desde la caché", desdeCache);
+        }
 
-        // 4. Guardar resultados
-        guardarResumenesEnBBDD(nuevosResumenes);
+        // 3b-4. El resto, por lotes, guardando cada lote según llega.
+        //       Si un lote falla, sus noticias (y sus duplicados) siguen pendientes y se reintentan en el próximo ciclo.
+        ResultadoDespacho despacho = representantes.isEmpty()
+                ? new ResultadoDespacho(0, 0, 0, 0)
+                : despachadorResumenes.despachar(representantes, (lote, resumenesLote) -> {
+                    boolean guardado = escribirEnGeneracion(noticias, generacion, () -> {
+                        guardarLote(lote, resumenesLote, grupoPorRepresentante, noticias, resumenes);
+                        return true;
+                    }, false);
+                    if (guardado) {
+                        observador.loteGuardado(resumenesLote.size());
+                    } else {
+                        log.warn("Se ha publicado otra generación durante el despacho: lote de {} noticias descartado",
+                                lote.size());
+                    }
+                });
+        ResultadoDespacho resultado = new ResultadoDespacho(despacho.lotes(), despacho.lotesFallidos(),
+                despacho.resumenes() + desdeCache, despacho.duracionMs());
+        observador.despachoTerminado(resultado);
+
+        log.info("Resumen del ciclo: {} resúmenes de {} lotes ({} fallidos) en {} ms", resultado.resumenes(),
+                resultado.lotes(), resultado.lotesFallidos(), resultado.duracionMs());
+        return resultado;
     }
 
 
     // MÉTODOS HELPER
 
-    private List<Resumen> obtenerResumenesDeIA(List<Noticia> noticias) {
-        System.out.println("Enviando " + noticias.size() + " noticias a la IA...");
-        try {
-            ResponseEntity<Resumen[]> response = restTemplate.postForEntity(
-                    urlServicioIA,
-                    noticias,
-                    Resumen[].class
-            );
-
-            if (response.getStatusCode().is2xxSuccessful() && response.getBody() != null) {
-                return Arrays.asList(response.getBody());
-            } else {
-                System.err.println("La IA respondió con estado: " + response.getStatusCode());
+    /**
+     * Hace la escritura bajo el cerrojo de publicación si 'noticias' sigue en la generación 'generacion';
+     * si se ha publicado otra entretanto, no escribe nada y devuelve 'siNo'.
+     */
+    private <T> T escribirEnGeneracion(NoticiaDAO noticias, long generacion, Supplier<T> escritura, T siNo) {
+        return cerrojoPublicacion.escribiendo(() -> noticias.getGeneracion() == generacion ? escritura.get() : siNo);
+    }
+
+    /**
+     * Lo que sale de agrupar los pendientes: las noticias que hay que mandar a la IA (una por grupo
+     * nuevo) y cuántos grupos se han resuelto con un resumen de la caché.
+     */
+    private record Reparto(List<Noticia> representantes, int desdeCache) { }
+
+    /**
+     * Agrupa las noticias duplicadas y devuelve las que hay que mandar a la IA: una por grupo nuevo.
+     * Los grupos que ya tienen resumen (de un ciclo anterior, o en la caché por alguna de sus noticias)
+     * se vinculan a él enteros y quedan resueltos.
+     */
+    private Reparto agruparDuplicados(List<Noticia> pendientes, Map<Long, AgrupadorDuplicados.Grupo> grupoPorRepresentante,
+                                      NoticiaDAO noticias, ResumenDAO resumenes) {
+        List<Noticia> representantes = new ArrayList<>();
+        List<Long> vinculadas = new ArrayList<>();
+        List<Long> desdeCache = new ArrayList<>();
+        int resumenesDeCache = 0;
+        for (AgrupadorDuplicados.Grupo grupo : agrupadorDuplicados.agrupar(pendientes)) {
+            List<Long> ids = grupo.noticias().stream().map(Noticia::getId).toList();
+            Optional<Resumen> previo = grupo.resumenId() == null ? Optional.empty() : resumenes.findById(grupo.resumenId());
+            if (previo.isPresent()) {
+                Resumen resumen = previo.get();
+                resumen.setNoticiaIds(unir(resumen.getNoticiaIds(), ids));
+                resumenes.save(resumen);
+                vinculadas.addAll(ids);
+                continue;
+            }
+            Optional<Resumen> enCache = buscarEnCache(grupo);
+            if (enCache.isPresent()) {
+                Resumen resumen = enCache.get();
+                resumen.setNoticiaIds(ids);
+                resumenes.save(resumen);
+                agrupadorDuplicados.resumido(grupo.id(), resumen.getId());
+                desdeCache.addAll(ids);
+                resumenesDeCache++;
+                continue;
             }
+            Noticia representante = grupo.noticias().getFirst();
+            representantes.add(representante);
+            grupoPorRepresentante.put(representante.getId(), grupo);
+        }
+        if (!vinculadas.isEmpty()) {
+            noticias.marcarResumidas(vinculadas);
+            log.info("{} noticias duplicadas vinculadas a resúmenes ya hechos", vinculadas.size());
+        }
+        if (!desdeCache.isEmpty()) {
+            noticias.marcarResumidas(desdeCache);
+        }
+        int duplicadas = pendientes.size() - vinculadas.size() - desdeCache.size() - representantes.size();
+        if (duplicadas > 0) {
+            log.info("{} noticias duplicadas irán con el resumen de su grupo", duplicadas);
+        }
+        return new Reparto(representantes, resumenesDeCache);
+    }
+
+    // El primer resumen en caché de cualquiera de las noticias del grupo
+    private Optional<Resumen> buscarEnCache(AgrupadorDuplicados.Grupo grupo) {
+        for (Noticia noticia : grupo.noticias()) {
+            Optional<Resumen> enCache = cacheResumenes.buscar(noticia);
+            if (enCache.isPresent()) {
+                return enCache;
+            }
+        }
+        return Optional.empty();
+    }
+
+    private void guardarLote(List<Noticia> lote, List<Resumen> resumenesLote,
+                             Map<Long, AgrupadorDuplicados.Grupo> grupoPorRepresentante,
+                             NoticiaDAO noticias, ResumenDAO resumenes) {
+        vincularConNoticias(resumenesLote, lote);
+        // A la caché antes de añadir los duplicados: sólo guarda resúmenes de una única noticia
+        cacheResumenes.guardar(lote, resumenesLote);
+
+        // Cada resumen se lleva también los duplicados de las noticias de las que sale
+        for (Resumen resumen : resumenesLote) {
+            List<Long> conDuplicados = new ArrayList<>();
+            for (Long id : resumen.getNoticiaIds()) {
+                AgrupadorDuplicados.Grupo grupo = grupoPorRepresentante.get(id);
+                conDuplicados.addAll(grupo == null ? List.of(id) : grupo.noticias().stream().map(Noticia::getId).toList());
+            }
+            resumen.setNoticiaIds(unir(List.of(), conDuplicados));
+        }
+        guardarResumenesEnBBDD(resumenesLote, resumenes);
+
+        List<Long> resueltas = new ArrayList<>();
+        for (Noticia noticia : lote) {
+            AgrupadorDuplicados.Grupo grupo = grupoPorRepresentante.get(noticia.getId());
+            if (grupo == null) {
+                resueltas.add(noticia.getId());
+                continue;
+            }
+            grupo.noticias().forEach(n -> resueltas.add(n.getId()));
+            resumenesLote.stream()
+                    .filter(r -> r.getNoticiaIds().contains(noticia.getId()))
+                    .findFirst()
+                    .ifPresent(r -> agrupadorDuplicados.resumido(grupo.id(), r.getId()));
+        }
+        noticias.marcarResumidas(resueltas);
+    }
+
+    private static List<Long> unir(List<Long> a, List<Long> b) {
+        Set<Long> union = new LinkedHashSet<>(a == null ? List.of() : a);
+        union.addAll(b);
+        return List.copyOf(union);
+    }
 
-        } catch (RestClientException e) {
-            System.err.println("Error conectando con el servicio de IA: " + e.getMessage());
-            // No lanzamos excepción para no detener la app, devolvemos lista vacía
+    /**
+     * Apunta en cada resumen de qué noticias sale, si la IA no lo ha dicho ya:
+     * - si hay un resumen por noticia, se emparejan en orden;
+     * - si no, cada resumen se vincula a todas las noticias enviadas.
+     */
+    private void vincularConNoticias(List<Resumen> resumenes, List<Noticia> noticias) {
+        List<Long> todas = noticias.stream().map(Noticia::getId).toList();
+        for (int i = 0; i < resumenes.size(); i++) {
+            Resumen resumen = resumenes.get(i);
+            if (resumen.getNoticiaIds() != null && !resumen.getNoticiaIds().isEmpty()) {
+                continue;
+            }
+            resumen.setNoticiaIds(resumenes.size() == noticias.size() ? List.of(todas.get(i)) : todas);
         }
-        return Collections.emptyList();
     }
 
-    private void guardarResumenesEnBBDD(List<Resumen> resumenes) {
+    private void guardarResumenesEnBBDD(List<Resumen> resumenes, ResumenDAO destino) {
         if (resumenes.isEmpty()) return;
 
-        System.out.println("Guardando " + resumenes.size() + " resúmenes nuevos.");
+        log.debug("Guardando {} resúmenes nuevos", resumenes.size());
         for (Resumen resumen : resumenes) {
-            resumenDAO.save(resumen);
+            destino.save(resumen);
         }
     }
 
 
+    public EstadisticasAlmacen estadisticasAlmacen() {
+        return noticiaDAO.estadisticas();
+    }
+
+    public CacheResumenes.Estadisticas estadisticasCache() {
+        return cacheResumenes.estadisticas();
+    }
+
     public List<Resumen> findAll() {
         return resumenDAO.findAll();
     }
 
+    /**
+     * Versión actual de los resúmenes (sube con cada cambio). Para ETags y cachés de respuestas.
+     */
+    public long version() {
+        return resumenDAO.getVersion();
+    }
+
+    /**
+     * Paginación por cursor: 'despuesDe' es el 'siguiente' de la página anterior (null = la primera).
+     * El cursor lleva la posición del último resumen servido (en el orden por fecha, "fecha_id"), así que
+     * sigue valiendo aunque ese resumen se borre o cambie. Se pide uno de más al DAO para saber si hay
+     * página siguiente sin contar el total.
+     */
+    public PaginaResumenes findPagina(String despuesDe, int limite, String orden) {
+        OrdenResumenes ordenPedido;
+        try {
+            ordenPedido = OrdenResumenes.valueOf(orden.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new ParametroInvalidoException("Orden desconocido: " + orden + " (use 'id' o 'fecha')");
+        }
+        int tamPagina = Math.clamp(limite, 1, MAX_PAGINA);
+
+        PosicionResumen posicion = despuesDe == null || despuesDe.isBlank() ? null : posicion(despuesDe, ordenPedido);
+        List<Resumen> resumenes = resumenDAO.findPagina(posicion, tamPagina + 1, ordenPedido);
+
+        if (resumenes.size() <= tamPagina) {
+            return new PaginaResumenes(resumenes, null);
+        }
+        List<Resumen> pagina = resumenes.subList(0, tamPagina);
+        return new PaginaResumenes(pagina, cursor(pagina.getLast(), ordenPedido));
+    }
+
+    private static String cursor(Resumen ultimo, OrdenResumenes orden) {
+        return orden == OrdenResumenes.ID ? String.valueOf(ultimo.getId()) : ultimo.getFecha() + "_" + ultimo.getId();
+    }
+
+    private static PosicionResumen posicion(String cursor, OrdenResumenes orden) {
+        try {
+            if (orden == OrdenResumenes.ID) {
+                return PosicionResumen.porId(Long.parseLong(cursor));
+            }
+            int separador = cursor.lastIndexOf('_');
+            if (separador < 0) {
+                throw new IllegalArgumentException("falta la fecha");
+            }
+            return new PosicionResumen(Long.parseLong(cursor.substring(separador + 1)),
+                    LocalDateTime.parse(cursor.substring(0, separador)));
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            throw new ParametroInvalidoException("Cursor no válido: " + cursor + ". Vuelva a la primera página.");
+        }
+    }
+
+    /**
+     * Búsqueda de texto (BM25) con filtros opcionales por fuente y por fecha del resumen
+     * ('desde' y 'hasta' en formato yyyy-MM-dd, los dos días incluidos).
+     */
+    public ResultadoBusqueda buscar(String consulta, String fuente, String desde, String hasta, int limite) {
+        if (consulta == null || consulta.isBlank()) {
+            throw new ParametroInvalidoException("Falta el texto a buscar (q)");
+        }
+        IndiceBusqueda.Filtro filtro = new IndiceBusqueda.Filtro(
+                fuente == null || fuente.isBlank() ? null : fuente,
+                desde == null || desde.isBlank() ? null : dia(desde).atStartOfDay(),
+                hasta == null || hasta.isBlank() ? null : dia(hasta).plusDays(1).atStartOfDay());
+
+        long inicio = System.nanoTime();
+        IndiceBusqueda.Coincidencias coincidencias =
+                indiceBusqueda.buscar(consulta, filtro, Math.clamp(limite, 1, MAX_PAGINA));
+        double ms = (System.nanoTime() - inicio) / 1_000_000.0;
+
+        List<ResultadoBusqueda.Acierto> aciertos = new ArrayList<>(coincidencias.mejores().size());
+        for (IndiceBusqueda.Candidato candidato : coincidencias.mejores()) {
+            resumenDAO.findById(candidato.id())
+                    .ifPresent(r -> aciertos.add(new ResultadoBusqueda.Acierto(r, candidato.puntuacion())));
+        }
+        return new ResultadoBusqueda(aciertos, coincidencias.total(), ms);
+    }
+
+    private static LocalDate dia(String texto) {
+        try {
+            return LocalDate.parse(texto);
+        } catch (DateTimeParseException e) {
+            throw new ParametroInvalidoException("Fecha no válida: " + texto + " (use yyyy-MM-dd)");
+        }
+    }
+
     public Resumen findById(Long id) {
         return resumenDAO.findById(id)
                 .orElseThrow(() -> new ResumenNotFoundException("Resumen no encontrado con ID: " + id));
     }
 
     public Resumen save(Resumen resumen) {
-        resumenDAO.save(resumen);
+        cerrojoPublicacion.escribiendo(() -> resumenDAO.save(resumen));
         return resumen;
     }
 
 
     public Resumen update(Long id, Resumen resumenNuevosDatos) {
-        Resumen existente = findById(id); // Reutilizamos findById que ya lanza la excepción
+        return cerrojoPublicacion.escribiendo(() -> {
+            Resumen existente = findById(id); // Reutilizamos findById que ya lanza la excepción
 
-        existente.setTitular(resumenNuevosDatos.getTitular());
-        existente.setCuerpo(resumenNuevosDatos.getCuerpo());
+            existente.setTitular(resumenNuevosDatos.getTitular());
+            existente.setCuerpo(resumenNuevosDatos.getCuerpo());
 
-        resumenDAO.save(existente);
-        return existente;
+            resumenDAO.save(existente);
+            return existente;
+        });
     }
 
     public void delete(Long id) {
-        if (resumenDAO.findById(id).isEmpty()) {
-            throw new ResumenNotFoundException("No se puede eliminar. ID no existe: " + id);
-        }
-        resumenDAO.deleteById(id);
+        cerrojoPublicacion.escribiendo(() -> {
+            if (resumenDAO.findById(id).isEmpty()) {
+                throw new ResumenNotFoundException("No se puede eliminar. ID no existe: " + id);
+            }
+            resumenDAO.deleteById(id);
+        });
     }
     public void refrescarTodo() {
-        System.out.println("--- [SERVICIO] Ejecutando REFRESCO TOTAL ---");
+        refrescarTodo(ObservadorCiclo.NINGUNO);
+    }
+
+    /**
+     * Refresco total sin ventana vacía: se descarga y se resume todo en una generación nueva,
+     * aparte, mientras los lectores siguen viendo la anterior. Sólo si el ciclo sale bien se
+     * publica de golpe; si falla, la generación nueva se tira y no se toca nada.
+     *
+     * Lo que se escriba mientras tanto en la generación viva (API, planificador, ciclos) también
+     * llega a la nueva, con los mismos ids (ver NoticiaDAO.nuevaGeneracion).
+     */
+    public void refrescarTodo(ObservadorCiclo observador) {
+        log.info("Ejecutando refresco total");
+        long inicio = System.nanoTime();
+
+        // 1. Generación nueva, vacía y todavía invisible
+        NoticiaDAO noticiasNuevas = noticiaDAO.nuevaGeneracion();
+        ResumenDAO resumenesNuevos = resumenDAO.nuevaGeneracion();
+        try {
+            refrescarGeneracion(observador, noticiasNuevas, resumenesNuevos);
+        } catch (RuntimeException | Error e) {
+            noticiaDAO.descartar(noticiasNuevas);
+            resumenDAO.descartar(resumenesNuevos);
+            metricas.cicloTerminado("total", System.nanoTime() - inicio, false);
+            throw e;
+        }
+        metricas.cicloTerminado("total", System.nanoTime() - inicio, true);
+        log.info("Refresco completado");
+    }
 
-        // 1. Limpieza total (Borrón)
-        resumenDAO.deleteAll();
-        noticiaDAO.deleteAll();
-        System.out.println("Datos antiguos eliminados.");
+    private void refrescarGeneracion(ObservadorCiclo observador, NoticiaDAO noticiasNuevas, ResumenDAO resumenesNuevos) {
+        rssParserService.olvidarValidadores(); // partimos de cero: un 304 no nos serviría de nada
 
-        this.generarYGuardarResumenes();
+        observador.fase(ObservadorCiclo.Fase.DESCARGANDO);
+        ResultadoIngesta ingesta = rssParserService.ingestar(LIMITE_NOTICIAS, noticiasNuevas);
+        log.info("Ingesta: {} noticias nuevas en {} ms", ingesta.totalNuevas(), ingesta.duracionMs());
+        observador.ingestaTerminada(ingesta);
+        if (ingesta.totalNuevas() == 0 && !ingesta.feeds().isEmpty()) {
+            throw new IllegalStateException("Ninguna fuente ha devuelto noticias; se conservan los datos actuales");
+        }
+        int heredadas = heredarNoLeidas(ingesta, noticiasNuevas);
+        if (heredadas > 0) {
+            log.info("{} noticias de fuentes sin leer pasan a la generación nueva", heredadas);
+        }
+
+        // 2-4. Resumir dentro de la generación nueva
+        ResultadoDespacho despacho = resumirPendientes(observador, noticiasNuevas, resumenesNuevos);
+        if (despacho.lotesFallidos() > 0) {
+            throw new IllegalStateException(despacho.lotesFallidos() + " de " + despacho.lotes()
+                    + " lotes no se han podido resumir; se conservan los datos actuales");
+        }
 
-        System.out.println("--- [SERVICIO] Refresco completado ---");
+        // 5. Publicar las dos generaciones a la vez: sin nadie escribiendo entre un cambio y otro
+        observador.fase(ObservadorCiclo.Fase.GUARDANDO);
+        cerrojoPublicacion.publicando(() -> {
+            noticiaDAO.publicar(noticiasNuevas);
+            resumenDAO.publicar(resumenesNuevos);
+        });
+    }
+
+    /**
+     * Las fuentes que no se han podido leer (en cuarentena, con error...) no han traído nada a la
+     * generación nueva: sus noticias de la actual se copian a ella (y se resumen otra vez allí) para
+     * que publicarla no las haga desaparecer.
+     */
+    private int heredarNoLeidas(ResultadoIngesta ingesta, NoticiaDAO noticiasNuevas) {
+        Set<String> noLeidas = new HashSet<>();
+        for (ResultadoFeed feed : ingesta.feeds()) {
+            if (feed.estado() != ResultadoFeed.Estado.OK) {
+                noLeidas.add(feed.fuente());
+            }
+        }
+        if (noLeidas.isEmpty()) {
+            return 0;
+        }
+        List<Noticia> copias = new ArrayList<>();
+        for (Noticia noticia : noticiaDAO.findAll()) {
+            if (noLeidas.contains(noticia.getFuente())) {
+                Noticia copia = new Noticia();
+                copia.setFuente(noticia.getFuente());
+                copia.setTitular(noticia.getTitular());
+                copia.setLinkNoticia(noticia.getLinkNoticia());
+                copia.setContenido(noticia.getContenido());
+                copia.setFecha(noticia.getFecha());
+                copias.add(copia);
+            }
+        }
+        return noticiasNuevas.saveAll(copias).size();
     }
  }
@@ -1,202 +1,431 @@
 package org.srpm.service;
 
-import com.rometools.rome.feed.synd.SyndEntry;
-import com.rometools.rome.feed.synd.SyndFeed;
-import com.rometools.rome.io.SyndFeedInput;
-import com.rometools.rome.io.XmlReader;
-import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.srpm.dao.NoticiaDAO;
 import org.srpm.model.Noticia;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import org.springframework.web.util.HtmlUtils;
 
-import java.net.URL;
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.time.Duration;
 import java.time.ZoneId;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
-import java.util.regex.Pattern;
+import java.util.Map;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 
 @Service
 public class RssParserService {
 
-    // 1. Inyectamos las URLs desde el archivo de propiedades
-    @Value("${rss.url.20minutos}")
-    private String url20Minutos;
+    private static final Logger log = LoggerFactory.getLogger(RssParserService.class);
 
-    @Value("${rss.url.cope}")
-    private String urlCope;
+    // Ingesta concurrente: cada fuente en su propio hilo virtual
+    @Value("${rss.ingesta.concurrente:true}")
+    private boolean ingestaConcurrente;
 
-    @Value("${rss.url.eldiario}")
-    private String urlElDiario;
+    // Plazo máximo para UNA fuente (conexión + descarga + parseo)
+    @Value("${rss.timeout.fuente-ms:10000}")
+    private long timeoutFuenteMs;
 
-    /**
-     * Esta es la lista de fuentes.
-     * IMPORTANTE: No la inicializamos aquí, porque las URLs de arriba
-     * todavía serían 'null'. La inicializaremos en el método @PostConstruct.
-     */
-    private List<FeedSource> feeds;
-
-    private final NoticiaDAO noticiaDAO;
+    // Plazo máximo para el ciclo COMPLETO de ingesta
+    @Value("${rss.timeout.ciclo-ms:30000}")
+    private long timeoutCicloMs;
 
-    //Record para FeedSource
-    private record FeedSource(String nombre, String url) { }
+    // Fuentes leyéndose a la vez en modo concurrente (0 = todas); los huecos van por prioridad
+    @Value("${rss.ingesta.max-concurrentes:0}")
+    private int maxConcurrentes;
 
+    private final NoticiaDAO noticiaDAO;
+    private final DescargadorFeeds descargadorFeeds;
+    private final CacheValidadoresFeed cacheValidadores;
+    private final LectorFeed lectorFeed;
+    private final LimpiadorHtml limpiadorHtml;
+    private final MetricasPipeline metricas;
+    private final RegistroFeeds registroFeeds;
+    private final CerrojoPublicacion cerrojoPublicacion;
 
     @Autowired
-    public RssParserService(NoticiaDAO noticiaDAO) {
+    public RssParserService(NoticiaDAO noticiaDAO,
+                            DescargadorFeeds descargadorFeeds,
+                            CacheValidadoresFeed cacheValidadores,
+                            LectorFeed lectorFeed,
+                            LimpiadorHtml limpiadorHtml,
+                            MetricasPipeline metricas,
+                            RegistroFeeds registroFeeds,
+                            CerrojoPublicacion cerrojoPublicacion) {
         this.noticiaDAO = noticiaDAO;
-        System.out.println(": RssParserService CONSTRUIDO. Las URLs aún son null.");
+        this.descargadorFeeds = descargadorFeeds;
+        this.cacheValidadores = cacheValidadores;
+        this.lectorFeed = lectorFeed;
+        this.limpiadorHtml = limpiadorHtml;
+        this.metricas = metricas;
+        this.registroFeeds = registroFeeds;
+        this.cerrojoPublicacion = cerrojoPublicacion;
     }
 
-    @PostConstruct
-    public void inicializarFuentes() {
-        System.out.println("============================================================");
-        System.out.println("DEBUG: Ejecutando @PostConstruct para cargar URLs...");
-        System.out.println("DEBUG - 20minutos: " + url20Minutos);
-        System.out.println("DEBUG - COPE: " + urlCope);
-        System.out.println("DEBUG - elDiario: " + urlElDiario);
-
-        // 2. Ahora sí creamos la lista, porque las URLs ya no son null
-        this.feeds = List.of(
-                new FeedSource("20minutos", url20Minutos),
-                new FeedSource("COPE", urlCope),
-                new FeedSource("elDiario", urlElDiario)
-        );
-
-        System.out.println("DEBUG: ¡Lista de 'feeds' creada! (" + feeds.size() + " fuentes)");
-        System.out.println("============================================================");
-    }
-
-
     /**
      * Método principal que llama la API.
-     * (Este método no cambia)
+     * Devuelve un texto resumen; el detalle por fuente está en {@link #ingestar(int)}.
      */
     public String fetchAllFeeds(int limiteNoticiasPorFeed) {
-        System.out.println("--- [PETICIÓN API] Iniciando lectura de RSS con límite: " + limiteNoticiasPorFeed + " ---");
-        int totalNuevas = 0;
+        log.info("Lectura de RSS pedida por la API, límite {} por fuente", limiteNoticiasPorFeed);
 
-        // Comprobación por si algo falló en PostConstruct
-        if (feeds == null || feeds.isEmpty()) {
-            System.err.println("¡¡ERROR GRAVE!! La lista de feeds está vacía. Revisa @PostConstruct y application.properties.");
-            return "Error: Lista de feeds no inicializada.";
+        if (registroFeeds.fuentes().isEmpty()) {
+            log.error("No hay fuentes RSS activas. Revisa 'rss.feeds' en application.properties (o 'rss.registro.fichero').");
+            return "Error: no hay fuentes RSS activas.";
         }
 
-        for (FeedSource feed : feeds) {
-            // Se pasa el límite al método de parsing
-            int nuevas = parseAndSaveFeed(feed.url(), feed.nombre(), limiteNoticiasPorFeed);
-            System.out.println("Fuente: " + feed.nombre() + " - Noticias nuevas: " + nuevas);
-            totalNuevas += nuevas;
-        }
+        ResultadoIngesta resultado = ingestar(limiteNoticiasPorFeed);
 
-        String resumen = "Actualización completada. " + totalNuevas + " noticias nuevas añadidas.";
-        System.out.println("--- [PETICIÓN API] " + resumen + " ---");
+        String resumen = "Actualización completada. " + resultado.totalNuevas() + " noticias nuevas añadidas en "
+                + resultado.duracionMs() + " ms (" + resultado.fuentesConEstado(ResultadoFeed.Estado.NO_MODIFICADO)
+                + " fuentes sin cambios).";
+        log.info(resumen);
         return resumen;
     }
 
     /**
-     * Lee una URL de RSS, la procesa y guarda las noticias nuevas en la BBDD.
-     * (Este método no cambia)
+     * Lee todas las fuentes activas (de más a menos prioridad) y devuelve el resultado de cada una.
+     * Según 'rss.ingesta.concurrente' lo hace en paralelo (hilos virtuales) o una detrás de otra.
+     * En paralelo, la prioridad sólo decide algo con 'rss.ingesta.max-concurrentes' (quién coge hueco antes).
+     * Las fuentes en cuarentena no se leen: salen con estado CUARENTENA.
      */
-    private int parseAndSaveFeed(String feedUrl, String sourceName, int limiteNoticiasPorFeed) {
-        int noticiasNuevasContador = 0;
+    public ResultadoIngesta ingestar(int limiteNoticiasPorFeed) {
+        return ingestar(limiteNoticiasPorFeed, noticiaDAO);
+    }
 
-        // feedUrl ya no será 'null' gracias al @PostConstruct
-        try (var reader = new XmlReader(new URL(feedUrl))) {
+    /**
+     * Igual, pero guardando las noticias en 'destino' (p.ej. una generación nueva que aún no se ha publicado).
+     */
+    public ResultadoIngesta ingestar(int limiteNoticiasPorFeed, NoticiaDAO destino) {
+        List<ResultadoFeed> enCuarentena = new ArrayList<>();
+        List<RegistroFeeds.Fuente> feeds = new ArrayList<>();
+        for (RegistroFeeds.Fuente feed : registroFeeds.fuentes()) {
+            if (registroFeeds.admite(feed.nombre())) {
+                feeds.add(feed);
+            } else {
+                enCuarentena.add(registrar(enCuarentena(feed)));
+            }
+        }
+        if (feeds.isEmpty()) {
+            return new ResultadoIngesta(enCuarentena, 0);
+        }
 
-            SyndFeed feed = new SyndFeedInput().build(reader);
-            List<SyndEntry> todasLasNoticiasDelFeed = feed.getEntries();
+        ResultadoIngesta resultado = ingestaConcurrente
+                ? ingestarConcurrente(feeds, limiteNoticiasPorFeed, destino)
+                : ingestarSecuencial(feeds, limiteNoticiasPorFeed, destino);
+        if (enCuarentena.isEmpty()) {
+            return resultado;
+        }
+        List<ResultadoFeed> todos = new ArrayList<>(resultado.feeds());
+        todos.addAll(enCuarentena);
+        return new ResultadoIngesta(todos, resultado.duracionMs());
+    }
 
-            // Aplicar el límite
-            int totalNoticiasEnFeed = todasLasNoticiasDelFeed.size();
-            int limiteReal = Math.min(totalNoticiasEnFeed, limiteNoticiasPorFeed);
-            List<SyndEntry> noticiasLimitadas = todasLasNoticiasDelFeed.subList(0, limiteReal);
+    /**
+     * Modo clásico: una fuente detrás de otra. El ciclo dura la SUMA de todas las fuentes.
+     */
+    private ResultadoIngesta ingestarSecuencial(List<RegistroFeeds.Fuente> feeds, int limiteNoticiasPorFeed,
+                                               NoticiaDAO destino) {
+        long inicio = System.nanoTime();
+        List<ResultadoFeed> resultados = new ArrayList<>();
+
+        for (RegistroFeeds.Fuente feed : feeds) {
+            ResultadoFeed resultado = procesarFuente(feed, limiteNoticiasPorFeed, new AtomicInteger(), destino);
+            resultados.add(registrar(resultado));
+        }
 
-            System.out.println("Fuente: " + sourceName + " - Encontradas " + totalNoticiasEnFeed + ", procesando " + limiteReal);
+        return new ResultadoIngesta(resultados, msDesde(inicio));
+    }
 
-            for (SyndEntry entry : noticiasLimitadas) {
+    /**
+     * Modo concurrente: cada fuente en su propio hilo virtual, como mucho 'rss.ingesta.max-concurrentes'
+     * a la vez (0 = todas). Los huecos se dan por orden de prioridad: con límite, las de más prioridad
+     * empiezan antes; sin él, todas empiezan a la vez y la prioridad no cambia nada.
+     *
+     * Cada fuente tiene su plazo ('rss.timeout.fuente-ms', desde que empieza) y el ciclo entero otro
+     * ('rss.timeout.ciclo-ms'). Si una fuente se pasa de plazo se cancela y se marca como TIMEOUT, sin frenar
+     * a las demás; las que no llegan a empezar antes del fin del ciclo salen como INTERRUMPIDA (no es culpa
+     * suya). Sin límite, el ciclo dura lo que la fuente más lenta, no la suma.
+     */
+    private ResultadoIngesta ingestarConcurrente(List<RegistroFeeds.Fuente> feeds, int limiteNoticiasPorFeed,
+                                                NoticiaDAO destino) {
+        long inicio = System.nanoTime();
+        long finCiclo = inicio + TimeUnit.MILLISECONDS.toNanos(timeoutCicloMs);
+        int huecos = maxConcurrentes > 0 ? maxConcurrentes : feeds.size();
+
+        // El contador se comparte con la tarea para saber cuántas se guardaron aunque haya TIMEOUT
+        Map<RegistroFeeds.Fuente, AtomicInteger> contadores = new HashMap<>();
+        Map<RegistroFeeds.Fuente, ResultadoFeed> resultados = new HashMap<>();
+        Map<Future<ResultadoFeed>, EnCurso> enCurso = new HashMap<>();
+        Deque<RegistroFeeds.Fuente> enEspera = new ArrayDeque<>(feeds); // ya vienen por prioridad
+
+        // OJO: no usamos try-with-resources, porque close() esperaría a las tareas colgadas
+        // y el plazo del ciclo dejaría de cumplirse.
+        ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+        CompletionService<ResultadoFeed> terminadas = new ExecutorCompletionService<>(executor);
+        try {
+            while (!enEspera.isEmpty() || !enCurso.isEmpty()) {
+                while (enCurso.size() < huecos && !enEspera.isEmpty() && System.nanoTime() < finCiclo) {
+                    RegistroFeeds.Fuente feed = enEspera.poll();
+                    AtomicInteger contador = new AtomicInteger();
+                    contadores.put(feed, contador);
+                    long fin = Math.min(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutFuenteMs), finCiclo);
+                    enCurso.put(terminadas.submit(() -> procesarFuente(feed, limiteNoticiasPorFeed, contador, destino)),
+                            new EnCurso(feed, fin));
+                }
+                if (enCurso.isEmpty()) {
+                    break; // se acabó el ciclo con fuentes sin empezar
+                }
 
-                String link = entry.getLink();
-                if (link == null) {
-                    continue;
+                // Hasta que termine alguna o venza el primer plazo
+                long primerFin = enCurso.values().stream().mapToLong(EnCurso::fin).min().orElseThrow();
+                Future<ResultadoFeed> terminada = terminadas.poll(Math.max(0, primerFin - System.nanoTime()),
+                        TimeUnit.NANOSECONDS);
+                // (las ya canceladas también pasan por aquí: ésas no están en 'enCurso')
+                EnCurso tarea = terminada == null ? null : enCurso.remove(terminada);
+                if (tarea != null) {
+                    resultados.put(tarea.feed(), resultado(terminada, tarea.feed(), contadores, inicio));
                 }
 
-                // Evitar duplicados
-                if (noticiaDAO.findByLinkNoticia(link).isEmpty()) {
+                long ahora = System.nanoTime();
+                for (Iterator<Map.Entry<Future<ResultadoFeed>, EnCurso>> it = enCurso.entrySet().iterator(); it.hasNext(); ) {
+                    Map.Entry<Future<ResultadoFeed>, EnCurso> vencida = it.next();
+                    if (vencida.getValue().fin() > ahora) {
+                        continue;
+                    }
+                    RegistroFeeds.Fuente feed = vencida.getValue().feed();
+                    it.remove();
+                    // Si acaba de terminar, cuenta lo que ha hecho; si no, se interrumpe su hilo (y se cierra su socket)
+                    resultados.put(feed, vencida.getKey().cancel(true)
+                            ? new ResultadoFeed(feed.nombre(), contadores.get(feed).get(), msDesde(inicio),
+                                    ResultadoFeed.Estado.TIMEOUT, "Plazo agotado")
+                            : resultado(vencida.getKey(), feed, contadores, inicio));
+                }
+            }
+            for (RegistroFeeds.Fuente feed : enEspera) {
+                resultados.put(feed, new ResultadoFeed(feed.nombre(), 0, msDesde(inicio),
+                        ResultadoFeed.Estado.INTERRUMPIDA, "Plazo del ciclo agotado antes de empezar"));
+            }
+        } catch (InterruptedException e) {
+            // Nos paran a nosotros, no es culpa de las fuentes: no cuenta para su cuarentena
+            Thread.currentThread().interrupt();
+            enCurso.keySet().forEach(tarea -> tarea.cancel(true));
+            for (RegistroFeeds.Fuente feed : feeds) {
+                resultados.computeIfAbsent(feed, f -> new ResultadoFeed(f.nombre(),
+                        contadores.containsKey(f) ? contadores.get(f).get() : 0, msDesde(inicio),
+                        ResultadoFeed.Estado.INTERRUMPIDA, "Ingesta interrumpida"));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
 
-                    noticiasNuevasContador++;
+        List<ResultadoFeed> enOrden = new ArrayList<>();
+        for (RegistroFeeds.Fuente feed : feeds) {
+            enOrden.add(registrar(resultados.get(feed)));
+        }
+        return new ResultadoIngesta(enOrden, msDesde(inicio));
+    }
 
-                    Noticia nuevaNoticia = new Noticia();
-                    nuevaNoticia.setLinkNoticia(link);
-                    nuevaNoticia.setFuente(sourceName);
+    // Una fuente que se está leyendo y cuándo vence su plazo (System.nanoTime)
+    private record EnCurso(RegistroFeeds.Fuente feed, long fin) { }
 
-                    // Limpiamos el titular
-                    nuevaNoticia.setTitular(limpiarHtml(entry.getTitle()));
+    // El resultado de una tarea ya terminada
+    private static ResultadoFeed resultado(Future<ResultadoFeed> tarea, RegistroFeeds.Fuente feed,
+                                           Map<RegistroFeeds.Fuente, AtomicInteger> contadores, long inicio) {
+        if (tarea.state() == Future.State.SUCCESS) {
+            return tarea.resultNow();
+        }
+        return new ResultadoFeed(feed.nombre(), contadores.get(feed).get(), msDesde(inicio),
+                ResultadoFeed.Estado.ERROR, String.valueOf(tarea.exceptionNow()));
+    }
 
-                    // Extraemos y limpiamos el contenido
-                    String contenidoHtml = extraerContenido(entry);
-                    nuevaNoticia.setContenido(limpiarHtml(contenidoHtml));
+    /**
+     * Nombres de las fuentes configuradas, en orden.
+     */
+    public List<String> getNombresFuentes() {
+        return registroFeeds.fuentes().stream().map(RegistroFeeds.Fuente::nombre).toList();
+    }
 
-                    // Convertir la fecha
-                    if (entry.getPublishedDate() != null) {
-                        nuevaNoticia.setFecha(entry.getPublishedDate().toInstant()
-                                .atZone(ZoneId.systemDefault())
-                                .toLocalDateTime());
-                    }
+    /**
+     * Lee UNA fuente (por su nombre) y guarda sus noticias nuevas. Lo usa el planificador,
+     * que consulta cada fuente a su propio ritmo. Si está en cuarentena no se lee (estado CUARENTENA).
+     */
+    public ResultadoFeed ingestarFuente(String nombre, int limiteNoticiasPorFeed) {
+        RegistroFeeds.Fuente feed = registroFeeds.fuente(nombre)
+                .orElseThrow(() -> new IllegalArgumentException("Fuente desconocida: " + nombre));
+        if (!registroFeeds.admite(nombre)) {
+            return registrar(enCuarentena(feed));
+        }
+        return registrar(procesarFuente(feed, limiteNoticiasPorFeed, new AtomicInteger(), noticiaDAO));
+    }
 
-                    noticiaDAO.save(nuevaNoticia);
-                }
-            }
+    /**
+     * Olvida los ETag/Last-Modified guardados, para que la próxima ingesta descargue todo.
+     * Necesario cuando se vacía la BBDD: un 304 no traería las noticias borradas.
+     */
+    public void olvidarValidadores() {
+        cacheValidadores.invalidar();
+    }
 
+    /**
+     * Procesa una fuente midiendo el tiempo y convirtiendo cualquier fallo en un ResultadoFeed.
+     */
+    private ResultadoFeed procesarFuente(RegistroFeeds.Fuente feed, int limiteNoticiasPorFeed, AtomicInteger contador,
+                                         NoticiaDAO destino) {
+        long inicio = System.nanoTime();
+        try {
+            boolean parseado = parseAndSaveFeed(feed.url(), feed.nombre(), feed.limiteEfectivo(limiteNoticiasPorFeed),
+                    contador, destino);
+            ResultadoFeed.Estado estado = parseado ? ResultadoFeed.Estado.OK : ResultadoFeed.Estado.NO_MODIFICADO;
+            return new ResultadoFeed(feed.nombre(), contador.get(), msDesde(inicio), estado, null);
         } catch (Exception e) {
-            System.err.println("Error parseando el feed: " + feedUrl);
-            e.printStackTrace();
+            // Interrumpidos (o con el socket cerrado por la interrupción): no es un fallo de la fuente
+            if (e instanceof InterruptedException || Thread.currentThread().isInterrupted()) {
+                Thread.currentThread().interrupt();
+                return new ResultadoFeed(feed.nombre(), contador.get(), msDesde(inicio),
+                        ResultadoFeed.Estado.INTERRUMPIDA, "Ingesta interrumpida");
+            }
+            log.warn("Error parseando el feed {}: {}", feed.url(), e.toString());
+            return new ResultadoFeed(feed.nombre(), contador.get(), msDesde(inicio), ResultadoFeed.Estado.ERROR,
+                    e.toString());
         }
-
-        return noticiasNuevasContador;
     }
 
     /**
-     * Método de ayuda (privado) para encontrar el contenido de la noticia.
-     * (Este método no cambia)
+     * Lee una URL de RSS, la procesa y guarda las noticias nuevas en la BBDD.
+     * Usa GET condicional: si el feed no ha cambiado devuelve false sin parsear nada.
+     * Cada noticia nueva incrementa 'contador'. Los fallos se propagan a procesarFuente.
      */
-    private String extraerContenido(SyndEntry entry) {
-        if (entry.getContents() != null && !entry.getContents().isEmpty()) {
-            return entry.getContents().get(0).getValue();
-        }
-        if (entry.getDescription() != null) {
-            return entry.getDescription().getValue();
+    private boolean parseAndSaveFeed(String feedUrl, String sourceName, int limiteNoticiasPorFeed,
+                                     AtomicInteger contador, NoticiaDAO destino) throws Exception {
+
+        long inicio = System.nanoTime();
+        DescargadorFeeds.Descarga descarga =
+                descargadorFeeds.descargar(feedUrl, Duration.ofMillis(timeoutFuenteMs));
+        metricas.feedDescargado(System.nanoTime() - inicio, descarga.sinCambios());
+
+        if (descarga.sinCambios()) {
+            log.debug("Fuente {}: sin cambios (caché), no se parsea", sourceName);
+            return false;
         }
-        return null;
-    }
 
+        procesarDocumento(new ByteArrayInputStream(descarga.cuerpo()), descarga.contentType(),
+                sourceName, limiteNoticiasPorFeed, contador, destino);
+
+        // Sólo ahora, con el feed ya guardado, recordamos sus validadores
+        cacheValidadores.confirmar(feedUrl, descarga.validadores());
+        return true;
+    }
 
     /**
-     * Método de ayuda para limpiar el HTML y otros caracteres no deseados.
-     * (Este método no cambia)
+     * Parsea un documento RSS/Atom ya descargado y guarda las noticias nuevas.
+     * El motor de lectura (StAX o ROME) lo decide la propiedad 'rss.parser'.
+     *
+     * @param contentType Content-Type HTTP (puede ser null); sirve para detectar el charset.
      */
-    private String limpiarHtml(String html) {
-        if (html == null) {
-            return null;
+    void procesarDocumento(InputStream documento, String contentType, String sourceName,
+                           int limiteNoticiasPorFeed, AtomicInteger contador) throws Exception {
+        procesarDocumento(documento, contentType, sourceName, limiteNoticiasPorFeed, contador, noticiaDAO);
+    }
+
+    void procesarDocumento(InputStream documento, String contentType, String sourceName,
+                           int limiteNoticiasPorFeed, AtomicInteger contador, NoticiaDAO destino) throws Exception {
+
+        // El lector ya aplica el límite (el de StAX ni siquiera lee el resto del documento)
+        long inicio = System.nanoTime();
+        List<EntradaFeed> noticiasLimitadas = lectorFeed.leer(documento, contentType, limiteNoticiasPorFeed);
+        metricas.feedParseado(sourceName, System.nanoTime() - inicio, noticiasLimitadas.size());
+        log.debug("Fuente {}: procesando {} entradas", sourceName, noticiasLimitadas.size());
+
+        // Una sola consulta para toda la página: las que ya tenemos ni se limpian
+        List<String> links = new ArrayList<>(noticiasLimitadas.size());
+        for (EntradaFeed entry : noticiasLimitadas) {
+            if (entry.link() != null) {
+                links.add(entry.link());
+            }
         }
+        Map<String, Noticia> yaGuardadas = destino.findByLinks(links);
+
+        List<Noticia> nuevas = new ArrayList<>();
+        for (EntradaFeed entry : noticiasLimitadas) {
 
-        String texto = HtmlUtils.htmlUnescape(html);
+            // Si nos han cancelado por plazo, dejamos de trabajar (guardando lo ya preparado)
+            if (Thread.currentThread().isInterrupted()) {
+                contador.addAndGet(guardar(nuevas, destino));
+                throw new InterruptedException("Fuente cancelada: " + sourceName);
+            }
+
+            String link = entry.link();
+            if (link == null || yaGuardadas.containsKey(link)) {
+                continue;
+            }
 
-        Pattern scriptPattern = Pattern.compile("<script[^>]*?>.*?</script>", Pattern.DOTALL | Pattern.CASE_INSENSITIVE);
-        texto = scriptPattern.matcher(texto).replaceAll("");
+            Noticia nuevaNoticia = new Noticia();
+            nuevaNoticia.setLinkNoticia(link);
+            nuevaNoticia.setFuente(sourceName);
 
-        Pattern stylePattern = Pattern.compile("<style[^>]*?>.*?</style>", Pattern.DOTALL | Pattern.CASE_INSENSITIVE);
-        texto = stylePattern.matcher(texto).replaceAll("");
+            // Limpiamos el titular
+            nuevaNoticia.setTitular(limpiar(entry.titulo()));
+
+            // Limpiamos el contenido (<content> o, si no hay, <description>)
+            nuevaNoticia.setContenido(limpiar(entry.contenido()));
+
+            // Convertir la fecha
+            if (entry.fechaPublicacion() != null) {
+                nuevaNoticia.setFecha(entry.fechaPublicacion().toInstant()
+                        .atZone(ZoneId.systemDefault())
+                        .toLocalDateTime());
+            }
+
+            nuevas.add(nuevaNoticia);
+        }
 
-        texto = texto.replaceAll("<[^>]*>", "");
-        texto = texto.replaceAll("[\\r\\n]+", " ");
-        texto = texto.replaceAll("\\|", " ");
-        texto = texto.replaceAll("\"", "");
-        texto = texto.replaceAll("\\\\", "");
-        texto = texto.replaceAll(" +", " ");
+        // Evitar duplicados: saveAll sólo guarda las que nadie ha guardado mientras tanto (otra fuente
+        // con la misma noticia, o un link repetido en el propio feed), y son las que cuentan como nuevas
+        contador.addAndGet(guardar(nuevas, destino));
+    }
+
+    // Sólo el guardado va bajo el cerrojo de publicación; la descarga y el parseo no lo retienen
+    private int guardar(List<Noticia> nuevas, NoticiaDAO destino) {
+        return cerrojoPublicacion.escribiendo(() -> destino.saveAll(nuevas).size());
+    }
+
+    private String limpiar(String html) {
+        return metricas.limpiezaHtml().record(() -> limpiadorHtml.limpiar(html));
+    }
+
+    private static ResultadoFeed enCuarentena(RegistroFeeds.Fuente feed) {
+        return new ResultadoFeed(feed.nombre(), 0, 0, ResultadoFeed.Estado.CUARENTENA, null);
+    }
+
+    private ResultadoFeed registrar(ResultadoFeed resultado) {
+        metricas.feedTerminado(resultado);
+        registroFeeds.registrar(resultado);
+        if (resultado.estado() == ResultadoFeed.Estado.CUARENTENA) {
+            log.debug("Fuente {}: en cuarentena, no se lee", resultado.fuente());
+            return resultado;
+        }
+        log.info("Fuente {}: {} noticias nuevas ({}, {} ms)", resultado.fuente(), resultado.nuevas(),
+                resultado.estado(), resultado.duracionMs());
+        return resultado;
+    }
 
-        return texto.trim();
+    private static long msDesde(long inicioNanos) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - inicioNanos);
     }
 }
\ No newline at end of file
@@ -0,0 +1,110 @@
+package org.srpm.service;
+
+import java.time.LocalDateTime;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Un refresco total que se ejecuta en segundo plano.
+ * Va apuntando (como ObservadorCiclo) la fase, los contadores y cuánto dura cada fase.
+ */
+public class TrabajoRefresco implements ObservadorCiclo {
+
+    /**
+     * Foto del trabajo para devolver en la API (JSON).
+     */
+    public record Estado(
+            String id,
+            Fase fase,
+            LocalDateTime inicio,
+            LocalDateTime fin,
+            long duracionMs,
+            Map<Fase, Long> duracionPorFaseMs,
+            int noticiasNuevas,
+            int fuentesConError,
+            int noticiasAResumir,
+            int lotes,
+            int lotesFallidos,
+            int resumenesGuardados,
+            String error
+    ) { }
+
+    private final String id = UUID.randomUUID().toString();
+    private final LocalDateTime inicio = LocalDateTime.now();
+    private final long inicioNanos = System.nanoTime();
+
+    private final Map<Fase, Long> duracionPorFaseMs = new EnumMap<>(Fase.class);
+    private Fase fase = Fase.EN_COLA;
+    private long inicioFaseNanos = inicioNanos;
+    private LocalDateTime fin;
+    private long duracionMs;
+    private String error;
+
+    private volatile int noticiasNuevas;
+    private volatile int fuentesConError;
+    private volatile int noticiasAResumir;
+    private volatile int lotes;
+    private volatile int lotesFallidos;
+    private final AtomicInteger resumenesGuardados = new AtomicInteger();
+
+    public String getId() {
+        return id;
+    }
+
+    public synchronized boolean terminado() {
+        return fase == Fase.COMPLETADO || fase == Fase.FALLIDO;
+    }
+
+    @Override
+    public synchronized void fase(Fase nueva) {
+        long ahora = System.nanoTime();
+        duracionPorFaseMs.merge(fase, TimeUnit.NANOSECONDS.toMillis(ahora - inicioFaseNanos), Long::sum);
+        fase = nueva;
+        inicioFaseNanos = ahora;
+        if (terminado()) {
+            fin = LocalDateTime.now();
+            duracionMs = TimeUnit.NANOSECONDS.toMillis(ahora - inicioNanos);
+        }
+    }
+
+    public synchronized void fallo(Throwable e) {
+        error = e.toString();
+        fase(Fase.FALLIDO);
+    }
+
+    @Override
+    public void ingestaTerminada(ResultadoIngesta resultado) {
+        noticiasNuevas = resultado.totalNuevas();
+        fuentesConError = (int) (resultado.fuentesConEstado(ResultadoFeed.Estado.ERROR)
+                + resultado.fuentesConEstado(ResultadoFeed.Estado.TIMEOUT));
+    }
+
+    @Override
+    public void noticiasAResumir(int noticias) {
+        noticiasAResumir = noticias;
+    }
+
+    @Override
+    public void loteGuardado(int resumenes) {
+        resumenesGuardados.addAndGet(resumenes);
+    }
+
+    @Override
+    public void despachoTerminado(ResultadoDespacho resultado) {
+        lotes = resultado.lotes();
+        lotesFallidos = resultado.lotesFallidos();
+    }
+
+    public synchronized Estado estado() {
+        long duracion = terminado() ? duracionMs : TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - inicioNanos);
+        Map<Fase, Long> porFase = new EnumMap<>(duracionPorFaseMs);
+        if (!terminado()) {
+            porFase.merge(fase, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - inicioFaseNanos), Long::sum);
+        }
+        return new Estado(id, fase, inicio, fin, duracion, porFase, noticiasNuevas, fuentesConError,
+                noticiasAResumir, lotes, lotesFallidos, resumenesGuardados.get(), error);
+    }
+}
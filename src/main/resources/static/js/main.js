@@ -15,8 +15,13 @@ const inputTitular = document.getElementById('resumen-titular');
 const inputCuerpo = document.getElementById('resumen-cuerpo');
 const btnNuevo = document.getElementById('btn-nuevo');
 const btnRefrescar = document.getElementById('btn-refrescar');
+const btnMas = document.getElementById('btn-mas');
+const formBuscar = document.getElementById('form-buscar');
+const textoBuscar = document.getElementById('texto-buscar');
 
-let resumenes = []; // cache local
+const TAM_PAGINA = 50;
+let resumenes = []; // cache local (las páginas ya cargadas)
+let siguiente = null; // cursor de la próxima página (null = no hay más)
 
 function showAlert(message, type = "info", timeout = 4000) {
     const wrapper = document.createElement('div');
@@ -41,13 +46,17 @@ function handleFetchError(response) {
     return response;
 }
 
-/* Cargar todos */
-function loadResumenes() {
-    fetch(API_BASE)
+/* Cargar una página (los más recientes primero). Sin cursor, empieza de cero */
+function loadResumenes(after = null) {
+    let url = `${API_BASE}?limit=${TAM_PAGINA}&orden=fecha`;
+    if (after !== null) url += `&after=${encodeURIComponent(after)}`;
+    return fetch(url)
         .then(handleFetchError)
         .then(r => r.json())
-        .then(data => {
-            resumenes = data;
+        .then(pagina => {
+            resumenes = after === null ? pagina.resumenes : resumenes.concat(pagina.resumenes);
+            siguiente = pagina.siguiente;
+            btnMas.classList.toggle('d-none', siguiente === null);
             renderTabla();
         })
         .catch(err => {
@@ -56,6 +65,99 @@ function loadResumenes() {
         });
 }
 
+btnMas.addEventListener('click', () => {
+    if (siguiente !== null) loadResumenes(siguiente);
+});
+
+/* Búsqueda en el servidor (GET /resumenes/search). Con la caja vacía se vuelve al listado normal */
+function buscarResumenes(texto) {
+    if (!texto) return loadResumenes();
+    return fetch(`${API_BASE}/search?q=${encodeURIComponent(texto)}&limit=${TAM_PAGINA}`)
+        .then(handleFetchError)
+        .then(r => r.json())
+        .then(resultado => {
+            resumenes = resultado.resultados.map(a => a.resumen);
+            siguiente = null;
+            btnMas.classList.add('d-none');
+            renderTabla();
+        })
+        .catch(err => {
+            console.error(err);
+            showAlert("Error buscando: " + err.message, "danger", 6000);
+        });
+}
+
+let temporizadorBusqueda = null;
+textoBuscar.addEventListener('input', () => {
+    clearTimeout(temporizadorBusqueda);
+    temporizadorBusqueda = setTimeout(() => buscarResumenes(textoBuscar.value.trim()), 250);
+});
+formBuscar.addEventListener('submit', (ev) => {
+    ev.preventDefault();
+    clearTimeout(temporizadorBusqueda);
+    buscarResumenes(textoBuscar.value.trim());
+});
+
+/* Cambios en directo (GET /resumenes/stream): se aplican sobre la lista ya cargada en vez de recargarla.
+   EventSource reconecta solo y manda Last-Event-ID, así que no se pierde nada al cortarse la conexión */
+function aplicarResumen(res, esNuevo) {
+    const i = resumenes.findIndex(r => r.id === res.id);
+    if (i >= 0) {
+        resumenes[i] = res;
+    } else if (esNuevo && !textoBuscar.value.trim()) {
+        resumenes.unshift(res); // es el más reciente (con una búsqueda activa no se mezcla)
+    }
+    pintarPronto();
+}
+
+function quitarResumen(id) {
+    resumenes = resumenes.filter(r => r.id !== id);
+    pintarPronto();
+}
+
+// Un ciclo puede traer decenas de eventos seguidos: se pinta una vez por fotograma
+let pintadoPendiente = false;
+function pintarPronto() {
+    if (pintadoPendiente) return;
+    pintadoPendiente = true;
+    requestAnimationFrame(() => {
+        pintadoPendiente = false;
+        renderTabla();
+    });
+}
+
+/* Se suscribe ANTES de pedir la primera página: lo que llegue mientras ésta carga se guarda y se aplica
+   después, así no se pierde nada escrito entre la lectura de la página y la suscripción */
+function escucharCambios() {
+    let enEspera = [];
+    const recibir = (aplicar) => ev => {
+        if (enEspera !== null) enEspera.push(() => aplicar(ev));
+        else aplicar(ev);
+    };
+    let cargado = false;
+    const cargaInicial = () => {
+        if (cargado) return;
+        cargado = true;
+        loadResumenes().then(() => {
+            const pendientes = enEspera;
+            enEspera = null;
+            pendientes.forEach(aplicar => aplicar());
+        });
+    };
+
+    const fuente = new EventSource(`${API_BASE}/stream`);
+    fuente.addEventListener('open', cargaInicial);
+    fuente.addEventListener('error', cargaInicial); // sin directo, al menos se ve la lista
+    fuente.addEventListener('creado', recibir(ev => aplicarResumen(JSON.parse(ev.data), true)));
+    fuente.addEventListener('actualizado', recibir(ev => aplicarResumen(JSON.parse(ev.data), false)));
+    fuente.addEventListener('borrado', recibir(ev => quitarResumen(JSON.parse(ev.data).id)));
+    // Se ha sustituido todo (refresco total) o nos hemos perdido demasiados eventos
+    fuente.addEventListener('recargar', recibir(() => {
+        const texto = textoBuscar.value.trim();
+        return texto ? buscarResumenes(texto) : loadResumenes();
+    }));
+}
+
 function renderTabla() {
     cuerpoTabla.innerHTML = "";
     if (!resumenes || resumenes.length === 0) {
@@ -117,7 +219,40 @@ btnNuevo.addEventListener('click', () => {
     modalEditar.show();
 });
 
-/* ⭐ NUEVO btnRefrescar con Loading de SweetAlert2 ⭐ */
+/* Texto de las fases del refresco (GET /resumenes/refresh/{id}) */
+const FASES_REFRESCO = {
+    EN_COLA: 'En cola...',
+    DESCARGANDO: 'Consultando RSS...',
+    RESUMIENDO: 'Generando resúmenes con IA...',
+    GUARDANDO: 'Guardando resultados...',
+    COMPLETADO: 'Completado',
+    FALLIDO: 'Fallido'
+};
+
+/* Consulta el estado del refresco hasta que termina */
+function esperarRefresco(jobId) {
+    return new Promise((resolve, reject) => {
+        const consultar = () => {
+            fetch(`${API_BASE}/refresh/${jobId}`)
+                .then(handleFetchError)
+                .then(r => r.json())
+                .then(job => {
+                    Swal.update({
+                        html: `${FASES_REFRESCO[job.fase] || job.fase}<br>` +
+                              `<small>${job.noticiasNuevas} noticias nuevas · ${job.resumenesGuardados} resúmenes guardados</small>`
+                    });
+                    Swal.showLoading();
+                    if (job.fase === 'COMPLETADO') return resolve(job);
+                    if (job.fase === 'FALLIDO') return reject(new Error(job.error || 'El refresco ha fallado'));
+                    setTimeout(consultar, 1000);
+                })
+                .catch(reject);
+        };
+        consultar();
+    });
+}
+
+/* btnRefrescar: lanza el refresco en segundo plano (202) y sigue su progreso */
 btnRefrescar.addEventListener('click', () => {
 
     // 1. Mostrar pantalla de carga
@@ -130,15 +265,13 @@ btnRefrescar.addEventListener('click', () => {
         }
     });
 
-    // 2. Hacer la petición al backend
+    // 2. Lanzar el refresco (si ya había uno en marcha, nos devuelve ese)
     fetch(API_BASE + '/refresh', { method: "POST" })
         .then(handleFetchError)
+        .then(r => r.json())
+        .then(job => esperarRefresco(job.id))
         .then(() => {
-            // 3. Recargar la tabla
-            return loadResumenes();
-        })
-        .then(() => {
-            // 4. Cerrar loading y mostrar éxito
+            // 3. La tabla ya se ha puesto al día con los eventos del stream; cerrar loading y mostrar éxito
             Swal.fire({
                 icon: 'success',
                 title: '¡Actualizado!',
@@ -149,7 +282,7 @@ btnRefrescar.addEventListener('click', () => {
         })
         .catch(err => {
             console.error(err);
-            // 5. Mostrar error si falla
+            // 4. Mostrar error si falla
             Swal.fire({
                 icon: 'error',
                 title: 'Error',
@@ -199,8 +332,7 @@ formEditar.addEventListener('submit', (ev) => {
             .then(handleFetchError)
             .then(r => r.json())
             .then(nuevo => {
-                resumenes.push(nuevo);
-                renderTabla();
+                aplicarResumen(nuevo, true); // si el evento del stream llega antes, no se duplica
                 modalEditar.hide();
                 showAlert("Resumen creado", "success");
             })
@@ -217,9 +349,7 @@ formEditar.addEventListener('submit', (ev) => {
             .then(handleFetchError)
             .then(r => r.json())
             .then(actualizado => {
-                const i = resumenes.findIndex(r => r.id === actualizado.id);
-                if (i >= 0) resumenes[i] = actualizado;
-                renderTabla();
+                aplicarResumen(actualizado, false);
                 modalEditar.hide();
                 showAlert("Resumen actualizado", "success");
             })
@@ -251,8 +381,7 @@ window.deleteResumen = function(id) {
                         return response.text().then(t => { throw new Error(t || response.statusText); });
                     }
 
-                    resumenes = resumenes.filter(r => r.id !== id);
-                    renderTabla();
+                    quitarResumen(id);
 
                     Swal.fire({
                         icon: 'success',
@@ -274,5 +403,5 @@ window.deleteResumen = function(id) {
     });
 };
 
-// carga inicial
-loadResumenes();
\ No newline at end of file
+// carga inicial (la primera página la pide escucharCambios en cuanto está suscrito)
+escucharCambios();
\ No newline at end of file
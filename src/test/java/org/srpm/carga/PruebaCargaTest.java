@@ -0,0 +1,277 @@
+package org.srpm.carga;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.srpm.dao.NoticiaDAO;
+import org.srpm.dao.ResumenDAO;
+import org.srpm.service.ResumenService;
+import org.srpm.stub.StubIaServer;
+import org.srpm.stub.StubRssServer;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Prueba de carga de punta a punta: la aplicación entera (con su servidor HTTP) contra un servidor RSS y una IA
+ * de mentira, sin Internet. Primero mide las lecturas de GET /resumenes en reposo; luego las mismas lecturas
+ * mientras se hacen ciclos completos de ingesta → resúmenes → guardado, en los que cada fuente publica noticias
+ * nuevas. Así se ve cuánto estorba el refresco a las lecturas según crece el corpus.
+ *
+ * Informa del tiempo de cada ciclo y del p50/p99 y lecturas por segundo de cada fase. Sólo se ejecuta con
+ * -Pcarga; todo se ajusta con propiedades del sistema (mvn -Pcarga test -Dcarga.fuentes=300 ...):
+ * <pre>
+ * carga.fuentes            fuentes RSS                              (50)
+ * carga.entradas           entradas de cada feed                    (30)
+ * carga.nuevas             noticias nuevas por fuente y ciclo       (5)
+ * carga.bytes              texto de cada noticia, en bytes          (1500)
+ * carga.rss.latencia-ms    latencia del servidor RSS                (20)
+ * carga.ia.latencia-ms     latencia de la IA por lote               (50)
+ * carga.ia.tasa-error      fracción de lotes que fallan en la IA    (0.02)
+ * carga.ciclos             ciclos medidos                           (5)
+ * carga.lectores           clientes leyendo GET /resumenes a la vez (8)
+ * carga.reposo-ms          duración de las lecturas en reposo       (3000)
+ * carga.calentamiento-ms   lecturas previas que no cuentan (JIT)    (2000)
+ * carga.dao                "memoria" o "persistente"                (memoria)
+ * </pre>
+ */
+@Tag("carga")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("carga") // application-carga.properties: sin los INFO de cada fuente
+class PruebaCargaTest {
+
+    private static final int FUENTES = Integer.getInteger("carga.fuentes", 50);
+    private static final int ENTRADAS = Integer.getInteger("carga.entradas", 30);
+    private static final int NUEVAS = Integer.getInteger("carga.nuevas", 5);
+    private static final int BYTES = Integer.getInteger("carga.bytes", 1500);
+    private static final long LATENCIA_RSS_MS = Long.getLong("carga.rss.latencia-ms", 20);
+    private static final long LATENCIA_IA_MS = Long.getLong("carga.ia.latencia-ms", 50);
+    private static final double TASA_ERROR_IA = Double.parseDouble(System.getProperty("carga.ia.tasa-error", "0.02"));
+    private static final int CICLOS = Integer.getInteger("carga.ciclos", 5);
+    private static final int LECTORES = Integer.getInteger("carga.lectores", 8);
+    private static final long REPOSO_MS = Long.getLong("carga.reposo-ms", 3000);
+    private static final long CALENTAMIENTO_MS = Long.getLong("carga.calentamiento-ms", 2000);
+    private static final String DAO = System.getProperty("carga.dao", "memoria");
+
+    private static StubRssServer rss;
+    private static StubIaServer ia;
+
+    @LocalServerPort
+    private int puerto;
+
+    @Autowired
+    private ResumenService resumenService;
+
+    @Autowired
+    private NoticiaDAO noticiaDAO;
+
+    @Autowired
+    private ResumenDAO resumenDAO;
+
+    private final HttpClient http = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+
+    @BeforeAll
+    static void arrancarServidores() throws Exception {
+        rss = new StubRssServer();
+        rss.setLatenciaMs(LATENCIA_RSS_MS);
+        for (int i = 0; i < FUENTES; i++) {
+            rss.generar(fuente(i), ENTRADAS, BYTES);
+        }
+        ia = new StubIaServer();
+        ia.setLatenciaMs(LATENCIA_IA_MS);
+        ia.setTasaError(TASA_ERROR_IA);
+    }
+
+    @AfterAll
+    static void pararServidores() {
+        rss.close();
+        ia.close();
+    }
+
+    @DynamicPropertySource
+    static void configurar(DynamicPropertyRegistry propiedades) throws Exception {
+        propiedades.add("ia.service.url", () -> ia.url());
+        for (int i = 0; i < FUENTES; i++) {
+            int n = i;
+            propiedades.add("rss.feeds[" + i + "].nombre", () -> fuente(n));
+            propiedades.add("rss.feeds[" + i + "].url", () -> rss.url(fuente(n)));
+            propiedades.add("rss.feeds[" + i + "].limite", () -> ENTRADAS);
+        }
+        // Los ciclos los lanza la prueba; el corpus crece sin límite
+        propiedades.add("rss.planificador.activo", () -> false);
+        propiedades.add("rss.retencion.max-edad-ms", () -> 0);
+        propiedades.add("rss.retencion.max-noticias", () -> 0);
+        propiedades.add("rss.retencion.max-bytes", () -> 0);
+        propiedades.add("dao.tipo", () -> DAO);
+        String directorio = Files.createTempDirectory("srpm-carga").toString();
+        propiedades.add("dao.persistente.directorio", () -> directorio);
+    }
+
+    @Test
+    void cicloCompletoConLecturasConcurrentes() throws Exception {
+        // La carga inicial ya la ha hecho MainController al arrancar
+        int noticiasIniciales = noticiaDAO.estadisticas().noticias();
+        assertEquals(FUENTES * ENTRADAS, noticiasIniciales);
+
+        leerMientras(() -> dormir(CALENTAMIENTO_MS));
+        Lecturas enReposo = leerMientras(() -> dormir(REPOSO_MS));
+
+        long[] ciclosMs = new long[CICLOS];
+        Lecturas conCiclos = leerMientras(() -> {
+            for (int c = 0; c < CICLOS; c++) {
+                for (int i = 0; i < FUENTES; i++) {
+                    rss.rotar(fuente(i), NUEVAS);
+                }
+                long inicio = System.nanoTime();
+                resumenService.generarYGuardarResumenes();
+                ciclosMs[c] = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - inicio);
+            }
+        });
+
+        // Un último ciclo sin errores de la IA recoge los lotes que fallaron
+        ia.setTasaError(0);
+        resumenService.generarYGuardarResumenes();
+
+        int noticias = noticiaDAO.estadisticas().noticias();
+        informe(ciclosMs, noticias, enReposo, conCiclos);
+
+        assertEquals(noticiasIniciales + FUENTES * NUEVAS * CICLOS, noticias);
+        assertTrue(noticiaDAO.findPendientesDeResumen().isEmpty(), "quedan noticias sin resumir");
+        assertEquals(0, enReposo.errores + conCiclos.errores, "lecturas fallidas");
+    }
+
+    /**
+     * Lanza los lectores, ejecuta 'trabajo' y los para al terminar éste.
+     */
+    private Lecturas leerMientras(Trabajo trabajo) throws Exception {
+        AtomicBoolean leyendo = new AtomicBoolean(true);
+        HttpRequest peticion = HttpRequest.newBuilder(URI.create("http://127.0.0.1:" + puerto + "/resumenes"))
+                .header("Accept-Encoding", "gzip")
+                .build();
+        List<Lector> lectores = new ArrayList<>();
+        List<Thread> hilos = new ArrayList<>();
+        for (int l = 0; l < LECTORES; l++) {
+            Lector lector = new Lector(peticion, leyendo);
+            lectores.add(lector);
+            hilos.add(Thread.ofVirtual().name("lector-" + l).start(lector));
+        }
+
+        long inicio = System.nanoTime();
+        try {
+            trabajo.ejecutar();
+        } finally {
+            leyendo.set(false);
+            for (Thread hilo : hilos) {
+                hilo.join();
+            }
+        }
+        long duracionNs = System.nanoTime() - inicio;
+
+        long[] todas = lectores.stream().flatMapToLong(l -> Arrays.stream(l.nanos, 0, l.n)).sorted().toArray();
+        return new Lecturas(todas, lectores.stream().mapToInt(l -> l.errores).sum(), duracionNs);
+    }
+
+    private void informe(long[] ciclosMs, int noticias, Lecturas enReposo, Lecturas conCiclos) {
+        long[] ordenados = Arrays.stream(ciclosMs).sorted().toArray();
+        double noticiasPorCiclo = (double) FUENTES * NUEVAS;
+        System.out.printf(Locale.ROOT, """
+
+                === Prueba de carga: %d fuentes x %d entradas (+%d por ciclo, %d bytes), RSS %d ms, IA %d ms / %.0f%% errores, %d lectores, DAO %s ===
+                Ciclos        n=%d  p50=%d ms  máx=%d ms  medio=%.0f ms  (%.0f noticias nuevas/s)
+                Corpus        %d noticias, %d resúmenes, %d peticiones a la IA
+                GET /resumenes
+                  en reposo   %s
+                  con ciclos  %s
+                %n""",
+                FUENTES, ENTRADAS, NUEVAS, BYTES, LATENCIA_RSS_MS, LATENCIA_IA_MS, TASA_ERROR_IA * 100, LECTORES, DAO,
+                CICLOS, percentil(ordenados, 0.5), ordenados[ordenados.length - 1], Arrays.stream(ciclosMs).average().orElse(0),
+                noticiasPorCiclo * 1000 / Math.max(1, Arrays.stream(ciclosMs).average().orElse(1)),
+                noticias, resumenDAO.count(), ia.getPeticiones(), enReposo, conCiclos);
+    }
+
+    private static long percentil(long[] ordenados, double p) {
+        if (ordenados.length == 0) {
+            return 0;
+        }
+        return ordenados[Math.max(0, (int) Math.ceil(p * ordenados.length) - 1)];
+    }
+
+    private static String fuente(int i) {
+        return "medio-" + i;
+    }
+
+    private static void dormir(long ms) throws InterruptedException {
+        Thread.sleep(ms);
+    }
+
+    /**
+     * Un cliente que pide GET /resumenes una y otra vez, apuntando lo que tarda cada respuesta (entera).
+     */
+    private final class Lector implements Runnable {
+
+        private final HttpRequest peticion;
+        private final AtomicBoolean leyendo;
+        private long[] nanos = new long[1024];
+        private int n;
+        private int errores;
+
+        Lector(HttpRequest peticion, AtomicBoolean leyendo) {
+            this.peticion = peticion;
+            this.leyendo = leyendo;
+        }
+
+        @Override
+        public void run() {
+            while (leyendo.get()) {
+                long inicio = System.nanoTime();
+                try {
+                    if (http.send(peticion, HttpResponse.BodyHandlers.ofByteArray()).statusCode() != 200) {
+                        errores++;
+                    }
+                } catch (Exception e) {
+                    errores++;
+                }
+                if (n == nanos.length) {
+                    nanos = Arrays.copyOf(nanos, n * 2);
+                }
+                nanos[n++] = System.nanoTime() - inicio;
+            }
+        }
+    }
+
+    @FunctionalInterface
+    private interface Trabajo {
+        void ejecutar() throws Exception;
+    }
+
+    /**
+     * Latencias (ordenadas, en ns) de las lecturas de una fase.
+     */
+    private record Lecturas(long[] nanos, int errores, long duracionNs) {
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "n=%d  p50=%.1f ms  p99=%.1f ms  máx=%.1f ms  %.0f lecturas/s  errores=%d",
+                    nanos.length, percentil(nanos, 0.5) / 1e6, percentil(nanos, 0.99) / 1e6,
+                    percentil(nanos, 1.0) / 1e6, nanos.length * 1e9 / duracionNs, errores);
+        }
+    }
+}
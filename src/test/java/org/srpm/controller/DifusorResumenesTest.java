@@ -0,0 +1,212 @@
+package org.srpm.controller;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.srpm.dao.ResumenDaoEnMemoria;
+import org.srpm.model.Resumen;
+import org.srpm.service.GestorRefrescos;
+import org.srpm.service.RegistroFeeds;
+import org.srpm.service.ResumenService;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+
+class DifusorResumenesTest {
+
+    private static final Pattern EVENTO = Pattern.compile("id:(\\S+)\\nevent:(\\S+)\\n|event:(\\S+)\\n");
+
+    private final ResumenDaoEnMemoria dao = new ResumenDaoEnMemoria();
+    private DifusorResumenes difusor;
+    private MockMvc mvc;
+
+    @BeforeEach
+    void montar() {
+        montar(0);
+    }
+
+    // Anillo de 3 eventos, colas de 2 y latido cada 'latidoMs' (0 = sin latido)
+    private void montar(long latidoMs) {
+        difusor = new DifusorResumenes(dao, Jackson2ObjectMapperBuilder.json().build(), 3, 2, 60_000, latidoMs);
+        difusor.iniciar();
+        mvc = MockMvcBuilders.standaloneSetup(new MainController(mock(ResumenService.class), mock(GestorRefrescos.class),
+                mock(CacheRespuestasJson.class), difusor, mock(RegistroFeeds.class))).build();
+    }
+
+    @AfterEach
+    void parar() {
+        difusor.parar();
+    }
+
+    @Test
+    void mandaAltasCambiosYBorradosEnOrden() throws Exception {
+        MockHttpServletResponse respuesta = suscribir(null);
+        esperarSuscriptores(1);
+
+        Resumen resumen = new Resumen("Uno", "Primero", null);
+        dao.save(resumen);
+        resumen.setTitular("Uno bis");
+        dao.save(resumen);
+        dao.deleteById(resumen.getId());
+
+        List<String> eventos = esperarEventos(respuesta, 3);
+        assertEquals(List.of("creado", "actualizado", "borrado"), eventos);
+        String cuerpo = respuesta.getContentAsString();
+        assertTrue(cuerpo.contains("\"titular\":\"Uno bis\""), cuerpo);
+        assertTrue(cuerpo.contains("data:{\"id\":" + resumen.getId() + "}"), cuerpo);
+    }
+
+    @Test
+    void conLastEventIdRecibeLoQueSePerdioOUnRecargarSiYaNoEstaEnElAnillo() throws Exception {
+        MockHttpServletResponse primera = suscribir(null);
+        esperarSuscriptores(1);
+        dao.save(new Resumen("Uno", "", null));
+        esperarEventos(primera, 1);
+        String idPrimero = ids(primera.getContentAsString()).getFirst();
+
+        dao.save(new Resumen("Dos", "", null));
+        dao.save(new Resumen("Tres", "", null));
+        // Reconecta tras perderse "Dos" y "Tres": siguen en el anillo
+        MockHttpServletResponse reconexion = suscribir(idPrimero);
+        assertEquals(List.of("creado", "creado"), esperarEventos(reconexion, 2));
+        assertTrue(reconexion.getContentAsString().contains("Tres"));
+
+        // Con dos más, el primero ya ha salido del anillo (caben 3)
+        dao.save(new Resumen("Cuatro", "", null));
+        dao.save(new Resumen("Cinco", "", null));
+        assertEquals(List.of("recargar"), esperarEventos(suscribir(idPrimero), 1));
+        // Y un id de otro arranque tampoco sirve
+        assertEquals(List.of("recargar"), esperarEventos(suscribir("otro-1"), 1));
+    }
+
+    @Test
+    void publicarUnaGeneracionMandaRecargar() throws Exception {
+        MockHttpServletResponse respuesta = suscribir(null);
+        esperarSuscriptores(1);
+
+        dao.publicar(dao.nuevaGeneracion());
+
+        assertEquals(List.of("recargar"), esperarEventos(respuesta, 1));
+    }
+
+    @Test
+    void unClienteLentoNoRetrasaALosDemasYSeLeCierraSiNoDaAbasto() throws Exception {
+        CountDownLatch soltar = new CountDownLatch(1);
+        SseEmitter lento = new SseEmitter(60_000L) {
+            @Override
+            public void send(SseEventBuilder evento) throws IOException {
+                try {
+                    soltar.await(); // como un cliente que no lee
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                super.send(evento);
+            }
+        };
+        difusor.suscribir(null, lento);
+        MockHttpServletResponse rapido = suscribir(null);
+        esperarSuscriptores(2);
+
+        // El rápido recibe cada evento sin esperar al lento...
+        for (int i = 0; i < 6; i++) {
+            dao.save(new Resumen("R" + i, "", null));
+            assertEquals(i + 1, esperarEventos(rapido, i + 1).size());
+        }
+
+        // ...y al lento, que sigue con el primero, se le llena la cola (2) y se le descuelga
+        esperarSuscriptores(1);
+        assertEquals(1, difusor.estadisticas().descolgados());
+        soltar.countDown();
+    }
+
+    @Test
+    void losSuscriptoresSinNadaQueEnviarNoTienenHilo() throws Exception {
+        for (int i = 0; i < 500; i++) {
+            difusor.suscribir(null);
+        }
+        MockHttpServletResponse respuesta = suscribir(null);
+        esperarSuscriptores(501);
+
+        dao.save(new Resumen("Uno", "", null));
+        assertEquals(List.of("creado"), esperarEventos(respuesta, 1));
+
+        // Enviado el evento a todos, cada hilo termina
+        for (int i = 0; i < 200 && difusor.estadisticas().enviando() > 0; i++) {
+            Thread.sleep(10);
+        }
+        assertEquals(0, difusor.estadisticas().enviando());
+        assertEquals(501, difusor.estadisticas().suscriptores());
+    }
+
+    @Test
+    void aLosSuscriptoresParadosLesLleganLatidos() throws Exception {
+        difusor.parar();
+        montar(50);
+
+        MockHttpServletResponse respuesta = suscribir(null);
+        esperarSuscriptores(1);
+
+        for (int i = 0; i < 200 && !respuesta.getContentAsString().contains(":\n\n"); i++) {
+            Thread.sleep(10);
+        }
+        assertTrue(respuesta.getContentAsString().contains(":\n\n"), "sin latido: " + respuesta.getContentAsString());
+    }
+
+    private MockHttpServletResponse suscribir(String ultimoId) throws Exception {
+        var peticion = get("/resumenes/stream");
+        if (ultimoId != null) {
+            peticion.header("Last-Event-ID", ultimoId);
+        }
+        return mvc.perform(peticion).andExpect(request().asyncStarted()).andReturn().getResponse();
+    }
+
+    private void esperarSuscriptores(int n) throws InterruptedException {
+        for (int i = 0; i < 200 && difusor.estadisticas().suscriptores() < n; i++) {
+            Thread.sleep(10);
+        }
+        assertEquals(n, difusor.estadisticas().suscriptores());
+    }
+
+    private static List<String> esperarEventos(MockHttpServletResponse respuesta, int n) throws Exception {
+        List<String> eventos = List.of();
+        for (int i = 0; i < 200 && eventos.size() < n; i++) {
+            Thread.sleep(10);
+            eventos = nombres(respuesta.getContentAsString());
+        }
+        return eventos;
+    }
+
+    private static List<String> nombres(String cuerpo) {
+        List<String> nombres = new ArrayList<>();
+        Matcher m = EVENTO.matcher(cuerpo);
+        while (m.find()) {
+            nombres.add(m.group(2) != null ? m.group(2) : m.group(3));
+        }
+        return nombres;
+    }
+
+    private static List<String> ids(String cuerpo) {
+        List<String> ids = new ArrayList<>();
+        Matcher m = EVENTO.matcher(cuerpo);
+        while (m.find()) {
+            if (m.group(1) != null) {
+                ids.add(m.group(1));
+            }
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,94 @@
+package org.srpm.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.srpm.dao.ResumenDaoEnMemoria;
+import org.srpm.exception.GlobalExceptionHandler;
+import org.srpm.model.Resumen;
+import org.srpm.service.GestorRefrescos;
+import org.srpm.service.RegistroFeeds;
+import org.srpm.service.ResumenService;
+
+import java.io.ByteArrayInputStream;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+class MainControllerTest {
+
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+    private final ResumenDaoEnMemoria dao = new ResumenDaoEnMemoria();
+    private ResumenService resumenService;
+    private MockMvc mvc;
+
+    @BeforeEach
+    void montar() {
+        resumenService = mock(ResumenService.class);
+        when(resumenService.version()).thenAnswer(i -> dao.getVersion());
+        when(resumenService.findAll()).thenAnswer(i -> dao.findAll());
+        when(resumenService.findById(anyLong())).thenAnswer(i -> dao.findById(i.getArgument(0)).orElseThrow());
+
+        CacheRespuestasJson cache = new CacheRespuestasJson(objectMapper, 16, true);
+        mvc = MockMvcBuilders.standaloneSetup(new MainController(resumenService, mock(GestorRefrescos.class), cache,
+                        mock(DifusorResumenes.class), mock(RegistroFeeds.class)))
+                .setControllerAdvice(new GlobalExceptionHandler())
+                .build();
+        dao.save(new Resumen("Uno", "Primer resumen", null));
+    }
+
+    @Test
+    void conElETagVigenteDevuelve304YSinVolverALeerLosDatos() throws Exception {
+        MvcResult primera = mvc.perform(get("/resumenes"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].titular").value("Uno"))
+                .andReturn();
+        String etag = primera.getResponse().getHeader(HttpHeaders.ETAG);
+        assertNotNull(etag);
+
+        mvc.perform(get("/resumenes").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.ETAG, etag));
+        verify(resumenService, times(1)).findAll();
+
+        // Una escritura cambia la versión: el ETag viejo ya no vale
+        dao.save(new Resumen("Dos", "Segundo resumen", null));
+        mvc.perform(get("/resumenes").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(2));
+    }
+
+    @Test
+    void dentroDeUnaVersionSeSirvenLosMismosBytesSinSerializarDeNuevo() throws Exception {
+        byte[] primera = mvc.perform(get("/resumenes/1")).andReturn().getResponse().getContentAsByteArray();
+        byte[] segunda = mvc.perform(get("/resumenes/1")).andReturn().getResponse().getContentAsByteArray();
+
+        assertArrayEquals(primera, segunda);
+        assertArrayEquals(objectMapper.writeValueAsBytes(dao.findById(1L).orElseThrow()), primera);
+        verify(resumenService, times(1)).findById(1L);
+    }
+
+    @Test
+    void siElClienteAceptaGzipLaRespuestaVaComprimidaYConOtroETag() throws Exception {
+        MvcResult plano = mvc.perform(get("/resumenes")).andReturn();
+        MvcResult comprimido = mvc.perform(get("/resumenes").header(HttpHeaders.ACCEPT_ENCODING, "br, gzip;q=0.8"))
+                .andExpect(header().string(HttpHeaders.CONTENT_ENCODING, "gzip"))
+                .andReturn();
+
+        assertNotEquals(plano.getResponse().getHeader(HttpHeaders.ETAG), comprimido.getResponse().getHeader(HttpHeaders.ETAG));
+        try (GZIPInputStream gz = new GZIPInputStream(new ByteArrayInputStream(comprimido.getResponse().getContentAsByteArray()))) {
+            assertArrayEquals(plano.getResponse().getContentAsByteArray(), gz.readAllBytes());
+        }
+
+        mvc.perform(get("/resumenes").header(HttpHeaders.ACCEPT_ENCODING, "gzip;q=0"))
+                .andExpect(header().doesNotExist(HttpHeaders.CONTENT_ENCODING));
+    }
+}
@@ -0,0 +1,352 @@
+package org.srpm.dao;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.srpm.model.Noticia;
+import org.srpm.model.Resumen;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DaoPersistenteTest {
+
+    private static final int SEGMENTO = 4096;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void lasNoticiasYSuEstadoSobrevivenAUnReinicio() throws Exception {
+        NoticiaDaoPersistente dao = noticias();
+        Noticia a = noticia("https://a");
+        a.setFecha(LocalDateTime.of(2025, 3, 1, 10, 30, 15, 123_000_000));
+        Noticia b = noticia("https://b");
+        dao.save(a);
+        dao.save(b);
+        dao.marcarResumidas(List.of(a.getId()));
+        dao.cerrar();
+
+        NoticiaDaoPersistente reabierto = noticias();
+        Noticia leida = reabierto.findByLinkNoticia("https://a").orElseThrow();
+        assertEquals(a.getId(), leida.getId());
+        assertEquals("Contenido https://a con acentos: áéíóú ñ", leida.getContenido());
+        assertEquals(a.getFecha(), leida.getFecha());
+        assertEquals(List.of(b.getId()), ids(reabierto.findPendientesDeResumen()));
+
+        // Los ids siguen donde se quedaron
+        Noticia c = noticia("https://c");
+        reabierto.save(c);
+        assertEquals(b.getId() + 1, c.getId());
+        reabierto.cerrar();
+    }
+
+    @Test
+    void lasLapidasYElVaciadoTambienSeRecuperan() throws Exception {
+        ResumenDaoPersistente dao = resumenes();
+        Resumen uno = resumen("uno", List.of(1L, 2L));
+        Resumen dos = resumen("dos", null);
+        dao.save(uno);
+        dao.save(dos);
+        dao.deleteById(uno.getId());
+        dao.cerrar();
+
+        ResumenDaoPersistente reabierto = resumenes();
+        assertTrue(reabierto.findById(uno.getId()).isEmpty());
+        assertEquals("dos", reabierto.findById(dos.getId()).orElseThrow().getTitular());
+        assertNull(reabierto.findById(dos.getId()).orElseThrow().getNoticiaIds());
+
+        reabierto.deleteAll();
+        reabierto.cerrar();
+        assertTrue(resumenes().findAll().isEmpty());
+    }
+
+    @Test
+    void lasPaginasPorFechaSeRecuperanAlReiniciar() throws Exception {
+        ResumenDaoPersistente dao = resumenes();
+        LocalDateTime base = LocalDateTime.of(2025, 1, 1, 0, 0);
+        for (int i = 0; i < 5; i++) {
+            Resumen resumen = resumen("r" + i, null);
+            resumen.setFecha(base.plusHours(i));
+            dao.save(resumen);
+        }
+        dao.cerrar();
+
+        ResumenDaoPersistente reabierto = resumenes();
+        List<Resumen> primera = reabierto.findPagina(null, 2, OrdenResumenes.FECHA);
+        assertEquals(List.of("r4", "r3"), primera.stream().map(Resumen::getTitular).toList());
+        assertEquals(base.plusHours(4), primera.getFirst().getFecha());
+        assertEquals(List.of("r2", "r1"), reabierto.findPagina(PosicionResumen.de(primera.getLast()), 2, OrdenResumenes.FECHA)
+                .stream().map(Resumen::getTitular).toList());
+        assertEquals(List.of(4L, 5L), reabierto.findPagina(PosicionResumen.porId(3), 10, OrdenResumenes.ID)
+                .stream().map(Resumen::getId).toList());
+        reabierto.cerrar();
+    }
+
+    @Test
+    void unaEscrituraCortadaAMediasSeDescartaAlArrancar() throws Exception {
+        NoticiaDaoPersistente dao = noticias();
+        dao.save(noticia("https://buena"));
+        Noticia cortada = noticia("https://cortada");
+        dao.save(cortada);
+        dao.cerrar();
+
+        // Se estropea un byte del último registro, como si el proceso hubiera muerto escribiéndolo
+        Path segmento = segmentos("noticias").getLast();
+        long posicion = Files.readString(segmento, java.nio.charset.StandardCharsets.ISO_8859_1).indexOf("https://cortada");
+        try (RandomAccessFile fichero = new RandomAccessFile(segmento.toFile(), "rw")) {
+            fichero.seek(posicion);
+            fichero.write('X');
+        }
+
+        NoticiaDaoPersistente reabierto = noticias();
+        assertTrue(reabierto.findByLinkNoticia("https://buena").isPresent());
+        assertTrue(reabierto.findById(cortada.getId()).isEmpty());
+        reabierto.cerrar();
+    }
+
+    @Test
+    void compactarLiberaSegmentosSinPerderDatos() throws Exception {
+        ResumenDaoPersistente dao = resumenes();
+        Resumen resumen = resumen("v0", List.of(1L));
+        for (int i = 0; i < 200; i++) {
+            resumen.setTitular("versión " + i);
+            dao.save(resumen);
+        }
+        Resumen otro = resumen("fijo", List.of(2L));
+        dao.save(otro);
+        int segmentosAntes = dao.estadisticasLog().segmentos();
+        assertTrue(segmentosAntes > 1);
+
+        dao.compactar();
+
+        AlmacenLog.Estadisticas despues = dao.estadisticasLog();
+        assertEquals(1, despues.segmentos());
+        assertEquals(despues.bytesVivos(), despues.bytesTotales());
+        assertEquals(1, segmentos("resumenes").size());
+        dao.cerrar();
+
+        ResumenDaoPersistente reabierto = resumenes();
+        assertEquals("versión 199", reabierto.findById(resumen.getId()).orElseThrow().getTitular());
+        assertEquals("fijo", reabierto.findById(otro.getId()).orElseThrow().getTitular());
+        reabierto.cerrar();
+    }
+
+    @Test
+    void laGeneracionPublicadaEsLaQueSeAbreAlReiniciar() throws Exception {
+        NoticiaDaoPersistente dao = noticias();
+        dao.save(noticia("https://vieja"));
+
+        NoticiaDAO nueva = dao.nuevaGeneracion();
+        nueva.save(noticia("https://nueva"));
+        assertTrue(dao.findByLinkNoticia("https://nueva").isEmpty());
+
+        dao.publicar(nueva);
+        assertTrue(dao.findByLinkNoticia("https://vieja").isEmpty());
+        dao.cerrar();
+
+        // Una generación a medias (refresco que nunca se publicó) se descarta al arrancar
+        NoticiaDaoPersistente reabierto = noticias();
+        reabierto.nuevaGeneracion().save(noticia("https://abandonada"));
+        reabierto.cerrar();
+
+        NoticiaDaoPersistente otraVez = noticias();
+        assertEquals(List.of("https://nueva"), otraVez.findAll().stream().map(Noticia::getLinkNoticia).toList());
+        otraVez.cerrar();
+    }
+
+    @Test
+    void noticiasYResumenesDeUnRefrescoSePublicanJuntosEnDisco() throws Exception {
+        DirectorioGeneraciones directorio = new DirectorioGeneraciones(dir);
+        NoticiaDaoPersistente noticias = noticias(directorio);
+        ResumenDaoPersistente resumenes = resumenes(directorio);
+        noticias.save(noticia("https://vieja"));
+        resumenes.save(resumen("viejo", null));
+
+        NoticiaDAO noticiasNuevas = noticias.nuevaGeneracion();
+        ResumenDAO resumenesNuevos = resumenes.nuevaGeneracion();
+        noticiasNuevas.save(noticia("https://nueva"));
+        resumenesNuevos.save(resumen("nuevo", null));
+        String puntero = Files.readString(dir.resolve("ACTUAL"));
+        noticias.publicar(noticiasNuevas);
+
+        // Un corte aquí arranca con las dos viejas: el puntero aún no ha cambiado
+        assertEquals(List.of("https://nueva"), links(noticias));
+        assertEquals(puntero, Files.readString(dir.resolve("ACTUAL")));
+
+        resumenes.publicar(resumenesNuevos);
+        noticias.cerrar();
+        resumenes.cerrar();
+
+        DirectorioGeneraciones reabierto = new DirectorioGeneraciones(dir);
+        assertEquals(List.of("https://nueva"), links(noticias(reabierto)));
+        assertEquals(List.of("nuevo"), resumenes(reabierto).findAll().stream().map(Resumen::getTitular).toList());
+    }
+
+    @Test
+    void unaGeneracionDescartadaSeCierraYSeBorra() throws Exception {
+        NoticiaDaoPersistente dao = noticias();
+        NoticiaDAO nueva = dao.nuevaGeneracion();
+        nueva.save(noticia("https://tirada"));
+        assertEquals(2, generaciones("noticias"));
+
+        dao.descartar(nueva);
+        assertEquals(1, generaciones("noticias"));
+        dao.save(noticia("https://sigue"));
+        assertEquals(List.of("https://sigue"), links(dao));
+        dao.cerrar();
+    }
+
+    @Test
+    void cambiarElLinkDeUnaNoticiaOlvidaElViejo() throws Exception {
+        NoticiaDaoPersistente dao = noticias();
+        Noticia a = noticia("https://antes");
+        dao.save(a);
+
+        a.setLinkNoticia("https://despues");
+        dao.save(a);
+
+        assertTrue(dao.findByLinkNoticia("https://antes").isEmpty());
+        assertEquals(a.getId(), dao.findByLinkNoticia("https://despues").orElseThrow().getId());
+        dao.cerrar();
+
+        // También al recuperarlo de disco
+        NoticiaDaoPersistente reabierto = noticias();
+        assertTrue(reabierto.findByLinkNoticia("https://antes").isEmpty());
+        assertEquals(a.getId(), reabierto.findByLinkNoticia("https://despues").orElseThrow().getId());
+        assertFalse(reabierto.saveIfAbsent(noticia("https://despues")));
+        assertTrue(reabierto.saveIfAbsent(noticia("https://antes")));
+        reabierto.cerrar();
+    }
+
+    @Test
+    void trasVaciarYReiniciarLosIdsNoVuelvenAEmpezar() throws Exception {
+        NoticiaDaoPersistente noticias = noticias();
+        ResumenDaoPersistente resumenes = resumenes();
+        Noticia n = noticia("https://vieja");
+        noticias.save(n);
+        Resumen r = resumen("viejo", List.of(n.getId()));
+        resumenes.save(r);
+        noticias.deleteAll();
+        resumenes.deleteAll();
+        noticias.cerrar();
+        resumenes.cerrar();
+
+        noticias = noticias();
+        resumenes = resumenes();
+        Noticia otra = noticia("https://nueva");
+        noticias.save(otra);
+        Resumen otro = resumen("nuevo", null);
+        resumenes.save(otro);
+        assertTrue(otra.getId() > n.getId());
+        assertTrue(otro.getId() > r.getId());
+
+        // Ni después de compactar, cuando ya no queda ningún registro con el id más alto
+        for (int i = 0; i < 200; i++) {
+            otro.setTitular("versión " + i);
+            resumenes.save(otro);
+        }
+        resumenes.deleteById(otro.getId());
+        resumenes.compactar();
+        assertEquals(0, resumenes.estadisticasLog().registros());
+        assertEquals(1, resumenes.estadisticasLog().segmentos(), "se ha compactado");
+        resumenes.cerrar();
+        noticias.cerrar();
+        resumenes = resumenes();
+        Resumen tercero = resumen("tercero", null);
+        resumenes.save(tercero);
+        assertTrue(tercero.getId() > otro.getId());
+        resumenes.cerrar();
+    }
+
+    @Test
+    void compactarNoPierdeLoQueSeEscribeMientrasCopia() throws Exception {
+        ResumenDaoPersistente dao = resumenes();
+        List<Resumen> resumenes = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            Resumen resumen = resumen("r" + i, null);
+            dao.save(resumen);
+            resumenes.add(resumen);
+        }
+
+        Thread escritor = Thread.ofVirtual().start(() -> {
+            for (int vuelta = 0; vuelta < 100; vuelta++) {
+                for (Resumen resumen : resumenes) {
+                    resumen.setCuerpo("vuelta " + vuelta);
+                    dao.save(resumen);
+                }
+            }
+        });
+        while (escritor.isAlive()) {
+            dao.compactar();
+        }
+        escritor.join();
+        dao.compactar();
+        dao.cerrar();
+
+        ResumenDaoPersistente reabierto = resumenes();
+        for (Resumen resumen : resumenes) {
+            assertEquals("vuelta 99", reabierto.findById(resumen.getId()).orElseThrow().getCuerpo());
+        }
+        assertEquals(20, reabierto.count());
+        reabierto.cerrar();
+    }
+
+    private NoticiaDaoPersistente noticias() {
+        return noticias(new DirectorioGeneraciones(dir));
+    }
+
+    private ResumenDaoPersistente resumenes() {
+        return resumenes(new DirectorioGeneraciones(dir));
+    }
+
+    private static NoticiaDaoPersistente noticias(DirectorioGeneraciones directorio) {
+        return new NoticiaDaoPersistente(directorio, SEGMENTO, 0);
+    }
+
+    private static ResumenDaoPersistente resumenes(DirectorioGeneraciones directorio) {
+        return new ResumenDaoPersistente(directorio, SEGMENTO, 0);
+    }
+
+    private long generaciones(String dao) throws IOException {
+        try (Stream<Path> listado = Files.list(dir.resolve(dao))) {
+            return listado.count();
+        }
+    }
+
+    private static List<String> links(NoticiaDAO dao) {
+        return dao.findAll().stream().map(Noticia::getLinkNoticia).toList();
+    }
+
+    private List<Path> segmentos(String dao) throws IOException {
+        try (Stream<Path> ficheros = Files.walk(dir.resolve(dao))) {
+            return ficheros.filter(p -> p.toString().endsWith(".log")).sorted().toList();
+        }
+    }
+
+    private static Noticia noticia(String link) {
+        Noticia noticia = new Noticia();
+        noticia.setLinkNoticia(link);
+        noticia.setFuente("test");
+        noticia.setTitular("Titular " + link);
+        noticia.setContenido("Contenido " + link + " con acentos: áéíóú ñ");
+        return noticia;
+    }
+
+    private static Resumen resumen(String titular, List<Long> noticiaIds) {
+        Resumen resumen = new Resumen(titular, "Cuerpo de " + titular, null);
+        resumen.setNoticiaIds(noticiaIds);
+        return resumen;
+    }
+
+    private static List<Long> ids(List<Noticia> noticias) {
+        return noticias.stream().map(Noticia::getId).toList();
+    }
+}
@@ -0,0 +1,201 @@
+package org.srpm.dao;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.srpm.model.Noticia;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Muchas fuentes guardando a la vez las mismas noticias: cada link se guarda una sola vez, los ids
+ * no tienen huecos ni repeticiones y los índices por id y por link dicen siempre lo mismo.
+ */
+class NoticiaDaoConcurrenciaTest {
+
+    private static final int LINKS = 2000;
+    private static final int ESCRITORES = 8;
+    private static final int PAGINA = 25;
+
+    @TempDir
+    Path dir;
+
+    private NoticiaDaoPersistente persistente;
+
+    @AfterEach
+    void cerrar() throws IOException {
+        if (persistente != null) {
+            persistente.cerrar();
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"memoria", "compacto", "persistente"})
+    void cadaLinkSeGuardaUnaSolaVez(String tipo) throws Exception {
+        NoticiaDAO dao = dao(tipo);
+        List<String> links = IntStream.range(0, LINKS).mapToObj(i -> "https://fuente.es/noticia/" + i).toList();
+        Map<String, Long> ganadoras = new ConcurrentHashMap<>();
+        AtomicInteger guardadas = new AtomicInteger();
+        AtomicBoolean escribiendo = new AtomicBoolean(true);
+        List<String> incoherencias = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch salida = new CountDownLatch(1);
+
+        try (ExecutorService hilos = Executors.newFixedThreadPool(ESCRITORES + 2)) {
+            List<Future<?>> escritores = new ArrayList<>();
+            for (int h = 0; h < ESCRITORES; h++) {
+                int hilo = h;
+                escritores.add(hilos.submit(() -> {
+                    List<String> orden = new ArrayList<>(links);
+                    Collections.shuffle(orden, new Random(hilo));
+                    salida.await();
+                    if (hilo % 2 == 0) {
+                        // Noticia a noticia
+                        for (String link : orden) {
+                            Noticia noticia = noticia(link, hilo);
+                            if (dao.saveIfAbsent(noticia)) {
+                                guardadas.incrementAndGet();
+                                assertNull(ganadoras.put(link, noticia.getId()), "dos veces: " + link);
+                            }
+                        }
+                    } else {
+                        // Por páginas, como un feed, con algún link repetido dentro de la página
+                        for (int i = 0; i < orden.size(); i += PAGINA) {
+                            List<Noticia> pagina = new ArrayList<>();
+                            for (String link : orden.subList(i, Math.min(i + PAGINA, orden.size()))) {
+                                pagina.add(noticia(link, hilo));
+                            }
+                            pagina.add(noticia(orden.get(i), hilo));
+                            for (Noticia noticia : dao.saveAll(pagina)) {
+                                guardadas.incrementAndGet();
+                                assertNull(ganadoras.put(noticia.getLinkNoticia(), noticia.getId()), "dos veces: " + noticia.getLinkNoticia());
+                            }
+                        }
+                    }
+                    return null;
+                }));
+            }
+            // Lectores mientras tanto: lo que se encuentra por link tiene ese link y está por id
+            for (int h = 0; h < 2; h++) {
+                hilos.submit(() -> {
+                    salida.await();
+                    Random azar = new Random();
+                    while (escribiendo.get()) {
+                        List<String> muestra = IntStream.range(0, 50).mapToObj(i -> links.get(azar.nextInt(LINKS))).toList();
+                        dao.findByLinks(muestra).forEach((link, noticia) -> {
+                            if (!link.equals(noticia.getLinkNoticia()) || dao.findById(noticia.getId()).isEmpty()) {
+                                incoherencias.add(link + " -> " + noticia.getId());
+                            }
+                        });
+                    }
+                    return null;
+                });
+            }
+
+            salida.countDown();
+            for (Future<?> escritor : escritores) {
+                escritor.get();
+            }
+            escribiendo.set(false);
+        }
+
+        assertEquals(List.of(), incoherencias);
+        assertEquals(LINKS, guardadas.get());
+        assertEquals(LINKS, ganadoras.size());
+
+        // Ids 1..N, sin huecos (una noticia rechazada no gasta id) ni repetidos
+        List<Noticia> todas = dao.findAll();
+        assertEquals(LINKS, todas.size());
+        assertEquals(LongStream.rangeClosed(1, LINKS).boxed().collect(Collectors.toSet()),
+                todas.stream().map(Noticia::getId).collect(Collectors.toSet()));
+
+        // Los dos índices coinciden, y con quien ganó cada link
+        Map<String, Noticia> porLink = dao.findByLinks(links);
+        assertEquals(LINKS, porLink.size());
+        for (String link : links) {
+            Noticia noticia = porLink.get(link);
+            assertEquals(ganadoras.get(link), noticia.getId(), link);
+            assertEquals(link, dao.findById(noticia.getId()).orElseThrow().getLinkNoticia());
+        }
+        assertEquals(LINKS, dao.findPendientesDeResumen().size());
+        assertEquals(LINKS, dao.estadisticas().noticias());
+    }
+
+    @Test
+    void conRetencionLosIndicesNoDejanHuerfanos() throws Exception {
+        NoticiaDaoEnMemoria dao = new NoticiaDaoEnMemoria(new PoliticaRetencion(null, 300, 0), Clock.systemDefaultZone());
+        CountDownLatch salida = new CountDownLatch(1);
+
+        try (ExecutorService hilos = Executors.newFixedThreadPool(ESCRITORES)) {
+            for (int h = 0; h < ESCRITORES; h++) {
+                int hilo = h;
+                hilos.submit(() -> {
+                    salida.await();
+                    for (int i = 0; i < LINKS; i += PAGINA) {
+                        List<Noticia> pagina = new ArrayList<>();
+                        for (int j = i; j < i + PAGINA; j++) {
+                            pagina.add(noticia("https://fuente.es/" + ((j * 7 + hilo * 13) % LINKS), hilo));
+                        }
+                        dao.saveAll(pagina);
+                        dao.marcarResumidas(List.of((long) i));
+                    }
+                    return null;
+                });
+            }
+            salida.countDown();
+        }
+
+        List<Noticia> todas = dao.findAll();
+        assertEquals(300, todas.size());
+        Set<String> links = new HashSet<>();
+        for (Noticia noticia : todas) {
+            assertTrue(links.add(noticia.getLinkNoticia()), "link repetido: " + noticia.getLinkNoticia());
+            assertEquals(noticia.getId(), dao.findByLinkNoticia(noticia.getLinkNoticia()).orElseThrow().getId());
+        }
+        // Ningún link de una noticia expulsada sigue apuntando a algo
+        List<String> todos = IntStream.range(0, LINKS).mapToObj(i -> "https://fuente.es/" + i).toList();
+        assertEquals(links, dao.findByLinks(todos).keySet());
+        Set<Long> ids = todas.stream().map(Noticia::getId).collect(Collectors.toSet());
+        assertTrue(ids.containsAll(dao.findPendientesDeResumen().stream().map(Noticia::getId).toList()));
+        assertEquals(300, dao.estadisticas().noticias());
+    }
+
+    private NoticiaDAO dao(String tipo) {
+        return switch (tipo) {
+            case "memoria" -> new NoticiaDaoEnMemoria();
+            case "compacto" -> new NoticiaDaoEnMemoria(PoliticaRetencion.SIN_LIMITES, Clock.systemDefaultZone(), true, 64);
+            default -> persistente = new NoticiaDaoPersistente(new DirectorioGeneraciones(dir), 1 << 20, 0);
+        };
+    }
+
+    private static Noticia noticia(String link, int hilo) {
+        Noticia noticia = new Noticia();
+        noticia.setLinkNoticia(link);
+        noticia.setFuente("fuente-" + hilo);
+        noticia.setTitular("Titular de " + link);
+        noticia.setContenido("Contenido de " + link + " visto por el hilo " + hilo);
+        return noticia;
+    }
+}
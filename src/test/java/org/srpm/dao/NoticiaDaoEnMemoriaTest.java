@@ -0,0 +1,279 @@
+package org.srpm.dao;
+
+import org.junit.jupiter.api.Test;
+import org.srpm.model.Noticia;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NoticiaDaoEnMemoriaTest {
+
+    private final NoticiaDaoEnMemoria dao = new NoticiaDaoEnMemoria();
+
+    @Test
+    void lasNoticiasNuevasQuedanPendientesHastaMarcarlas() {
+        Noticia a = noticia("https://a");
+        Noticia b = noticia("https://b");
+        dao.save(a);
+        dao.save(b);
+
+        assertEquals(List.of(a.getId(), b.getId()), ids(dao.findPendientesDeResumen()));
+
+        dao.marcarResumidas(List.of(a.getId()));
+        assertEquals(List.of(b.getId()), ids(dao.findPendientesDeResumen()));
+    }
+
+    @Test
+    void actualizarUnaNoticiaResumidaNoLaVuelveAPonerPendiente() {
+        Noticia a = noticia("https://a");
+        dao.save(a);
+        dao.marcarResumidas(List.of(a.getId()));
+
+        a.setTitular("Titular corregido");
+        dao.save(a);
+
+        assertTrue(dao.findPendientesDeResumen().isEmpty());
+    }
+
+    @Test
+    void unaGeneracionNuevaNoSeVeHastaPublicarla() {
+        Noticia vieja = noticia("https://vieja");
+        dao.save(vieja);
+
+        NoticiaDAO nueva = dao.nuevaGeneracion();
+        nueva.save(noticia("https://nueva-1"));
+        nueva.save(noticia("https://nueva-2"));
+
+        assertEquals(1, dao.findAll().size());
+        assertTrue(dao.findByLinkNoticia("https://nueva-1").isEmpty());
+        assertEquals(0, dao.getGeneracion());
+
+        dao.publicar(nueva);
+
+        assertEquals(2, dao.findAll().size());
+        assertTrue(dao.findByLinkNoticia("https://vieja").isEmpty());
+        assertTrue(dao.findByLinkNoticia("https://nueva-2").isPresent());
+        assertEquals(1, dao.getGeneracion());
+        assertThrows(IllegalArgumentException.class, () -> dao.publicar(dao));
+    }
+
+    @Test
+    void loQueSeEscribeMientrasSePreparaUnaGeneracionLlegaALaNuevaConSuId() {
+        dao.save(noticia("https://vieja"));
+        NoticiaDAO nueva = dao.nuevaGeneracion();
+        Noticia delRefresco = noticia("https://del-refresco");
+        nueva.save(delRefresco);
+
+        Noticia entretanto = noticia("https://entretanto");
+        Noticia resumida = noticia("https://resumida");
+        dao.saveAll(List.of(entretanto, resumida));
+        dao.marcarResumidas(List.of(resumida.getId()));
+        dao.publicar(nueva);
+
+        assertEquals(entretanto.getId(), dao.findByLinkNoticia("https://entretanto").orElseThrow().getId());
+        assertEquals(List.of(delRefresco.getId(), entretanto.getId()), ids(dao.findPendientesDeResumen()));
+        assertEquals(3, ids(dao.findAll()).stream().distinct().count(), "ningún id repetido");
+
+        // Descartada, ya no recibe nada
+        NoticiaDAO tirada = dao.nuevaGeneracion();
+        dao.descartar(tirada);
+        dao.save(noticia("https://despues"));
+        assertTrue(tirada.findAll().isEmpty());
+    }
+
+    @Test
+    void laRetencionExpulsaLasMasAntiguasManteniendoLosMapasAlineados() {
+        RelojFijo reloj = new RelojFijo(LocalDateTime.of(2025, 6, 1, 12, 0));
+        NoticiaDaoEnMemoria conLimites = new NoticiaDaoEnMemoria(
+                new PoliticaRetencion(Duration.ofHours(24), 3, 0), reloj);
+
+        Noticia vieja = noticia("https://vieja");
+        vieja.setFecha(reloj.ahora().minusDays(2));
+        conLimites.save(vieja);
+        assertTrue(conLimites.findByLinkNoticia("https://vieja").isEmpty());
+        assertTrue(conLimites.findById(vieja.getId()).isEmpty());
+
+        for (int i = 0; i < 5; i++) {
+            Noticia n = noticia("https://n" + i);
+            n.setFecha(reloj.ahora().minusMinutes(10 - i));
+            conLimites.save(n);
+        }
+
+        // Quedan las 3 más recientes, también en el índice por link y en pendientes
+        assertEquals(3, conLimites.findAll().size());
+        assertTrue(conLimites.findByLinkNoticia("https://n0").isEmpty());
+        assertTrue(conLimites.findByLinkNoticia("https://n4").isPresent());
+        assertEquals(3, conLimites.findPendientesDeResumen().size());
+
+        // Al pasar el tiempo, la siguiente escritura se lleva las caducadas
+        reloj.avanzar(Duration.ofHours(25));
+        Noticia fresca = noticia("https://fresca");
+        conLimites.save(fresca);
+        assertEquals(List.of(fresca.getId()), ids(conLimites.findAll()));
+
+        EstadisticasAlmacen estadisticas = conLimites.estadisticas();
+        assertEquals(1, estadisticas.noticias());
+        assertEquals(NoticiaDaoEnMemoria.bytesEstimados(fresca), estadisticas.bytes());
+        assertEquals(4, estadisticas.expulsadasPorEdad());
+        assertEquals(2, estadisticas.expulsadasPorNumero());
+    }
+
+    @Test
+    void laIngestaNoVuelveAAdmitirLoQueLaRetencionAcabaDeQuitar() {
+        RelojFijo reloj = new RelojFijo(LocalDateTime.of(2025, 6, 1, 12, 0));
+        NoticiaDaoEnMemoria conLimites = new NoticiaDaoEnMemoria(
+                new PoliticaRetencion(Duration.ofHours(24), 2, 0), reloj);
+
+        // El feed trae tres: la más antigua sale en cuanto entra la tercera
+        List<Noticia> feed = List.of(noticia("https://a", reloj.ahora().minusHours(3)),
+                noticia("https://b", reloj.ahora().minusHours(2)), noticia("https://c", reloj.ahora().minusHours(1)));
+        assertEquals(3, conLimites.saveAll(feed).size());
+        assertTrue(conLimites.findByLinkNoticia("https://a").isEmpty());
+
+        // El siguiente sondeo trae lo mismo: 'a' no vuelve a entrar como nueva
+        List<Noticia> otraVez = List.of(noticia("https://a", reloj.ahora().minusHours(3)),
+                noticia("https://b", reloj.ahora().minusHours(2)), noticia("https://c", reloj.ahora().minusHours(1)));
+        assertTrue(conLimites.saveAll(otraVez).isEmpty());
+        assertFalse(conLimites.saveIfAbsent(noticia("https://a", reloj.ahora().minusHours(3))));
+
+        // Ni lo que ya pasa de la edad máxima
+        assertFalse(conLimites.saveIfAbsent(noticia("https://caducada", reloj.ahora().minusDays(2))));
+        assertEquals(1, conLimites.estadisticas().expulsadasPorNumero());
+        assertEquals(0, conLimites.estadisticas().expulsadasPorEdad());
+    }
+
+    @Test
+    void elLimiteDeBytesTieneEnCuentaLasActualizaciones() {
+        Noticia a = noticia("https://a");
+        long tamA = NoticiaDaoEnMemoria.bytesEstimados(a);
+        NoticiaDaoEnMemoria conLimites = new NoticiaDaoEnMemoria(
+                new PoliticaRetencion(null, 0, tamA * 2 + 10), Clock.systemDefaultZone());
+        conLimites.save(a);
+        Noticia b = noticia("https://b");
+        conLimites.save(b);
+        assertEquals(2, conLimites.estadisticas().noticias());
+
+        // Crece 'b' y ya no caben las dos: se va la más antigua
+        b.setContenido("x".repeat(100));
+        conLimites.save(b);
+
+        assertTrue(conLimites.findById(a.getId()).isEmpty());
+        assertEquals(NoticiaDaoEnMemoria.bytesEstimados(b), conLimites.estadisticas().bytes());
+        assertEquals(1, conLimites.estadisticas().expulsadasPorBytes());
+    }
+
+    @Test
+    void elModoCompactoDevuelveLoMismoQueSeGuardo() {
+        NoticiaDaoEnMemoria compacto = new NoticiaDaoEnMemoria(PoliticaRetencion.SIN_LIMITES, Clock.systemDefaultZone(), true, 256);
+        Noticia larga = noticia("https://ejemplo.es/señal-ñandú");
+        larga.setTitular("Ávila: «récord» de 40 °C 🔥");
+        larga.setContenido("La AEMET avisa de que el calor seguirá en Castilla y León. ".repeat(50));
+        larga.setFecha(LocalDateTime.of(2025, 7, 1, 18, 30, 5, 123_456_789));
+        Noticia vacia = new Noticia();
+        vacia.setLinkNoticia("https://vacia");
+        compacto.save(larga);
+        compacto.save(vacia);
+
+        Noticia leida = compacto.findByLinkNoticia("https://ejemplo.es/señal-ñandú").orElseThrow();
+        assertNotSame(larga, leida);
+        assertEquals(larga.getId(), leida.getId());
+        assertEquals(larga.getFuente(), leida.getFuente());
+        assertEquals(larga.getTitular(), leida.getTitular());
+        assertEquals(larga.getLinkNoticia(), leida.getLinkNoticia());
+        assertEquals(larga.getContenido(), leida.getContenido());
+        assertEquals(larga.getFecha(), leida.getFecha());
+
+        Noticia otra = compacto.findById(vacia.getId()).orElseThrow();
+        assertNull(otra.getFuente());
+        assertNull(otra.getTitular());
+        assertNull(otra.getContenido());
+        assertEquals(2, compacto.findPendientesDeResumen().size());
+
+        // Cambiar lo leído no cambia lo guardado hasta hacer save
+        leida.setContenido("corregido");
+        assertEquals(larga.getContenido(), compacto.findById(larga.getId()).orElseThrow().getContenido());
+        compacto.save(leida);
+        assertEquals("corregido", compacto.findById(larga.getId()).orElseThrow().getContenido());
+        assertEquals(2, compacto.findAll().size());
+    }
+
+    @Test
+    void elModoCompactoComprimeLosTextosLargosYMantieneLosIndicesAlExpulsar() {
+        NoticiaDaoEnMemoria compacto = new NoticiaDaoEnMemoria(
+                new PoliticaRetencion(null, 2, 0), Clock.systemDefaultZone(), true, 256);
+        Noticia larga = noticia("https://larga");
+        larga.setContenido("Un texto que se repite mucho. ".repeat(200)); // 6000 caracteres
+        compacto.save(larga);
+        assertTrue(compacto.estadisticas().bytes() < 1000, "ocupa " + compacto.estadisticas().bytes());
+        assertTrue(compacto.estadisticas().bytes() * 10 < NoticiaDaoEnMemoria.bytesEstimados(larga));
+
+        compacto.save(noticia("https://b"));
+        compacto.save(noticia("https://c"));
+        assertTrue(compacto.findByLinkNoticia("https://larga").isEmpty());
+        assertTrue(compacto.findById(larga.getId()).isEmpty());
+        assertEquals(2, compacto.findAll().size());
+
+        // Las generaciones nuevas también son compactas
+        NoticiaDAO nueva = compacto.nuevaGeneracion();
+        nueva.save(noticia("https://d"));
+        compacto.publicar(nueva);
+        assertEquals("test", compacto.findByLinkNoticia("https://d").orElseThrow().getFuente());
+    }
+
+    private static Noticia noticia(String link) {
+        Noticia noticia = new Noticia();
+        noticia.setLinkNoticia(link);
+        noticia.setFuente("test");
+        noticia.setTitular("Titular " + link);
+        noticia.setContenido("Contenido " + link);
+        return noticia;
+    }
+
+    private static Noticia noticia(String link, LocalDateTime fecha) {
+        Noticia noticia = noticia(link);
+        noticia.setFecha(fecha);
+        return noticia;
+    }
+
+    private static List<Long> ids(List<Noticia> noticias) {
+        return noticias.stream().map(Noticia::getId).toList();
+    }
+
+    private static final class RelojFijo extends Clock {
+        private Instant instante;
+
+        RelojFijo(LocalDateTime inicio) {
+            this.instante = inicio.atZone(ZoneOffset.UTC).toInstant();
+        }
+
+        LocalDateTime ahora() {
+            return LocalDateTime.ofInstant(instante, ZoneOffset.UTC);
+        }
+
+        void avanzar(Duration d) {
+            instante = instante.plus(d);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return instante;
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package org.srpm.dao;
+
+import org.junit.jupiter.api.Test;
+import org.srpm.model.Resumen;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ResumenDaoEnMemoriaTest {
+
+    private static final LocalDateTime BASE = LocalDateTime.of(2025, 1, 1, 0, 0);
+
+    private final ResumenDaoEnMemoria dao = new ResumenDaoEnMemoria();
+
+    @Test
+    void lasPaginasPorIdRecorrenTodoSinRepetirNiSaltarse() {
+        for (int i = 0; i < 25; i++) {
+            dao.save(resumen("r" + i, BASE.plusMinutes(i)));
+        }
+
+        List<Long> vistos = new ArrayList<>();
+        PosicionResumen cursor = null;
+        List<Resumen> pagina;
+        while (!(pagina = dao.findPagina(cursor, 10, OrdenResumenes.ID)).isEmpty()) {
+            pagina.forEach(r -> vistos.add(r.getId()));
+            cursor = PosicionResumen.porId(pagina.getLast().getId());
+        }
+
+        assertEquals(25, vistos.size());
+        assertEquals(vistos.stream().sorted().toList(), vistos);
+        assertEquals(dao.findAll().stream().map(Resumen::getId).toList(), vistos);
+    }
+
+    @Test
+    void porFechaSaleLoMasRecientePrimeroYElCursorAguantaCambios() {
+        Resumen viejo = resumen("viejo", BASE);
+        Resumen medio = resumen("medio", BASE.plusHours(1));
+        Resumen nuevo = resumen("nuevo", BASE.plusHours(2));
+        dao.save(viejo);
+        dao.save(nuevo);
+        dao.save(medio);
+
+        List<Resumen> primera = dao.findPagina(null, 2, OrdenResumenes.FECHA);
+        assertEquals(List.of("nuevo", "medio"), titulares(primera));
+
+        // Entra uno más reciente y se borra el viejo: la página siguiente sigue desde 'medio'
+        PosicionResumen cursor = PosicionResumen.de(primera.getLast());
+        dao.save(resumen("recién llegado", BASE.plusHours(3)));
+        Resumen extra = resumen("extra", BASE.minusHours(1));
+        dao.save(extra);
+        dao.deleteById(viejo.getId());
+
+        assertEquals(List.of("extra"), titulares(dao.findPagina(cursor, 2, OrdenResumenes.FECHA)));
+
+        // Ni siquiera hace falta que 'medio' siga existiendo: el cursor lleva su fecha
+        dao.deleteById(medio.getId());
+        assertEquals(List.of("extra"), titulares(dao.findPagina(cursor, 2, OrdenResumenes.FECHA)));
+    }
+
+    @Test
+    void actualizarLaFechaMueveElResumenEnElIndice() {
+        Resumen a = resumen("a", BASE);
+        Resumen b = resumen("b", BASE.plusHours(1));
+        dao.save(a);
+        dao.save(b);
+
+        a.setFecha(BASE.plusHours(2));
+        dao.save(a);
+
+        assertEquals(List.of("a", "b"), titulares(dao.findPagina(null, 10, OrdenResumenes.FECHA)));
+        assertThrows(IllegalArgumentException.class,
+                () -> dao.findPagina(PosicionResumen.porId(a.getId()), 10, OrdenResumenes.FECHA));
+    }
+
+    @Test
+    void laVersionSubeConCadaCambioYTambienAlPublicar() {
+        long v0 = dao.getVersion();
+        Resumen a = resumen("a", BASE);
+        dao.save(a);
+        dao.save(a);
+        dao.deleteById(a.getId());
+        assertEquals(v0 + 3, dao.getVersion());
+
+        ResumenDAO nueva = dao.nuevaGeneracion();
+        nueva.save(resumen("b", BASE));
+        assertEquals(v0 + 3, dao.getVersion(), "lo que se escribe en la generación sin publicar no cuenta");
+        dao.publicar(nueva);
+        assertEquals(v0 + 4, dao.getVersion());
+    }
+
+    @Test
+    void losIdsNoSeRepitenEntreGeneracionesYLoEscritoEntretantoSeConserva() {
+        Resumen viejo = resumen("viejo", BASE);
+        Resumen borrado = resumen("borrado", BASE);
+        dao.save(viejo);
+        dao.save(borrado);
+
+        ResumenDAO nueva = dao.nuevaGeneracion();
+        Resumen delRefresco = resumen("del refresco", BASE.plusHours(1));
+        nueva.save(delRefresco);
+        Resumen delUsuario = resumen("del usuario", BASE.plusHours(2));
+        dao.save(delUsuario);
+        dao.deleteById(delUsuario.getId());
+        Resumen otro = resumen("otro", BASE.plusHours(3));
+        dao.save(otro);
+        dao.publicar(nueva);
+
+        assertTrue(delRefresco.getId() > borrado.getId());
+        assertTrue(dao.findById(viejo.getId()).isEmpty(), "el id viejo no apunta a otro resumen");
+        assertEquals(List.of("otro", "del refresco"), titulares(dao.findPagina(null, 10, OrdenResumenes.FECHA)));
+    }
+
+    private static Resumen resumen(String titular, LocalDateTime fecha) {
+        Resumen resumen = new Resumen(titular, "Cuerpo de " + titular, null);
+        resumen.setFecha(fecha);
+        return resumen;
+    }
+
+    private static List<String> titulares(List<Resumen> resumenes) {
+        return resumenes.stream().map(Resumen::getTitular).toList();
+    }
+}
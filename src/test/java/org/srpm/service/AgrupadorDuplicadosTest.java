@@ -0,0 +1,120 @@
+package org.srpm.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.srpm.model.Noticia;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Las noticias de src/test/resources/duplicados vienen etiquetadas con su "historia": dos noticias son
+ * duplicadas si y sólo si cuentan la misma. Incluye parejas parecidas que NO lo son (dos incendios en
+ * Castilla y León, el BCE y la Fed, dos terremotos...) para que la precisión signifique algo.
+ */
+class AgrupadorDuplicadosTest {
+
+    private static final double UMBRAL_POR_DEFECTO = 0.35;
+
+    private static List<Noticia> noticias;
+    private static Map<Long, String> historias;
+
+    @BeforeAll
+    static void cargar() throws IOException {
+        noticias = new ArrayList<>();
+        historias = new HashMap<>();
+        try (InputStream in = AgrupadorDuplicadosTest.class.getResourceAsStream("/duplicados/noticias-etiquetadas.json")) {
+            long id = 1;
+            for (JsonNode n : new ObjectMapper().readTree(in)) {
+                Noticia noticia = noticia(id, n.get("fuente").asText(), n.get("titular").asText(), n.get("contenido").asText());
+                noticias.add(noticia);
+                historias.put(id++, n.get("historia").asText());
+            }
+        }
+    }
+
+    @Test
+    void precisionYExhaustividadSobreElConjuntoEtiquetado() {
+        double[] pr = medir(UMBRAL_POR_DEFECTO);
+        assertEquals(1.0, pr[0], "ningún par de historias distintas debe acabar en el mismo grupo");
+        assertTrue(pr[1] >= 0.8, "exhaustividad " + pr[1]);
+    }
+
+    @Test
+    void unDuplicadoQueLlegaDespuesRecibeElResumenDelGrupo() {
+        AgrupadorDuplicados agrupador = new AgrupadorDuplicados(UMBRAL_POR_DEFECTO, 100);
+        Noticia primera = noticias.get(0);  // incendio de Candeleda, 20minutos
+        Noticia tabara = noticias.get(3);   // otro incendio, otra historia
+
+        List<AgrupadorDuplicados.Grupo> antes = agrupador.agrupar(List.of(primera, tabara));
+        assertEquals(2, antes.size());
+        assertNull(antes.get(0).resumenId());
+        agrupador.resumido(antes.get(0).id(), 77L);
+
+        Noticia tarde = noticias.get(1);    // la de COPE, un ciclo después
+        List<AgrupadorDuplicados.Grupo> despues = agrupador.agrupar(List.of(tarde));
+        assertEquals(1, despues.size());
+        assertEquals(antes.get(0).id(), despues.get(0).id());
+        assertEquals(77L, despues.get(0).resumenId());
+    }
+
+    @Test
+    void unaNoticiaYaVistaVuelveASuGrupoYLosViejosSeOlvidan() {
+        AgrupadorDuplicados agrupador = new AgrupadorDuplicados(UMBRAL_POR_DEFECTO, 2);
+        Noticia a = noticias.get(4);   // BCE
+        Noticia b = noticias.get(22);  // Prado
+        Noticia c = noticias.get(23);  // iPhone
+
+        long grupoDeA = agrupador.agrupar(List.of(a)).get(0).id();
+        assertEquals(grupoDeA, agrupador.agrupar(List.of(a)).get(0).id());
+
+        agrupador.agrupar(List.of(b, c));
+        assertEquals(2, agrupador.grupos());
+        assertNotEquals(grupoDeA, agrupador.agrupar(List.of(a)).get(0).id(), "el grupo de 'a' era el más viejo");
+    }
+
+    // Precisión y exhaustividad por pares: {precisión, exhaustividad}
+    private static double[] medir(double umbral) {
+        AgrupadorDuplicados agrupador = new AgrupadorDuplicados(umbral, 1000);
+        Map<Long, Long> grupoDe = new HashMap<>();
+        // De dos en dos, como llegarían en ciclos distintos
+        for (int i = 0; i < noticias.size(); i += 2) {
+            for (AgrupadorDuplicados.Grupo g : agrupador.agrupar(noticias.subList(i, Math.min(i + 2, noticias.size())))) {
+                g.noticias().forEach(n -> grupoDe.put(n.getId(), g.id()));
+            }
+        }
+
+        int verdaderos = 0, falsos = 0, perdidos = 0;
+        for (int i = 0; i < noticias.size(); i++) {
+            for (int j = i + 1; j < noticias.size(); j++) {
+                long a = noticias.get(i).getId(), b = noticias.get(j).getId();
+                boolean juntas = grupoDe.get(a).equals(grupoDe.get(b));
+                boolean misma = historias.get(a).equals(historias.get(b));
+                if (juntas && misma) verdaderos++;
+                else if (juntas) falsos++;
+                else if (misma) perdidos++;
+            }
+        }
+        double precision = verdaderos + falsos == 0 ? 1.0 : (double) verdaderos / (verdaderos + falsos);
+        double exhaustividad = verdaderos + perdidos == 0 ? 1.0 : (double) verdaderos / (verdaderos + perdidos);
+        return new double[]{precision, exhaustividad};
+    }
+
+    private static Noticia noticia(long id, String fuente, String titular, String contenido) {
+        Noticia noticia = new Noticia();
+        noticia.setId(id);
+        noticia.setLinkNoticia("https://" + fuente + "/" + id);
+        noticia.setFuente(fuente);
+        noticia.setTitular(titular);
+        noticia.setContenido(contenido);
+        return noticia;
+    }
+}
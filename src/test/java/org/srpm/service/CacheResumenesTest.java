@@ -0,0 +1,135 @@
+package org.srpm.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.srpm.model.Noticia;
+import org.srpm.model.Resumen;
+
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CacheResumenesTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void elMismoTextoNormalizadoEsUnAcierto() {
+        CacheResumenes cache = new CacheResumenes(objectMapper, 100, Duration.ofDays(1).toMillis(), "", Clock.systemUTC());
+        Noticia original = noticia(1L, "Sube el paro", "El paro  sube\nen octubre.");
+        cache.guardar(List.of(original), List.of(resumen("Paro", "Sube", 1L)));
+
+        // Otra fuente, otro id, mismos datos con distinto formato
+        Noticia copia = noticia(7L, "  SUBE el paro ", "el paro sube en octubre.");
+        Optional<Resumen> enCache = cache.buscar(copia);
+
+        assertTrue(enCache.isPresent());
+        assertEquals("Paro", enCache.get().getTitular());
+        assertNull(enCache.get().getId());
+        assertEquals(List.of(7L), enCache.get().getNoticiaIds());
+        assertTrue(cache.buscar(noticia(8L, "Baja el paro", "otro texto")).isEmpty());
+
+        CacheResumenes.Estadisticas estadisticas = cache.estadisticas();
+        assertEquals(1, estadisticas.aciertos());
+        assertEquals(1, estadisticas.fallos());
+        assertEquals(0.5, estadisticas.tasaAciertos());
+        assertEquals(DespachadorResumenes.bytesDe(copia), estadisticas.bytesAhorrados());
+    }
+
+    @Test
+    void losResumenesDeVariasNoticiasNoSeCachean() {
+        CacheResumenes cache = new CacheResumenes(objectMapper, 100, Duration.ofDays(1).toMillis(), "", Clock.systemUTC());
+        Noticia a = noticia(1L, "A", "a");
+        Noticia b = noticia(2L, "B", "b");
+        Resumen mezcla = resumen("AB", "ab", 1L);
+        mezcla.setNoticiaIds(List.of(1L, 2L));
+
+        cache.guardar(List.of(a, b), List.of(mezcla));
+
+        assertEquals(0, cache.estadisticas().entradas());
+    }
+
+    @Test
+    void expulsaLaMenosUsadaYCaducaPorTiempo() {
+        RelojManual reloj = new RelojManual();
+        CacheResumenes cache = new CacheResumenes(objectMapper, 2, 1_000, "", reloj);
+        Noticia a = noticia(1L, "A", "a");
+        Noticia b = noticia(2L, "B", "b");
+        Noticia c = noticia(3L, "C", "c");
+        cache.guardar(List.of(a), List.of(resumen("ra", "", 1L)));
+        cache.guardar(List.of(b), List.of(resumen("rb", "", 2L)));
+        cache.buscar(a); // 'a' pasa a ser la más reciente
+        cache.guardar(List.of(c), List.of(resumen("rc", "", 3L)));
+
+        assertTrue(cache.buscar(a).isPresent());
+        assertTrue(cache.buscar(b).isEmpty());
+        assertEquals(1, cache.estadisticas().expulsadas());
+
+        reloj.avanzar(1_001);
+        assertTrue(cache.buscar(c).isEmpty());
+    }
+
+    @Test
+    void sobreviveAUnReinicioSiHayFichero(@TempDir Path dir) {
+        String fichero = dir.resolve("cache-resumenes.json").toString();
+        Noticia noticia = noticia(1L, "Titular", "Contenido");
+        CacheResumenes antes = new CacheResumenes(objectMapper, 100, Duration.ofDays(1).toMillis(), fichero, Clock.systemUTC());
+        antes.guardar(List.of(noticia), List.of(resumen("Resumen", "Cuerpo", 1L)));
+        antes.persistir();
+
+        CacheResumenes despues = new CacheResumenes(objectMapper, 100, Duration.ofDays(1).toMillis(), fichero, Clock.systemUTC());
+        despues.cargar();
+
+        assertEquals("Cuerpo", despues.buscar(noticia).orElseThrow().getCuerpo());
+    }
+
+    private static Noticia noticia(Long id, String titular, String contenido) {
+        Noticia noticia = new Noticia();
+        noticia.setId(id);
+        noticia.setTitular(titular);
+        noticia.setContenido(contenido);
+        noticia.setLinkNoticia("https://ejemplo/" + id);
+        return noticia;
+    }
+
+    private static Resumen resumen(String titular, String cuerpo, Long noticiaId) {
+        Resumen resumen = new Resumen(titular, cuerpo, null);
+        resumen.setNoticiaIds(List.of(noticiaId));
+        return resumen;
+    }
+
+    private static final class RelojManual extends Clock {
+        private long millis = 1_000_000;
+
+        void avanzar(long ms) {
+            millis += ms;
+        }
+
+        @Override
+        public long millis() {
+            return millis;
+        }
+
+        @Override
+        public Instant instant() {
+            return Instant.ofEpochMilli(millis);
+        }
+
+        @Override
+        public ZoneOffset getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(java.time.ZoneId zone) {
+            return this;
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package org.srpm.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.srpm.dao.NoticiaDaoEnMemoria;
+import org.srpm.dao.ResumenDaoEnMemoria;
+import org.srpm.model.Noticia;
+import org.srpm.stub.StubIaServer;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ClienteIAResilienteTest {
+
+    private static final List<Noticia> LOTE = List.of(noticia());
+
+    private StubIaServer ia;
+    private final SimpleMeterRegistry registro = new SimpleMeterRegistry();
+    private ClienteIAResiliente cliente;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        ia = new StubIaServer();
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (cliente != null) {
+            cliente.parar();
+        }
+        ia.close();
+    }
+
+    @Test
+    void reintentaLosFallosPasajerosHastaQueSaleBien() {
+        ia.setFallos(2);
+        cliente = cliente(3, 60_000, 5, 60_000, false);
+
+        assertTrue(cliente.resumir(LOTE).isPresent());
+        assertEquals(3, ia.getPeticiones());
+        assertEquals(2, eventos("reintento"));
+        assertEquals(ClienteIAResiliente.EstadoCircuito.CERRADO, cliente.estado().circuito());
+    }
+
+    @Test
+    void noReintentaSiLaIARechazaElLote() {
+        ia.setFallos(1);
+        ia.setEstadoError(400);
+        cliente = cliente(3, 60_000, 5, 60_000, false);
+
+        assertTrue(cliente.resumir(LOTE).isEmpty());
+        assertEquals(1, ia.getPeticiones());
+        assertEquals(0, cliente.estado().fallosSeguidos(), "un 400 no dice que la IA esté caída");
+    }
+
+    @Test
+    void noSePasaDelPlazoDelLote() {
+        ia.setLatenciaMs(2000);
+        cliente = cliente(5, 300, 100, 60_000, false);
+
+        long inicio = System.nanoTime();
+        assertTrue(cliente.resumir(LOTE).isEmpty());
+        long ms = (System.nanoTime() - inicio) / 1_000_000;
+        assertTrue(ms < 1000, "el plazo era de 300 ms y ha tardado " + ms);
+        assertEquals(1, ia.getPeticiones());
+    }
+
+    @Test
+    void elCircuitoSeAbreCortaLasLlamadasYSeCierraTrasUnaPruebaBuena() throws Exception {
+        ia.setFallos(100);
+        cliente = cliente(1, 60_000, 3, 300, false);
+
+        for (int i = 0; i < 3; i++) {
+            assertTrue(cliente.resumir(LOTE).isEmpty());
+        }
+        assertEquals(ClienteIAResiliente.EstadoCircuito.ABIERTO, cliente.estado().circuito());
+        assertFalse(cliente.disponible());
+
+        // Abierto: no llega nada al servidor
+        assertTrue(cliente.resumir(LOTE).isEmpty());
+        assertEquals(3, ia.getPeticiones());
+        assertEquals(1, eventos("cortocircuito"));
+        assertEquals(2, registro.get("srpm.ia.circuito").gauge().value());
+
+        // Pasada la espera, una prueba que sale bien lo cierra
+        ia.setFallos(0);
+        Thread.sleep(350);
+        assertTrue(cliente.disponible());
+        assertTrue(cliente.resumir(LOTE).isPresent());
+        assertEquals(4, ia.getPeticiones());
+        assertEquals(ClienteIAResiliente.EstadoCircuito.CERRADO, cliente.estado().circuito());
+    }
+
+    @Test
+    void unaPruebaFallidaVuelveAAbrirElCircuito() throws Exception {
+        ia.setFallos(100);
+        cliente = cliente(1, 60_000, 1, 200, false);
+
+        assertTrue(cliente.resumir(LOTE).isEmpty());
+        Thread.sleep(250);
+        assertTrue(cliente.resumir(LOTE).isEmpty());
+        assertEquals(2, ia.getPeticiones());
+        assertEquals(ClienteIAResiliente.EstadoCircuito.ABIERTO, cliente.estado().circuito());
+    }
+
+    @Test
+    void unaInterrupcionNoCuentaComoRespuestaDeLaIA() {
+        ia.setFallos(2);
+        cliente = cliente(1, 60_000, 3, 60_000, false);
+        assertTrue(cliente.resumir(LOTE).isEmpty());
+        assertTrue(cliente.resumir(LOTE).isEmpty());
+
+        Thread.currentThread().interrupt();
+        try {
+            assertTrue(cliente.resumir(LOTE).isEmpty());
+            assertTrue(Thread.currentThread().isInterrupted(), "la interrupción no se pierde");
+        } finally {
+            Thread.interrupted();
+        }
+
+        assertEquals(2, cliente.estado().fallosSeguidos(), "ni éxito ni fracaso");
+        assertEquals(ClienteIAResiliente.EstadoCircuito.CERRADO, cliente.estado().circuito());
+    }
+
+    @Test
+    void laCoberturaEsquivaUnaPeticionAtascada() {
+        cliente = cliente(1, 60_000, 5, 60_000, true);
+        for (int i = 0; i < 20; i++) {
+            assertTrue(cliente.resumir(LOTE).isPresent()); // muestras para el p95
+        }
+        assertTrue(cliente.estado().p95Ms() >= 0);
+
+        // La siguiente se atasca; su copia no
+        ia.setLatenciaMs(peticion -> peticion == 21 ? 3000 : 0);
+        long inicio = System.nanoTime();
+        assertTrue(cliente.resumir(LOTE).isPresent());
+        long ms = (System.nanoTime() - inicio) / 1_000_000;
+
+        assertTrue(ms < 1500, "la copia debería haber contestado antes, ha tardado " + ms);
+        assertEquals(22, ia.getPeticiones());
+        assertEquals(1, eventos("cobertura"));
+    }
+
+    private ClienteIAResiliente cliente(int intentos, long plazoMs, int fallosParaAbrir, long esperaAbiertoMs, boolean cobertura) {
+        MetricasPipeline metricas = new MetricasPipeline(registro, new NoticiaDaoEnMemoria(), new ResumenDaoEnMemoria());
+        ClienteIA clienteIA = new ClienteIA(new RestTemplateBuilder(), Jackson2ObjectMapperBuilder.json().build(), ia.url(), 1000, 10_000, false, metricas);
+        return new ClienteIAResiliente(clienteIA, metricas, intentos, 10, 50, plazoMs, fallosParaAbrir, esperaAbiertoMs, cobertura);
+    }
+
+    private double eventos(String motivo) {
+        var contador = registro.find("srpm.ia.eventos").tag("motivo", motivo).counter();
+        return contador == null ? 0 : contador.count();
+    }
+
+    private static Noticia noticia() {
+        Noticia noticia = new Noticia();
+        noticia.setId(1);
+        noticia.setLinkNoticia("https://n/1");
+        noticia.setFuente("test");
+        noticia.setTitular("Titular");
+        noticia.setContenido("Contenido");
+        return noticia;
+    }
+}
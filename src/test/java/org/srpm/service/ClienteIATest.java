@@ -0,0 +1,86 @@
+package org.srpm.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.srpm.dao.NoticiaDaoEnMemoria;
+import org.srpm.dao.ResumenDaoEnMemoria;
+import org.srpm.model.Noticia;
+import org.srpm.model.Resumen;
+import org.srpm.stub.StubIaServer;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ClienteIATest {
+
+    private StubIaServer ia;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        ia = new StubIaServer();
+    }
+
+    @AfterEach
+    void tearDown() {
+        ia.close();
+    }
+
+    @Test
+    void laPeticionSeMandaPorTrozosSinMontarlaEntera() {
+        List<Noticia> noticias = noticias(2000, 2000); // ~4 MB de texto
+
+        List<Resumen> resumenes = cliente(false).resumir(noticias);
+
+        assertNull(ia.getContentLength(), "sin Content-Length: el cuerpo se ha escrito según se generaba");
+        assertNull(ia.getContentEncoding());
+        assertEquals(2000, resumenes.size());
+        assertEquals("Resumen: Titular 1999", resumenes.get(1999).getTitular());
+    }
+
+    @Test
+    void conGzipSeComprimenLaPeticionYLaRespuesta() {
+        List<Resumen> resumenes = cliente(true).resumir(noticias(50, 500));
+
+        assertEquals("gzip", ia.getContentEncoding());
+        assertEquals(50, resumenes.size());
+        assertEquals("Resumen objetivo de https://n/7", resumenes.get(7).getCuerpo());
+    }
+
+    @Test
+    void unErrorDelServicioSeClasifica() {
+        ia.setFallos(1);
+        ClienteIA.FalloIA caida = assertThrows(ClienteIA.FalloIA.class, () -> cliente(false).resumir(noticias(1, 10)));
+        assertTrue(caida.isReintentable());
+
+        ia.setFallos(1);
+        ia.setEstadoError(422);
+        ClienteIA.FalloIA rechazo = assertThrows(ClienteIA.FalloIA.class, () -> cliente(false).resumir(noticias(1, 10)));
+        assertFalse(rechazo.isReintentable());
+    }
+
+    private ClienteIA cliente(boolean gzip) {
+        MetricasPipeline metricas = new MetricasPipeline(new SimpleMeterRegistry(), new NoticiaDaoEnMemoria(), new ResumenDaoEnMemoria());
+        return new ClienteIA(new RestTemplateBuilder(), Jackson2ObjectMapperBuilder.json().build(), ia.url(),
+                1000, 10_000, gzip, metricas);
+    }
+
+    private static List<Noticia> noticias(int n, int caracteres) {
+        return IntStream.range(0, n).mapToObj(i -> {
+            Noticia noticia = new Noticia();
+            noticia.setId(i + 1);
+            noticia.setLinkNoticia("https://n/" + i);
+            noticia.setFuente("test");
+            noticia.setTitular("Titular " + i);
+            noticia.setContenido("Contenido de la noticia número " + i + ". ".repeat(caracteres / 2));
+            noticia.setFecha(LocalDateTime.of(2025, 6, 1, 12, 0).plusMinutes(i));
+            return noticia;
+        }).toList();
+    }
+}
@@ -0,0 +1,88 @@
+package org.srpm.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.srpm.stub.StubRssServer;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DescargadorFeedsTest {
+
+    private static final String RSS = """
+            <?xml version="1.0" encoding="UTF-8"?>
+            <rss version="2.0"><channel><title>Stub</title>
+            <item><title>Uno</title><link>https://stub/1</link><description>Primera</description></item>
+            </channel></rss>
+            """;
+
+    private StubRssServer servidor;
+    private CacheValidadoresFeed cache;
+    private DescargadorFeeds descargador;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        servidor = new StubRssServer();
+        cache = new CacheValidadoresFeed();
+        descargador = new DescargadorFeeds(cache);
+    }
+
+    @AfterEach
+    void tearDown() {
+        servidor.close();
+    }
+
+    @Test
+    void conEtagLaSegundaDescargaEsUn304() throws Exception {
+        servidor.publicar("a", RSS);
+        String url = servidor.url("a");
+
+        DescargadorFeeds.Descarga primera = descargador.descargar(url, Duration.ofSeconds(5));
+        assertFalse(primera.sinCambios());
+        cache.confirmar(url, primera.validadores());
+
+        DescargadorFeeds.Descarga segunda = descargador.descargar(url, Duration.ofSeconds(5));
+        assertTrue(segunda.sinCambios());
+        assertEquals(1, servidor.getRespuestas304());
+    }
+
+    @Test
+    void sinValidadoresHttpSeDetectaPorHash() throws Exception {
+        servidor.setSoportaCondicional(false);
+        servidor.publicar("b", RSS);
+        String url = servidor.url("b");
+
+        cache.confirmar(url, descargador.descargar(url, Duration.ofSeconds(5)).validadores());
+
+        assertTrue(descargador.descargar(url, Duration.ofSeconds(5)).sinCambios());
+        assertEquals(0, servidor.getRespuestas304());
+
+        // Si cambia el contenido hay que volver a parsear
+        servidor.publicar("b", RSS.replace("Primera", "Cambiada"));
+        assertFalse(descargador.descargar(url, Duration.ofSeconds(5)).sinCambios());
+    }
+
+    @Test
+    void sinConfirmarNoSeUsanLosValidadores() throws Exception {
+        servidor.publicar("c", RSS);
+        String url = servidor.url("c");
+
+        descargador.descargar(url, Duration.ofSeconds(5)); // p.ej. el parseo falló después
+
+        assertFalse(descargador.descargar(url, Duration.ofSeconds(5)).sinCambios());
+        assertEquals(0, servidor.getRespuestas304());
+    }
+
+    @Test
+    void invalidarObligaADescargarDeNuevo() throws Exception {
+        servidor.publicar("d", RSS);
+        String url = servidor.url("d");
+        cache.confirmar(url, descargador.descargar(url, Duration.ofSeconds(5)).validadores());
+
+        cache.invalidar();
+
+        assertFalse(descargador.descargar(url, Duration.ofSeconds(5)).sinCambios());
+    }
+}
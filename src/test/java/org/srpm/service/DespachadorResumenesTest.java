@@ -0,0 +1,169 @@
+package org.srpm.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.srpm.dao.NoticiaDaoEnMemoria;
+import org.srpm.dao.ResumenDaoEnMemoria;
+import org.srpm.model.Noticia;
+import org.srpm.model.Resumen;
+import org.srpm.stub.StubIaServer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DespachadorResumenesTest {
+
+    private StubIaServer ia;
+    private final SimpleMeterRegistry registro = new SimpleMeterRegistry();
+    private final NoticiaDaoEnMemoria vivas = new NoticiaDaoEnMemoria();
+
+    @BeforeEach
+    void setUp() throws Exception {
+        ia = new StubIaServer();
+    }
+
+    @AfterEach
+    void tearDown() {
+        ia.close();
+    }
+
+    @Test
+    void parteLosLotesPorNumeroYPorBytes() {
+        DespachadorResumenes despachador = despachador(3, 1000, 1);
+
+        List<Noticia> noticias = new ArrayList<>(noticias(7));
+        assertEquals(List.of(3, 3, 1), tamanos(despachador.partirEnLotes(noticias)));
+
+        // Una noticia enorme va sola en su lote
+        noticias.get(1).setContenido("x".repeat(5000));
+        assertEquals(List.of(1, 1, 3, 2), tamanos(despachador.partirEnLotes(noticias)));
+    }
+
+    @Test
+    void respetaLaConcurrenciaMaximaYGuardaCadaLote() {
+        ia.setLatenciaMs(100);
+        DespachadorResumenes despachador = despachador(2, 1_000_000, 3);
+        ConcurrentLinkedQueue<Resumen> guardados = new ConcurrentLinkedQueue<>();
+
+        ResultadoDespacho resultado = despachador.despachar(noticias(20), (lote, resumenes) -> guardados.addAll(resumenes));
+
+        assertEquals(10, resultado.lotes());
+        assertEquals(0, resultado.lotesFallidos());
+        assertEquals(20, guardados.size());
+        assertTrue(ia.getMaxEnCurso() <= 3, "Como mucho 3 peticiones a la vez, hubo " + ia.getMaxEnCurso());
+        assertTrue(ia.getMaxEnCurso() > 1, "Los lotes deberían ir en paralelo");
+    }
+
+    @Test
+    void unLoteFallidoNoSeLlevaPorDelanteALosDemas() {
+        ia.setFallarSi(lote -> lote.stream().anyMatch(n -> "https://n/3".equals(n.get("linkNoticia"))));
+        DespachadorResumenes despachador = despachador(2, 1_000_000, 2);
+        ConcurrentLinkedQueue<Noticia> resumidas = new ConcurrentLinkedQueue<>();
+
+        ResultadoDespacho resultado = despachador.despachar(noticias(6), (lote, resumenes) -> resumidas.addAll(lote));
+
+        assertEquals(3, resultado.lotes());
+        assertEquals(1, resultado.lotesFallidos());
+        assertEquals(4, resultado.resumenes());
+        assertTrue(resumidas.stream().noneMatch(n -> n.getLinkNoticia().equals("https://n/3")));
+
+        // Cada petición queda medida, con su resultado
+        assertEquals(2, registro.get("srpm.ia.peticion").tag("resultado", "ok").timer().count());
+        assertEquals(1, registro.get("srpm.ia.errores").counter().count());
+        assertEquals(3, registro.get("srpm.ia.peticion.bytes").summary().count());
+    }
+
+    @Test
+    void unLoteFallidoSaleElPrimeroYTrasVariosFallosSeParte() {
+        ConcurrentLinkedQueue<List<Object>> enviados = new ConcurrentLinkedQueue<>();
+        ia.setFallarSi(lote -> {
+            enviados.add(lote.stream().map(n -> n.get("linkNoticia")).toList());
+            return lote.stream().anyMatch(n -> "https://n/3".equals(n.get("linkNoticia")));
+        });
+        DespachadorResumenes despachador = despachador(2, 1_000_000, 1);
+
+        assertEquals(1, despachador.despachar(noticias(6), (lote, resumenes) -> { }).lotesFallidos());
+        assertEquals(1, despachador.lotesEnCola());
+
+        // Siguiente ciclo: llegan noticias nuevas, pero el lote fallido va delante y con la misma composición
+        List<Noticia> pendientes = noticias(8).stream().filter(n -> n.getId() == 7 || n.getId() == 8 || n.getId() == 3 || n.getId() == 4).toList();
+        enviados.clear();
+        despachador.despachar(pendientes, (lote, resumenes) -> { });
+        assertEquals(List.of("https://n/2", "https://n/3"), enviados.peek());
+
+        // Dos fallos: se parte y sólo la noticia problemática sigue fallando
+        enviados.clear();
+        ConcurrentLinkedQueue<Noticia> resumidas = new ConcurrentLinkedQueue<>();
+        ResultadoDespacho resultado = despachador.despachar(pendientes, (lote, resumenes) -> resumidas.addAll(lote));
+        assertEquals(List.of(List.of("https://n/2"), List.of("https://n/3"), List.of("https://n/6", "https://n/7")), List.copyOf(enviados));
+        assertEquals(1, resultado.lotesFallidos());
+        assertEquals(3, resumidas.size());
+        assertEquals(1, despachador.lotesEnCola());
+        assertEquals(1, registro.get("srpm.ia.cola.lotes").gauge().value());
+    }
+
+    @Test
+    void unDespachoDeOtraGeneracionNoVaciaLaColaDeFallidos() {
+        ConcurrentLinkedQueue<List<Object>> enviados = new ConcurrentLinkedQueue<>();
+        ia.setFallarSi(lote -> {
+            enviados.add(lote.stream().map(n -> n.get("linkNoticia")).toList());
+            return lote.stream().anyMatch(n -> "https://n/0".equals(n.get("linkNoticia")));
+        });
+        DespachadorResumenes despachador = despachador(2, 1_000_000, 1);
+        noticias(2).forEach(n -> {
+            n.setId(0);
+            vivas.save(n);
+        });
+
+        assertEquals(1, despachador.despachar(vivas.findPendientesDeResumen(), (lote, resumenes) -> { }).lotesFallidos());
+
+        // Un refresco total resume su generación nueva, con otros ids: el lote fallido se queda en la cola
+        List<Noticia> deOtraGeneracion = noticias(4).subList(2, 4);
+        deOtraGeneracion.forEach(n -> n.setId(n.getId() + 100));
+        assertEquals(0, despachador.despachar(deOtraGeneracion, (lote, resumenes) -> { }).lotesFallidos());
+        assertEquals(1, despachador.lotesEnCola());
+
+        // ...y conserva sus fallos: al segundo se parte
+        despachador.despachar(vivas.findPendientesDeResumen(), (lote, resumenes) -> { });
+        enviados.clear();
+        despachador.despachar(vivas.findPendientesDeResumen(), (lote, resumenes) -> { });
+        assertEquals(List.of(List.of("https://n/0"), List.of("https://n/1")), List.copyOf(enviados));
+
+        // Cuando sus noticias dejan de estar pendientes en el almacén vivo, sale de la cola
+        vivas.marcarResumidas(vivas.findPendientesDeResumen().stream().map(Noticia::getId).toList());
+        despachador.despachar(deOtraGeneracion, (lote, resumenes) -> { });
+        assertEquals(0, despachador.lotesEnCola());
+    }
+
+    private DespachadorResumenes despachador(int maxNoticias, long maxBytes, int concurrencia) {
+        MetricasPipeline metricas = new MetricasPipeline(registro, new NoticiaDaoEnMemoria(), new ResumenDaoEnMemoria());
+        ClienteIA clienteIA = new ClienteIA(new RestTemplateBuilder(), Jackson2ObjectMapperBuilder.json().build(), ia.url(), 1000, 5000, false, metricas);
+        // Un intento por lote y circuito que no salta: aquí se prueba el reparto, no la resiliencia
+        ClienteIAResiliente resiliente = new ClienteIAResiliente(clienteIA, metricas, 1, 0, 0, 10_000, 1000, 1000, false);
+        return new DespachadorResumenes(resiliente, metricas, vivas, maxNoticias, maxBytes, concurrencia, 2);
+    }
+
+    private static List<Noticia> noticias(int n) {
+        return IntStream.range(0, n).mapToObj(i -> {
+            Noticia noticia = new Noticia();
+            noticia.setId(i + 1);
+            noticia.setLinkNoticia("https://n/" + i);
+            noticia.setFuente("test");
+            noticia.setTitular("Titular " + i);
+            noticia.setContenido("Contenido " + i);
+            return noticia;
+        }).toList();
+    }
+
+    private static List<Integer> tamanos(List<List<Noticia>> lotes) {
+        return lotes.stream().map(List::size).toList();
+    }
+}
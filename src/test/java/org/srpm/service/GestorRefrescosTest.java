@@ -0,0 +1,84 @@
+package org.srpm.service;
+
+import org.junit.jupiter.api.Test;
+import org.srpm.exception.RefrescoNotFoundException;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class GestorRefrescosTest {
+
+    @Test
+    void lasPeticionesSimultaneasSeUnenAlRefrescoEnCurso() throws Exception {
+        ResumenService resumenService = mock(ResumenService.class);
+        CountDownLatch soltar = new CountDownLatch(1);
+        doAnswer(inv -> {
+            ObservadorCiclo observador = inv.getArgument(0);
+            observador.fase(ObservadorCiclo.Fase.DESCARGANDO);
+            soltar.await();
+            return null;
+        }).when(resumenService).refrescarTodo(any(ObservadorCiclo.class));
+        GestorRefrescos gestor = new GestorRefrescos(resumenService);
+
+        TrabajoRefresco primero = gestor.lanzar();
+        TrabajoRefresco segundo = gestor.lanzar();
+        assertSame(primero, segundo);
+
+        soltar.countDown();
+        esperarFin(primero);
+
+        assertEquals(ObservadorCiclo.Fase.COMPLETADO, gestor.estado(primero.getId()).fase());
+        verify(resumenService, times(1)).refrescarTodo(any(ObservadorCiclo.class));
+
+        // Terminado el anterior, un refresco nuevo es otro trabajo
+        assertNotEquals(primero.getId(), gestor.lanzar().getId());
+    }
+
+    @Test
+    void unFalloQuedaReflejadoEnElEstado() throws Exception {
+        ResumenService resumenService = mock(ResumenService.class);
+        doThrow(new IllegalStateException("boom")).when(resumenService).refrescarTodo(any(ObservadorCiclo.class));
+        GestorRefrescos gestor = new GestorRefrescos(resumenService);
+
+        TrabajoRefresco trabajo = gestor.lanzar();
+        esperarFin(trabajo);
+
+        TrabajoRefresco.Estado estado = gestor.estado(trabajo.getId());
+        assertEquals(ObservadorCiclo.Fase.FALLIDO, estado.fase());
+        assertTrue(estado.error().contains("boom"));
+    }
+
+    @Test
+    void unErrorTambienTerminaElTrabajoYNoBloqueaLosSiguientes() throws Exception {
+        ResumenService resumenService = mock(ResumenService.class);
+        doThrow(new StackOverflowError()).doNothing().when(resumenService).refrescarTodo(any(ObservadorCiclo.class));
+        GestorRefrescos gestor = new GestorRefrescos(resumenService);
+
+        TrabajoRefresco trabajo = gestor.lanzar();
+        esperarFin(trabajo);
+        assertEquals(ObservadorCiclo.Fase.FALLIDO, gestor.estado(trabajo.getId()).fase());
+
+        TrabajoRefresco siguiente = gestor.lanzar();
+        assertNotEquals(trabajo.getId(), siguiente.getId());
+        esperarFin(siguiente);
+        assertEquals(ObservadorCiclo.Fase.COMPLETADO, gestor.estado(siguiente.getId()).fase());
+    }
+
+    @Test
+    void unIdDesconocidoDaNotFound() {
+        GestorRefrescos gestor = new GestorRefrescos(mock(ResumenService.class));
+        assertThrows(RefrescoNotFoundException.class, () -> gestor.estado("no-existe"));
+    }
+
+    private static void esperarFin(TrabajoRefresco trabajo) throws InterruptedException {
+        long limite = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!trabajo.terminado() && System.nanoTime() < limite) {
+            Thread.sleep(10);
+        }
+        assertTrue(trabajo.terminado(), "El refresco no terminó a tiempo");
+    }
+}
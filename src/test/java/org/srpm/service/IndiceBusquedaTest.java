@@ -0,0 +1,155 @@
+package org.srpm.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.srpm.dao.NoticiaDaoEnMemoria;
+import org.srpm.dao.ResumenDAO;
+import org.srpm.dao.ResumenDaoEnMemoria;
+import org.srpm.model.Noticia;
+import org.srpm.model.Resumen;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IndiceBusquedaTest {
+
+    private static final LocalDateTime BASE = LocalDateTime.of(2025, 5, 10, 12, 0);
+
+    private NoticiaDaoEnMemoria noticias;
+    private ResumenDaoEnMemoria resumenes;
+    private IndiceBusqueda indice;
+
+    @BeforeEach
+    void montar() {
+        noticias = new NoticiaDaoEnMemoria();
+        resumenes = new ResumenDaoEnMemoria();
+        indice = new IndiceBusqueda(resumenes, noticias);
+        indice.iniciar();
+    }
+
+    @Test
+    void elAnalizadorQuitaTildesPalabrasVaciasYPlurales() {
+        assertEquals(List.of("ministr", "educacion", "aprueb", "reform"),
+                AnalizadorEspanol.terminos("La Ministra de Educación aprueba las reformas"));
+        assertEquals(AnalizadorEspanol.terminos("ministros"), AnalizadorEspanol.terminos("MINISTRO"));
+        assertEquals(List.of("cuant", "vez", "2025"), AnalizadorEspanol.terminos("¿Cuántas veces? 2025"));
+    }
+
+    @Test
+    void casaSinTildesNiPluralesYOrdenaPorRelevancia() {
+        long poco = guardar("Reunión del Gobierno", "El Gobierno habla de muchas cosas, entre ellas la educación.", "cope", BASE);
+        long mucho = guardar("Educación: nueva ley", "La ley de educación cambia la evaluación en educación primaria.", "cope", BASE);
+        guardar("Fútbol", "El equipo gana la liga.", "cope", BASE);
+
+        IndiceBusqueda.Coincidencias c = indice.buscar("EDUCACION", IndiceBusqueda.Filtro.NINGUNO, 10);
+
+        assertEquals(2, c.total());
+        assertEquals(List.of(mucho, poco), ids(c));
+        assertTrue(c.mejores().get(0).puntuacion() > c.mejores().get(1).puntuacion());
+    }
+
+    @Test
+    void filtraPorFuenteYPorFecha() {
+        long deCope = guardar("Incendio en Valencia", "Los bomberos controlan el incendio.", "cope", BASE);
+        long deEldiario = guardar("Incendios forestales", "Otro incendio en el monte.", "eldiario", BASE.plusDays(3));
+
+        assertEquals(List.of(deCope), ids(indice.buscar("incendio",
+                new IndiceBusqueda.Filtro("Cope", null, null), 10)));
+        assertEquals(List.of(deEldiario), ids(indice.buscar("incendio",
+                new IndiceBusqueda.Filtro(null, BASE.plusDays(1), null), 10)));
+        assertTrue(indice.buscar("incendio", new IndiceBusqueda.Filtro("20minutos", null, null), 10).mejores().isEmpty());
+    }
+
+    @Test
+    void sigueLosCambiosDelDaoYSeReconstruyeAlPublicar() {
+        long id = guardar("Elecciones", "Resultados de las elecciones.", "cope", BASE);
+        Resumen resumen = resumenes.findById(id).orElseThrow();
+
+        resumen.setCuerpo("Ahora habla de la sequía.");
+        resumen.setTitular("Sequía");
+        resumenes.save(resumen);
+        // El titular de la noticia sigue indexado con el resumen; el cuerpo viejo ya no
+        assertTrue(ids(indice.buscar("resultados", IndiceBusqueda.Filtro.NINGUNO, 10)).isEmpty());
+        assertEquals(List.of(id), ids(indice.buscar("elecciones", IndiceBusqueda.Filtro.NINGUNO, 10)));
+        assertEquals(List.of(id), ids(indice.buscar("sequia", IndiceBusqueda.Filtro.NINGUNO, 10)));
+
+        resumenes.deleteById(id);
+        assertTrue(ids(indice.buscar("sequia", IndiceBusqueda.Filtro.NINGUNO, 10)).isEmpty());
+
+        ResumenDAO nueva = resumenes.nuevaGeneracion();
+        nueva.save(new Resumen("Vendimia", "Empieza la vendimia.", null));
+        assertTrue(ids(indice.buscar("vendimia", IndiceBusqueda.Filtro.NINGUNO, 10)).isEmpty());
+        resumenes.publicar(nueva);
+        assertEquals(1, indice.buscar("vendimia", IndiceBusqueda.Filtro.NINGUNO, 10).total());
+    }
+
+    @Test
+    void compactarNoCambiaLosResultados() {
+        long fijo = guardar("Astronomía", "Un eclipse total de sol.", "cope", BASE);
+        Resumen cambiante = new Resumen("Tiempo", "Lluvia", null);
+        resumenes.save(cambiante);
+        for (int i = 0; i < 3000; i++) {
+            cambiante.setCuerpo("Lluvia versión " + i);
+            resumenes.save(cambiante);
+        }
+
+        // Se compacta aparte, en cuanto hay más muertos que vivos
+        long limite = System.currentTimeMillis() + 5_000;
+        while (indice.estadisticas().muertos() > 1025 && System.currentTimeMillis() < limite) {
+            Thread.onSpinWait();
+        }
+        assertTrue(indice.estadisticas().muertos() <= 1025, "no se ha compactado");
+        assertEquals(2, indice.estadisticas().documentos());
+        assertEquals(List.of(fijo), ids(indice.buscar("eclipse", IndiceBusqueda.Filtro.NINGUNO, 10)));
+        assertEquals(List.of(cambiante.getId()), ids(indice.buscar("lluvia", IndiceBusqueda.Filtro.NINGUNO, 10)));
+        assertEquals(1, indice.buscar("lluvia", IndiceBusqueda.Filtro.NINGUNO, 10).total());
+    }
+
+    @Test
+    void losDocumentosCambiadosOBorradosNoCuentanParaElIdf() {
+        long fijo = guardar("Astronomía", "Un eclipse total de sol.", "cope", BASE);
+        guardar("Deportes", "Final de copa.", "cope", BASE);
+        Resumen cambiante = new Resumen("Eclipse", "Otro eclipse", null);
+        resumenes.save(cambiante);
+        for (int i = 0; i < 10; i++) {
+            cambiante.setCuerpo("Eclipse parcial " + i);
+            resumenes.save(cambiante);
+        }
+        cambiante.setTitular("Tiempo");
+        cambiante.setCuerpo("Lluvia");
+        resumenes.save(cambiante);
+        long borrado = guardar("Eclipse", "Y otro eclipse más", "ser", BASE);
+        resumenes.deleteById(borrado);
+
+        double puntuacion = indice.buscar("eclipse", IndiceBusqueda.Filtro.NINGUNO, 10).mejores().getFirst().puntuacion();
+        assertTrue(indice.estadisticas().muertos() > 0);
+
+        // Lo mismo que con un índice hecho de cero con los documentos que quedan
+        indice.reconstruir();
+        assertEquals(0, indice.estadisticas().muertos());
+        IndiceBusqueda.Candidato limpio = indice.buscar("eclipse", IndiceBusqueda.Filtro.NINGUNO, 10).mejores().getFirst();
+        assertEquals(fijo, limpio.id());
+        assertEquals(limpio.puntuacion(), puntuacion, 1e-6);
+    }
+
+    private long guardar(String titular, String cuerpo, String fuente, LocalDateTime fecha) {
+        Noticia noticia = new Noticia();
+        noticia.setLinkNoticia("https://" + fuente + "/" + titular.hashCode());
+        noticia.setFuente(fuente);
+        noticia.setTitular(titular);
+        noticia.setContenido(cuerpo);
+        noticias.save(noticia);
+
+        Resumen resumen = new Resumen(titular, cuerpo, null);
+        resumen.setNoticiaIds(List.of(noticia.getId()));
+        resumen.setFecha(fecha);
+        resumenes.save(resumen);
+        return resumen.getId();
+    }
+
+    private static List<Long> ids(IndiceBusqueda.Coincidencias coincidencias) {
+        return coincidencias.mejores().stream().map(IndiceBusqueda.Candidato::id).toList();
+    }
+}
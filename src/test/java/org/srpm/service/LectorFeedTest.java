@@ -0,0 +1,149 @@
+package org.srpm.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Comprueba que el lector StAX da lo mismo que ROME sobre los feeds de ejemplo
+ * (src/test/resources/feeds) y que reserva menos memoria. La velocidad de ambos se mide en
+ * RssParserServiceBenchmark (mvn -Pbenchmark).
+ */
+class LectorFeedTest {
+
+    private static final String[] FEEDS = {"20minutos.xml", "cope.xml", "eldiario.xml", "agencia-atom.xml"};
+
+    private final LectorFeed rome = new LectorFeedRome();
+    private final LectorFeed stax = new LectorFeedStax();
+
+    @ParameterizedTest
+    @ValueSource(strings = {"20minutos.xml", "cope.xml", "eldiario.xml", "agencia-atom.xml", "multimedia.xml", "multimedia-atom.xml"})
+    void staxDaLoMismoQueRome(String feed) throws Exception {
+        byte[] xml = leerFixture(feed);
+
+        for (int limite : new int[]{1, 20, 1000}) {
+            List<EntradaFeed> esperadas = rome.leer(new ByteArrayInputStream(xml), null, limite);
+            List<EntradaFeed> obtenidas = stax.leer(new ByteArrayInputStream(xml), null, limite);
+
+            assertEquals(esperadas.size(), obtenidas.size(), feed + " con límite " + limite);
+            for (int i = 0; i < esperadas.size(); i++) {
+                assertEquals(esperadas.get(i), obtenidas.get(i), feed + " entrada " + i);
+            }
+        }
+    }
+
+    @Test
+    void respetaElCharsetDelContentType() throws Exception {
+        byte[] xml = leerFixture("eldiario.xml");
+
+        List<EntradaFeed> esperadas = rome.leer(new ByteArrayInputStream(xml), "application/rss+xml; charset=ISO-8859-1", 5);
+        List<EntradaFeed> obtenidas = stax.leer(new ByteArrayInputStream(xml), "application/rss+xml; charset=ISO-8859-1", 5);
+
+        assertEquals(esperadas, obtenidas);
+    }
+
+    @Test
+    void conEntidadesHtmlSueltasVuelveAEmpezarComoRome() throws Exception {
+        byte[] xml = """
+                <?xml version="1.0" encoding="UTF-8"?>
+                <rss version="2.0"><channel><title>Entidades</title>
+                <item><title>Canci&oacute;n &amp; baile</title><link>https://stub/1</link>
+                <description><![CDATA[<p>&quot;Hola&quot; &nbsp;y&hellip;</p>]]></description></item>
+                </channel></rss>
+                """.getBytes(StandardCharsets.UTF_8);
+
+        List<EntradaFeed> esperadas = rome.leer(new ByteArrayInputStream(xml), null, 5);
+        // Un stream que no se puede marcar: la relectura va por la copia acotada del propio lector
+        List<EntradaFeed> obtenidas = stax.leer(new FilterInputStream(new ByteArrayInputStream(xml)) {
+            @Override
+            public boolean markSupported() {
+                return false;
+            }
+        }, null, 5);
+
+        assertEquals(esperadas, obtenidas);
+        assertEquals("Canción & baile", obtenidas.getFirst().titulo());
+    }
+
+    @Test
+    void enAtomSeQuedaConElPrimerTituloYResumenComoRome() throws Exception {
+        byte[] xml = """
+                <?xml version="1.0" encoding="UTF-8"?>
+                <feed xmlns="http://www.w3.org/2005/Atom"><title>Doble</title>
+                <entry><title>Primero</title><title>Segundo</title><link href="https://stub/1"/>
+                <summary>Resumen uno</summary><summary>Resumen dos</summary>
+                <published>2025-05-10T12:00:00Z</published><published>2024-01-01T00:00:00Z</published></entry>
+                </feed>
+                """.getBytes(StandardCharsets.UTF_8);
+
+        List<EntradaFeed> esperadas = rome.leer(new ByteArrayInputStream(xml), null, 5);
+        List<EntradaFeed> obtenidas = stax.leer(new ByteArrayInputStream(xml), null, 5);
+
+        assertEquals(esperadas, obtenidas);
+        assertEquals("Primero", obtenidas.getFirst().titulo());
+        assertEquals("Resumen uno", obtenidas.getFirst().contenido());
+    }
+
+    @Test
+    void losElementosDeOtrosEspaciosDeNombresNoPasanPorTituloNiDescripcion() throws Exception {
+        EntradaFeed rss = stax.leer(new ByteArrayInputStream(leerFixture("multimedia.xml")), null, 1).getFirst();
+        assertEquals("Las lluvias dejan más de 100 litros en Valencia", rss.titulo());
+        assertEquals("<p>La AEMET mantiene el aviso naranja en el litoral hasta el martes.</p>", rss.contenido());
+        assertEquals("https://www.rtve.es/noticias/20251103/lluvias-valencia/1000001.shtml", rss.link());
+
+        EntradaFeed atom = stax.leer(new ByteArrayInputStream(leerFixture("multimedia-atom.xml")), null, 1).getFirst();
+        assertEquals("Rescatados dos montañeros en Picos de Europa", atom.titulo());
+        assertEquals("Los servicios de emergencia los localizaron de madrugada.", atom.contenido());
+    }
+
+    /**
+     * Bytes reservados por documento con el límite real de la app (20 por feed): StAX debe reservar menos.
+     */
+    @Test
+    void staxReservaMenosMemoriaQueRome() throws Exception {
+        com.sun.management.ThreadMXBean mx = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        int limite = 20;
+        int iteraciones = 20;
+
+        for (String feed : FEEDS) {
+            byte[] xml = leerFixture(feed);
+            long romeBytes = bytesPorDocumento(rome, xml, limite, iteraciones, mx);
+            long staxBytes = bytesPorDocumento(stax, xml, limite, iteraciones, mx);
+
+            assertTrue(staxBytes < romeBytes, "StAX debería reservar menos memoria en " + feed
+                    + " (" + staxBytes + " B/doc frente a " + romeBytes + ")");
+        }
+    }
+
+    private long bytesPorDocumento(LectorFeed lector, byte[] xml, int limite, int iteraciones,
+                                   com.sun.management.ThreadMXBean mx) throws Exception {
+        // Calentamiento para no medir la carga de clases
+        for (int i = 0; i < iteraciones; i++) {
+            lector.leer(new ByteArrayInputStream(xml), null, limite);
+        }
+
+        long hilo = Thread.currentThread().threadId();
+        long bytesAntes = mx.getThreadAllocatedBytes(hilo);
+        for (int i = 0; i < iteraciones; i++) {
+            lector.leer(new ByteArrayInputStream(xml), null, limite);
+        }
+        return (mx.getThreadAllocatedBytes(hilo) - bytesAntes) / iteraciones;
+    }
+
+    static byte[] leerFixture(String nombre) throws IOException {
+        try (InputStream in = LectorFeedTest.class.getResourceAsStream("/feeds/" + nombre)) {
+            assertNotNull(in, "No existe el fixture " + nombre);
+            return in.readAllBytes();
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package org.srpm.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.web.util.HtmlUtils;
+
+import java.io.ByteArrayInputStream;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * El limpiador nuevo tiene que dar EXACTAMENTE lo mismo que la cadena de regex original
+ * (copiada abajo tal cual como referencia).
+ */
+class LimpiadorHtmlTest {
+
+    private final LimpiadorHtml limpiador = new LimpiadorHtml();
+
+    @ParameterizedTest
+    @ValueSource(strings = {"20minutos.xml", "cope.xml", "eldiario.xml", "agencia-atom.xml"})
+    void igualQueLaVersionRegexEnLosFeedsDeEjemplo(String feed) throws Exception {
+        List<EntradaFeed> entradas = new LectorFeedRome()
+                .leer(new ByteArrayInputStream(LectorFeedTest.leerFixture(feed)), null, Integer.MAX_VALUE);
+
+        for (EntradaFeed entrada : entradas) {
+            comprobar(entrada.titulo());
+            comprobar(entrada.contenido());
+        }
+    }
+
+    @Test
+    void igualQueLaVersionRegexEnCasosRaros() {
+        String[] casos = {
+                null, "", "   ", "\t hola \t", "texto plano sin nada",
+                "<p>Hola <b>mundo</b></p>", "a <b> c", "a < b y c > d", "sin cierre <b",
+                "<SCRIPT type='x'>alert(1)</SCRIPT>fin", "<script>sin cierre", "<script sin mayor",
+                "<scripts>x</script>y", "<style>a{}</style><script>b</script>c",
+                "<style>x<script>y</style>z</script>w", "<sty<script></script>le>q</style>r",
+                "<a<script></script>>t", "&lt;script&gt;x&lt;/script&gt;y", "&amp;lt;b&amp;gt;",
+                "uno\r\n\r\ndos", "a | b || c", "comillas \"dobles\" y \\barras\\",
+                "  \" \"  ", "a b", "&nbsp;&aacute;&ntilde;&#8364;&#x20AC;&bogus;",
+                "<scrıpt>dotless</scrıpt>", "<ſcript>long s</ſcript>", "<p\n class=\"x\">multi\nlinea</p>",
+                "\u0001control\u0001", "emoji 😀 <i>ok</i>", "<<>>", ">", "<", "a<>b",
+        };
+        for (String caso : casos) {
+            comprobar(caso);
+        }
+    }
+
+    @Test
+    void igualQueLaVersionRegexEnTextosAleatorios() {
+        String[] piezas = {"<", ">", "/", "script", "SCRIPT", "style", "Style", "&", "amp;", "lt;", "gt;",
+                "quot;", "#60;", "\"", "\\", "|", "\r", "\n", " ", "  ", "\t", "a", "ñ", "p", "b", "=", "'"};
+        Random random = new Random(42);
+
+        for (int i = 0; i < 20_000; i++) {
+            StringBuilder sb = new StringBuilder();
+            int trozos = random.nextInt(30);
+            for (int j = 0; j < trozos; j++) {
+                sb.append(piezas[random.nextInt(piezas.length)]);
+            }
+            comprobar(sb.toString());
+        }
+    }
+
+    private void comprobar(String entrada) {
+        assertEquals(limpiarHtmlConRegex(entrada), limpiador.limpiar(entrada), () -> "Entrada: [" + entrada + "]");
+    }
+
+    /**
+     * Implementación original de RssParserService.limpiarHtml (referencia).
+     */
+    private static String limpiarHtmlConRegex(String html) {
+        if (html == null) {
+            return null;
+        }
+
+        String texto = HtmlUtils.htmlUnescape(html);
+
+        Pattern scriptPattern = Pattern.compile("<script[^>]*?>.*?</script>", Pattern.DOTALL | Pattern.CASE_INSENSITIVE);
+        texto = scriptPattern.matcher(texto).replaceAll("");
+
+        Pattern stylePattern = Pattern.compile("<style[^>]*?>.*?</style>", Pattern.DOTALL | Pattern.CASE_INSENSITIVE);
+        texto = stylePattern.matcher(texto).replaceAll("");
+
+        texto = texto.replaceAll("<[^>]*>", "");
+        texto = texto.replaceAll("[\\r\\n]+", " ");
+        texto = texto.replaceAll("\\|", " ");
+        texto = texto.replaceAll("\"", "");
+        texto = texto.replaceAll("\\\\", "");
+        texto = texto.replaceAll(" +", " ");
+
+        return texto.trim();
+    }
+}
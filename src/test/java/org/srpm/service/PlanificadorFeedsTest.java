@@ -0,0 +1,118 @@
+package org.srpm.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class PlanificadorFeedsTest {
+
+    private static final long MIN = 60_000;
+    private static final long MAX = 1_800_000;
+
+    @Test
+    void elIntervaloSeAdaptaALaActividadSinSalirseDeLosLimites() {
+        ResultadoFeed activa = new ResultadoFeed("f", 3, 10, ResultadoFeed.Estado.OK, null);
+        ResultadoFeed sinCambios = new ResultadoFeed("f", 0, 10, ResultadoFeed.Estado.NO_MODIFICADO, null);
+        ResultadoFeed caida = new ResultadoFeed("f", 0, 10, ResultadoFeed.Estado.ERROR, "boom");
+
+        assertEquals(150_000, PlanificadorFeeds.siguienteIntervalo(300_000, activa, MIN, MAX));
+        assertEquals(450_000, PlanificadorFeeds.siguienteIntervalo(300_000, sinCambios, MIN, MAX));
+        assertEquals(600_000, PlanificadorFeeds.siguienteIntervalo(300_000, caida, MIN, MAX));
+
+        long intervalo = 300_000;
+        for (int i = 0; i < 20; i++) {
+            intervalo = PlanificadorFeeds.siguienteIntervalo(intervalo, activa, MIN, MAX);
+        }
+        assertEquals(MIN, intervalo);
+        for (int i = 0; i < 20; i++) {
+            intervalo = PlanificadorFeeds.siguienteIntervalo(intervalo, sinCambios, MIN, MAX);
+        }
+        assertEquals(MAX, intervalo);
+    }
+
+    @Test
+    void soloSeResumeCuandoElSondeoTraeNoticiasNuevas() {
+        RssParserService rss = mock(RssParserService.class);
+        ResumenService resumenService = mock(ResumenService.class);
+        when(rss.ingestarFuente(eq("quieta"), anyInt()))
+                .thenReturn(new ResultadoFeed("quieta", 0, 5, ResultadoFeed.Estado.NO_MODIFICADO, null));
+        when(rss.ingestarFuente(eq("activa"), anyInt()))
+                .thenReturn(new ResultadoFeed("activa", 4, 5, ResultadoFeed.Estado.OK, null));
+        PlanificadorFeeds planificador = planificador(rss, resumenService, mock(GestorRefrescos.class));
+
+        planificador.sondear("quieta");
+        verify(resumenService, never()).resumirPendientes();
+
+        planificador.sondear("activa");
+        verify(resumenService, times(1)).resumirPendientes();
+    }
+
+    @Test
+    void noSeSondeaMientrasHayUnRefrescoTotal() {
+        RssParserService rss = mock(RssParserService.class);
+        GestorRefrescos gestor = mock(GestorRefrescos.class);
+        when(gestor.hayRefrescoEnCurso()).thenReturn(true);
+
+        planificador(rss, mock(ResumenService.class), gestor).sondear("cualquiera");
+
+        verify(rss, never()).ingestarFuente(anyString(), anyInt());
+    }
+
+    @Test
+    void unaFuenteQuitadaDelRegistroDejaDeSondearse() {
+        RssParserService rss = mock(RssParserService.class);
+        RegistroFeeds registro = mock(RegistroFeeds.class);
+        PlanificadorFeeds planificador = new PlanificadorFeeds(rss, mock(ResumenService.class), mock(GestorRefrescos.class),
+                registro, false, 300_000, MIN, MAX, 0.1);
+
+        planificador.sondear("quitada");
+
+        verify(rss, never()).ingestarFuente(anyString(), anyInt());
+        assertFalse(planificador.intervalos().containsKey("quitada"));
+    }
+
+    @Test
+    void losDespachosSimultaneosNoSeSolapanNiSePierden() throws Exception {
+        ResumenService resumenService = mock(ResumenService.class);
+        CountDownLatch dentro = new CountDownLatch(1);
+        CountDownLatch soltar = new CountDownLatch(1);
+        AtomicInteger llamadas = new AtomicInteger();
+        when(resumenService.resumirPendientes()).thenAnswer(inv -> {
+            if (llamadas.incrementAndGet() == 1) {
+                dentro.countDown();
+                soltar.await();
+            }
+            return new ResultadoDespacho(0, 0, 0, 0);
+        });
+        PlanificadorFeeds planificador = planificador(mock(RssParserService.class), resumenService,
+                mock(GestorRefrescos.class));
+
+        Thread primero = Thread.ofVirtual().start(planificador::resumirNuevas);
+        assertTrue(dentro.await(5, TimeUnit.SECONDS));
+
+        // Llega otro sondeo con noticias mientras el primero sigue despachando: no espera ni despacha a la vez
+        planificador.resumirNuevas();
+        assertEquals(1, llamadas.get());
+
+        soltar.countDown();
+        primero.join(5_000);
+
+        // ...pero el primero da una segunda pasada para recoger lo que llegó entretanto
+        assertEquals(2, llamadas.get());
+    }
+
+    private static PlanificadorFeeds planificador(RssParserService rss, ResumenService resumenService,
+                                                  GestorRefrescos gestor) {
+        RegistroFeeds registro = mock(RegistroFeeds.class);
+        when(registro.contiene(anyString())).thenReturn(true);
+        return new PlanificadorFeeds(rss, resumenService, gestor, registro, false, 300_000, MIN, MAX, 0.1);
+    }
+}
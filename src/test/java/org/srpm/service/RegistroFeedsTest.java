@@ -0,0 +1,270 @@
+package org.srpm.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.srpm.dao.NoticiaDaoEnMemoria;
+import org.srpm.dao.ResumenDaoEnMemoria;
+import org.srpm.stub.StubRssServer;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RegistroFeedsTest {
+
+    private static final String RSS = """
+            <?xml version="1.0" encoding="UTF-8"?>
+            <rss version="2.0"><channel><title>Stub</title>
+            <item><title>Uno</title><link>https://stub/1</link><description>Primera</description></item>
+            <item><title>Dos</title><link>https://stub/2</link><description>Segunda</description></item>
+            <item><title>Tres</title><link>https://stub/3</link><description>Tercera</description></item>
+            </channel></rss>
+            """;
+
+    @TempDir
+    Path dir;
+
+    private final RelojManual reloj = new RelojManual();
+    private StubRssServer servidor;
+
+    @AfterEach
+    void tearDown() {
+        if (servidor != null) {
+            servidor.close();
+        }
+    }
+
+    @Test
+    void leeLasFuentesDeLaConfiguracionOrdenadasPorPrioridad() {
+        MockEnvironment entorno = new MockEnvironment()
+                .withProperty("rss.feeds[0].nombre", "local")
+                .withProperty("rss.feeds[0].url", "https://local/rss")
+                .withProperty("rss.feeds[1].nombre", "nacional")
+                .withProperty("rss.feeds[1].url", "https://nacional/rss")
+                .withProperty("rss.feeds[1].prioridad", "10")
+                .withProperty("rss.feeds[1].limite", "50")
+                .withProperty("rss.feeds[2].nombre", "apagada")
+                .withProperty("rss.feeds[2].url", "https://apagada/rss")
+                .withProperty("rss.feeds[2].activa", "false");
+
+        RegistroFeeds registro = registro(entorno, null);
+
+        assertEquals(List.of("nacional", "local"), registro.fuentes().stream().map(RegistroFeeds.Fuente::nombre).toList());
+        assertEquals(50, registro.fuente("nacional").orElseThrow().limiteEfectivo(20));
+        assertEquals(20, registro.fuente("local").orElseThrow().limiteEfectivo(20));
+        assertFalse(registro.contiene("apagada"));
+    }
+
+    @Test
+    void elFicheroSeRecargaSinPerderLaSaludDeLasQueSiguen() throws Exception {
+        Path fichero = dir.resolve("feeds.properties");
+        Files.writeString(fichero, """
+                rss.feeds[0].nombre=a
+                rss.feeds[0].url=https://a/rss
+                rss.feeds[1].nombre=b
+                rss.feeds[1].url=https://b/rss
+                """);
+        MockEnvironment entorno = new MockEnvironment()
+                .withProperty("rss.feeds[0].nombre", "de-la-configuracion")
+                .withProperty("rss.feeds[0].url", "https://config/rss");
+        RegistroFeeds registro = registro(entorno, fichero);
+        AtomicInteger avisos = new AtomicInteger();
+        registro.alCambiar(avisos::incrementAndGet);
+
+        assertEquals(List.of("a", "b"), nombres(registro));
+        registro.registrar(new ResultadoFeed("a", 3, 120, ResultadoFeed.Estado.OK, null));
+
+        Files.writeString(fichero, """
+                rss.feeds[0].nombre=a
+                rss.feeds[0].url=https://a/rss
+                rss.feeds[1].nombre=c
+                rss.feeds[1].url=https://c/rss
+                """);
+        registro.recargar();
+
+        assertEquals(List.of("a", "c"), nombres(registro));
+        assertEquals(1, avisos.get());
+        RegistroFeeds.Salud a = registro.salud().getFirst();
+        assertEquals(120, a.latenciaMediaMs());
+        assertNotNull(a.ultimoExito());
+
+        // Una lista con nombres repetidos se rechaza entera
+        Files.writeString(fichero, """
+                rss.feeds[0].nombre=a
+                rss.feeds[0].url=https://a/rss
+                rss.feeds[1].nombre=a
+                rss.feeds[1].url=https://otra/rss
+                """);
+        assertThrows(IllegalStateException.class, registro::recargar);
+        assertEquals(List.of("a", "c"), nombres(registro));
+        assertEquals(1, avisos.get());
+    }
+
+    @Test
+    void unaFuenteQueNoDejaDeFallarEntraEnCuarentenaCadaVezMasLarga() {
+        RegistroFeeds registro = registro(unaFuente("caida"), null);
+
+        fallar(registro, 2);
+        assertTrue(registro.admite("caida"));
+        fallar(registro, 1);
+        assertFalse(registro.admite("caida"), "3 fallos seguidos: cuarentena");
+        assertEquals(3, registro.salud().getFirst().fallosSeguidos());
+        assertNotNull(registro.salud().getFirst().cuarentenaHasta());
+
+        // Vencida la espera sólo se deja pasar un intento...
+        reloj.avanzar(1_000);
+        assertTrue(registro.admite("caida"));
+        assertFalse(registro.admite("caida"));
+
+        // ...que si falla la vuelve a encerrar, el doble de tiempo
+        fallar(registro, 1);
+        reloj.avanzar(1_000);
+        assertFalse(registro.admite("caida"));
+        reloj.avanzar(1_000);
+        assertTrue(registro.admite("caida"));
+
+        // Un éxito la devuelve a la normalidad
+        registro.registrar(new ResultadoFeed("caida", 0, 10, ResultadoFeed.Estado.NO_MODIFICADO, null));
+        assertTrue(registro.admite("caida"));
+        assertTrue(registro.admite("caida"));
+        assertEquals(0, registro.salud().getFirst().fallosSeguidos());
+        assertNull(registro.salud().getFirst().cuarentenaHasta());
+    }
+
+    @Test
+    void laLatenciaMediaPesaMasLoReciente() {
+        RegistroFeeds registro = registro(unaFuente("f"), null);
+
+        registro.registrar(new ResultadoFeed("f", 0, 100, ResultadoFeed.Estado.OK, null));
+        registro.registrar(new ResultadoFeed("f", 0, 600, ResultadoFeed.Estado.OK, null));
+
+        assertEquals(200, registro.salud().getFirst().latenciaMediaMs());
+    }
+
+    @Test
+    void laIngestaNoGastaPeticionesEnLasFuentesEnCuarentena() throws Exception {
+        servidor = new StubRssServer();
+        servidor.publicar("viva", RSS);
+        MockEnvironment entorno = new MockEnvironment()
+                .withProperty("rss.feeds[0].nombre", "viva")
+                .withProperty("rss.feeds[0].url", servidor.url("viva"))
+                .withProperty("rss.feeds[0].limite", "2")
+                .withProperty("rss.feeds[1].nombre", "muerta")
+                .withProperty("rss.feeds[1].url", servidor.url("muerta"));
+        RegistroFeeds registro = registro(entorno, null);
+        RssParserService rss = rssParserService(registro);
+
+        ResultadoIngesta primera = rss.ingestar(20);
+        assertEquals(2, primera.totalNuevas(), "la viva tiene su propio límite");
+        for (int i = 0; i < 2; i++) {
+            rss.ingestar(20);
+        }
+        int peticiones = servidor.getPeticiones();
+        ResultadoIngesta resultado = rss.ingestar(20);
+
+        assertEquals(peticiones + 1, servidor.getPeticiones(), "sólo se ha pedido la viva");
+        assertEquals(1, resultado.fuentesConEstado(ResultadoFeed.Estado.CUARENTENA));
+        assertEquals(ResultadoFeed.Estado.CUARENTENA, rss.ingestarFuente("muerta", 20).estado());
+        RegistroFeeds.Salud viva = registro.salud().getFirst();
+        assertEquals(0, viva.fallosSeguidos());
+        assertNull(viva.cuarentenaHasta());
+    }
+
+    @Test
+    void unaIngestaInterrumpidaNoCuentaComoFalloDeLasFuentes() throws Exception {
+        servidor = new StubRssServer();
+        servidor.publicar("viva", RSS);
+        MockEnvironment entorno = new MockEnvironment()
+                .withProperty("rss.feeds[0].nombre", "viva")
+                .withProperty("rss.feeds[0].url", servidor.url("viva"));
+        RegistroFeeds registro = registro(entorno, null);
+        RssParserService rss = rssParserService(registro);
+
+        for (boolean concurrente : new boolean[] {false, true}) {
+            ReflectionTestUtils.setField(rss, "ingestaConcurrente", concurrente);
+            for (int i = 0; i < 3; i++) {
+                Thread.currentThread().interrupt();
+                try {
+                    ResultadoIngesta resultado = rss.ingestar(20);
+                    assertEquals(1, resultado.fuentesConEstado(ResultadoFeed.Estado.INTERRUMPIDA));
+                } finally {
+                    Thread.interrupted();
+                }
+            }
+        }
+
+        assertTrue(registro.admite("viva"));
+        assertEquals(0, registro.salud().getFirst().fallosSeguidos());
+    }
+
+    private RegistroFeeds registro(MockEnvironment entorno, Path fichero) {
+        RegistroFeeds registro = new RegistroFeeds(entorno, fichero == null ? null : fichero.toString(), 0,
+                3, 1_000, 60_000, reloj);
+        registro.iniciar();
+        return registro;
+    }
+
+    private static List<String> nombres(RegistroFeeds registro) {
+        return registro.fuentes().stream().map(RegistroFeeds.Fuente::nombre).toList();
+    }
+
+    private static MockEnvironment unaFuente(String nombre) {
+        return new MockEnvironment()
+                .withProperty("rss.feeds[0].nombre", nombre)
+                .withProperty("rss.feeds[0].url", "https://" + nombre + "/rss");
+    }
+
+    private static void fallar(RegistroFeeds registro, int veces) {
+        for (int i = 0; i < veces; i++) {
+            registro.registrar(new ResultadoFeed("caida", 0, 10, ResultadoFeed.Estado.ERROR, "HTTP 404"));
+        }
+    }
+
+    private static RssParserService rssParserService(RegistroFeeds registro) {
+        CacheValidadoresFeed cache = new CacheValidadoresFeed();
+        NoticiaDaoEnMemoria noticias = new NoticiaDaoEnMemoria();
+        RssParserService rss = new RssParserService(noticias, new DescargadorFeeds(cache), cache, new LectorFeedStax(),
+                new LimpiadorHtml(), new MetricasPipeline(new SimpleMeterRegistry(), noticias, new ResumenDaoEnMemoria()),
+                registro, new CerrojoPublicacion());
+        ReflectionTestUtils.setField(rss, "timeoutFuenteMs", 5_000L);
+        return rss;
+    }
+
+    private static final class RelojManual extends Clock {
+        private long millis = 1_000_000;
+
+        void avanzar(long ms) {
+            millis += ms;
+        }
+
+        @Override
+        public long millis() {
+            return millis;
+        }
+
+        @Override
+        public Instant instant() {
+            return Instant.ofEpochMilli(millis);
+        }
+
+        @Override
+        public ZoneOffset getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(java.time.ZoneId zone) {
+            return this;
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package org.srpm.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.srpm.dao.NoticiaDAO;
+import org.srpm.dao.NoticiaDaoEnMemoria;
+import org.srpm.dao.ResumenDAO;
+import org.srpm.dao.ResumenDaoEnMemoria;
+import org.srpm.model.Noticia;
+import org.srpm.model.Resumen;
+
+import java.io.InputStream;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BiConsumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+/**
+ * La caché de resúmenes y la agrupación de duplicados juntas: un grupo se resuelve una sola vez,
+ * venga su resumen de un ciclo anterior, de la caché o de la IA.
+ */
+class ResumenServiceTest {
+
+    private final NoticiaDaoEnMemoria noticias = new NoticiaDaoEnMemoria();
+    private final ResumenDaoEnMemoria resumenes = new ResumenDaoEnMemoria();
+    private final DespachadorResumenes despachador = mock(DespachadorResumenes.class);
+    private final List<List<Noticia>> enviadas = new ArrayList<>();
+    private CacheResumenes cache;
+    private ResumenService servicio;
+
+    @BeforeEach
+    void montar() {
+        cache = new CacheResumenes(new ObjectMapper(), 100, Duration.ofDays(1).toMillis(), "", Clock.systemUTC());
+        servicio = servicio(new AgrupadorDuplicados(0.35, 100));
+
+        // La "IA": un resumen por noticia del lote
+        when(despachador.despachar(anyList(), any())).thenAnswer(inv -> {
+            List<Noticia> lote = inv.getArgument(0);
+            BiConsumer<List<Noticia>, List<Resumen>> alResumir = inv.getArgument(1);
+            enviadas.add(lote);
+            List<Resumen> hechos = new ArrayList<>();
+            for (Noticia noticia : lote) {
+                hechos.add(new Resumen("Resumen de " + noticia.getTitular(), "Cuerpo", null));
+            }
+            alResumir.accept(lote, hechos);
+            return new ResultadoDespacho(1, 0, hechos.size(), 0);
+        });
+    }
+
+    @Test
+    void unaNoticiaRepublicadaTalCualSeUneAlResumenDeSuGrupo() throws Exception {
+        Noticia original = noticia(0, "https://20minutos/candeleda");
+        noticias.save(original);
+        servicio.resumirPendientes();
+        assertEquals(1, resumenes.count());
+
+        // Un ciclo después, el mismo texto con otro link: está en la caché, pero su grupo ya tiene resumen
+        Noticia republicada = noticia(0, "https://20minutos/candeleda-2");
+        noticias.save(republicada);
+        servicio.resumirPendientes();
+
+        assertEquals(1, resumenes.count(), "no debe salir un segundo resumen");
+        assertEquals(List.of(original.getId(), republicada.getId()), resumenes.findAll().getFirst().getNoticiaIds());
+        assertEquals(1, enviadas.size());
+        assertTrue(noticias.findPendientesDeResumen().isEmpty());
+    }
+
+    @Test
+    void unGrupoConUnaNoticiaEnCacheSeResuelveEnteroSinIrALaIA() throws Exception {
+        Noticia original = noticia(0, "https://20minutos/candeleda");
+        noticias.save(original);
+        servicio.resumirPendientes();
+
+        // Como tras un refresco total: las mismas noticias con otros ids, y los grupos de antes olvidados
+        servicio = servicio(new AgrupadorDuplicados(0.35, 100));
+        Noticia otraVez = noticia(0, "https://20minutos/candeleda?r=1");
+        Noticia deCope = noticia(1, "https://cope/candeleda");
+        noticias.save(otraVez);
+        noticias.save(deCope);
+        ResultadoDespacho resultado = servicio.resumirPendientes();
+
+        assertEquals(1, enviadas.size(), "el duplicado de COPE no va a la IA");
+        assertEquals(1, resultado.resumenes());
+        assertEquals(2, resumenes.count());
+        Resumen desdeCache = resumenes.findAll().getLast();
+        assertEquals(List.of(otraVez.getId(), deCope.getId()), desdeCache.getNoticiaIds());
+        assertTrue(noticias.findPendientesDeResumen().isEmpty());
+    }
+
+    @Test
+    void unLoteQueVuelveTrasPublicarseOtraGeneracionNoSeGuarda() throws Exception {
+        noticias.save(noticia(0, "https://20minutos/candeleda"));
+        // La IA tarda y, mientras, un refresco total publica su generación (el despacho no retiene el cerrojo)
+        doAnswer(inv -> {
+            List<Noticia> lote = inv.getArgument(0);
+            BiConsumer<List<Noticia>, List<Resumen>> alResumir = inv.getArgument(1);
+            NoticiaDAO nuevas = noticias.nuevaGeneracion();
+            ResumenDAO resumenesNuevos = resumenes.nuevaGeneracion();
+            new CerrojoPublicacion().publicando(() -> {
+                noticias.publicar(nuevas);
+                resumenes.publicar(resumenesNuevos);
+            });
+            alResumir.accept(lote, List.of(new Resumen("Tarde", "Cuerpo", null)));
+            return new ResultadoDespacho(1, 0, 1, 0);
+        }).when(despachador).despachar(anyList(), any());
+
+        servicio.resumirPendientes();
+
+        assertEquals(0, resumenes.count(), "el resumen de noticias que ya no están no llega a la generación nueva");
+    }
+
+    private ResumenService servicio(AgrupadorDuplicados agrupador) {
+        return new ResumenService(mock(RssParserService.class), resumenes, noticias, despachador, cache,
+                new IndiceBusqueda(resumenes, noticias), agrupador,
+                new MetricasPipeline(new SimpleMeterRegistry(), noticias, resumenes), new CerrojoPublicacion());
+    }
+
+    // Una de las noticias etiquetadas de src/test/resources/duplicados (0 y 1: el mismo incendio)
+    private static Noticia noticia(int indice, String link) throws Exception {
+        try (InputStream in = ResumenServiceTest.class.getResourceAsStream("/duplicados/noticias-etiquetadas.json")) {
+            JsonNode n = new ObjectMapper().readTree(in).get(indice);
+            Noticia noticia = new Noticia();
+            noticia.setLinkNoticia(link);
+            noticia.setFuente(n.get("fuente").asText());
+            noticia.setTitular(n.get("titular").asText());
+            noticia.setContenido(n.get("contenido").asText());
+            return noticia;
+        }
+    }
+}
@@ -0,0 +1,186 @@
+package org.srpm.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.srpm.dao.NoticiaDaoEnMemoria;
+import org.srpm.dao.ResumenDaoEnMemoria;
+import org.srpm.model.Noticia;
+import org.srpm.stub.StubRssServer;
+
+import java.time.Clock;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * La ingesta contra fuentes de verdad (StubRssServer), con sus latencias: plazos por fuente y por ciclo
+ * en el modo concurrente, el reparto de huecos por prioridad y qué retiene (o no) el cerrojo de publicación.
+ */
+class RssParserServiceTest {
+
+    private final NoticiaDaoEnMemoria noticias = new NoticiaDaoEnMemoria();
+    private final CerrojoPublicacion cerrojo = new CerrojoPublicacion();
+    private StubRssServer lento;
+    private StubRssServer rapido;
+
+    @AfterEach
+    void tearDown() {
+        if (lento != null) {
+            lento.close();
+        }
+        if (rapido != null) {
+            rapido.close();
+        }
+    }
+
+    @Test
+    void enConcurrenteUnaFuenteFueraDePlazoSeCancelaSinFrenarALasDemas() throws Exception {
+        RssParserService rss = rssParserService(unaLentaYTresRapidas(3_000, 200));
+        ReflectionTestUtils.setField(rss, "ingestaConcurrente", true);
+        ReflectionTestUtils.setField(rss, "timeoutFuenteMs", 1_500L);
+        ReflectionTestUtils.setField(rss, "timeoutCicloMs", 30_000L);
+
+        ResultadoIngesta resultado = rss.ingestar(20);
+
+        assertEquals(ResultadoFeed.Estado.TIMEOUT, estado(resultado, "lenta"));
+        for (String fuente : List.of("a", "b", "c")) {
+            assertEquals(ResultadoFeed.Estado.OK, estado(resultado, fuente), fuente);
+        }
+        assertEquals(15, resultado.totalNuevas());
+        // Lo que dura el plazo de la lenta, no la suma (3000 + 3 x 200)
+        assertTrue(resultado.duracionMs() >= 1_500 && resultado.duracionMs() < 2_500, resultado.duracionMs() + " ms");
+
+        // Cancelada de verdad: pasado lo que tardaba en responder, no ha guardado nada
+        Thread.sleep(2_000);
+        assertEquals(15, noticias.findAll().size());
+        assertTrue(noticias.findAll().stream().noneMatch(n -> "lenta".equals(n.getFuente())));
+    }
+
+    @Test
+    void enConcurrenteElPlazoDelCicloCortaAntesQueElDeLaFuente() throws Exception {
+        RssParserService rss = rssParserService(unaLentaYTresRapidas(3_000, 200));
+        ReflectionTestUtils.setField(rss, "ingestaConcurrente", true);
+        ReflectionTestUtils.setField(rss, "timeoutFuenteMs", 10_000L);
+        ReflectionTestUtils.setField(rss, "timeoutCicloMs", 1_500L);
+
+        ResultadoIngesta resultado = rss.ingestar(20);
+
+        assertEquals(ResultadoFeed.Estado.TIMEOUT, estado(resultado, "lenta"));
+        assertEquals(15, resultado.totalNuevas());
+        assertTrue(resultado.duracionMs() >= 1_500 && resultado.duracionMs() < 2_500, resultado.duracionMs() + " ms");
+    }
+
+    @Test
+    void unaFuenteLentaNoRetieneLaPublicacion() throws Exception {
+        lento = new StubRssServer();
+        lento.generar("lenta", 5, 200);
+        lento.setLatenciaMs(1_500);
+        RssParserService rss = rssParserService(new MockEnvironment()
+                .withProperty("rss.feeds[0].nombre", "lenta")
+                .withProperty("rss.feeds[0].url", lento.url("lenta")));
+
+        CompletableFuture<ResultadoIngesta> ingesta = CompletableFuture.supplyAsync(() -> rss.ingestar(20));
+        while (lento.getPeticiones() == 0) {
+            Thread.sleep(10);
+        }
+
+        // Con la descarga a medias, publicar no espera: el cerrojo sólo se toma para guardar
+        CompletableFuture<Void> publicacion = CompletableFuture.runAsync(() -> cerrojo.publicando(() -> { }));
+        publicacion.get(500, TimeUnit.MILLISECONDS);
+        assertFalse(ingesta.isDone());
+
+        assertEquals(5, ingesta.get(5, TimeUnit.SECONDS).totalNuevas());
+        assertEquals(5, noticias.findAll().size());
+    }
+
+    @Test
+    void conMaxConcurrentesLasDeMasPrioridadCogenHuecoAntes() throws Exception {
+        rapido = new StubRssServer();
+        rapido.setLatenciaMs(100);
+        RssParserService rss = rssParserService(tresConPrioridad());
+        ReflectionTestUtils.setField(rss, "ingestaConcurrente", true);
+        ReflectionTestUtils.setField(rss, "maxConcurrentes", 1);
+        ReflectionTestUtils.setField(rss, "timeoutFuenteMs", 5_000L);
+        ReflectionTestUtils.setField(rss, "timeoutCicloMs", 30_000L);
+
+        assertEquals(15, rss.ingestar(20).totalNuevas());
+
+        // De una en una y por prioridad: los ids salen en ese orden
+        List<String> orden = noticias.findAll().stream()
+                .sorted(Comparator.comparingLong(Noticia::getId))
+                .map(Noticia::getFuente).distinct().toList();
+        assertEquals(List.of("alta", "media", "baja"), orden);
+    }
+
+    @Test
+    void conMaxConcurrentesLasQueNoCogenHuecoAntesDelFinDelCicloNoCuentanComoFallo() throws Exception {
+        rapido = new StubRssServer();
+        rapido.setLatenciaMs(1_500);
+        RssParserService rss = rssParserService(tresConPrioridad());
+        ReflectionTestUtils.setField(rss, "ingestaConcurrente", true);
+        ReflectionTestUtils.setField(rss, "maxConcurrentes", 1);
+        ReflectionTestUtils.setField(rss, "timeoutFuenteMs", 5_000L);
+        ReflectionTestUtils.setField(rss, "timeoutCicloMs", 2_500L);
+
+        ResultadoIngesta resultado = rss.ingestar(20);
+
+        assertEquals(ResultadoFeed.Estado.OK, estado(resultado, "alta"));
+        assertEquals(ResultadoFeed.Estado.TIMEOUT, estado(resultado, "media"));
+        assertEquals(ResultadoFeed.Estado.INTERRUMPIDA, estado(resultado, "baja"));
+        assertTrue(resultado.duracionMs() < 3_500, resultado.duracionMs() + " ms");
+    }
+
+    // 'baja', 'alta' y 'media' (en ese orden en la configuración) en el servidor rápido, con 5 noticias cada una
+    private MockEnvironment tresConPrioridad() {
+        MockEnvironment entorno = new MockEnvironment();
+        List<String> nombres = List.of("baja", "alta", "media");
+        List<Integer> prioridades = List.of(1, 10, 5);
+        for (int i = 0; i < nombres.size(); i++) {
+            rapido.generar(nombres.get(i), 5, 200);
+            entorno.withProperty("rss.feeds[" + i + "].nombre", nombres.get(i))
+                    .withProperty("rss.feeds[" + i + "].url", rapido.url(nombres.get(i)))
+                    .withProperty("rss.feeds[" + i + "].prioridad", String.valueOf(prioridades.get(i)));
+        }
+        return entorno;
+    }
+
+    // 'lenta' en un servidor y 'a', 'b' y 'c' en otro, cada una con 5 noticias
+    private MockEnvironment unaLentaYTresRapidas(long latenciaLentaMs, long latenciaRapidasMs) throws Exception {
+        lento = new StubRssServer();
+        lento.generar("lenta", 5, 200);
+        lento.setLatenciaMs(latenciaLentaMs);
+        rapido = new StubRssServer();
+        rapido.setLatenciaMs(latenciaRapidasMs);
+        MockEnvironment entorno = new MockEnvironment()
+                .withProperty("rss.feeds[0].nombre", "lenta")
+                .withProperty("rss.feeds[0].url", lento.url("lenta"));
+        List<String> rapidas = List.of("a", "b", "c");
+        for (int i = 0; i < rapidas.size(); i++) {
+            rapido.generar(rapidas.get(i), 5, 200);
+            entorno.withProperty("rss.feeds[" + (i + 1) + "].nombre", rapidas.get(i))
+                    .withProperty("rss.feeds[" + (i + 1) + "].url", rapido.url(rapidas.get(i)));
+        }
+        return entorno;
+    }
+
+    private static ResultadoFeed.Estado estado(ResultadoIngesta resultado, String fuente) {
+        return resultado.feeds().stream().filter(f -> fuente.equals(f.fuente())).findFirst().orElseThrow().estado();
+    }
+
+    private RssParserService rssParserService(MockEnvironment entorno) {
+        RegistroFeeds registro = new RegistroFeeds(entorno, null, 0, 3, 1_000, 60_000, Clock.systemUTC());
+        registro.iniciar();
+        CacheValidadoresFeed cache = new CacheValidadoresFeed();
+        RssParserService rss = new RssParserService(noticias, new DescargadorFeeds(cache), cache, new LectorFeedStax(),
+                new LimpiadorHtml(), new MetricasPipeline(new SimpleMeterRegistry(), noticias, new ResumenDaoEnMemoria()),
+                registro, cerrojo);
+        ReflectionTestUtils.setField(rss, "timeoutFuenteMs", 5_000L);
+        return rss;
+    }
+}
@@ -0,0 +1,189 @@
+package org.srpm.stub;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntToLongFunction;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.function.Predicate;
+
+/**
+ * Servicio de IA de mentira para los tests.
+ *
+ * Recibe en /api/resumenes-objetivos la lista de noticias y devuelve un resumen por noticia
+ * ("Resumen: " + titular). Se puede configurar la latencia (fija o por número de petición), una tasa
+ * de errores aleatorios, que fallen las N siguientes peticiones, el estado con el que fallan y qué
+ * peticiones deben fallar siempre.
+ *
+ * Acepta peticiones con Content-Encoding: gzip (y responde con gzip, por trozos, si se le pide).
+ */
+public class StubIaServer implements AutoCloseable {
+
+    public static final String RUTA = "/api/resumenes-objetivos";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final HttpServer server;
+
+    private final AtomicInteger peticiones = new AtomicInteger();
+    private final AtomicInteger enCurso = new AtomicInteger();
+    private final AtomicInteger maxEnCurso = new AtomicInteger();
+
+    private volatile IntToLongFunction latenciaMs = peticion -> 0;
+    private volatile double tasaError = 0;
+    private final AtomicInteger fallos = new AtomicInteger();
+    private volatile int estadoError = 500;
+
+    // De la última petición atendida
+    private volatile String contentEncoding;
+    private volatile String contentLength;
+    private volatile Predicate<List<Map<String, Object>>> fallarSi = lote -> false;
+
+    public StubIaServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext(RUTA, this::atender);
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        server.start();
+    }
+
+    public String url() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + RUTA;
+    }
+
+    public void setLatenciaMs(long latenciaMs) {
+        this.latenciaMs = peticion -> latenciaMs;
+    }
+
+    /**
+     * Latencia según el número de petición (1 la primera).
+     */
+    public void setLatenciaMs(IntToLongFunction latenciaMs) {
+        this.latenciaMs = latenciaMs;
+    }
+
+    /**
+     * Las próximas 'n' peticiones fallan con el estado de error.
+     */
+    public void setFallos(int n) {
+        fallos.set(n);
+    }
+
+    public void setEstadoError(int estadoError) {
+        this.estadoError = estadoError;
+    }
+
+    public void setTasaError(double tasaError) {
+        this.tasaError = tasaError;
+    }
+
+    public void setFallarSi(Predicate<List<Map<String, Object>>> fallarSi) {
+        this.fallarSi = fallarSi;
+    }
+
+    /**
+     * Content-Encoding de la última petición (null si no venía comprimida).
+     */
+    public String getContentEncoding() {
+        return contentEncoding;
+    }
+
+    /**
+     * Content-Length de la última petición (null si se mandó por trozos).
+     */
+    public String getContentLength() {
+        return contentLength;
+    }
+
+    public int getPeticiones() {
+        return peticiones.get();
+    }
+
+    public int getMaxEnCurso() {
+        return maxEnCurso.get();
+    }
+
+    private void atender(HttpExchange exchange) throws IOException {
+        int numero = peticiones.incrementAndGet();
+        maxEnCurso.accumulateAndGet(enCurso.incrementAndGet(), Math::max);
+        try (exchange) {
+            contentEncoding = exchange.getRequestHeaders().getFirst("Content-Encoding");
+            contentLength = exchange.getRequestHeaders().getFirst("Content-Length");
+            List<Map<String, Object>> noticias;
+            try (InputStream in = "gzip".equals(contentEncoding)
+                    ? new GZIPInputStream(exchange.getRequestBody()) : exchange.getRequestBody()) {
+                noticias = objectMapper.readValue(in, new TypeReference<>() { });
+            }
+
+            long latencia = latenciaMs.applyAsLong(numero);
+            if (latencia > 0) {
+                Thread.sleep(latencia);
+            }
+
+            boolean toca = fallos.getAndUpdate(n -> Math.max(0, n - 1)) > 0;
+            if (toca || fallarSi.test(noticias) || ThreadLocalRandom.current().nextDouble() < tasaError) {
+                exchange.sendResponseHeaders(estadoError, -1);
+                return;
+            }
+
+            List<Map<String, Object>> resumenes = new ArrayList<>();
+            for (Map<String, Object> noticia : noticias) {
+                Map<String, Object> resumen = new LinkedHashMap<>();
+                resumen.put("titular", "Resumen: " + noticia.get("titular"));
+                resumen.put("cuerpo", "Resumen objetivo de " + noticia.get("linkNoticia"));
+                resumenes.add(resumen);
+            }
+
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            String acepta = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+            boolean comprimir = acepta != null && acepta.contains("gzip");
+            if (!comprimir) {
+                byte[] cuerpo = objectMapper.writeValueAsBytes(resumenes);
+                exchange.sendResponseHeaders(200, cuerpo.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(cuerpo);
+                }
+                return;
+            }
+
+            // Por trozos (longitud 0): un resumen cada vez
+            if (comprimir) {
+                exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+            }
+            exchange.sendResponseHeaders(200, 0);
+            try (OutputStream out = comprimir
+                    ? new GZIPOutputStream(exchange.getResponseBody(), true) : exchange.getResponseBody()) {
+                out.write('[');
+                for (int i = 0; i < resumenes.size(); i++) {
+                    if (i > 0) {
+                        out.write(',');
+                    }
+                    out.write(objectMapper.writeValueAsBytes(resumenes.get(i)));
+                    out.flush();
+                }
+                out.write(']');
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            enCurso.decrementAndGet();
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+}
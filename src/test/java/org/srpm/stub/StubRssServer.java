@@ -0,0 +1,163 @@
+package org.srpm.stub;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Servidor RSS de mentira para los tests (sin Internet).
+ *
+ * Sirve en /feed/{nombre} el documento que le digamos, con un ETag derivado de su contenido.
+ * Se le puede pedir que ignore las peticiones condicionales (como hacen muchos editores).
+ *
+ * Para las pruebas de carga también genera feeds: N entradas con texto al azar (distinto en cada noticia,
+ * para que no parezcan duplicadas) que van rotando como en un medio que publica.
+ */
+public class StubRssServer implements AutoCloseable {
+
+    private final HttpServer server;
+    private final ConcurrentHashMap<String, String> documentos = new ConcurrentHashMap<>();
+    private final AtomicInteger peticiones = new AtomicInteger();
+    private final AtomicInteger respuestas304 = new AtomicInteger();
+    private volatile boolean soportaCondicional = true;
+    private volatile long latenciaMs = 0;
+
+    // Feeds generados: tamaño, bytes de contenido por entrada y número de la más reciente
+    private record Generado(int entradas, int bytesContenido, int ultima) { }
+    private final ConcurrentHashMap<String, Generado> generados = new ConcurrentHashMap<>();
+
+    public StubRssServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/feed/", this::atender);
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        server.start();
+    }
+
+    public String url(String nombre) {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/feed/" + nombre;
+    }
+
+    public void publicar(String nombre, String xml) {
+        documentos.put(nombre, xml);
+    }
+
+    /**
+     * Publica en 'nombre' un feed de 'entradas' noticias, cada una con unos 'bytesContenido' de texto.
+     */
+    public void generar(String nombre, int entradas, int bytesContenido) {
+        Generado generado = new Generado(entradas, bytesContenido, entradas);
+        generados.put(nombre, generado);
+        publicar(nombre, documento(nombre, generado));
+    }
+
+    /**
+     * El feed generado publica 'nuevas' noticias: entran por arriba y salen otras tantas por abajo.
+     */
+    public void rotar(String nombre, int nuevas) {
+        Generado generado = generados.computeIfPresent(nombre,
+                (n, g) -> new Generado(g.entradas(), g.bytesContenido(), g.ultima() + nuevas));
+        if (generado != null) {
+            publicar(nombre, documento(nombre, generado));
+        }
+    }
+
+    public void setSoportaCondicional(boolean soportaCondicional) {
+        this.soportaCondicional = soportaCondicional;
+    }
+
+    public void setLatenciaMs(long latenciaMs) {
+        this.latenciaMs = latenciaMs;
+    }
+
+    public int getPeticiones() {
+        return peticiones.get();
+    }
+
+    public int getRespuestas304() {
+        return respuestas304.get();
+    }
+
+    private void atender(HttpExchange exchange) throws IOException {
+        peticiones.incrementAndGet();
+        try (exchange) {
+            if (latenciaMs > 0) {
+                Thread.sleep(latenciaMs);
+            }
+            String nombre = exchange.getRequestURI().getPath().substring("/feed/".length());
+            String xml = documentos.get(nombre);
+            if (xml == null) {
+                exchange.sendResponseHeaders(404, -1);
+                return;
+            }
+
+            String etag = "\"" + Integer.toHexString(xml.hashCode()) + "\"";
+            if (soportaCondicional && etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                respuestas304.incrementAndGet();
+                exchange.sendResponseHeaders(304, -1);
+                return;
+            }
+
+            byte[] cuerpo = xml.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "application/rss+xml; charset=UTF-8");
+            if (soportaCondicional) {
+                exchange.getResponseHeaders().set("ETag", etag);
+            }
+            exchange.sendResponseHeaders(200, cuerpo.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(cuerpo);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static String documento(String nombre, Generado generado) {
+        StringBuilder xml = new StringBuilder(generado.entradas() * (generado.bytesContenido() + 200));
+        xml.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<rss version=\"2.0\"><channel><title>")
+                .append(nombre).append("</title>\n");
+        ZonedDateTime ahora = ZonedDateTime.now(ZoneOffset.UTC);
+        for (int i = generado.ultima(); i > generado.ultima() - generado.entradas() && i > 0; i--) {
+            SplittableRandom azar = new SplittableRandom(((long) nombre.hashCode() << 32) ^ i);
+            xml.append("<item><title>").append(nombre).append(' ').append(i).append(": ").append(texto(azar, 60))
+                    .append("</title><link>https://").append(nombre).append(".stub/noticia/").append(i)
+                    .append("</link><pubDate>")
+                    .append(DateTimeFormatter.RFC_1123_DATE_TIME.format(ahora.minusMinutes(generado.ultima() - i)))
+                    .append("</pubDate><description>&lt;p&gt;").append(texto(azar, generado.bytesContenido()))
+                    .append("&lt;/p&gt;</description></item>\n");
+        }
+        return xml.append("</channel></rss>\n").toString();
+    }
+
+    // Palabras inventadas (de 2 a 5 sílabas consonante + vocal): casi nunca se repiten pares entre noticias
+    private static String texto(SplittableRandom azar, int bytes) {
+        String consonantes = "bcdfglmnprstvz";
+        String vocales = "aeiou";
+        StringBuilder texto = new StringBuilder(bytes + 12);
+        while (texto.length() < bytes) {
+            if (!texto.isEmpty()) {
+                texto.append(' ');
+            }
+            for (int silabas = azar.nextInt(2, 6); silabas > 0; silabas--) {
+                texto.append(consonantes.charAt(azar.nextInt(consonantes.length())))
+                        .append(vocales.charAt(azar.nextInt(vocales.length())));
+            }
+        }
+        return texto.toString();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+}